@@ -19,6 +19,15 @@ repositories {
 
 val lombokVersion = "1.18.30"
 val postgreSqlVersion = "42.7.2"
+val hdrHistogramVersion = "2.2.2"
+
+val loadTest: SourceSet by sourceSets.creating {
+    compileClasspath += sourceSets.main.get().output
+    runtimeClasspath += sourceSets.main.get().output
+}
+
+configurations[loadTest.implementationConfigurationName].extendsFrom(configurations.implementation.get())
+configurations[loadTest.runtimeOnlyConfigurationName].extendsFrom(configurations.runtimeOnly.get())
 
 dependencies {
     implementation("org.springframework.boot:spring-boot-starter-data-jpa")
@@ -26,6 +35,8 @@ dependencies {
     implementation("org.springframework.boot:spring-boot-starter-validation")
     implementation("org.springframework.boot:spring-boot-configuration-processor")
     implementation("org.springframework.boot:spring-boot-starter-actuator")
+    implementation("com.fasterxml.jackson.dataformat:jackson-dataformat-cbor")
+    implementation("com.fasterxml.jackson.dataformat:jackson-dataformat-smile")
 
     implementation("org.liquibase:liquibase-core")
     implementation("org.postgresql:postgresql:$postgreSqlVersion")
@@ -38,8 +49,33 @@ dependencies {
     testRuntimeOnly("org.junit.platform:junit-platform-launcher")
     testImplementation("org.projectlombok:lombok:$lombokVersion")
     testAnnotationProcessor("org.projectlombok:lombok:$lombokVersion")
+
+    "loadTestImplementation"("org.hdrhistogram:HdrHistogram:$hdrHistogramVersion")
+    "loadTestRuntimeOnly"("com.h2database:h2")
 }
 
 tasks.test {
     useJUnitPlatform()
 }
+
+/**
+ * Boots the application against an embedded database and a temporary storage directory, and drives a mixed workload at it.
+ * Settings are passed as loadtest.* project properties, e.g. ./gradlew loadTest -Ploadtest.rate=500 -Ploadtest.duration=2m
+ */
+tasks.register<JavaExec>("loadTest") {
+    group = "verification"
+    description = "Runs an open-loop load test and reports throughput and latency percentiles per endpoint."
+    classpath = loadTest.runtimeClasspath
+    mainClass = "com.mlavrenko.videostreaming.loadtest.LoadTestApplication"
+    systemProperties(providers.gradlePropertiesPrefixedBy("loadtest.").get())
+}
+
+/**
+ * Prints payload size and serialization cost of the JSON, CBOR and Smile encodings of listing, metadata and engagement responses.
+ */
+tasks.register<JavaExec>("serializationBenchmark") {
+    group = "verification"
+    description = "Compares payload size and serialization cost of the JSON, CBOR and Smile response encodings."
+    classpath = loadTest.runtimeClasspath
+    mainClass = "com.mlavrenko.videostreaming.loadtest.SerializationBenchmark"
+}
@@ -0,0 +1,92 @@
+package com.mlavrenko.videostreaming.loadtest;
+
+import com.mlavrenko.videostreaming.domain.Genre;
+import com.mlavrenko.videostreaming.domain.VideoMetadata;
+import com.mlavrenko.videostreaming.repository.VideoMetadataRepository;
+import com.mlavrenko.videostreaming.service.AutocompleteService;
+import com.mlavrenko.videostreaming.service.CatalogueListingService;
+import com.mlavrenko.videostreaming.service.FacetService;
+import com.mlavrenko.videostreaming.service.RelatedVideosService;
+import com.mlavrenko.videostreaming.service.VideoIdFilter;
+import org.springframework.context.ApplicationContext;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * Writes content files straight into the storage directory and saves their metadata in batches, which is much faster than publishing
+ * through the API, and then rebuilds the in-memory indexes, which would otherwise pick the catalogue up only on their next scheduled run.
+ * Seeded videos have no precomputed preview, so their previews are generated on first load, like those of videos published
+ * before previews were introduced.
+ */
+final class CatalogueSeeder {
+    static final List<String> TITLE_WORDS = List.of("Night", "River", "Last", "Silent", "Golden", "Broken", "Winter", "Lost",
+            "City", "Storm", "Shadow", "Summer", "Iron", "Hidden", "Wild", "Empire");
+    static final int FIRST_YEAR = 1970;
+    static final int YEARS = 55;
+    static final int DIRECTORS = 200;
+    private static final int BATCH_SIZE = 500;
+    private static final byte[] ALPHABET = "abcdefghijklmnopqrstuvwxyz ".getBytes(StandardCharsets.US_ASCII);
+
+    private CatalogueSeeder() {
+    }
+
+    static List<SeededVideo> seed(ApplicationContext context, Path storageDirectory, LoadTestSettings settings) throws IOException {
+        VideoMetadataRepository videoMetadataRepository = context.getBean(VideoMetadataRepository.class);
+        SplittableRandom random = new SplittableRandom(settings.seed());
+        List<SeededVideo> seeded = new ArrayList<>(settings.videos());
+        List<VideoMetadata> batch = new ArrayList<>(BATCH_SIZE);
+        Files.createDirectories(storageDirectory);
+        for (int i = 0; i < settings.videos(); i++) {
+            Path content = storageDirectory.resolve("seed-" + i + ".mp4");
+            Files.write(content, createContent(random, settings));
+            batch.add(createVideo(random, content));
+            if (batch.size() == BATCH_SIZE || i == settings.videos() - 1) {
+                videoMetadataRepository.saveAll(batch).forEach(video ->
+                        seeded.add(new SeededVideo(video.getId(), video.getTitle(), video.getDirector(), video.getYearOfRelease())));
+                batch.clear();
+            }
+        }
+        context.getBean(VideoIdFilter.class).rebuild();
+        context.getBean(AutocompleteService.class).refresh();
+        context.getBean(FacetService.class).rebuild();
+        context.getBean(RelatedVideosService.class).rebuild();
+        context.getBean(CatalogueListingService.class).rebuild();
+        return seeded;
+    }
+
+    private static byte[] createContent(SplittableRandom random, LoadTestSettings settings) {
+        long size = random.nextLong(settings.minVideoSize().toBytes(), settings.maxVideoSize().toBytes() + 1);
+        byte[] content = new byte[Math.toIntExact(size)];
+        for (int i = 0; i < content.length; i++) {
+            content[i] = ALPHABET[random.nextInt(ALPHABET.length)];
+        }
+        return content;
+    }
+
+    private static VideoMetadata createVideo(SplittableRandom random, Path content) {
+        VideoMetadata video = new VideoMetadata();
+        video.setTitle(randomTitle(random));
+        video.setSynopsis("Seeded for load testing");
+        video.setDirector("Director " + random.nextInt(DIRECTORS));
+        video.setCastMembers("Actor " + random.nextInt(1000) + ", Actor " + random.nextInt(1000));
+        video.setYearOfRelease(FIRST_YEAR + random.nextInt(YEARS));
+        video.setGenre(Genre.values()[random.nextInt(Genre.values().length)]);
+        video.setRunningTime(Duration.ofMinutes(80 + random.nextInt(80)));
+        video.setVideoLocation(content.toString());
+        return video;
+    }
+
+    static String randomTitle(SplittableRandom random) {
+        return TITLE_WORDS.get(random.nextInt(TITLE_WORDS.size())) + " " + TITLE_WORDS.get(random.nextInt(TITLE_WORDS.size()));
+    }
+
+    record SeededVideo(Long id, String title, String director, int yearOfRelease) {
+    }
+}
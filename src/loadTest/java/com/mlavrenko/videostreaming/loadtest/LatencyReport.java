@@ -0,0 +1,65 @@
+package com.mlavrenko.videostreaming.loadtest;
+
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+
+import java.io.PrintStream;
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Latencies are recorded in microseconds with three significant digits, and measured from the time a request was due to start,
+ * so time spent waiting behind a slow service is part of the latency rather than hidden by a delayed start.
+ */
+final class LatencyReport {
+    private static final int SIGNIFICANT_DIGITS = 3;
+    private final Map<Operation, Histogram> latencies = new EnumMap<>(Operation.class);
+    private final Map<Operation, LongAdder> errors = new EnumMap<>(Operation.class);
+
+    LatencyReport() {
+        for (Operation operation : Operation.values()) {
+            latencies.put(operation, new ConcurrentHistogram(SIGNIFICANT_DIGITS));
+            errors.put(operation, new LongAdder());
+        }
+    }
+
+    /**
+     * @param failed whether the request failed or was answered with an error status, its latency is recorded either way
+     */
+    void record(Operation operation, long latencyNanos, boolean failed) {
+        latencies.get(operation).recordValue(TimeUnit.NANOSECONDS.toMicros(latencyNanos));
+        if (failed) {
+            errors.get(operation).increment();
+        }
+    }
+
+    void print(PrintStream out, Duration measured) {
+        double seconds = measured.toNanos() / 1e9;
+        Histogram total = new Histogram(SIGNIFICANT_DIGITS);
+        long totalErrors = 0;
+        out.printf("%-32s %10s %8s %10s %10s %10s %10s %10s%n", "endpoint", "requests", "errors", "req/s", "p50 ms", "p99 ms", "p99.9 ms", "max ms");
+        for (Operation operation : Operation.values()) {
+            Histogram histogram = latencies.get(operation);
+            long operationErrors = errors.get(operation).sum();
+            if (histogram.getTotalCount() > 0) {
+                printRow(out, operation.endpoint(), histogram, operationErrors, seconds);
+                total.add(histogram);
+                totalErrors += operationErrors;
+            }
+        }
+        printRow(out, "all", total, totalErrors, seconds);
+    }
+
+    private static void printRow(PrintStream out, String endpoint, Histogram histogram, long errors, double seconds) {
+        out.printf("%-32s %10d %8d %10.1f %10.3f %10.3f %10.3f %10.3f%n", endpoint, histogram.getTotalCount(), errors,
+                histogram.getTotalCount() / seconds, millis(histogram.getValueAtPercentile(50)), millis(histogram.getValueAtPercentile(99)),
+                millis(histogram.getValueAtPercentile(99.9)), millis(histogram.getMaxValue()));
+    }
+
+    private static double millis(long micros) {
+        return micros / 1000.0;
+    }
+}
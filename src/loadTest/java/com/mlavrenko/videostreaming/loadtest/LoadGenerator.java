@@ -0,0 +1,192 @@
+package com.mlavrenko.videostreaming.loadtest;
+
+import com.mlavrenko.videostreaming.loadtest.CatalogueSeeder.SeededVideo;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Drives an open-loop workload: requests are started at a fixed rate on virtual threads, whether or not earlier ones have completed,
+ * so a slow service faces a growing backlog, as it would with real clients, instead of being given time to recover.
+ * The sequence of requests is decided by a single seeded random generator on the dispatching thread, so runs with the same settings
+ * issue the same requests in the same order. Played, previewed and updated videos follow a Zipf distribution over a seeded
+ * shuffle of the catalogue, so the most popular videos aren't simply the first ones inserted.
+ */
+final class LoadGenerator {
+    private static final Duration REQUEST_TIMEOUT = Duration.ofSeconds(30);
+    private static final Duration DRAIN_TIMEOUT = Duration.ofMinutes(1);
+    private static final String BOUNDARY = "load-test-boundary";
+    private final URI baseUri;
+    private final List<SeededVideo> catalogue;
+    private final LoadTestSettings settings;
+    private final ZipfDistribution popularity;
+    private final Operation[] operations;
+    private final int[] cumulativeWeights;
+    private final AtomicInteger published = new AtomicInteger();
+    private final HttpClient httpClient;
+
+    LoadGenerator(URI baseUri, List<SeededVideo> catalogue, LoadTestSettings settings) {
+        this.baseUri = baseUri;
+        List<SeededVideo> shuffled = new ArrayList<>(catalogue);
+        Collections.shuffle(shuffled, new Random(settings.seed()));
+        this.catalogue = shuffled;
+        this.settings = settings;
+        this.popularity = new ZipfDistribution(catalogue.size(), settings.zipfExponent());
+        this.operations = settings.mix().keySet().toArray(Operation[]::new);
+        this.cumulativeWeights = new int[operations.length];
+        int sum = 0;
+        for (int i = 0; i < operations.length; i++) {
+            sum += settings.mix().get(operations[i]);
+            cumulativeWeights[i] = sum;
+        }
+        this.httpClient = HttpClient.newBuilder().executor(Executors.newVirtualThreadPerTaskExecutor()).build();
+    }
+
+    /**
+     * @return latencies of the requests due after the warm-up, and the largest delay of the dispatching thread behind the schedule,
+     * which should stay far below the interval between requests, otherwise the generator rather than the service is the bottleneck
+     */
+    Result run() throws InterruptedException {
+        LatencyReport report = new LatencyReport();
+        SplittableRandom random = new SplittableRandom(settings.seed());
+        long intervalNanos = (long) (1e9 / settings.rate());
+        long warmupNanos = settings.warmup().toNanos();
+        long totalNanos = warmupNanos + settings.duration().toNanos();
+        long maxDispatchLagNanos = 0;
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            long start = System.nanoTime();
+            for (long i = 0; i * intervalNanos < totalNanos; i++) {
+                long due = start + i * intervalNanos;
+                boolean measured = i * intervalNanos >= warmupNanos;
+                Operation operation = nextOperation(random);
+                HttpRequest request = createRequest(operation, random);
+                long lag = System.nanoTime() - due;
+                if (lag < 0) {
+                    LockSupport.parkNanos(-lag);
+                } else {
+                    maxDispatchLagNanos = Math.max(maxDispatchLagNanos, lag);
+                }
+                executor.execute(() -> send(operation, request, due, measured ? report : null));
+            }
+            executor.shutdown();
+            if (!executor.awaitTermination(DRAIN_TIMEOUT.toMillis(), TimeUnit.MILLISECONDS)) {
+                executor.shutdownNow();
+            }
+        }
+        return new Result(report, Duration.ofNanos(maxDispatchLagNanos));
+    }
+
+    private void send(Operation operation, HttpRequest request, long due, LatencyReport report) {
+        boolean failed;
+        try {
+            HttpResponse<Void> response = httpClient.send(request, HttpResponse.BodyHandlers.discarding());
+            failed = response.statusCode() >= 400;
+        } catch (IOException e) {
+            failed = true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+        if (report != null) {
+            report.record(operation, System.nanoTime() - due, failed);
+        }
+    }
+
+    private Operation nextOperation(SplittableRandom random) {
+        int weight = random.nextInt(cumulativeWeights[cumulativeWeights.length - 1]);
+        for (int i = 0; i < cumulativeWeights.length; i++) {
+            if (weight < cumulativeWeights[i]) {
+                return operations[i];
+            }
+        }
+        throw new IllegalStateException("Weight out of range: " + weight);
+    }
+
+    private HttpRequest createRequest(Operation operation, SplittableRandom random) {
+        return switch (operation) {
+            case PREVIEW -> get("/api/v1/videos/" + popularVideo(random).id());
+            case PLAY -> get("/api/v1/videos/" + popularVideo(random).id() + "/play");
+            case SEARCH -> get("/api/v1/videos?" + searchQuery(random));
+            case UPDATE -> request("/api/v1/videos/" + popularVideo(random).id())
+                    .header("Content-Type", "application/json")
+                    .PUT(HttpRequest.BodyPublishers.ofString(metadataJson(CatalogueSeeder.randomTitle(random), random)))
+                    .build();
+            case PUBLISH -> request("/api/v1/videos")
+                    .header("Content-Type", "multipart/form-data; boundary=" + BOUNDARY)
+                    .POST(HttpRequest.BodyPublishers.ofString(publishBody(random)))
+                    .build();
+        };
+    }
+
+    private SeededVideo popularVideo(SplittableRandom random) {
+        return catalogue.get(popularity.sample(random));
+    }
+
+    /**
+     * Filters are taken from a random video, so searches match something, in the combinations clients send them.
+     */
+    private String searchQuery(SplittableRandom random) {
+        SeededVideo video = catalogue.get(random.nextInt(catalogue.size()));
+        String titleWord = video.title().split(" ")[random.nextInt(2)];
+        return switch (random.nextInt(4)) {
+            case 0 -> "title=" + encode(titleWord);
+            case 1 -> "director=" + encode(video.director());
+            case 2 -> "yearOfRelease=" + video.yearOfRelease();
+            default -> "title=" + encode(titleWord) + "&yearOfRelease=" + video.yearOfRelease();
+        };
+    }
+
+    /**
+     * Every published video gets a file name of its own, uploads under the same name would overwrite each other's content.
+     */
+    private String publishBody(SplittableRandom random) {
+        int index = published.incrementAndGet();
+        return "--" + BOUNDARY + "\r\n"
+                + "Content-Disposition: form-data; name=\"metadata\"; filename=\"metadata.json\"\r\n"
+                + "Content-Type: application/json\r\n\r\n"
+                + metadataJson(CatalogueSeeder.randomTitle(random), random) + "\r\n"
+                + "--" + BOUNDARY + "\r\n"
+                + "Content-Disposition: form-data; name=\"videoFile\"; filename=\"published-" + settings.seed() + "-" + index + ".mp4\"\r\n"
+                + "Content-Type: application/octet-stream\r\n\r\n"
+                + "Published during load test " + index + "\r\n"
+                + "--" + BOUNDARY + "--\r\n";
+    }
+
+    private static String metadataJson(String title, SplittableRandom random) {
+        return """
+                {"title":"%s","synopsis":"Load test","director":"Director %d","castMembers":"Actor %d","yearOfRelease":%d,"genre":"DRAMA","runningTime":"PT90M"}"""
+                .formatted(title, random.nextInt(CatalogueSeeder.DIRECTORS), random.nextInt(1000),
+                        CatalogueSeeder.FIRST_YEAR + random.nextInt(CatalogueSeeder.YEARS));
+    }
+
+    private HttpRequest get(String path) {
+        return request(path).GET().build();
+    }
+
+    private HttpRequest.Builder request(String path) {
+        return HttpRequest.newBuilder(baseUri.resolve(path)).timeout(REQUEST_TIMEOUT);
+    }
+
+    private static String encode(String value) {
+        return URLEncoder.encode(value, StandardCharsets.UTF_8);
+    }
+
+    record Result(LatencyReport report, Duration maxDispatchLag) {
+    }
+}
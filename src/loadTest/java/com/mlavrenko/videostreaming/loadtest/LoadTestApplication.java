@@ -0,0 +1,53 @@
+package com.mlavrenko.videostreaming.loadtest;
+
+import com.mlavrenko.videostreaming.VideoStreamingApiApplication;
+import com.mlavrenko.videostreaming.loadtest.CatalogueSeeder.SeededVideo;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.util.FileSystemUtils;
+
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * Boots the application on a random port against an in-memory H2 database and a temporary storage directory, seeds the catalogue,
+ * runs the workload over HTTP and prints throughput and latency percentiles per endpoint.
+ * The overrides are passed as command line arguments, so they take precedence over application.yaml.
+ */
+public final class LoadTestApplication {
+    private LoadTestApplication() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        LoadTestSettings settings = LoadTestSettings.fromSystemProperties();
+        Path workDirectory = Files.createTempDirectory("video-streaming-load-test");
+        Path storageDirectory = workDirectory.resolve("uploads");
+        try (ConfigurableApplicationContext context = new SpringApplicationBuilder(VideoStreamingApiApplication.class).run(
+                "--server.port=0",
+                "--spring.datasource.url=jdbc:h2:mem:load-test;mode=PostgreSQL;DB_CLOSE_DELAY=-1",
+                "--spring.datasource.driver-class-name=org.h2.Driver",
+                "--spring.datasource.username=sa",
+                "--spring.datasource.password=",
+                "--spring.jpa.database-platform=org.hibernate.dialect.H2Dialect",
+                "--video-content-storage.type=local",
+                "--video-content-storage.location=" + storageDirectory,
+                "--previews.location=" + workDirectory.resolve("previews"),
+                "--content-variants.location=" + workDirectory.resolve("content-variants"),
+                "--catalogue-snapshot.location=" + workDirectory.resolve("snapshots/catalogue.snapshot"),
+                "--logging.level.root=WARN")) {
+            System.out.printf("Seeding %d videos of %s to %s in %s%n", settings.videos(), settings.minVideoSize(), settings.maxVideoSize(), workDirectory);
+            List<SeededVideo> catalogue = CatalogueSeeder.seed(context, storageDirectory, settings);
+            int port = context.getEnvironment().getRequiredProperty("local.server.port", Integer.class);
+
+            System.out.printf("Running %s at %.0f requests per second after a warm-up of %s%n", settings.mix(), settings.rate(), settings.warmup());
+            LoadGenerator.Result result = new LoadGenerator(URI.create("http://localhost:" + port), catalogue, settings).run();
+
+            result.report().print(System.out, settings.duration());
+            System.out.printf("Max dispatch lag: %.3f ms%n", result.maxDispatchLag().toNanos() / 1e6);
+        } finally {
+            FileSystemUtils.deleteRecursively(workDirectory);
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package com.mlavrenko.videostreaming.loadtest;
+
+import org.springframework.boot.convert.DurationStyle;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Read from loadtest.* system properties, which the loadTest Gradle task passes on from project properties.
+ *
+ * @param videos       number of videos seeded before the load starts
+ * @param minVideoSize smallest size of a seeded video, sizes are uniformly distributed up to the largest one
+ * @param maxVideoSize largest size of a seeded video
+ * @param rate         requests started per second regardless of how many are still in flight, so a slow service builds up a backlog
+ *                     rather than slowing the load down, as real clients would
+ * @param warmup       how long the load runs before latencies are recorded, e.g. while previews of seeded videos are generated
+ * @param duration     how long latencies are recorded after the warm-up
+ * @param zipfExponent skew of the popularity of videos played, previewed and updated, higher means fewer videos get more traffic
+ * @param mix          relative weights of operations, e.g. play=40,preview=40,search=15,update=4,publish=1
+ * @param seed         seed of the catalogue and of the request sequence, the same seed issues the same requests in the same order
+ */
+record LoadTestSettings(int videos, DataSize minVideoSize, DataSize maxVideoSize, double rate, Duration warmup, Duration duration,
+                        double zipfExponent, Map<Operation, Integer> mix, long seed) {
+    private static final String PREFIX = "loadtest.";
+
+    static LoadTestSettings fromSystemProperties() {
+        return new LoadTestSettings(
+                Integer.parseInt(property("videos", "1000")),
+                DataSize.parse(property("min-video-size", "16KB")),
+                DataSize.parse(property("max-video-size", "1MB")),
+                Double.parseDouble(property("rate", "200")),
+                DurationStyle.detectAndParse(property("warmup", "10s")),
+                DurationStyle.detectAndParse(property("duration", "60s")),
+                Double.parseDouble(property("zipf-exponent", "1.0")),
+                parseMix(property("mix", "play=40,preview=40,search=15,update=4,publish=1")),
+                Long.parseLong(property("seed", "42")));
+    }
+
+    private static String property(String name, String defaultValue) {
+        return System.getProperty(PREFIX + name, defaultValue);
+    }
+
+    private static Map<Operation, Integer> parseMix(String mix) {
+        Map<Operation, Integer> weights = new EnumMap<>(Operation.class);
+        for (String entry : mix.split(",")) {
+            String[] weight = entry.trim().split("=");
+            if (weight.length != 2) {
+                throw new IllegalArgumentException("Invalid operation weight: " + entry);
+            }
+            weights.put(Operation.valueOf(weight[0].trim().toUpperCase(Locale.ROOT)), Integer.parseInt(weight[1].trim()));
+        }
+        return weights;
+    }
+}
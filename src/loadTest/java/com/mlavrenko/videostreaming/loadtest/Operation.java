@@ -0,0 +1,22 @@
+package com.mlavrenko.videostreaming.loadtest;
+
+/**
+ * Kinds of requests in the workload, each reported as an endpoint of its own.
+ */
+enum Operation {
+    PREVIEW("GET /api/v1/videos/{id}"),
+    PLAY("GET /api/v1/videos/{id}/play"),
+    SEARCH("GET /api/v1/videos"),
+    UPDATE("PUT /api/v1/videos/{id}"),
+    PUBLISH("POST /api/v1/videos");
+
+    private final String endpoint;
+
+    Operation(String endpoint) {
+        this.endpoint = endpoint;
+    }
+
+    String endpoint() {
+        return endpoint;
+    }
+}
@@ -0,0 +1,114 @@
+package com.mlavrenko.videostreaming.loadtest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.mlavrenko.videostreaming.config.BinaryFormatConfiguration;
+import com.mlavrenko.videostreaming.domain.Genre;
+import com.mlavrenko.videostreaming.dto.EngagementStatisticsDto;
+import com.mlavrenko.videostreaming.dto.VideoMetadataDto;
+import com.mlavrenko.videostreaming.dto.VideoMetadataViewDto;
+import com.mlavrenko.videostreaming.dto.VideoMetadataWithPreviewDto;
+import org.springframework.boot.Banner;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.autoconfigure.jackson.JacksonAutoConfiguration;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+import org.springframework.http.converter.smile.MappingJackson2SmileHttpMessageConverter;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.stream.IntStream;
+
+/**
+ * Compares payload size and serialization cost of the JSON, CBOR and Smile encodings of the listing, metadata and engagement responses.
+ * The object mappers are the ones the application uses, created by the Spring Boot Jackson configuration and {@link BinaryFormatConfiguration},
+ * so their settings match the responses. Every payload is written repeatedly to a reused in-memory buffer for a warm-up period
+ * and then for a measured period, so the cost is that of the encoding alone, without I/O.
+ */
+public final class SerializationBenchmark {
+    private static final Duration WARMUP = Duration.ofSeconds(2);
+    private static final Duration MEASUREMENT = Duration.ofSeconds(3);
+    private static final long SEED = 42;
+
+    private SerializationBenchmark() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        try (ConfigurableApplicationContext context = new SpringApplicationBuilder(JacksonAutoConfiguration.class, BinaryFormatConfiguration.class)
+                .web(WebApplicationType.NONE)
+                .bannerMode(Banner.Mode.OFF)
+                .logStartupInfo(false)
+                .run(args)) {
+            Map<String, ObjectMapper> formats = new LinkedHashMap<>();
+            formats.put("json", context.getBean(ObjectMapper.class));
+            formats.put("cbor", context.getBean(MappingJackson2CborHttpMessageConverter.class).getObjectMapper());
+            formats.put("smile", context.getBean(MappingJackson2SmileHttpMessageConverter.class).getObjectMapper());
+
+            System.out.printf("%-24s %-6s %12s %10s %12s %12s%n", "payload", "format", "bytes", "vs json", "ns/op", "MB/s");
+            for (Map.Entry<String, Object> payload : createPayloads().entrySet()) {
+                long jsonSize = 0;
+                for (Map.Entry<String, ObjectMapper> format : formats.entrySet()) {
+                    Result result = measure(format.getValue().writer(), payload.getValue());
+                    jsonSize = jsonSize == 0 ? result.size() : jsonSize;
+                    System.out.printf("%-24s %-6s %12d %9.0f%% %12.0f %12.1f%n", payload.getKey(), format.getKey(), result.size(),
+                            100.0 * result.size() / jsonSize, result.nanosPerOperation(), result.size() * 1e3 / result.nanosPerOperation());
+                }
+            }
+        }
+    }
+
+    private static Map<String, Object> createPayloads() {
+        SplittableRandom random = new SplittableRandom(SEED);
+        Map<String, Object> payloads = new LinkedHashMap<>();
+        payloads.put("listing, 20 videos", createPage(random, 20));
+        payloads.put("listing, 1000 videos", createPage(random, 1000));
+        payloads.put("metadata", new VideoMetadataDto(1L, CatalogueSeeder.randomTitle(random), "Seeded for benchmarking", "Director 7",
+                "Actor 1, Actor 2, Actor 3", 2001, Genre.DRAMA, Duration.ofMinutes(118)));
+        payloads.put("metadata with preview", new VideoMetadataWithPreviewDto(createVideo(random, 1), "a".repeat(4096), 4096));
+        payloads.put("engagement statistics", new EngagementStatisticsDto(1_250_000, 830_000, 410_000, 290_000));
+        return payloads;
+    }
+
+    private static PageImpl<VideoMetadataViewDto> createPage(SplittableRandom random, int size) {
+        List<VideoMetadataViewDto> videos = IntStream.range(0, size).mapToObj(id -> createVideo(random, id)).toList();
+        return new PageImpl<>(videos, PageRequest.of(0, size), 100_000);
+    }
+
+    private static VideoMetadataViewDto createVideo(SplittableRandom random, long id) {
+        return new VideoMetadataViewDto(id, CatalogueSeeder.randomTitle(random), "Director " + random.nextInt(CatalogueSeeder.DIRECTORS),
+                "Actor " + random.nextInt(1000), Genre.values()[random.nextInt(Genre.values().length)], Duration.ofMinutes(80 + random.nextInt(80)));
+    }
+
+    private static Result measure(ObjectWriter writer, Object payload) throws IOException {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        writeFor(writer, payload, buffer, WARMUP);
+        long start = System.nanoTime();
+        long operations = writeFor(writer, payload, buffer, MEASUREMENT);
+        return new Result(buffer.size(), (double) (System.nanoTime() - start) / operations);
+    }
+
+    /**
+     * @return number of writes, the buffer is left holding the last one
+     */
+    private static long writeFor(ObjectWriter writer, Object payload, ByteArrayOutputStream buffer, Duration duration) throws IOException {
+        long deadline = System.nanoTime() + duration.toNanos();
+        long operations = 0;
+        do {
+            buffer.reset();
+            writer.writeValue(buffer, payload);
+            operations++;
+        } while (System.nanoTime() - deadline < 0);
+        return operations;
+    }
+
+    private record Result(long size, double nanosPerOperation) {
+    }
+}
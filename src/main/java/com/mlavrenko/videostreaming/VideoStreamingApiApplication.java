@@ -3,11 +3,13 @@ package com.mlavrenko.videostreaming;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.boot.context.properties.ConfigurationPropertiesScan;
+import org.springframework.scheduling.annotation.EnableScheduling;
 import org.springframework.transaction.annotation.EnableTransactionManagement;
 
 @SpringBootApplication
 @EnableTransactionManagement
 @ConfigurationPropertiesScan
+@EnableScheduling
 public class VideoStreamingApiApplication {
     public static void main(String[] args) {
         SpringApplication.run(VideoStreamingApiApplication.class, args);
@@ -0,0 +1,13 @@
+package com.mlavrenko.videostreaming.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * @param maxSuggestions  upper bound of suggestions per request, which is also how many are precomputed per prefix
+ * @param refreshInterval how often view counts are refreshed and the index is reconciled with the database
+ */
+@ConfigurationProperties(prefix = "autocomplete")
+public record AutocompleteProperties(int maxSuggestions, Duration refreshInterval) {
+}
@@ -0,0 +1,40 @@
+package com.mlavrenko.videostreaming.config;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileGenerator;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.http.converter.smile.MappingJackson2SmileHttpMessageConverter;
+
+/**
+ * Responses are encoded as CBOR ({@code application/cbor}) or Smile ({@code application/x-jackson-smile}) when a client asks for it
+ * by the Accept header, JSON stays the default. Both are written by Jackson generators straight to the response, like JSON,
+ * so no intermediate tree of the response is built. The converters replace the ones Spring registers for these formats,
+ * which don't get the Spring Boot Jackson settings, and keep their place after the JSON converter, so wildcard requests still get JSON.
+ * Durations are encoded as milliseconds rather than ISO-8601 strings, and Smile encodes repeated short strings, such as genres
+ * and directors in a listing, as back-references to their first occurrence.
+ */
+@Configuration(proxyBeanMethods = false)
+public class BinaryFormatConfiguration {
+    @Bean
+    public MappingJackson2CborHttpMessageConverter cborHttpMessageConverter(Jackson2ObjectMapperBuilder builder) {
+        return new MappingJackson2CborHttpMessageConverter(compact(builder.factory(new CBORFactory())).build());
+    }
+
+    @Bean
+    public MappingJackson2SmileHttpMessageConverter smileHttpMessageConverter(Jackson2ObjectMapperBuilder builder) {
+        SmileFactory factory = SmileFactory.builder().enable(SmileGenerator.Feature.CHECK_SHARED_STRING_VALUES).build();
+        return new MappingJackson2SmileHttpMessageConverter(compact(builder.factory(factory)).build());
+    }
+
+    private static Jackson2ObjectMapperBuilder compact(Jackson2ObjectMapperBuilder builder) {
+        return builder
+                .featuresToEnable(SerializationFeature.WRITE_DURATIONS_AS_TIMESTAMPS)
+                .featuresToDisable(SerializationFeature.WRITE_DATE_TIMESTAMPS_AS_NANOSECONDS, DeserializationFeature.READ_DATE_TIMESTAMPS_AS_NANOSECONDS);
+    }
+}
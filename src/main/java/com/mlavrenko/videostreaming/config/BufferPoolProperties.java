@@ -0,0 +1,14 @@
+package com.mlavrenko.videostreaming.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.util.unit.DataSize;
+
+/**
+ * @param minBufferSize   smallest size class, smaller requests are served from it
+ * @param maxBufferSize   largest size class, larger requests get a one-off buffer that is not returned to the pool
+ * @param maxPooledMemory upper bound of idle buffers kept by the pool, released buffers over it are left to the garbage collector
+ * @param leakDetection   records where every leased buffer was acquired, so leaks can be reported, meant for tests
+ */
+@ConfigurationProperties(prefix = "buffer-pool")
+public record BufferPoolProperties(DataSize minBufferSize, DataSize maxBufferSize, DataSize maxPooledMemory, boolean leakDetection) {
+}
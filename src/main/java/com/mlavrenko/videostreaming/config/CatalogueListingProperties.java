@@ -0,0 +1,13 @@
+package com.mlavrenko.videostreaming.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * @param enabled         whether the listing is served from the in-memory columnar catalogue, otherwise it's queried from the database
+ * @param rebuildInterval how often the catalogue is rebuilt from the database, which picks up changes made by other nodes
+ */
+@ConfigurationProperties(prefix = "catalogue-listing")
+public record CatalogueListingProperties(boolean enabled, Duration rebuildInterval) {
+}
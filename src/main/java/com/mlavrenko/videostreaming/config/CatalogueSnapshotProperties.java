@@ -0,0 +1,16 @@
+package com.mlavrenko.videostreaming.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * @param enabled        whether the catalogue is loaded from a snapshot at startup, otherwise it's read from the database in full
+ * @param location       local file the snapshot is written to, it must not be shared by nodes of different databases
+ * @param writeInterval  how often the snapshot is brought up to date with the changes since its watermark
+ * @param catchUpOverlap how far before the watermark changes are read again, to cover clock skew between nodes and transactions
+ *                       that committed after the watermark with an earlier modification time
+ */
+@ConfigurationProperties(prefix = "catalogue-snapshot")
+public record CatalogueSnapshotProperties(boolean enabled, String location, Duration writeInterval, Duration catchUpOverlap) {
+}
@@ -0,0 +1,17 @@
+package com.mlavrenko.videostreaming.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+
+/**
+ * @param size          how much of the head of the content is prefetched when the preview is served
+ * @param maxCacheSize  upper bound of prefetched content kept in memory, least recently used heads are evicted first
+ * @param ttl           how long prefetched content is kept, the play request is expected within seconds after the preview
+ * @param minFreeHeap   prefetching is cancelled and the cache is dropped when less heap than that is available
+ */
+@ConfigurationProperties(prefix = "content-prefetch")
+public record ContentPrefetchProperties(boolean enabled, DataSize size, int workers, int queueCapacity,
+                                        DataSize maxCacheSize, Duration ttl, DataSize minFreeHeap) {
+}
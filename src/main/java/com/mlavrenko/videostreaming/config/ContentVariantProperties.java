@@ -0,0 +1,13 @@
+package com.mlavrenko.videostreaming.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.util.unit.DataSize;
+
+/**
+ * @param location            local directory precompressed variants are stored in, like previews on fast storage even when the content isn't
+ * @param minSize             smaller content is always served as is, the saving doesn't pay off the decoding on the client
+ * @param maxCompressionRatio variants larger than this share of the content are not kept, e.g. of content that is already compressed
+ */
+@ConfigurationProperties(prefix = "content-variants")
+public record ContentVariantProperties(boolean enabled, String location, DataSize minSize, double maxCompressionRatio) {
+}
@@ -0,0 +1,18 @@
+package com.mlavrenko.videostreaming.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * @param nodeId                identifies the rows of sketches written by this node, has to be unique within the cluster
+ * @param sketchPrecision       precision of new sketches, sketches of another precision are reduced to the lower one when merged
+ * @param sketchFlushInterval   how often changed sketches are merged into the persisted rows
+ * @param sketchRollUpAge       age of daily windows rolled up into a single row per video, longer than a day, so a window is never flushed after it's rolled up
+ * @param sketchRollUpInterval  how often past windows are rolled up
+ * @param sketchRollUpBatchSize maximum number of videos rolled up by a single run
+ */
+@ConfigurationProperties(prefix = "engagement")
+public record EngagementProperties(String nodeId, int sketchPrecision, Duration sketchFlushInterval, Duration sketchRollUpAge,
+                                   Duration sketchRollUpInterval, int sketchRollUpBatchSize) {
+}
@@ -0,0 +1,12 @@
+package com.mlavrenko.videostreaming.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * @param rebuildInterval how often the facet index is rebuilt from the database, which picks up changes made by other nodes
+ */
+@ConfigurationProperties(prefix = "facets")
+public record FacetProperties(Duration rebuildInterval) {
+}
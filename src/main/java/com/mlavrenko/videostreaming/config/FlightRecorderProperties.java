@@ -0,0 +1,21 @@
+package com.mlavrenko.videostreaming.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+
+/**
+ * Thresholds apply to recordings started by the flight recording endpoint, recordings started otherwise, e.g. by jcmd,
+ * use the thresholds declared on the events, which match the defaults.
+ *
+ * @param location   directory a running recording is dumped to on demand, into a file per dump deleted once it's downloaded
+ * @param maxAge     how long recorded events are kept, so a recording can run until an outlier happens
+ * @param maxSize    upper bound of the recorded events kept on disk, the oldest are dropped first
+ * @param thresholds minimum durations of recorded events, shorter ones are not written, which keeps the overhead negligible
+ */
+@ConfigurationProperties(prefix = "flight-recorder")
+public record FlightRecorderProperties(String location, Duration maxAge, DataSize maxSize, Thresholds thresholds) {
+    public record Thresholds(Duration storageOperation, Duration videoOperation, Duration cacheAccess, Duration scheduledTask) {
+    }
+}
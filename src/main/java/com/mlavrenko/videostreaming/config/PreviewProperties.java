@@ -0,0 +1,16 @@
+package com.mlavrenko.videostreaming.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * The size of a preview is still configured by video-content-storage.preview-size.
+ *
+ * @param location              local directory previews are stored in, which should be on fast storage even when the content is on a slow tier
+ * @param regenerationInterval  how often previews generated with a different preview size are regenerated
+ * @param regenerationBatchSize number of videos read from the database per regeneration query
+ */
+@ConfigurationProperties(prefix = "previews")
+public record PreviewProperties(String location, Duration regenerationInterval, int regenerationBatchSize) {
+}
@@ -0,0 +1,15 @@
+package com.mlavrenko.videostreaming.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * @param readYourWritesWindow upper bound of the replication lag, reads of a video written within the window are served by the primary
+ */
+@ConfigurationProperties(prefix = "read-replicas")
+public record ReadReplicaProperties(boolean enabled, Duration readYourWritesWindow, Duration healthCheckInterval, List<Replica> replicas) {
+    public record Replica(String url, String username, String password) {
+    }
+}
@@ -0,0 +1,52 @@
+package com.mlavrenko.videostreaming.config;
+
+import com.mlavrenko.videostreaming.datasource.ReplicaRoutingDataSource;
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+import java.util.List;
+import java.util.stream.IntStream;
+
+/**
+ * Replaces the auto-configured data source by one routing read-only transactions to read replicas.
+ * The primary is still configured by the standard spring.datasource properties, so Liquibase and all writes keep using it.
+ */
+@Configuration(proxyBeanMethods = false)
+@ConditionalOnProperty(prefix = "read-replicas", name = "enabled", havingValue = "true")
+public class ReadReplicaRoutingConfiguration {
+    @Bean
+    public ReplicaRoutingDataSource replicaRoutingDataSource(DataSourceProperties dataSourceProperties, ReadReplicaProperties readReplicaProperties) {
+        HikariDataSource primary = dataSourceProperties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        primary.setPoolName("primary");
+        List<ReadReplicaProperties.Replica> replicas = readReplicaProperties.replicas();
+        List<DataSource> replicaDataSources = IntStream.range(0, replicas.size())
+                .mapToObj(index -> createReplicaDataSource(index, replicas.get(index)))
+                .toList();
+        return new ReplicaRoutingDataSource(primary, replicaDataSources);
+    }
+
+    @Bean
+    @Primary
+    public DataSource dataSource(ReplicaRoutingDataSource replicaRoutingDataSource) {
+        return new LazyConnectionDataSourceProxy(replicaRoutingDataSource);
+    }
+
+    private static DataSource createReplicaDataSource(int index, ReadReplicaProperties.Replica replica) {
+        HikariDataSource dataSource = DataSourceBuilder.create()
+                .type(HikariDataSource.class)
+                .url(replica.url())
+                .username(replica.username())
+                .password(replica.password())
+                .build();
+        dataSource.setPoolName("replica-" + index);
+        dataSource.setReadOnly(true);
+        return dataSource;
+    }
+}
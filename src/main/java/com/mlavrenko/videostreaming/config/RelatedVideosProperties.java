@@ -0,0 +1,15 @@
+package com.mlavrenko.videostreaming.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * @param maxRelated      number of related videos precomputed and returned per video
+ * @param yearWindow      how many years apart videos of the same genre are still considered related
+ * @param parallelism     number of threads computing all lists on rebuild
+ * @param rebuildInterval how often all lists are computed from the database, which refreshes popularity and picks up changes made by other nodes
+ */
+@ConfigurationProperties(prefix = "related-videos")
+public record RelatedVideosProperties(int maxRelated, int yearWindow, int parallelism, Duration rebuildInterval) {
+}
@@ -0,0 +1,10 @@
+package com.mlavrenko.videostreaming.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * @param downlinkUtilization share of the bandwidth reported by the client a rendition may use, leaving headroom for fluctuations
+ */
+@ConfigurationProperties(prefix = "renditions")
+public record RenditionProperties(double downlinkUtilization) {
+}
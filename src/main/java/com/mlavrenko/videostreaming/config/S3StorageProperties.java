@@ -0,0 +1,18 @@
+package com.mlavrenko.videostreaming.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.util.unit.DataSize;
+
+import java.net.URI;
+import java.time.Duration;
+
+/**
+ * @param partSize              size of multipart upload parts and of ranges read in parallel, S3 requires at least 5MB for all parts but the last
+ * @param parallelReadThreshold objects larger than that are read as several ranges in parallel
+ * @param maxConnections        upper bound of concurrent requests to the store, shared by all transfers of the node
+ */
+@ConfigurationProperties(prefix = "video-content-storage.s3")
+public record S3StorageProperties(URI endpoint, String region, String bucket, String accessKey, String secretKey,
+                                  DataSize partSize, DataSize parallelReadThreshold, int maxConnections,
+                                  Duration requestTimeout, int maxRetries, Duration initialBackoff) {
+}
@@ -0,0 +1,112 @@
+package com.mlavrenko.videostreaming.config;
+
+import com.mlavrenko.videostreaming.datasource.ShardRoutingDataSource;
+import com.mlavrenko.videostreaming.datasource.ShardRoutingInterceptor;
+import com.mlavrenko.videostreaming.datasource.VideoShards;
+import com.zaxxer.hikari.HikariDataSource;
+import liquibase.exception.LiquibaseException;
+import liquibase.integration.spring.SpringLiquibase;
+import org.springframework.aop.framework.ProxyFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.data.repository.Repository;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Replaces the auto-configured data source by one routing every repository call to the shard of the video it's about.
+ * The first shard is configured by the standard spring.datasource properties, so a single database becomes the first shard as is.
+ * Liquibase runs the same changelog on every shard. Shards can't be combined with read replicas, as both replace the data source.
+ */
+@Configuration(proxyBeanMethods = false)
+@ConditionalOnProperty(prefix = "sharding", name = "enabled", havingValue = "true")
+public class ShardingConfiguration {
+    @Bean
+    public ShardRoutingDataSource shardRoutingDataSource(DataSourceProperties dataSourceProperties, ShardingProperties shardingProperties,
+                                                         ReadReplicaProperties readReplicaProperties) {
+        if (readReplicaProperties.enabled()) {
+            throw new IllegalStateException("Sharding and read replicas can't be enabled together");
+        }
+        HikariDataSource first = dataSourceProperties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        first.setPoolName("shard-0");
+        List<DataSource> shardDataSources = new ArrayList<>(List.of(first));
+        for (ShardingProperties.Shard shard : shardingProperties.shards()) {
+            shardDataSources.add(createShardDataSource(shardDataSources.size(), shard));
+        }
+        return new ShardRoutingDataSource(shardDataSources);
+    }
+
+    @Bean
+    @Primary
+    public DataSource dataSource(ShardRoutingDataSource shardRoutingDataSource) {
+        return new LazyConnectionDataSourceProxy(shardRoutingDataSource);
+    }
+
+    /**
+     * Migrates shards one by one through the routing data source rather than its lazy proxy, bound to every shard in turn.
+     */
+    @Bean
+    public SpringLiquibase liquibase(ShardRoutingDataSource shardRoutingDataSource, ShardingProperties shardingProperties,
+                                     @Value("${spring.liquibase.change-log}") String changeLog) {
+        ShardedSpringLiquibase liquibase = new ShardedSpringLiquibase(shardingProperties.shardCount());
+        liquibase.setDataSource(shardRoutingDataSource);
+        liquibase.setChangeLog(changeLog);
+        return liquibase;
+    }
+
+    @Bean
+    public static BeanPostProcessor shardRoutingRepositoryPostProcessor(ObjectProvider<VideoShards> videoShards) {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                if (!(bean instanceof Repository<?, ?>)) {
+                    return bean;
+                }
+                ProxyFactory proxyFactory = new ProxyFactory(bean);
+                proxyFactory.addAdvice(new ShardRoutingInterceptor(bean, videoShards.getObject()));
+                return proxyFactory.getProxy();
+            }
+        };
+    }
+
+    private static DataSource createShardDataSource(int index, ShardingProperties.Shard shard) {
+        HikariDataSource dataSource = DataSourceBuilder.create()
+                .type(HikariDataSource.class)
+                .url(shard.url())
+                .username(shard.username())
+                .password(shard.password())
+                .build();
+        dataSource.setPoolName("shard-" + index);
+        return dataSource;
+    }
+
+    private static class ShardedSpringLiquibase extends SpringLiquibase {
+        private final int shardCount;
+
+        ShardedSpringLiquibase(int shardCount) {
+            this.shardCount = shardCount;
+        }
+
+        @Override
+        public void afterPropertiesSet() throws LiquibaseException {
+            for (int shard = 0; shard < shardCount; shard++) {
+                Integer previous = ShardRoutingDataSource.bind(shard);
+                try {
+                    super.afterPropertiesSet();
+                } finally {
+                    ShardRoutingDataSource.restore(previous);
+                }
+            }
+        }
+    }
+}
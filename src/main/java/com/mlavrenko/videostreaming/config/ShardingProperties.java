@@ -0,0 +1,20 @@
+package com.mlavrenko.videostreaming.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.util.List;
+
+/**
+ * @param enabled       whether videos are spread across the standard data source, which is the first shard, and the configured shards
+ * @param fanOutThreads number of threads querying shards in parallel for listings and scans
+ * @param shards        shards following the first one, in a fixed order, as the shard of a video is part of its id
+ */
+@ConfigurationProperties(prefix = "sharding")
+public record ShardingProperties(boolean enabled, int fanOutThreads, List<Shard> shards) {
+    public record Shard(String url, String username, String password) {
+    }
+
+    public int shardCount() {
+        return enabled && shards != null ? shards.size() + 1 : 1;
+    }
+}
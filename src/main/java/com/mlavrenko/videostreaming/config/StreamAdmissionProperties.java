@@ -0,0 +1,19 @@
+package com.mlavrenko.videostreaming.config;
+
+import com.mlavrenko.videostreaming.domain.StreamPriority;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+import java.util.Map;
+
+@ConfigurationProperties(prefix = "stream-admission")
+public record StreamAdmissionProperties(DataSize maxBytesPerSecond, Duration retryAfter, Map<StreamPriority, PriorityLimits> priorities) {
+    /**
+     * @param maxConcurrentStreams number of streams of the priority class served at the same time
+     * @param queueTimeout         how long a stream may wait for admission before it's rejected, zero means rejecting immediately
+     * @param bandwidthThrottled   whether the stream waits for the node bandwidth budget, or is only accounted in it
+     */
+    public record PriorityLimits(int maxConcurrentStreams, Duration queueTimeout, boolean bandwidthThrottled) {
+    }
+}
@@ -0,0 +1,20 @@
+package com.mlavrenko.videostreaming.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * @param expectedIds                  minimal number of ids the Bloom filter is sized for, it's sized for twice the live ids when there are more
+ * @param falsePositiveProbability     share of nonexistent ids that still reach the database
+ * @param negativeCacheTtl             how long an id known to be missing is answered without the database
+ * @param negativeCacheMaxSize         upper bound of remembered missing ids, new ones are not remembered when it's reached
+ * @param rebuildInterval              how often the filter is rebuilt from the database, which drops deleted ids and picks up ids created by other nodes
+ * @param idBlockSize                  number of ids reserved by every value of the id sequence, has to match its increment
+ * @param highWaterMarkRefreshInterval how long ids above the highest id of their shard are rejected before the highest ids are read again
+ */
+@ConfigurationProperties(prefix = "video-id-filter")
+public record VideoIdFilterProperties(boolean enabled, long expectedIds, double falsePositiveProbability, Duration negativeCacheTtl,
+                                      int negativeCacheMaxSize, Duration rebuildInterval, int idBlockSize,
+                                      Duration highWaterMarkRefreshInterval) {
+}
@@ -0,0 +1,21 @@
+package com.mlavrenko.videostreaming.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+
+/**
+ * @param workers           number of videos processed at the same time on this node
+ * @param queueCapacity     number of videos waiting for a worker, publishing is rejected while the queue is full
+ * @param maxAttempts       how many times a failing stage is run before the job is failed for good
+ * @param leaseDuration     how long a job stays with its worker without progress, it has to exceed the duration of the longest stage
+ * @param resumeInterval    how often waiting jobs and jobs with expired leases are picked up, e.g. after a restart
+ * @param retryAfter        how long clients are asked to wait before publishing again when the queue is full
+ * @param checksumChunkSize how much of the content is read at a time while it's checksummed
+ * @param segmentSize       size of the byte range segments the content is split into
+ */
+@ConfigurationProperties(prefix = "video-processing")
+public record VideoProcessingProperties(int workers, int queueCapacity, int maxAttempts, Duration leaseDuration, Duration resumeInterval,
+                                        Duration retryAfter, DataSize checksumChunkSize, DataSize segmentSize) {
+}
@@ -1,20 +1,40 @@
 package com.mlavrenko.videostreaming.controller;
 
+import com.mlavrenko.videostreaming.domain.StreamPriority;
+import com.mlavrenko.videostreaming.dto.AutocompleteSuggestionDto;
+import com.mlavrenko.videostreaming.dto.EncodedContentDto;
 import com.mlavrenko.videostreaming.dto.EngagementStatisticsDto;
+import com.mlavrenko.videostreaming.dto.FacetCountsDto;
+import com.mlavrenko.videostreaming.dto.PlaybackHintsDto;
+import com.mlavrenko.videostreaming.dto.RelatedVideoDto;
+import com.mlavrenko.videostreaming.dto.VideoManifestDto;
 import com.mlavrenko.videostreaming.dto.VideoMetadataDto;
 import com.mlavrenko.videostreaming.dto.VideoMetadataViewDto;
 import com.mlavrenko.videostreaming.dto.VideoMetadataWithPreviewDto;
+import com.mlavrenko.videostreaming.dto.VideoProcessingStatusDto;
+import com.mlavrenko.videostreaming.dto.VideoRenditionDto;
+import com.mlavrenko.videostreaming.media.ContentEncoding;
+import com.mlavrenko.videostreaming.service.AutocompleteService;
+import com.mlavrenko.videostreaming.service.StreamAdmissionService;
 import com.mlavrenko.videostreaming.service.VideoService;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.Valid;
+import jakarta.validation.constraints.Min;
 import lombok.RequiredArgsConstructor;
+import org.springframework.core.io.Resource;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.web.PageableDefault;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
@@ -24,7 +44,11 @@ import org.springframework.web.bind.annotation.RestController;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Optional;
 
+import static org.springframework.http.HttpStatus.ACCEPTED;
 import static org.springframework.http.HttpStatus.CREATED;
 import static org.springframework.http.HttpStatus.NO_CONTENT;
 
@@ -32,10 +56,20 @@ import static org.springframework.http.HttpStatus.NO_CONTENT;
 @RequestMapping(value = "/api/v1/videos")
 @RequiredArgsConstructor
 public class VideoController {
+    private static final String VIEWER_ID_HEADER = "X-Viewer-Id";
+    private static final String ACCEPT_CH_HEADER = "Accept-CH";
+    private static final String DOWNLINK_HEADER = "Downlink";
+    private static final String SAVE_DATA_HEADER = "Save-Data";
+    private static final MediaType PLAIN_TEXT_UTF8 = new MediaType(MediaType.TEXT_PLAIN, StandardCharsets.UTF_8);
     private final VideoService videoService;
+    private final StreamAdmissionService streamAdmissionService;
+    private final AutocompleteService autocompleteService;
 
+    /**
+     * Accepted once the content is stored, the video is processed in the background and its progress is reported by the processing endpoint.
+     */
     @PostMapping
-    @ResponseStatus(CREATED)
+    @ResponseStatus(ACCEPTED)
     public VideoMetadataDto publish(@RequestPart("metadata") @Valid VideoMetadataDto metadataDto,
                                     @RequestPart("videoFile") MultipartFile videoFile) throws IOException {
         return videoService.publishVideo(metadataDto, videoFile);
@@ -53,13 +87,56 @@ public class VideoController {
     }
 
     @GetMapping("/{id}")
-    public VideoMetadataWithPreviewDto load(@PathVariable("id") long id) throws IOException {
-        return videoService.loadVideo(id);
+    public VideoMetadataWithPreviewDto load(@PathVariable("id") long id, HttpServletRequest request) throws IOException {
+        String viewerId = resolveViewerId(request);
+        return streamAdmissionService.admit(StreamPriority.PREVIEW, () -> videoService.loadVideo(id, viewerId), VideoMetadataWithPreviewDto::previewBytes);
     }
 
+    /**
+     * A rendition is picked by the requested max bitrate in kilobits per second, or by Downlink and Save-Data client hints,
+     * which browsers are asked to send on subsequent requests by Accept-CH.
+     * A precompressed variant is served when Accept-Encoding allows it. Range requests are answered with ranges of the representation
+     * served, as HTTP defines them, so a client resuming a download has to accept the same encoding it started with.
+     */
     @GetMapping("/{id}/play")
-    public String play(@PathVariable long id) throws IOException {
-        return videoService.playVideo(id);
+    public ResponseEntity<Resource> play(@PathVariable long id,
+                                         @RequestParam(required = false) Integer maxBitrate,
+                                         @RequestHeader(value = DOWNLINK_HEADER, required = false) String downlink,
+                                         @RequestHeader(value = SAVE_DATA_HEADER, required = false) String saveData,
+                                         @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding,
+                                         HttpServletRequest request, HttpServletResponse response) throws IOException {
+        String viewerId = resolveViewerId(request);
+        PlaybackHintsDto hints = new PlaybackHintsDto(maxBitrate, parseDownlink(downlink), "on".equalsIgnoreCase(saveData));
+        List<ContentEncoding> acceptedEncodings = ContentEncoding.acceptedBy(acceptEncoding);
+        response.setHeader(ACCEPT_CH_HEADER, DOWNLINK_HEADER + ", " + SAVE_DATA_HEADER);
+        EncodedContentDto content = streamAdmissionService.admit(StreamPriority.PLAY,
+                () -> videoService.playVideo(id, viewerId, hints, acceptedEncodings), EncodedContentDto::length);
+        ResponseEntity.BodyBuilder builder = ResponseEntity.ok()
+                .contentType(PLAIN_TEXT_UTF8)
+                .varyBy(HttpHeaders.ACCEPT_ENCODING);
+        if (content.encoding() != ContentEncoding.IDENTITY) {
+            builder.header(HttpHeaders.CONTENT_ENCODING, content.encoding().token());
+        }
+        return builder.body(content.content());
+    }
+
+    @PostMapping("/{id}/renditions")
+    @ResponseStatus(CREATED)
+    public VideoRenditionDto addRendition(@PathVariable long id,
+                                          @RequestPart("rendition") @Valid VideoRenditionDto renditionDto,
+                                          @RequestPart("videoFile") MultipartFile videoFile) throws IOException {
+        return videoService.addRendition(id, renditionDto, videoFile);
+    }
+
+    @GetMapping("/{id}/manifest")
+    public VideoManifestDto manifest(@PathVariable long id, HttpServletResponse response) throws IOException {
+        response.setHeader(ACCEPT_CH_HEADER, DOWNLINK_HEADER + ", " + SAVE_DATA_HEADER);
+        return videoService.getManifest(id);
+    }
+
+    @GetMapping("/{id}/related")
+    public List<RelatedVideoDto> related(@PathVariable("id") long id) {
+        return videoService.findRelatedVideos(id);
     }
 
     @GetMapping
@@ -71,8 +148,49 @@ public class VideoController {
         return videoService.listAllVideos(title, director, yearOfRelease, pageable);
     }
 
+    @GetMapping("/facets")
+    public FacetCountsDto facets(
+            @RequestParam(required = false) String title,
+            @RequestParam(required = false) String director,
+            @RequestParam(required = false) Integer yearOfRelease) {
+        return videoService.countFacets(title, director, yearOfRelease);
+    }
+
+    @GetMapping("/autocomplete")
+    public List<AutocompleteSuggestionDto> autocomplete(@RequestParam String prefix, @RequestParam(defaultValue = "10") @Min(1) int limit) {
+        return autocompleteService.suggest(prefix, limit);
+    }
+
+    @GetMapping("/{id}/processing")
+    public VideoProcessingStatusDto getProcessingStatus(@PathVariable("id") long id) {
+        return videoService.getProcessingStatus(id);
+    }
+
     @GetMapping("/{id}/engagement-statistics")
     public EngagementStatisticsDto getEngagementStatistics(@PathVariable("id") long id) {
         return videoService.getEngagementStatistics(id);
     }
+
+    /**
+     * A malformed hint is ignored rather than failing the play, since hints are only advisory.
+     */
+    private static Double parseDownlink(String downlink) {
+        try {
+            return downlink == null ? null : Double.valueOf(downlink.trim());
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Clients are expected to send a stable viewer identifier, e.g. a device or account id.
+     * Client address is used as a fallback, so anonymous refreshes from the same client are still counted once.
+     * It's the address of the connection, so without the header, all viewers behind the same proxy, load balancer or NAT are counted as one,
+     * and a viewer whose address changes is counted again.
+     */
+    private static String resolveViewerId(HttpServletRequest request) {
+        return Optional.ofNullable(request.getHeader(VIEWER_ID_HEADER))
+                .filter(viewerId -> !viewerId.isBlank())
+                .orElseGet(request::getRemoteAddr);
+    }
 }
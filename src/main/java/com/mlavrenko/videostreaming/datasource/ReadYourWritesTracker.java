@@ -0,0 +1,49 @@
+package com.mlavrenko.videostreaming.datasource;
+
+import com.mlavrenko.videostreaming.config.ReadReplicaProperties;
+import lombok.RequiredArgsConstructor;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Remembers videos written by this node within the replication lag window, so reads of them are kept on the primary.
+ * Writes are tracked per node, so read-your-writes across nodes relies on clients being routed to the same node.
+ */
+@Component
+@RequiredArgsConstructor
+public class ReadYourWritesTracker {
+    private final ReadReplicaProperties readReplicaProperties;
+    private final Map<Long, Long> lastWriteNanos = new ConcurrentHashMap<>();
+
+    public void recordWrite(Long videoId) {
+        if (readReplicaProperties.enabled()) {
+            lastWriteNanos.put(videoId, System.nanoTime());
+        }
+    }
+
+    public void routeToPrimaryIfRecentlyWritten(Long videoId) {
+        Long writtenAt = lastWriteNanos.get(videoId);
+        if (writtenAt != null && !isExpired(writtenAt)) {
+            ReplicaRoutingDataSource.pinCurrentTransactionToPrimary();
+        }
+    }
+
+    /**
+     * A replica may not have caught up with writes of other nodes yet, so what it doesn't return may still exist.
+     */
+    public boolean isReadingFromReplica() {
+        return readReplicaProperties.enabled() && ReplicaRoutingDataSource.isReadOnlyRoute();
+    }
+
+    @Scheduled(fixedDelayString = "${read-replicas.read-your-writes-window}")
+    public void evictExpired() {
+        lastWriteNanos.values().removeIf(this::isExpired);
+    }
+
+    private boolean isExpired(long writtenAt) {
+        return System.nanoTime() - writtenAt >= readReplicaProperties.readYourWritesWindow().toNanos();
+    }
+}
@@ -0,0 +1,132 @@
+package com.mlavrenko.videostreaming.datasource;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.datasource.AbstractDataSource;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Routes connections of read-only transactions to healthy read replicas in a round-robin manner, and everything else to the primary.
+ * It has to be wrapped into {@link org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy},
+ * so the physical connection is acquired only once the read-only flag of the transaction is known.
+ * A replica that fails to provide a connection is excluded until the next successful health check, and when no replica is healthy
+ * reads fall back to the primary.
+ */
+@Slf4j
+public class ReplicaRoutingDataSource extends AbstractDataSource implements AutoCloseable {
+    private static final int HEALTH_CHECK_TIMEOUT_SECONDS = 1;
+    private static final ThreadLocal<Boolean> PRIMARY_PINNED = ThreadLocal.withInitial(() -> false);
+    private final DataSource primary;
+    private final List<DataSource> replicas;
+    private final Set<DataSource> unhealthyReplicas = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger nextReplica = new AtomicInteger();
+
+    public ReplicaRoutingDataSource(DataSource primary, List<DataSource> replicas) {
+        this.primary = primary;
+        this.replicas = List.copyOf(replicas);
+    }
+
+    /**
+     * Keeps the current read-only transaction on the primary, e.g. when it must see writes that might not be replicated yet.
+     * Has to be called before the first statement of the transaction.
+     */
+    public static void pinCurrentTransactionToPrimary() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            PRIMARY_PINNED.set(true);
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    PRIMARY_PINNED.remove();
+                }
+            });
+        }
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        return route(DataSource::getConnection);
+    }
+
+    /**
+     * Credentials are passed to the selected target, so they have to be valid for the primary and all replicas.
+     */
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        return route(dataSource -> dataSource.getConnection(username, password));
+    }
+
+    @Scheduled(fixedDelayString = "${read-replicas.health-check-interval}")
+    public void checkHealth() {
+        for (DataSource replica : replicas) {
+            if (isValid(replica)) {
+                unhealthyReplicas.remove(replica);
+            } else {
+                unhealthyReplicas.add(replica);
+            }
+        }
+    }
+
+    public int getHealthyReplicaCount() {
+        return replicas.size() - unhealthyReplicas.size();
+    }
+
+    @Override
+    public void close() throws Exception {
+        for (DataSource replica : replicas) {
+            closeIfPossible(replica);
+        }
+        closeIfPossible(primary);
+    }
+
+    private Connection route(ConnectionFactory connectionFactory) throws SQLException {
+        if (!isReadOnlyRoute()) {
+            return connectionFactory.connect(primary);
+        }
+        for (int attempt = 0; attempt < replicas.size(); attempt++) {
+            DataSource replica = replicas.get(Math.floorMod(nextReplica.getAndIncrement(), replicas.size()));
+            if (unhealthyReplicas.contains(replica)) {
+                continue;
+            }
+            try {
+                return connectionFactory.connect(replica);
+            } catch (SQLException e) {
+                log.warn("Read replica is unavailable, excluding it until the next health check", e);
+                unhealthyReplicas.add(replica);
+            }
+        }
+        return connectionFactory.connect(primary);
+    }
+
+    static boolean isReadOnlyRoute() {
+        return TransactionSynchronizationManager.isCurrentTransactionReadOnly() && !PRIMARY_PINNED.get();
+    }
+
+    private static boolean isValid(DataSource replica) {
+        try (Connection connection = replica.getConnection()) {
+            return connection.isValid(HEALTH_CHECK_TIMEOUT_SECONDS);
+        } catch (SQLException e) {
+            log.warn("Read replica health check failed", e);
+            return false;
+        }
+    }
+
+    private static void closeIfPossible(DataSource dataSource) throws Exception {
+        if (dataSource instanceof AutoCloseable closeable) {
+            closeable.close();
+        }
+    }
+
+    @FunctionalInterface
+    private interface ConnectionFactory {
+        Connection connect(DataSource dataSource) throws SQLException;
+    }
+}
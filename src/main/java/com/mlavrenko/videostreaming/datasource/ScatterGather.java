@@ -0,0 +1,17 @@
+package com.mlavrenko.videostreaming.datasource;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks a repository method that reads across videos, so it's run on every shard and the results are gathered into one:
+ * lists and streams are concatenated in the order of shards, which is the order of ids, and truncated to the size of a paged request,
+ * pages are merged by their sort and counts are summed.
+ * Every shard materializes its stream within a transaction of its own, so a gathered stream holds the results of all shards in memory.
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface ScatterGather {
+}
@@ -0,0 +1,19 @@
+package com.mlavrenko.videostreaming.datasource;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks the repository method parameter the shard of the call is taken from: a video id, or an entity the video id is a property of.
+ * An entity without the video id yet belongs to a new video, so it's routed to the shard the next video is assigned to.
+ */
+@Target(ElementType.PARAMETER)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface ShardKey {
+    /**
+     * Property of the entity holding the video id, empty if the parameter is the video id itself.
+     */
+    String value() default "";
+}
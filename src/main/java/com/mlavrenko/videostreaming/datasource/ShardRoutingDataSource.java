@@ -0,0 +1,101 @@
+package com.mlavrenko.videostreaming.datasource;
+
+import org.springframework.jdbc.datasource.AbstractDataSource;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.List;
+
+/**
+ * Routes connections to the shard the current operation is bound to, and to the first shard when it isn't bound to any.
+ * It has to be wrapped into {@link org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy},
+ * so the physical connection is acquired only once the first statement of the transaction knows its shard.
+ * A transaction stays on the shard of its first routed operation until it completes, so statements flushed at commit
+ * go to the same shard, and an operation routed to another shard within it fails instead of being split across shards.
+ */
+public class ShardRoutingDataSource extends AbstractDataSource implements AutoCloseable {
+    private static final ThreadLocal<Integer> CURRENT_SHARD = new ThreadLocal<>();
+    private static final Object TRANSACTION_SHARD_KEY = new Object();
+    private final List<DataSource> shards;
+
+    public ShardRoutingDataSource(List<DataSource> shards) {
+        this.shards = List.copyOf(shards);
+    }
+
+    /**
+     * Binds the current thread to the shard, and the current transaction too if there is one.
+     *
+     * @return the previously bound shard, to be restored once the operation completes
+     */
+    public static Integer bind(int shard) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            pinCurrentTransaction(shard);
+        }
+        Integer previous = CURRENT_SHARD.get();
+        CURRENT_SHARD.set(shard);
+        return previous;
+    }
+
+    public static void restore(Integer previous) {
+        if (previous == null) {
+            CURRENT_SHARD.remove();
+        } else {
+            CURRENT_SHARD.set(previous);
+        }
+    }
+
+    public static int currentShard() {
+        Integer shard = CURRENT_SHARD.get();
+        if (shard == null) {
+            shard = (Integer) TransactionSynchronizationManager.getResource(TRANSACTION_SHARD_KEY);
+        }
+        return shard == null ? 0 : shard;
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        return shards.get(currentShard()).getConnection();
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        return shards.get(currentShard()).getConnection(username, password);
+    }
+
+    @Override
+    public void close() throws Exception {
+        for (DataSource shard : shards) {
+            if (shard instanceof AutoCloseable closeable) {
+                closeable.close();
+            }
+        }
+    }
+
+    private static void pinCurrentTransaction(int shard) {
+        Integer pinned = (Integer) TransactionSynchronizationManager.getResource(TRANSACTION_SHARD_KEY);
+        if (pinned == null) {
+            TransactionSynchronizationManager.bindResource(TRANSACTION_SHARD_KEY, shard);
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void suspend() {
+                    TransactionSynchronizationManager.unbindResource(TRANSACTION_SHARD_KEY);
+                }
+
+                @Override
+                public void resume() {
+                    TransactionSynchronizationManager.bindResource(TRANSACTION_SHARD_KEY, shard);
+                }
+
+                @Override
+                public void afterCompletion(int status) {
+                    TransactionSynchronizationManager.unbindResourceIfPossible(TRANSACTION_SHARD_KEY);
+                }
+            });
+        } else if (pinned != shard) {
+            throw new IllegalStateException("Transaction on shard " + pinned + " can't access shard " + shard);
+        }
+    }
+}
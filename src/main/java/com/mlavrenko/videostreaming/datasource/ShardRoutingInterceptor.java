@@ -0,0 +1,127 @@
+package com.mlavrenko.videostreaming.datasource;
+
+import org.aopalliance.intercept.MethodInterceptor;
+import org.aopalliance.intercept.MethodInvocation;
+import org.springframework.aop.support.AopUtils;
+import org.springframework.beans.PropertyAccessorFactory;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Method;
+import java.lang.reflect.UndeclaredThrowableException;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+
+/**
+ * Routes calls of a repository to shards: calls with a {@link ShardKey} run on the shard of the video, calls marked by {@link ScatterGather}
+ * run on every shard, and any other call runs on the shard of the current transaction.
+ */
+public class ShardRoutingInterceptor implements MethodInterceptor {
+    private final Object repository;
+    private final VideoShards videoShards;
+    private final Map<Method, Optional<KeyParameter>> keyParameters = new ConcurrentHashMap<>();
+
+    public ShardRoutingInterceptor(Object repository, VideoShards videoShards) {
+        this.repository = repository;
+        this.videoShards = videoShards;
+    }
+
+    @Override
+    public Object invoke(MethodInvocation invocation) throws Throwable {
+        Method method = invocation.getMethod();
+        if (method.isAnnotationPresent(ScatterGather.class) && videoShards.shardCount() > 1) {
+            return scatterGather(method, invocation.getArguments());
+        }
+        Optional<KeyParameter> keyParameter = keyParameters.computeIfAbsent(method, ShardRoutingInterceptor::findKeyParameter);
+        if (keyParameter.isEmpty()) {
+            return invocation.proceed();
+        }
+        Integer previous = ShardRoutingDataSource.bind(shardOf(keyParameter.get(), invocation.getArguments()));
+        try {
+            return invocation.proceed();
+        } finally {
+            ShardRoutingDataSource.restore(previous);
+        }
+    }
+
+    private int shardOf(KeyParameter keyParameter, Object[] arguments) {
+        Object argument = arguments[keyParameter.index()];
+        Object videoId = argument == null || keyParameter.property().isEmpty()
+                ? argument
+                : PropertyAccessorFactory.forBeanPropertyAccess(argument).getPropertyValue(keyParameter.property());
+        return videoId == null ? videoShards.shardForNewVideo() : videoShards.shardOf((Long) videoId);
+    }
+
+    @SuppressWarnings("unchecked")
+    private Object scatterGather(Method method, Object[] arguments) {
+        int pageableIndex = findPageableIndex(arguments);
+        Pageable pageable = pageableIndex < 0 ? Pageable.unpaged() : (Pageable) arguments[pageableIndex];
+        if (Page.class.isAssignableFrom(method.getReturnType())) {
+            Object[] headArguments = arguments.clone();
+            headArguments[pageableIndex] = ShardedPages.headOf(pageable);
+            return ShardedPages.merge(videoShards.scatter(() -> (Page<Object>) invoke(method, headArguments)), pageable);
+        }
+        List<Object> results = videoShards.scatter(() -> materialize(invoke(method, arguments)));
+        if (Stream.class.isAssignableFrom(method.getReturnType())) {
+            return results.stream().flatMap(result -> ((List<?>) result).stream());
+        }
+        if (List.class.isAssignableFrom(method.getReturnType())) {
+            long limit = pageable.isUnpaged() ? Long.MAX_VALUE : pageable.getPageSize();
+            return results.stream().flatMap(result -> ((List<?>) result).stream()).limit(limit).toList();
+        }
+        if (method.getReturnType() == long.class || method.getReturnType() == Long.class) {
+            return results.stream().mapToLong(result -> (Long) result).sum();
+        }
+        throw new IllegalStateException("Results of " + method + " can't be gathered across shards");
+    }
+
+    private Object invoke(Method method, Object[] arguments) {
+        try {
+            return AopUtils.invokeJoinpointUsingReflection(repository, method, arguments);
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new UndeclaredThrowableException(e);
+        }
+    }
+
+    /**
+     * A stream is read within the transaction of its shard, so it's collected into a list, which holds all its elements in memory.
+     */
+    private static Object materialize(Object result) {
+        if (result instanceof Stream<?> stream) {
+            try (stream) {
+                return stream.toList();
+            }
+        }
+        return result;
+    }
+
+    private static int findPageableIndex(Object[] arguments) {
+        for (int index = 0; index < arguments.length; index++) {
+            if (arguments[index] instanceof Pageable) {
+                return index;
+            }
+        }
+        return -1;
+    }
+
+    private static Optional<KeyParameter> findKeyParameter(Method method) {
+        Annotation[][] parameterAnnotations = method.getParameterAnnotations();
+        for (int index = 0; index < parameterAnnotations.length; index++) {
+            for (Annotation annotation : parameterAnnotations[index]) {
+                if (annotation instanceof ShardKey shardKey) {
+                    return Optional.of(new KeyParameter(index, shardKey.value()));
+                }
+            }
+        }
+        return Optional.empty();
+    }
+
+    private record KeyParameter(int index, String property) {
+    }
+}
@@ -0,0 +1,23 @@
+package com.mlavrenko.videostreaming.datasource;
+
+import org.hibernate.annotations.IdGeneratorType;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Generates ids unique across shards from a sequence of the shard the entity is saved to.
+ */
+@IdGeneratorType(ShardedSequenceGenerator.class)
+@Target({ElementType.FIELD, ElementType.METHOD})
+@Retention(RetentionPolicy.RUNTIME)
+public @interface ShardedId {
+    String sequenceName();
+
+    /**
+     * Has to match the increment of the sequence, as every value of the sequence reserves that many ids.
+     */
+    int incrementSize() default 50;
+}
@@ -0,0 +1,107 @@
+package com.mlavrenko.videostreaming.datasource;
+
+import org.springframework.beans.PropertyAccessorFactory;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Optional;
+import java.util.PriorityQueue;
+
+/**
+ * Merges pages queried from every shard into the requested page. Any of the shards might hold the whole page,
+ * so every shard is queried for its first rows up to the end of the requested page, and the sorted results are merged
+ * until the page is filled. The id breaks ties, so the merged order is the same for every request.
+ * Deep pages read every preceding row from every shard, so their cost grows with the page number.
+ */
+final class ShardedPages {
+    private static final String ID = "id";
+
+    private ShardedPages() {
+    }
+
+    static Pageable headOf(Pageable pageable) {
+        Sort sort = pageable.getSort().getOrderFor(ID) == null ? pageable.getSort().and(Sort.by(ID)) : pageable.getSort();
+        if (pageable.isUnpaged()) {
+            return Pageable.unpaged(sort);
+        }
+        return PageRequest.of(0, Math.toIntExact(pageable.getOffset() + pageable.getPageSize()), sort);
+    }
+
+    static <T> Page<T> merge(List<Page<T>> shardPages, Pageable pageable) {
+        Comparator<T> comparator = comparator(headOf(pageable).getSort());
+        PriorityQueue<Head<T>> heads = new PriorityQueue<>(Math.max(1, shardPages.size()),
+                (left, right) -> comparator.compare(left.value(), right.value()));
+        long total = 0;
+        for (Page<T> page : shardPages) {
+            total += page.getTotalElements();
+            Head.of(page.getContent().iterator()).ifPresent(heads::add);
+        }
+        long skip = pageable.isPaged() ? pageable.getOffset() : 0;
+        int limit = pageable.isPaged() ? pageable.getPageSize() : Integer.MAX_VALUE;
+        List<T> content = new ArrayList<>(Math.min(limit, 1024));
+        while (!heads.isEmpty() && content.size() < limit) {
+            Head<T> head = heads.poll();
+            if (skip > 0) {
+                skip--;
+            } else {
+                content.add(head.value());
+            }
+            Head.of(head.rest()).ifPresent(heads::add);
+        }
+        return new PageImpl<>(content, pageable, total);
+    }
+
+    /**
+     * Follows the database order of the sort: nulls come last in ascending order and first in descending order unless the order says
+     * otherwise, and enums are ordered by name, as they are stored as strings.
+     */
+    static <T> Comparator<T> comparator(Sort sort) {
+        Comparator<T> comparator = (left, right) -> 0;
+        for (Sort.Order order : sort) {
+            comparator = comparator.thenComparing(compareBy(order));
+        }
+        return comparator;
+    }
+
+    private static <T> Comparator<T> compareBy(Sort.Order order) {
+        Comparator<Object> values = (left, right) -> compareValues(left, right, order.isIgnoreCase());
+        if (order.isDescending()) {
+            values = values.reversed();
+        }
+        boolean nullsFirst = switch (order.getNullHandling()) {
+            case NULLS_FIRST -> true;
+            case NULLS_LAST -> false;
+            case NATIVE -> order.isDescending();
+        };
+        Comparator<Object> nullSafeValues = nullsFirst ? Comparator.nullsFirst(values) : Comparator.nullsLast(values);
+        return (left, right) -> nullSafeValues.compare(property(left, order.getProperty()), property(right, order.getProperty()));
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static int compareValues(Object left, Object right, boolean ignoreCase) {
+        if (left instanceof Enum<?> leftEnum && right instanceof Enum<?> rightEnum) {
+            return leftEnum.name().compareTo(rightEnum.name());
+        }
+        if (ignoreCase && left instanceof String leftString && right instanceof String rightString) {
+            return leftString.compareToIgnoreCase(rightString);
+        }
+        return ((Comparable) left).compareTo(right);
+    }
+
+    private static Object property(Object entity, String property) {
+        return PropertyAccessorFactory.forBeanPropertyAccess(entity).getPropertyValue(property);
+    }
+
+    private record Head<T>(T value, Iterator<T> rest) {
+        static <T> Optional<Head<T>> of(Iterator<T> iterator) {
+            return iterator.hasNext() ? Optional.of(new Head<>(iterator.next(), iterator)) : Optional.empty();
+        }
+    }
+}
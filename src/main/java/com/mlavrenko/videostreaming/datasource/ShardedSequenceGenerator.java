@@ -0,0 +1,64 @@
+package com.mlavrenko.videostreaming.datasource;
+
+import org.hibernate.engine.jdbc.spi.JdbcCoordinator;
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.id.IdentifierGenerator;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Every value of the sequence reserves a block of ids starting at it, the way the pooled-lo optimizer does,
+ * but blocks are kept per shard, as a block taken from the sequence of one shard mustn't be used for rows of another one.
+ * The shard is encoded into the id, so ids of different shards never collide, while ids of the first shard are the values of its sequence.
+ */
+public class ShardedSequenceGenerator implements IdentifierGenerator {
+    private final String sequenceName;
+    private final int incrementSize;
+    private final Map<Integer, Block> blocks = new ConcurrentHashMap<>();
+
+    public ShardedSequenceGenerator(ShardedId config) {
+        this.sequenceName = config.sequenceName();
+        this.incrementSize = config.incrementSize();
+    }
+
+    @Override
+    public Object generate(SharedSessionContractImplementor session, Object entity) {
+        int shard = ShardRoutingDataSource.currentShard();
+        Block block = blocks.computeIfAbsent(shard, key -> new Block());
+        synchronized (block) {
+            if (block.next == block.limit) {
+                block.next = nextSequenceValue(session);
+                block.limit = block.next + incrementSize;
+            }
+            return VideoShards.toGlobalId(shard, block.next++);
+        }
+    }
+
+    /**
+     * Runs on the connection of the session, which is routed to the current shard.
+     */
+    private long nextSequenceValue(SharedSessionContractImplementor session) {
+        String sql = session.getFactory().getJdbcServices().getDialect().getSequenceSupport().getSequenceNextValString(sequenceName);
+        JdbcCoordinator jdbcCoordinator = session.getJdbcCoordinator();
+        PreparedStatement statement = jdbcCoordinator.getStatementPreparer().prepareStatement(sql);
+        try {
+            ResultSet resultSet = jdbcCoordinator.getResultSetReturn().extract(statement, sql);
+            resultSet.next();
+            return resultSet.getLong(1);
+        } catch (SQLException e) {
+            throw session.getFactory().getJdbcServices().getSqlExceptionHelper().convert(e, "Could not get the next value of " + sequenceName, sql);
+        } finally {
+            jdbcCoordinator.getLogicalConnection().getResourceRegistry().release(statement);
+            jdbcCoordinator.afterStatementExecution();
+        }
+    }
+
+    private static final class Block {
+        private long next;
+        private long limit;
+    }
+}
@@ -0,0 +1,130 @@
+package com.mlavrenko.videostreaming.datasource;
+
+import com.mlavrenko.videostreaming.config.ShardingProperties;
+import jakarta.annotation.PreDestroy;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionOperations;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Maps videos to shards. The shard of a video is encoded in the high bits of its id, so it's known from the id alone,
+ * and the ids of the first shard are the ids a single database would assign, so enabling sharding doesn't move existing videos.
+ * New videos are spread across shards in a round-robin manner, and everything owned by a video is kept on the shard of the video.
+ */
+@Component
+public class VideoShards {
+    /**
+     * Leaves 2^48 ids per shard, while the shard number fits into the remaining bits of a positive long.
+     */
+    static final int SHARD_SHIFT = 48;
+    private static final long LOCAL_ID_MASK = (1L << SHARD_SHIFT) - 1;
+    private final int shardCount;
+    private final TransactionOperations readOnlyTransaction;
+    private final ExecutorService fanOut;
+    private final AtomicInteger nextShard = new AtomicInteger();
+
+    public VideoShards(ShardingProperties shardingProperties, PlatformTransactionManager transactionManager) {
+        this.shardCount = shardingProperties.shardCount();
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+        transactionTemplate.setReadOnly(true);
+        this.readOnlyTransaction = transactionTemplate;
+        this.fanOut = shardCount > 1
+                ? Executors.newFixedThreadPool(shardingProperties.fanOutThreads(), Thread.ofPlatform().daemon().name("shard-fan-out-", 0).factory())
+                : null;
+    }
+
+    public int shardCount() {
+        return shardCount;
+    }
+
+    /**
+     * Ids of shards that are no longer configured are mapped to the first shard, where the lookup finds nothing.
+     */
+    public int shardOf(long videoId) {
+        long shard = videoId >>> SHARD_SHIFT;
+        return shard < shardCount ? (int) shard : 0;
+    }
+
+    public int shardForNewVideo() {
+        return Math.floorMod(nextShard.getAndIncrement(), shardCount);
+    }
+
+    /**
+     * Shard number encoded in the id, whether or not the shard is configured.
+     */
+    public static long encodedShardOf(long videoId) {
+        return videoId >>> SHARD_SHIFT;
+    }
+
+    /**
+     * Id within the shard, as assigned by the sequence of the shard.
+     */
+    public static long localIdOf(long videoId) {
+        return videoId & LOCAL_ID_MASK;
+    }
+
+    public static long toGlobalId(int shard, long localId) {
+        if (localId > LOCAL_ID_MASK) {
+            throw new IllegalStateException("Ids of shard " + shard + " are exhausted");
+        }
+        return ((long) shard << SHARD_SHIFT) | localId;
+    }
+
+    public <T> T onShard(int shard, Supplier<T> operation) {
+        if (shardCount == 1) {
+            return operation.get();
+        }
+        Integer previous = ShardRoutingDataSource.bind(shard);
+        try {
+            return operation.get();
+        } finally {
+            ShardRoutingDataSource.restore(previous);
+        }
+    }
+
+    /**
+     * Runs the operation on every shard, in parallel and in a read-only transaction per shard, as a transaction can't span shards.
+     * A single shard runs it in place, within the transaction of the caller.
+     *
+     * @return results in the order of shards
+     */
+    public <T> List<T> scatter(Supplier<T> operation) {
+        if (shardCount == 1) {
+            return List.of(operation.get());
+        }
+        List<CompletableFuture<T>> futures = new ArrayList<>(shardCount);
+        for (int shard = 0; shard < shardCount; shard++) {
+            int target = shard;
+            futures.add(CompletableFuture.supplyAsync(() -> onShard(target, () -> readOnlyTransaction.execute(status -> operation.get())), fanOut));
+        }
+        List<T> results = new ArrayList<>(shardCount);
+        for (CompletableFuture<T> future : futures) {
+            try {
+                results.add(future.join());
+            } catch (CompletionException e) {
+                if (e.getCause() instanceof RuntimeException cause) {
+                    throw cause;
+                }
+                throw e;
+            }
+        }
+        return results;
+    }
+
+    @PreDestroy
+    void shutdown() {
+        if (fanOut != null) {
+            fanOut.shutdownNow();
+        }
+    }
+}
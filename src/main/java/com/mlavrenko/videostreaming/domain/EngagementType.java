@@ -0,0 +1,6 @@
+package com.mlavrenko.videostreaming.domain;
+
+public enum EngagementType {
+    IMPRESSION,
+    VIEW
+}
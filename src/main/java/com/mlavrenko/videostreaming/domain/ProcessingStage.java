@@ -0,0 +1,12 @@
+package com.mlavrenko.videostreaming.domain;
+
+/**
+ * Stages of post-upload processing, in the order they run. Every stage persists its result before the next one starts,
+ * so an interrupted job resumes from the stage it was at.
+ */
+public enum ProcessingStage {
+    CHECKSUM,
+    PROBE,
+    SEGMENT,
+    ENRICH
+}
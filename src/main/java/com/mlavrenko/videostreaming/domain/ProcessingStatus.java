@@ -0,0 +1,8 @@
+package com.mlavrenko.videostreaming.domain;
+
+public enum ProcessingStatus {
+    QUEUED,
+    RUNNING,
+    COMPLETED,
+    FAILED
+}
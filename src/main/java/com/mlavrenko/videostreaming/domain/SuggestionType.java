@@ -0,0 +1,7 @@
+package com.mlavrenko.videostreaming.domain;
+
+public enum SuggestionType {
+    TITLE,
+    DIRECTOR,
+    CAST_MEMBER
+}
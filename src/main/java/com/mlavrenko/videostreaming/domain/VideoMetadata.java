@@ -1,15 +1,16 @@
 package com.mlavrenko.videostreaming.domain;
 
+import com.mlavrenko.videostreaming.datasource.ShardedId;
 import jakarta.persistence.Entity;
 import jakarta.persistence.EnumType;
 import jakarta.persistence.Enumerated;
-import jakarta.persistence.GeneratedValue;
-import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
 import lombok.Data;
 import org.hibernate.annotations.SoftDelete;
+import org.hibernate.annotations.UpdateTimestamp;
 
 import java.time.Duration;
+import java.time.Instant;
 
 /**
  * All video metadata is persisted in the same table, that's done for simplicity.
@@ -21,7 +22,7 @@ import java.time.Duration;
 @SoftDelete
 public class VideoMetadata {
     @Id
-    @GeneratedValue(strategy = GenerationType.AUTO)
+    @ShardedId(sequenceName = "video_metadata_seq")
     private Long id;
     private String title;
     private String synopsis;
@@ -32,14 +33,16 @@ public class VideoMetadata {
     private Genre genre;
     private Duration runningTime;
     private String videoLocation;
+    /**
+     * Null for videos published before previews were precomputed, their preview is generated on first load.
+     */
+    private String previewLocation;
+    private Long previewSize;
     private int impressions;
     private int views;
-
-    public void incrementImpressions() {
-        impressions++;
-    }
-
-    public void incrementViews() {
-        views++;
-    }
+    /**
+     * Set on publish, update and delete, but not on engagement increments, so rows changed since a catalogue snapshot can be found.
+     */
+    @UpdateTimestamp
+    private Instant modifiedAt;
 }
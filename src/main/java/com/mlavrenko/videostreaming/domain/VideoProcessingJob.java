@@ -0,0 +1,37 @@
+package com.mlavrenko.videostreaming.domain;
+
+import com.mlavrenko.videostreaming.datasource.ShardedId;
+import jakarta.persistence.Entity;
+import jakarta.persistence.EnumType;
+import jakarta.persistence.Enumerated;
+import jakarta.persistence.Id;
+import lombok.Data;
+
+import java.time.Duration;
+import java.time.Instant;
+
+/**
+ * Post-upload processing state of a video, together with the results of the stages completed so far.
+ * A running job is leased to the worker processing it, and a job with an expired lease is taken over,
+ * e.g. after the node running it was restarted.
+ */
+@Data
+@Entity
+public class VideoProcessingJob {
+    @Id
+    @ShardedId(sequenceName = "video_processing_job_seq")
+    private Long id;
+    private Long videoId;
+    @Enumerated(EnumType.STRING)
+    private ProcessingStage stage;
+    @Enumerated(EnumType.STRING)
+    private ProcessingStatus status;
+    private int attempts;
+    private Instant leaseExpiresAt;
+    private String checksum;
+    private Long contentLength;
+    private Duration probedRunningTime;
+    private Integer segmentCount;
+    private String lastError;
+    private Instant updatedAt;
+}
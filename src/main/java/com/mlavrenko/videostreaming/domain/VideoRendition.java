@@ -0,0 +1,23 @@
+package com.mlavrenko.videostreaming.domain;
+
+import com.mlavrenko.videostreaming.datasource.ShardedId;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import lombok.Data;
+
+/**
+ * Lower bitrate or resolution variant of a video, stored as a sibling object of the master content.
+ * Bitrate is in kilobits per second, so it compares directly with the bandwidth clients report.
+ */
+@Data
+@Entity
+public class VideoRendition {
+    @Id
+    @ShardedId(sequenceName = "video_rendition_seq")
+    private Long id;
+    private Long videoId;
+    private String label;
+    private int bitrate;
+    private int height;
+    private String videoLocation;
+}
@@ -0,0 +1,31 @@
+package com.mlavrenko.videostreaming.domain;
+
+import com.mlavrenko.videostreaming.datasource.ShardedId;
+import jakarta.persistence.Entity;
+import jakarta.persistence.EnumType;
+import jakarta.persistence.Enumerated;
+import jakarta.persistence.Id;
+import lombok.Data;
+
+import java.time.LocalDate;
+
+/**
+ * Persisted HyperLogLog registers of distinct viewers of a video for a single day, as seen by a single node.
+ * Every node writes only its own rows, so nodes never contend on the same row, and estimates are produced by merging
+ * all rows of a video, which makes it possible to combine any set of nodes and time windows.
+ * Rows of past windows are rolled up into a single row per video, which belongs to no node.
+ */
+@Data
+@Entity
+public class VideoViewerSketch {
+    @Id
+    @ShardedId(sequenceName = "video_viewer_sketch_seq")
+    private Long id;
+    private Long videoId;
+    @Enumerated(EnumType.STRING)
+    private EngagementType engagementType;
+    private LocalDate windowStart;
+    private String nodeId;
+    private int sketchPrecision;
+    private byte[] registers;
+}
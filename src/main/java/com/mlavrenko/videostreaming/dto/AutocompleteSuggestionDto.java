@@ -0,0 +1,11 @@
+package com.mlavrenko.videostreaming.dto;
+
+import com.mlavrenko.videostreaming.domain.SuggestionType;
+
+import java.io.Serializable;
+
+/**
+ * @param videoId id of the suggested video for titles, null for people, which are searched by name
+ */
+public record AutocompleteSuggestionDto(String text, SuggestionType type, Long videoId) implements Serializable {
+}
@@ -0,0 +1,12 @@
+package com.mlavrenko.videostreaming.dto;
+
+import com.mlavrenko.videostreaming.media.ContentEncoding;
+import org.springframework.core.io.Resource;
+
+/**
+ * @param content  content in the encoding, as it's sent to the client, streamed while the response is written
+ * @param length   number of bytes of the content
+ * @param encoding encoding of the representation served, identity if no precompressed variant was
+ */
+public record EncodedContentDto(Resource content, long length, ContentEncoding encoding) {
+}
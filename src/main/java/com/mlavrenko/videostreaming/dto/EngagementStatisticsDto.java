@@ -2,5 +2,5 @@ package com.mlavrenko.videostreaming.dto;
 
 import java.io.Serializable;
 
-public record EngagementStatisticsDto(long impressions, long views) implements Serializable {
+public record EngagementStatisticsDto(long impressions, long views, long uniqueImpressions, long uniqueViews) implements Serializable {
 }
@@ -0,0 +1,16 @@
+package com.mlavrenko.videostreaming.dto;
+
+import com.mlavrenko.videostreaming.domain.Genre;
+
+import java.util.Map;
+import java.util.SortedMap;
+
+/**
+ * @param total          number of videos matching all filters
+ * @param genres         number of matching videos per genre
+ * @param yearsOfRelease number of videos matching the title and director filters per year of release
+ * @param decades        number of videos matching the title and director filters per decade, keyed by its first year
+ */
+public record FacetCountsDto(int total, Map<Genre, Integer> genres, SortedMap<Integer, Integer> yearsOfRelease,
+                             SortedMap<Integer, Integer> decades) {
+}
@@ -0,0 +1,16 @@
+package com.mlavrenko.videostreaming.dto;
+
+/**
+ * What the client tells about its connection, either explicitly or by client hints.
+ *
+ * @param maxBitrate highest bitrate in kilobits per second requested by the client
+ * @param downlink   effective bandwidth in megabits per second, as sent in the Downlink client hint
+ * @param saveData   whether the client asked to reduce data usage with the Save-Data client hint
+ */
+public record PlaybackHintsDto(Integer maxBitrate, Double downlink, boolean saveData) {
+    public static final PlaybackHintsDto NONE = new PlaybackHintsDto(null, null, false);
+
+    public boolean isEmpty() {
+        return maxBitrate == null && downlink == null && !saveData;
+    }
+}
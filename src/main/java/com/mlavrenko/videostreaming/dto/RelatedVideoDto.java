@@ -0,0 +1,7 @@
+package com.mlavrenko.videostreaming.dto;
+
+/**
+ * @param score relevance of the video, comparable only within the same list
+ */
+public record RelatedVideoDto(Long id, String title, double score) {
+}
@@ -0,0 +1,12 @@
+package com.mlavrenko.videostreaming.dto;
+
+import com.mlavrenko.videostreaming.domain.Genre;
+
+import java.time.Duration;
+
+/**
+ * Fields of a video kept in memory by the listing, autocomplete, facets and related videos, read without loading whole entities.
+ */
+public record VideoCatalogueTermsDto(Long id, String title, String director, String castMembers, Genre genre, int yearOfRelease,
+                                     Duration runningTime, int views) {
+}
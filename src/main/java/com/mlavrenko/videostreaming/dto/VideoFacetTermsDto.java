@@ -0,0 +1,9 @@
+package com.mlavrenko.videostreaming.dto;
+
+import com.mlavrenko.videostreaming.domain.Genre;
+
+/**
+ * Faceted and filtered fields of a video, read without loading whole entities.
+ */
+public record VideoFacetTermsDto(Long id, String title, String director, Genre genre, int yearOfRelease) {
+}
@@ -0,0 +1,10 @@
+package com.mlavrenko.videostreaming.dto;
+
+import java.io.Serializable;
+import java.util.List;
+
+/**
+ * @param renditions renditions of the video ordered from the highest bitrate, the master is played when none fits or there are none
+ */
+public record VideoManifestDto(Long videoId, List<VideoRenditionDto> renditions) implements Serializable {
+}
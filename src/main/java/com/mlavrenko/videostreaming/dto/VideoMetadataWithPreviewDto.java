@@ -1,6 +1,11 @@
 package com.mlavrenko.videostreaming.dto;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
 import java.io.Serializable;
 
-public record VideoMetadataWithPreviewDto(VideoMetadataViewDto metadata, String preview) implements Serializable {
+/**
+ * @param previewBytes number of bytes of the preview as it's stored, which is what's charged for sending it, not sent to the client itself
+ */
+public record VideoMetadataWithPreviewDto(VideoMetadataViewDto metadata, String preview, @JsonIgnore long previewBytes) implements Serializable {
 }
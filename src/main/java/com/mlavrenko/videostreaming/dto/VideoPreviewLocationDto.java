@@ -0,0 +1,7 @@
+package com.mlavrenko.videostreaming.dto;
+
+/**
+ * Locations needed to regenerate the preview of a video, read without loading whole entities.
+ */
+public record VideoPreviewLocationDto(Long id, String videoLocation, String previewLocation) {
+}
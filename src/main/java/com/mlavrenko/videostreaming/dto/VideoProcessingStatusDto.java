@@ -0,0 +1,24 @@
+package com.mlavrenko.videostreaming.dto;
+
+import com.mlavrenko.videostreaming.domain.ProcessingStage;
+import com.mlavrenko.videostreaming.domain.ProcessingStatus;
+
+import java.io.Serializable;
+import java.time.Instant;
+
+/**
+ * @param stage     stage that is running or waiting to run, or the last one once the job is completed
+ * @param checksum  hex encoded SHA-256 of the content, once checksummed
+ * @param lastError why the last attempt of the stage failed, if it did
+ */
+public record VideoProcessingStatusDto(
+        Long videoId,
+        ProcessingStage stage,
+        ProcessingStatus status,
+        int attempts,
+        String checksum,
+        Long contentLength,
+        Integer segmentCount,
+        String lastError,
+        Instant updatedAt) implements Serializable {
+}
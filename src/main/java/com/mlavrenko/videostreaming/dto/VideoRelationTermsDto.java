@@ -0,0 +1,9 @@
+package com.mlavrenko.videostreaming.dto;
+
+import com.mlavrenko.videostreaming.domain.Genre;
+
+/**
+ * Fields of a video compared to find related videos, read without loading whole entities.
+ */
+public record VideoRelationTermsDto(Long id, String title, String director, String castMembers, Genre genre, int yearOfRelease, int views) {
+}
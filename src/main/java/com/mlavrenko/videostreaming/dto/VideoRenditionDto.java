@@ -0,0 +1,22 @@
+package com.mlavrenko.videostreaming.dto;
+
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Pattern;
+import jakarta.validation.constraints.Positive;
+
+import java.io.Serializable;
+
+/**
+ * @param label   name of the rendition, e.g. 720p, which is also a part of its file name
+ * @param bitrate average bitrate in kilobits per second
+ * @param height  vertical resolution in pixels
+ */
+public record VideoRenditionDto(
+        @NotNull
+        @Pattern(regexp = "[A-Za-z0-9_-]{1,32}")
+        String label,
+        @Positive
+        int bitrate,
+        @Positive
+        int height) implements Serializable {
+}
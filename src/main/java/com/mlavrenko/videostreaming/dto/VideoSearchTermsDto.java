@@ -0,0 +1,7 @@
+package com.mlavrenko.videostreaming.dto;
+
+/**
+ * Searchable fields of a video together with its popularity, read without loading whole entities.
+ */
+public record VideoSearchTermsDto(Long id, String title, String director, String castMembers, int views) {
+}
@@ -0,0 +1,36 @@
+package com.mlavrenko.videostreaming.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+/**
+ * Access of a cache of content, including the load of a missing entry, so a slow access shows whether it was served from the cache.
+ */
+@Name("com.mlavrenko.videostreaming.CacheAccess")
+@Label("Cache Access")
+@Category({"Video Streaming", "Cache"})
+@Threshold("10 ms")
+@StackTrace(false)
+public class CacheAccessEvent extends jdk.jfr.Event {
+    @Label("Cache")
+    private String cache;
+    @Label("Key")
+    private String key;
+    @Label("Hit")
+    private boolean hit;
+
+    public static CacheAccessEvent begin(String cache, String key) {
+        CacheAccessEvent event = new CacheAccessEvent();
+        event.cache = cache;
+        event.key = key;
+        event.begin();
+        return event;
+    }
+
+    public void setHit(boolean hit) {
+        this.hit = hit;
+    }
+}
@@ -0,0 +1,151 @@
+package com.mlavrenko.videostreaming.jfr;
+
+import com.mlavrenko.videostreaming.config.FlightRecorderProperties;
+import jakarta.annotation.PreDestroy;
+import jdk.jfr.Configuration;
+import jdk.jfr.Recording;
+import jdk.jfr.RecordingState;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.actuate.endpoint.annotation.DeleteOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+import org.springframework.boot.actuate.endpoint.web.WebEndpointResponse;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Component;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.text.ParseException;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Starts a flight recording on demand and dumps what it has recorded so far, so an outlier on a production node can be explained
+ * from the events around it without attaching a profiler. The recording uses the default JDK settings, which are meant for production,
+ * with the events of this application enabled above their configured thresholds.
+ * A single recording runs at a time, it keeps events for the configured max age, and runs until stopped or for the requested duration.
+ */
+@Slf4j
+@Component
+@Endpoint(id = "flightrecording")
+public class FlightRecordingEndpoint {
+    private static final String RECORDING_NAME = "video-streaming-api";
+    private final FlightRecorderProperties flightRecorderProperties;
+    private Recording recording;
+
+    public FlightRecordingEndpoint(FlightRecorderProperties flightRecorderProperties) {
+        this.flightRecorderProperties = flightRecorderProperties;
+    }
+
+    /**
+     * Keeps the running recording rather than restarting it, so the events recorded so far aren't lost.
+     *
+     * @param duration how long to record, until stopped if not given
+     */
+    @WriteOperation
+    public synchronized Map<String, Object> start(@Nullable Duration duration) throws IOException, ParseException {
+        if (isRunning()) {
+            return describe(recording);
+        }
+        closeRecording();
+        Recording started = new Recording(Configuration.getConfiguration("default"));
+        started.setName(RECORDING_NAME);
+        started.setToDisk(true);
+        started.setMaxAge(flightRecorderProperties.maxAge());
+        started.setMaxSize(flightRecorderProperties.maxSize().toBytes());
+        started.setDuration(duration);
+        FlightRecorderProperties.Thresholds thresholds = flightRecorderProperties.thresholds();
+        started.enable(StorageOperationEvent.class).withThreshold(thresholds.storageOperation());
+        started.enable(VideoOperationEvent.class).withThreshold(thresholds.videoOperation());
+        started.enable(CacheAccessEvent.class).withThreshold(thresholds.cacheAccess());
+        started.enable(ScheduledTaskEvent.class).withThreshold(thresholds.scheduledTask());
+        started.start();
+        recording = started;
+        log.info("Started flight recording for {}", duration == null ? "an unlimited duration" : duration);
+        return describe(recording);
+    }
+
+    /**
+     * A recording that has completed its duration can still be dumped until it's stopped.
+     * Every request is dumped to a file of its own, which is streamed after the lock is released,
+     * so concurrent downloads don't overwrite each other. The file is deleted once it has been streamed.
+     */
+    @ReadOperation(produces = "application/octet-stream")
+    public synchronized WebEndpointResponse<Resource> dump() throws IOException {
+        if (recording == null || !(isRunning() || recording.getState() == RecordingState.STOPPED)) {
+            return new WebEndpointResponse<>(WebEndpointResponse.STATUS_NOT_FOUND);
+        }
+        Path directory = Files.createDirectories(Path.of(flightRecorderProperties.location()).toAbsolutePath());
+        Path dump = Files.createTempFile(directory, RECORDING_NAME + "-", ".jfr");
+        try {
+            recording.dump(dump);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(dump);
+            throw e;
+        }
+        return new WebEndpointResponse<>(new DumpResource(dump));
+    }
+
+    @DeleteOperation
+    public synchronized Map<String, Object> stop() {
+        if (recording == null) {
+            return Map.of("state", "NONE");
+        }
+        Map<String, Object> stopped = describe(recording);
+        closeRecording();
+        return stopped;
+    }
+
+    @PreDestroy
+    synchronized void closeRecording() {
+        if (recording != null) {
+            recording.close();
+            recording = null;
+        }
+    }
+
+    private boolean isRunning() {
+        return recording != null && recording.getState() == RecordingState.RUNNING;
+    }
+
+    /**
+     * Deletes the dump once its content has been read.
+     */
+    private static final class DumpResource extends FileSystemResource {
+        private DumpResource(Path dump) {
+            super(dump);
+        }
+
+        @Override
+        public InputStream getInputStream() throws IOException {
+            Path dump = getFile().toPath();
+            return new FilterInputStream(super.getInputStream()) {
+                @Override
+                public void close() throws IOException {
+                    try {
+                        super.close();
+                    } finally {
+                        Files.deleteIfExists(dump);
+                    }
+                }
+            };
+        }
+    }
+
+    private static Map<String, Object> describe(Recording recording) {
+        Map<String, Object> description = new LinkedHashMap<>();
+        description.put("state", recording.getState().name());
+        description.put("startTime", recording.getStartTime());
+        description.put("duration", recording.getDuration());
+        description.put("maxAge", recording.getMaxAge());
+        description.put("size", recording.getSize());
+        return description;
+    }
+}
@@ -0,0 +1,27 @@
+package com.mlavrenko.videostreaming.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+/**
+ * Run of a scheduled task, such as an index rebuild or a sketch flush, which might compete with requests running at the same time.
+ */
+@Name("com.mlavrenko.videostreaming.ScheduledTask")
+@Label("Scheduled Task")
+@Category({"Video Streaming", "Scheduling"})
+@Threshold("100 ms")
+@StackTrace(false)
+public class ScheduledTaskEvent extends jdk.jfr.Event {
+    @Label("Task")
+    private String task;
+
+    public static ScheduledTaskEvent begin(String task) {
+        ScheduledTaskEvent event = new ScheduledTaskEvent();
+        event.task = task;
+        event.begin();
+        return event;
+    }
+}
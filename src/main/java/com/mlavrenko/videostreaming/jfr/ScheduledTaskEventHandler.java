@@ -0,0 +1,32 @@
+package com.mlavrenko.videostreaming.jfr;
+
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationHandler;
+import org.springframework.scheduling.support.ScheduledTaskObservationContext;
+import org.springframework.stereotype.Component;
+
+/**
+ * Records runs of scheduled methods from the observations Spring creates for them, so no scheduled method has to be changed.
+ */
+@Component
+public class ScheduledTaskEventHandler implements ObservationHandler<ScheduledTaskObservationContext> {
+
+    @Override
+    public void onStart(ScheduledTaskObservationContext context) {
+        context.put(ScheduledTaskEvent.class, ScheduledTaskEvent.begin(
+                context.getTargetClass().getSimpleName() + "." + context.getMethod().getName()));
+    }
+
+    @Override
+    public void onStop(ScheduledTaskObservationContext context) {
+        ScheduledTaskEvent event = context.get(ScheduledTaskEvent.class);
+        if (event != null) {
+            event.commit();
+        }
+    }
+
+    @Override
+    public boolean supportsContext(Observation.Context context) {
+        return context instanceof ScheduledTaskObservationContext;
+    }
+}
@@ -0,0 +1,40 @@
+package com.mlavrenko.videostreaming.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+/**
+ * Read, write or delete of content in the storage, committed on failure too, so a slow failing operation is recorded as well.
+ */
+@Name("com.mlavrenko.videostreaming.StorageOperation")
+@Label("Storage Operation")
+@Category({"Video Streaming", "Storage"})
+@Threshold("10 ms")
+@StackTrace(false)
+public class StorageOperationEvent extends jdk.jfr.Event {
+    @Label("Operation")
+    private String operation;
+    @Label("Path")
+    private String path;
+    @Label("Bytes")
+    @Description("Bytes transferred, zero if the operation failed before transferring any")
+    @DataAmount
+    private long bytes;
+
+    public static StorageOperationEvent begin(String operation, String path) {
+        StorageOperationEvent event = new StorageOperationEvent();
+        event.operation = operation;
+        event.path = path;
+        event.begin();
+        return event;
+    }
+
+    public void setBytes(long bytes) {
+        this.bytes = bytes;
+    }
+}
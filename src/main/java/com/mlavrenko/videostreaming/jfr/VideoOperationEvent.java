@@ -0,0 +1,74 @@
+package com.mlavrenko.videostreaming.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+import jdk.jfr.Timespan;
+
+/**
+ * Operation on a single video, split into the time spent on the database and on the storage, so a slow request shows where it waited.
+ * The rest of the duration is spent in memory, e.g. on indexes, or waiting for a concurrent request reading the same data.
+ * Steps are only timed while the event is enabled, so there's no overhead when no recording is running.
+ */
+@Name("com.mlavrenko.videostreaming.VideoOperation")
+@Label("Video Operation")
+@Category({"Video Streaming", "Service"})
+@Threshold("20 ms")
+@StackTrace(false)
+public class VideoOperationEvent extends jdk.jfr.Event {
+    @Label("Operation")
+    private String operation;
+    @Label("Video Id")
+    @Description("Zero for a video that is being published")
+    private long videoId;
+    @Label("Database Time")
+    @Timespan
+    private long databaseTime;
+    @Label("Storage Time")
+    @Timespan
+    private long storageTime;
+
+    public static VideoOperationEvent begin(String operation, Long videoId) {
+        VideoOperationEvent event = new VideoOperationEvent();
+        event.operation = operation;
+        event.videoId = videoId == null ? 0 : videoId;
+        event.begin();
+        return event;
+    }
+
+    public void setVideoId(long videoId) {
+        this.videoId = videoId;
+    }
+
+    public <T, E extends Exception> T database(Step<T, E> step) throws E {
+        if (!isEnabled()) {
+            return step.execute();
+        }
+        long start = System.nanoTime();
+        try {
+            return step.execute();
+        } finally {
+            databaseTime += System.nanoTime() - start;
+        }
+    }
+
+    public <T, E extends Exception> T storage(Step<T, E> step) throws E {
+        if (!isEnabled()) {
+            return step.execute();
+        }
+        long start = System.nanoTime();
+        try {
+            return step.execute();
+        } finally {
+            storageTime += System.nanoTime() - start;
+        }
+    }
+
+    @FunctionalInterface
+    public interface Step<T, E extends Exception> {
+        T execute() throws E;
+    }
+}
@@ -0,0 +1,104 @@
+package com.mlavrenko.videostreaming.media;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Content codings content can be served in, named by their Accept-Encoding token.
+ * Only codings implemented by the JDK are supported, so no native compression library has to be shipped.
+ */
+public enum ContentEncoding {
+    IDENTITY("identity", ""),
+    GZIP("gzip", ".gz");
+
+    private final String token;
+    private final String extension;
+
+    ContentEncoding(String token, String extension) {
+        this.token = token;
+        this.extension = extension;
+    }
+
+    public String token() {
+        return token;
+    }
+
+    /**
+     * Suffix of the file name of a variant encoded with it.
+     */
+    public String extension() {
+        return extension;
+    }
+
+    public byte[] encode(byte[] content) throws IOException {
+        if (this == IDENTITY) {
+            return content;
+        }
+        ByteArrayOutputStream encoded = new ByteArrayOutputStream(content.length / 2);
+        try (OutputStream out = encoder(encoded)) {
+            out.write(content);
+        }
+        return encoded.toByteArray();
+    }
+
+    /**
+     * Wraps the target into a stream encoding what's written to it, so content is encoded while it's streamed.
+     * Closing the stream completes the encoding and closes the target.
+     */
+    public OutputStream encoder(OutputStream target) throws IOException {
+        return this == IDENTITY ? target : new GZIPOutputStream(target);
+    }
+
+    /**
+     * @return codings other than identity accepted by the Accept-Encoding header, the most preferred first, so the first one a variant
+     * exists for is served. Codings with a quality of 0 are refused, and * stands for the codings not listed.
+     * Identity is not included, as it's served when no variant is.
+     */
+    public static List<ContentEncoding> acceptedBy(String acceptEncoding) {
+        if (acceptEncoding == null || acceptEncoding.isBlank()) {
+            return List.of();
+        }
+        Map<String, Double> qualities = new HashMap<>();
+        for (String coding : acceptEncoding.split(",")) {
+            String[] parameters = coding.split(";");
+            String name = parameters[0].trim().toLowerCase(Locale.ROOT);
+            if (!name.isEmpty()) {
+                qualities.put(name, parseQuality(parameters));
+            }
+        }
+        List<ContentEncoding> accepted = new ArrayList<>();
+        for (ContentEncoding encoding : values()) {
+            if (encoding != IDENTITY && quality(qualities, encoding) > 0) {
+                accepted.add(encoding);
+            }
+        }
+        accepted.sort(Comparator.comparingDouble(encoding -> -quality(qualities, encoding)));
+        return List.copyOf(accepted);
+    }
+
+    private static double quality(Map<String, Double> qualities, ContentEncoding encoding) {
+        return qualities.getOrDefault(encoding.token, qualities.getOrDefault("*", 0.0));
+    }
+
+    private static double parseQuality(String[] parameters) {
+        for (int i = 1; i < parameters.length; i++) {
+            String parameter = parameters[i].trim();
+            if (parameter.length() > 2 && parameter.substring(0, 2).equalsIgnoreCase("q=")) {
+                try {
+                    return Double.parseDouble(parameter.substring(2));
+                } catch (NumberFormatException e) {
+                    return 0;
+                }
+            }
+        }
+        return 1;
+    }
+}
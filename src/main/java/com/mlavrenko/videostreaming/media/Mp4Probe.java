@@ -0,0 +1,117 @@
+package com.mlavrenko.videostreaming.media;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Optional;
+
+/**
+ * Reads the duration of an MP4 (ISO base media) container from the movie header box, without reading the media data.
+ * Only box headers are read while walking to moov/mvhd, so probing costs a few small ranged reads,
+ * also when the movie box is written after the media data at the end of the file.
+ */
+public final class Mp4Probe {
+    private static final int BOX_HEADER_SIZE = 8;
+    private static final int LARGE_BOX_HEADER_SIZE = 16;
+    private static final int MOVIE_HEADER_SIZE = 32;
+
+    private Mp4Probe() {
+    }
+
+    /**
+     * Reads up to {@code length} bytes starting from {@code offset}, fewer if the content ends earlier.
+     */
+    @FunctionalInterface
+    public interface RangeReader {
+        byte[] read(long offset, int length) throws IOException;
+    }
+
+    /**
+     * @return duration of the movie, or nothing if the content is not an MP4 container or has no movie header
+     */
+    public static Optional<Duration> probeDuration(RangeReader reader, long contentLength) throws IOException {
+        Optional<Box> first = readBox(reader, 0, contentLength);
+        if (first.isEmpty() || !"ftyp".equals(first.get().type())) {
+            return Optional.empty();
+        }
+        Optional<Box> movie = findBox(reader, "moov", 0, contentLength);
+        if (movie.isEmpty()) {
+            return Optional.empty();
+        }
+        Optional<Box> movieHeader = findBox(reader, "mvhd", movie.get().contentOffset(), movie.get().end());
+        if (movieHeader.isEmpty()) {
+            return Optional.empty();
+        }
+        return readDuration(reader.read(movieHeader.get().contentOffset(), MOVIE_HEADER_SIZE));
+    }
+
+    private static Optional<Box> findBox(RangeReader reader, String type, long from, long to) throws IOException {
+        long offset = from;
+        while (offset + BOX_HEADER_SIZE <= to) {
+            Optional<Box> box = readBox(reader, offset, to);
+            if (box.isEmpty()) {
+                return Optional.empty();
+            }
+            if (type.equals(box.get().type())) {
+                return box;
+            }
+            offset = box.get().end();
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * A size of 1 means the size follows the type as a 64-bit number, and 0 means the box extends to the end of its parent.
+     */
+    private static Optional<Box> readBox(RangeReader reader, long offset, long parentEnd) throws IOException {
+        byte[] header = reader.read(offset, LARGE_BOX_HEADER_SIZE);
+        if (header.length < BOX_HEADER_SIZE) {
+            return Optional.empty();
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(header);
+        long size = Integer.toUnsignedLong(buffer.getInt());
+        String type = new String(header, 4, 4, StandardCharsets.ISO_8859_1);
+        int headerSize = BOX_HEADER_SIZE;
+        if (size == 1) {
+            if (header.length < LARGE_BOX_HEADER_SIZE) {
+                return Optional.empty();
+            }
+            size = buffer.getLong(BOX_HEADER_SIZE);
+            headerSize = LARGE_BOX_HEADER_SIZE;
+        } else if (size == 0) {
+            size = parentEnd - offset;
+        }
+        if (size < headerSize || offset + size > parentEnd) {
+            return Optional.empty();
+        }
+        return Optional.of(new Box(type, offset + headerSize, offset + size));
+    }
+
+    /**
+     * Version 1 of the movie header has 64-bit times and duration, version 0 has 32-bit ones. All bits set means the duration is unknown.
+     */
+    private static Optional<Duration> readDuration(byte[] movieHeader) {
+        ByteBuffer buffer = ByteBuffer.wrap(movieHeader);
+        int version = buffer.get(0);
+        long timescale;
+        long duration;
+        if (version == 1 && movieHeader.length >= 32) {
+            timescale = Integer.toUnsignedLong(buffer.getInt(20));
+            duration = buffer.getLong(24);
+        } else if (version == 0 && movieHeader.length >= 20) {
+            timescale = Integer.toUnsignedLong(buffer.getInt(12));
+            duration = Integer.toUnsignedLong(buffer.getInt(16));
+        } else {
+            return Optional.empty();
+        }
+        boolean unknownDuration = duration < 0 || version == 0 && duration == 0xFFFFFFFFL;
+        if (timescale == 0 || unknownDuration) {
+            return Optional.empty();
+        }
+        return Optional.of(Duration.ofSeconds(duration / timescale, (duration % timescale) * 1_000_000_000L / timescale));
+    }
+
+    private record Box(String type, long contentOffset, long end) {
+    }
+}
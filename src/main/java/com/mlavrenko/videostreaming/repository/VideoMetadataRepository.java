@@ -1,10 +1,149 @@
 package com.mlavrenko.videostreaming.repository;
 
+import com.mlavrenko.videostreaming.datasource.ScatterGather;
+import com.mlavrenko.videostreaming.datasource.ShardKey;
 import com.mlavrenko.videostreaming.domain.VideoMetadata;
+import com.mlavrenko.videostreaming.dto.VideoCatalogueTermsDto;
+import com.mlavrenko.videostreaming.dto.VideoFacetTermsDto;
+import com.mlavrenko.videostreaming.dto.VideoPreviewLocationDto;
+import com.mlavrenko.videostreaming.dto.VideoRelationTermsDto;
+import com.mlavrenko.videostreaming.dto.VideoSearchTermsDto;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.domain.Specification;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
 
 @Repository
 public interface VideoMetadataRepository extends JpaRepository<VideoMetadata, Long>, JpaSpecificationExecutor<VideoMetadata> {
+    @Override
+    Optional<VideoMetadata> findById(@ShardKey Long id);
+
+    @Override
+    boolean existsById(@ShardKey Long id);
+
+    @Override
+    void deleteById(@ShardKey Long id);
+
+    @Override
+    <S extends VideoMetadata> S save(@ShardKey("id") S video);
+
+    @Override
+    @ScatterGather
+    long count();
+
+    @Override
+    @ScatterGather
+    Page<VideoMetadata> findAll(Specification<VideoMetadata> specification, Pageable pageable);
+
+    /**
+     * Engagement counters are incremented in place, so concurrent requests don't lose updates and don't need a managed entity.
+     * Every increment is a transaction of its own, so streaming doesn't hold a connection while the content is read.
+     */
+    @Transactional
+    @Modifying
+    @Query("update VideoMetadata v set v.impressions = v.impressions + 1 where v.id = :id")
+    int incrementImpressions(@ShardKey @Param("id") Long id);
+
+    @Transactional
+    @Modifying
+    @Query("update VideoMetadata v set v.views = v.views + 1 where v.id = :id")
+    int incrementViews(@ShardKey @Param("id") Long id);
+
+    /**
+     * Soft deletion doesn't go through the update timestamp, so a deleted row is marked as modified in the same transaction.
+     */
+    @Modifying
+    @Query("update VideoMetadata v set v.modifiedAt = :modifiedAt where v.id = :id")
+    int markModified(@ShardKey @Param("id") Long id, @Param("modifiedAt") Instant modifiedAt);
+
+    @Transactional
+    @Modifying
+    @Query("update VideoMetadata v set v.previewLocation = :previewLocation, v.previewSize = :previewSize where v.id = :id")
+    int updatePreview(@ShardKey @Param("id") Long id, @Param("previewLocation") String previewLocation, @Param("previewSize") Long previewSize);
+
+    /**
+     * Pages by id rather than by offset, so regenerated previews leaving the result don't shift the following pages.
+     * Videos without a preview are left to be generated on first load.
+     */
+    @Query("""
+            select new com.mlavrenko.videostreaming.dto.VideoPreviewLocationDto(v.id, v.videoLocation, v.previewLocation)
+            from VideoMetadata v
+            where v.previewSize is not null and v.previewSize <> :previewSize and v.id > :afterId
+            order by v.id""")
+    @ScatterGather
+    List<VideoPreviewLocationDto> findStalePreviews(@Param("previewSize") Long previewSize, @Param("afterId") Long afterId, Pageable pageable);
+
+    /**
+     * Streamed rather than loaded as a list, so with a single shard rebuilding the id filter doesn't hold all ids in memory at once.
+     * With several shards, the ids of every shard are read into a list within the transaction of the shard, so all ids are held in memory.
+     */
+    @Query("select v.id from VideoMetadata v")
+    @ScatterGather
+    Stream<Long> streamAllIds();
+
+    /**
+     * Read from the primary, as an id missing on a lagging replica would be rejected as never assigned.
+     *
+     * @return highest live id of every shard, null for a shard without videos
+     */
+    @Transactional
+    @Query("select max(v.id) from VideoMetadata v")
+    @ScatterGather
+    List<Long> findHighestIds();
+
+    @Query("""
+            select new com.mlavrenko.videostreaming.dto.VideoSearchTermsDto(v.id, v.title, v.director, v.castMembers, v.views)
+            from VideoMetadata v""")
+    @ScatterGather
+    Stream<VideoSearchTermsDto> streamAllSearchTerms();
+
+    @Query("""
+            select new com.mlavrenko.videostreaming.dto.VideoFacetTermsDto(v.id, v.title, v.director, v.genre, v.yearOfRelease)
+            from VideoMetadata v""")
+    @ScatterGather
+    Stream<VideoFacetTermsDto> streamAllFacetTerms();
+
+    /**
+     * Loaded as a list in a read-only transaction of its own, so the connection is released before related videos are computed.
+     */
+    @Transactional(readOnly = true)
+    @Query("""
+            select new com.mlavrenko.videostreaming.dto.VideoRelationTermsDto(v.id, v.title, v.director, v.castMembers, v.genre, v.yearOfRelease, v.views)
+            from VideoMetadata v""")
+    @ScatterGather
+    List<VideoRelationTermsDto> findAllRelationTerms();
+
+    @Transactional(readOnly = true)
+    @Query("""
+            select new com.mlavrenko.videostreaming.dto.VideoCatalogueTermsDto(v.id, v.title, v.director, v.castMembers, v.genre, v.yearOfRelease,
+                v.runningTime, v.views)
+            from VideoMetadata v""")
+    @ScatterGather
+    List<VideoCatalogueTermsDto> findAllCatalogueTerms();
+
+    @Query("""
+            select new com.mlavrenko.videostreaming.dto.VideoCatalogueTermsDto(v.id, v.title, v.director, v.castMembers, v.genre, v.yearOfRelease,
+                v.runningTime, v.views)
+            from VideoMetadata v
+            where v.modifiedAt > :since""")
+    @ScatterGather
+    List<VideoCatalogueTermsDto> findCatalogueTermsModifiedSince(@Param("since") Instant since);
+
+    /**
+     * Native, because soft-deleted rows are filtered out of every JPQL query.
+     */
+    @Query(value = "select id from video_metadata where deleted = true and modified_at > :since", nativeQuery = true)
+    @ScatterGather
+    List<Long> findIdsDeletedSince(@Param("since") Instant since);
 }
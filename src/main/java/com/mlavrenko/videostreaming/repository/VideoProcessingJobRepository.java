@@ -0,0 +1,45 @@
+package com.mlavrenko.videostreaming.repository;
+
+import com.mlavrenko.videostreaming.datasource.ScatterGather;
+import com.mlavrenko.videostreaming.datasource.ShardKey;
+import com.mlavrenko.videostreaming.domain.VideoProcessingJob;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface VideoProcessingJobRepository extends JpaRepository<VideoProcessingJob, Long> {
+    Optional<VideoProcessingJob> findByVideoId(@ShardKey Long videoId);
+
+    @Override
+    <S extends VideoProcessingJob> S save(@ShardKey("videoId") S job);
+
+    /**
+     * Takes the job over if it's waiting or its lease has expired, the update succeeds for a single worker only.
+     */
+    @Transactional
+    @Modifying
+    @Query("""
+            update VideoProcessingJob j
+            set j.status = com.mlavrenko.videostreaming.domain.ProcessingStatus.RUNNING, j.leaseExpiresAt = :leaseExpiresAt, j.updatedAt = :now
+            where j.videoId = :videoId
+            and (j.status = com.mlavrenko.videostreaming.domain.ProcessingStatus.QUEUED
+            or (j.status = com.mlavrenko.videostreaming.domain.ProcessingStatus.RUNNING and j.leaseExpiresAt < :now))""")
+    int claim(@ShardKey @Param("videoId") Long videoId, @Param("now") Instant now, @Param("leaseExpiresAt") Instant leaseExpiresAt);
+
+    @Query("""
+            select j.videoId from VideoProcessingJob j
+            where j.status = com.mlavrenko.videostreaming.domain.ProcessingStatus.QUEUED
+            or (j.status = com.mlavrenko.videostreaming.domain.ProcessingStatus.RUNNING and j.leaseExpiresAt < :now)
+            order by j.updatedAt""")
+    @ScatterGather
+    List<Long> findVideoIdsToResume(@Param("now") Instant now, Pageable pageable);
+}
@@ -0,0 +1,19 @@
+package com.mlavrenko.videostreaming.repository;
+
+import com.mlavrenko.videostreaming.datasource.ShardKey;
+import com.mlavrenko.videostreaming.domain.VideoRendition;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface VideoRenditionRepository extends JpaRepository<VideoRendition, Long> {
+    List<VideoRendition> findAllByVideoIdOrderByBitrateDesc(@ShardKey Long videoId);
+
+    Optional<VideoRendition> findByVideoIdAndLabel(@ShardKey Long videoId, String label);
+
+    @Override
+    <S extends VideoRendition> S save(@ShardKey("videoId") S rendition);
+}
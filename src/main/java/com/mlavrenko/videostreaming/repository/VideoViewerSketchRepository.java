@@ -0,0 +1,47 @@
+package com.mlavrenko.videostreaming.repository;
+
+import com.mlavrenko.videostreaming.datasource.ScatterGather;
+import com.mlavrenko.videostreaming.datasource.ShardKey;
+import com.mlavrenko.videostreaming.domain.EngagementType;
+import com.mlavrenko.videostreaming.domain.VideoViewerSketch;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface VideoViewerSketchRepository extends JpaRepository<VideoViewerSketch, Long> {
+    Optional<VideoViewerSketch> findByVideoIdAndEngagementTypeAndWindowStartAndNodeId(@ShardKey Long videoId, EngagementType engagementType,
+                                                                                      LocalDate windowStart, String nodeId);
+
+    List<VideoViewerSketch> findAllByVideoIdAndEngagementType(@ShardKey Long videoId, EngagementType engagementType);
+
+    /**
+     * Locks the row, so a concurrent roll-up of the same video waits for this one and then finds the rows it has rolled up deleted.
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("""
+            select s from VideoViewerSketch s
+            where s.videoId = :videoId and s.engagementType = :engagementType and s.windowStart = :windowStart and s.nodeId = :nodeId""")
+    Optional<VideoViewerSketch> lockSketch(@ShardKey @Param("videoId") Long videoId, @Param("engagementType") EngagementType engagementType,
+                                           @Param("windowStart") LocalDate windowStart, @Param("nodeId") String nodeId);
+
+    List<VideoViewerSketch> findAllByVideoIdAndEngagementTypeAndWindowStartBeforeAndNodeIdNot(@ShardKey Long videoId, EngagementType engagementType,
+                                                                                             LocalDate windowStart, String nodeId);
+
+    @Query("""
+            select distinct s.videoId from VideoViewerSketch s
+            where s.windowStart < :before and s.nodeId <> :rolledUpNodeId""")
+    @ScatterGather
+    List<Long> findVideoIdsToRollUp(@Param("before") LocalDate before, @Param("rolledUpNodeId") String rolledUpNodeId, Pageable pageable);
+
+    @Override
+    <S extends VideoViewerSketch> S save(@ShardKey("videoId") S sketch);
+}
@@ -0,0 +1,326 @@
+package com.mlavrenko.videostreaming.search;
+
+import com.mlavrenko.videostreaming.domain.Genre;
+import com.mlavrenko.videostreaming.dto.VideoMetadataViewDto;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.IntStream;
+
+/**
+ * Listing columns of the catalogue kept in primitive arrays, one row per video, so the listing is filtered, sorted and paginated
+ * without querying the database. Rows are dense and reused after removal, like the ordinals of {@link FacetIndex}.
+ * Strings are dictionary-encoded, every distinct value is stored once and rows hold its code, so a title or director filter
+ * is matched once per distinct value rather than once per row, and rows are compared by the rank of their codes.
+ * Genres are kept as ordinals, running times as nanoseconds. Large catalogues are filtered in parallel.
+ * Filters and sort orders follow the listing query: text filters match a substring ignoring case, nulls sort last ascending
+ * and first descending, as in PostgreSQL, and strings are compared by code point. Videos equal on the sort order are ordered by id,
+ * so pages don't overlap. Sorting by other properties, or ignoring case, is left to the database, see {@link #supports(Sort)}.
+ */
+public final class ColumnarCatalogue {
+    private static final Set<String> SORTABLE_PROPERTIES = Set.of("id", "title", "director", "genre", "yearOfRelease", "runningTime");
+    private static final int PARALLEL_THRESHOLD = 65_536;
+    private static final int INITIAL_CAPACITY = 64;
+    private static final int NULL_CODE = -1;
+    private static final byte NULL_GENRE = -1;
+    private static final long NULL_KEY = Long.MIN_VALUE;
+    private static final long NULL_RUNNING_TIME = NULL_KEY;
+    private static final Genre[] GENRES = Genre.values();
+    private static final int[] GENRE_RANKS = rankGenresByName();
+
+    private final Map<Long, Integer> rows = new HashMap<>();
+    private final BitSet live = new BitSet();
+    private final Dictionary titles = new Dictionary();
+    private final Dictionary directors = new Dictionary();
+    private final Dictionary mainActors = new Dictionary();
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private long[] ids = new long[INITIAL_CAPACITY];
+    private int[] titleCodes = new int[INITIAL_CAPACITY];
+    private int[] directorCodes = new int[INITIAL_CAPACITY];
+    private int[] mainActorCodes = new int[INITIAL_CAPACITY];
+    private byte[] genres = new byte[INITIAL_CAPACITY];
+    private int[] years = new int[INITIAL_CAPACITY];
+    private long[] runningTimes = new long[INITIAL_CAPACITY];
+
+    /**
+     * Adds the video or replaces its columns.
+     */
+    public void put(long videoId, String title, String director, String mainActor, Genre genre, int yearOfRelease, Duration runningTime) {
+        lock.writeLock().lock();
+        try {
+            Integer existing = rows.get(videoId);
+            int row = existing != null ? existing : live.nextClearBit(0);
+            if (existing == null) {
+                ensureCapacity(row);
+                rows.put(videoId, row);
+                live.set(row);
+            }
+            ids[row] = videoId;
+            titleCodes[row] = titles.encode(title);
+            directorCodes[row] = directors.encode(director);
+            mainActorCodes[row] = mainActors.encode(mainActor);
+            genres[row] = genre == null ? NULL_GENRE : (byte) genre.ordinal();
+            years[row] = yearOfRelease;
+            runningTimes[row] = runningTime == null ? NULL_RUNNING_TIME : runningTime.toNanos();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * The dictionaries keep values no longer used by any row, they're compacted by rebuilding the catalogue.
+     */
+    public void remove(long videoId) {
+        lock.writeLock().lock();
+        try {
+            Integer row = rows.remove(videoId);
+            if (row != null) {
+                live.clear(row);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public static boolean supports(Sort sort) {
+        return sort.stream().allMatch(order -> SORTABLE_PROPERTIES.contains(order.getProperty()) && !order.isIgnoreCase());
+    }
+
+    /**
+     * Only the rows of the requested page are selected in order, by a bounded heap, instead of sorting every matching row.
+     *
+     * @throws IllegalArgumentException if the sort isn't {@link #supports(Sort) supported}
+     */
+    public Page<VideoMetadataViewDto> find(String title, String director, Integer yearOfRelease, Pageable pageable) {
+        if (!supports(pageable.getSort())) {
+            throw new IllegalArgumentException("Unsupported sort: " + pageable.getSort());
+        }
+        lock.readLock().lock();
+        try {
+            int[] matching = match(title, director, yearOfRelease);
+            if (pageable.isUnpaged()) {
+                return new PageImpl<>(toViews(select(matching, matching.length, comparator(pageable.getSort())), 0), pageable, matching.length);
+            }
+            long end = Math.min(pageable.getOffset() + pageable.getPageSize(), matching.length);
+            if (pageable.getOffset() >= end) {
+                return new PageImpl<>(List.of(), pageable, matching.length);
+            }
+            int[] selected = select(matching, (int) end, comparator(pageable.getSort()));
+            return new PageImpl<>(toViews(selected, (int) pageable.getOffset()), pageable, matching.length);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return rows.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private int[] match(String title, String director, Integer yearOfRelease) {
+        BitSet titleMatches = title == null ? null : titles.matching(lowerCase(title));
+        BitSet directorMatches = director == null ? null : directors.matching(lowerCase(director));
+        boolean yearFiltered = yearOfRelease != null;
+        int year = yearFiltered ? yearOfRelease : 0;
+        IntStream candidates = IntStream.range(0, live.length());
+        if (live.length() >= PARALLEL_THRESHOLD) {
+            candidates = candidates.parallel();
+        }
+        return candidates
+                .filter(row -> live.get(row)
+                        && (titleMatches == null || matches(titleMatches, titleCodes[row]))
+                        && (directorMatches == null || matches(directorMatches, directorCodes[row]))
+                        && (!yearFiltered || years[row] == year))
+                .toArray();
+    }
+
+    private static boolean matches(BitSet matchingCodes, int code) {
+        return code != NULL_CODE && matchingCodes.get(code);
+    }
+
+    /**
+     * @return the first {@code count} rows in order
+     */
+    private static int[] select(int[] matching, int count, Comparator<Integer> comparator) {
+        if (count == matching.length) {
+            return Arrays.stream(matching).boxed().sorted(comparator).mapToInt(Integer::intValue).toArray();
+        }
+        PriorityQueue<Integer> worstFirst = new PriorityQueue<>(count + 1, comparator.reversed());
+        for (int row : matching) {
+            if (worstFirst.size() < count) {
+                worstFirst.add(row);
+            } else if (comparator.compare(row, worstFirst.peek()) < 0) {
+                worstFirst.poll();
+                worstFirst.add(row);
+            }
+        }
+        return worstFirst.stream().sorted(comparator).mapToInt(Integer::intValue).toArray();
+    }
+
+    private Comparator<Integer> comparator(Sort sort) {
+        Comparator<Integer> comparator = (first, second) -> 0;
+        for (Sort.Order order : sort) {
+            comparator = comparator.thenComparing(comparator(order));
+        }
+        return comparator.thenComparingLong(row -> ids[row]);
+    }
+
+    /**
+     * Every sort key is a long, with the smallest long standing for null, so rows are compared without boxing their values.
+     */
+    private Comparator<Integer> comparator(Sort.Order order) {
+        RowKey key = switch (order.getProperty()) {
+            case "id" -> row -> ids[row];
+            case "title" -> rankedKey(titleCodes, titles.ranks());
+            case "director" -> rankedKey(directorCodes, directors.ranks());
+            case "genre" -> row -> genres[row] == NULL_GENRE ? NULL_KEY : GENRE_RANKS[genres[row]];
+            case "yearOfRelease" -> row -> years[row];
+            case "runningTime" -> row -> runningTimes[row];
+            default -> throw new IllegalArgumentException("Unsupported sort property: " + order.getProperty());
+        };
+        int nullOrder = switch (order.getNullHandling()) {
+            case NULLS_FIRST -> -1;
+            case NULLS_LAST -> 1;
+            case NATIVE -> order.isDescending() ? -1 : 1;
+        };
+        int direction = order.isAscending() ? 1 : -1;
+        return (first, second) -> {
+            long firstKey = key.get(first);
+            long secondKey = key.get(second);
+            if (firstKey == secondKey) {
+                return 0;
+            } else if (firstKey == NULL_KEY) {
+                return nullOrder;
+            } else if (secondKey == NULL_KEY) {
+                return -nullOrder;
+            }
+            return direction * Long.compare(firstKey, secondKey);
+        };
+    }
+
+    private static RowKey rankedKey(int[] codes, int[] ranks) {
+        return row -> codes[row] == NULL_CODE ? NULL_KEY : ranks[codes[row]];
+    }
+
+    private List<VideoMetadataViewDto> toViews(int[] selected, int from) {
+        List<VideoMetadataViewDto> views = new ArrayList<>(selected.length - from);
+        for (int i = from; i < selected.length; i++) {
+            int row = selected[i];
+            views.add(new VideoMetadataViewDto(
+                    ids[row],
+                    titles.decode(titleCodes[row]),
+                    directors.decode(directorCodes[row]),
+                    mainActors.decode(mainActorCodes[row]),
+                    genres[row] == NULL_GENRE ? null : GENRES[genres[row]],
+                    runningTimes[row] == NULL_RUNNING_TIME ? null : Duration.ofNanos(runningTimes[row])));
+        }
+        return views;
+    }
+
+    private void ensureCapacity(int row) {
+        if (row < ids.length) {
+            return;
+        }
+        int capacity = Math.max(row + 1, ids.length * 2);
+        ids = Arrays.copyOf(ids, capacity);
+        titleCodes = Arrays.copyOf(titleCodes, capacity);
+        directorCodes = Arrays.copyOf(directorCodes, capacity);
+        mainActorCodes = Arrays.copyOf(mainActorCodes, capacity);
+        genres = Arrays.copyOf(genres, capacity);
+        years = Arrays.copyOf(years, capacity);
+        runningTimes = Arrays.copyOf(runningTimes, capacity);
+    }
+
+    /**
+     * Genres are stored by name in the database, so they sort by name there, not by declaration order.
+     */
+    private static int[] rankGenresByName() {
+        Genre[] byName = GENRES.clone();
+        Arrays.sort(byName, Comparator.comparing(Genre::name));
+        int[] ranks = new int[GENRES.length];
+        for (int rank = 0; rank < byName.length; rank++) {
+            ranks[byName[rank].ordinal()] = rank;
+        }
+        return ranks;
+    }
+
+    private static String lowerCase(String value) {
+        return value.toLowerCase(Locale.ROOT);
+    }
+
+    @FunctionalInterface
+    private interface RowKey {
+        long get(int row);
+    }
+
+    /**
+     * Distinct values of a string column, with codes assigned in order of appearance.
+     * Sort ranks of the codes are computed when first needed after a new value is added, concurrent readers may compute them twice,
+     * which is harmless, since both get the same ranks.
+     */
+    private static final class Dictionary {
+        private final Map<String, Integer> codes = new HashMap<>();
+        private final List<String> values = new ArrayList<>();
+        private final List<String> lowerCaseValues = new ArrayList<>();
+        private volatile int[] ranks;
+
+        int encode(String value) {
+            if (value == null) {
+                return NULL_CODE;
+            }
+            return codes.computeIfAbsent(value, ignored -> {
+                values.add(value);
+                lowerCaseValues.add(lowerCase(value));
+                ranks = null;
+                return values.size() - 1;
+            });
+        }
+
+        String decode(int code) {
+            return code == NULL_CODE ? null : values.get(code);
+        }
+
+        BitSet matching(String filter) {
+            BitSet matching = new BitSet(values.size());
+            for (int code = 0; code < lowerCaseValues.size(); code++) {
+                if (lowerCaseValues.get(code).contains(filter)) {
+                    matching.set(code);
+                }
+            }
+            return matching;
+        }
+
+        int[] ranks() {
+            int[] current = ranks;
+            if (current == null) {
+                Integer[] byValue = IntStream.range(0, values.size()).boxed().toArray(Integer[]::new);
+                Arrays.sort(byValue, Comparator.comparing(values::get));
+                current = new int[byValue.length];
+                for (int rank = 0; rank < byValue.length; rank++) {
+                    current[byValue[rank]] = rank;
+                }
+                ranks = current;
+            }
+            return current;
+        }
+    }
+}
@@ -0,0 +1,194 @@
+package com.mlavrenko.videostreaming.search;
+
+import com.mlavrenko.videostreaming.domain.Genre;
+import com.mlavrenko.videostreaming.dto.FacetCountsDto;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Counts videos per genre, year and decade of release for a filter, without querying the database.
+ * Every video gets a dense ordinal, reused after removal, and every facet value keeps a bitset of the ordinals having it,
+ * so a count is the cardinality of an intersection of bitsets, a few thousand words for a million videos.
+ * Title and director are kept lowercased per ordinal, and matched the same way as the listing filters, by a substring.
+ */
+public final class FacetIndex {
+    private static final int INITIAL_CAPACITY = 64;
+
+    private final Map<Long, Integer> ordinals = new HashMap<>();
+    private final BitSet live = new BitSet();
+    private final Map<Genre, BitSet> genres = new EnumMap<>(Genre.class);
+    private final Map<Integer, BitSet> years = new HashMap<>();
+    private final Map<Integer, BitSet> decades = new HashMap<>();
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private String[] titles = new String[INITIAL_CAPACITY];
+    private String[] directors = new String[INITIAL_CAPACITY];
+    private Genre[] genreByOrdinal = new Genre[INITIAL_CAPACITY];
+    private int[] yearByOrdinal = new int[INITIAL_CAPACITY];
+
+    /**
+     * Adds the video or replaces its facet values.
+     */
+    public void put(long videoId, String title, String director, Genre genre, int yearOfRelease) {
+        lock.writeLock().lock();
+        try {
+            Integer existing = ordinals.get(videoId);
+            int ordinal = existing != null ? existing : live.nextClearBit(0);
+            if (existing != null) {
+                clearFacets(ordinal);
+            } else {
+                ensureCapacity(ordinal);
+                ordinals.put(videoId, ordinal);
+                live.set(ordinal);
+            }
+            titles[ordinal] = lowerCase(title);
+            directors[ordinal] = lowerCase(director);
+            genreByOrdinal[ordinal] = genre;
+            yearByOrdinal[ordinal] = yearOfRelease;
+            if (genre != null) {
+                genres.computeIfAbsent(genre, ignored -> new BitSet()).set(ordinal);
+            }
+            years.computeIfAbsent(yearOfRelease, ignored -> new BitSet()).set(ordinal);
+            decades.computeIfAbsent(decadeOf(yearOfRelease), ignored -> new BitSet()).set(ordinal);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(long videoId) {
+        lock.writeLock().lock();
+        try {
+            Integer ordinal = ordinals.remove(videoId);
+            if (ordinal != null) {
+                clearFacets(ordinal);
+                live.clear(ordinal);
+                titles[ordinal] = null;
+                directors[ordinal] = null;
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Genre counts are restricted by all filters, while year and decade counts ignore the year filter,
+     * so the other years stay visible and selectable once a year is chosen.
+     */
+    public FacetCountsDto count(String title, String director, Integer yearOfRelease) {
+        lock.readLock().lock();
+        try {
+            BitSet matching = matchText(title, director);
+            BitSet selected = matching;
+            if (yearOfRelease != null) {
+                selected = intersect(matching, years.getOrDefault(yearOfRelease, new BitSet()));
+            }
+            Map<Genre, Integer> genreCounts = new EnumMap<>(Genre.class);
+            for (Map.Entry<Genre, BitSet> genre : genres.entrySet()) {
+                putIfPositive(genreCounts, genre.getKey(), intersectionSize(selected, genre.getValue()));
+            }
+            SortedMap<Integer, Integer> yearCounts = new TreeMap<>();
+            years.forEach((year, ordinalsOfYear) -> putIfPositive(yearCounts, year, intersectionSize(matching, ordinalsOfYear)));
+            SortedMap<Integer, Integer> decadeCounts = new TreeMap<>();
+            decades.forEach((decade, ordinalsOfDecade) -> putIfPositive(decadeCounts, decade, intersectionSize(matching, ordinalsOfDecade)));
+            return new FacetCountsDto(selected.cardinality(), genreCounts, yearCounts, decadeCounts);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return ordinals.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public static int decadeOf(int year) {
+        return year - Math.floorMod(year, 10);
+    }
+
+    /**
+     * Without text filters every live video matches, and the live bitset itself is used, so the common unfiltered count doesn't scan titles.
+     */
+    private BitSet matchText(String title, String director) {
+        String titleFilter = lowerCase(title);
+        String directorFilter = lowerCase(director);
+        if (titleFilter == null && directorFilter == null) {
+            return live;
+        }
+        BitSet matching = new BitSet(live.length());
+        for (int ordinal = live.nextSetBit(0); ordinal >= 0; ordinal = live.nextSetBit(ordinal + 1)) {
+            if (contains(titles[ordinal], titleFilter) && contains(directors[ordinal], directorFilter)) {
+                matching.set(ordinal);
+            }
+        }
+        return matching;
+    }
+
+    private void clearFacets(int ordinal) {
+        clear(genres, genreByOrdinal[ordinal], ordinal);
+        clear(years, yearByOrdinal[ordinal], ordinal);
+        clear(decades, decadeOf(yearByOrdinal[ordinal]), ordinal);
+    }
+
+    private void ensureCapacity(int ordinal) {
+        if (ordinal < titles.length) {
+            return;
+        }
+        int capacity = Math.max(ordinal + 1, titles.length * 2);
+        titles = Arrays.copyOf(titles, capacity);
+        directors = Arrays.copyOf(directors, capacity);
+        genreByOrdinal = Arrays.copyOf(genreByOrdinal, capacity);
+        yearByOrdinal = Arrays.copyOf(yearByOrdinal, capacity);
+    }
+
+    /**
+     * Empty bitsets are dropped, so values no longer used by any video don't show up with zero counts or keep memory.
+     */
+    private static <K> void clear(Map<K, BitSet> facet, K value, int ordinal) {
+        if (value == null) {
+            return;
+        }
+        BitSet ordinalsOfValue = facet.get(value);
+        if (ordinalsOfValue != null) {
+            ordinalsOfValue.clear(ordinal);
+            if (ordinalsOfValue.isEmpty()) {
+                facet.remove(value);
+            }
+        }
+    }
+
+    private static BitSet intersect(BitSet left, BitSet right) {
+        BitSet intersection = (BitSet) left.clone();
+        intersection.and(right);
+        return intersection;
+    }
+
+    private int intersectionSize(BitSet matching, BitSet ordinalsOfValue) {
+        return matching == live ? ordinalsOfValue.cardinality() : intersect(matching, ordinalsOfValue).cardinality();
+    }
+
+    private static <K> void putIfPositive(Map<K, Integer> counts, K value, int count) {
+        if (count > 0) {
+            counts.put(value, count);
+        }
+    }
+
+    private static boolean contains(String value, String filter) {
+        return filter == null || value != null && value.contains(filter);
+    }
+
+    private static String lowerCase(String value) {
+        return value == null ? null : value.toLowerCase(Locale.ROOT);
+    }
+}
@@ -0,0 +1,326 @@
+package com.mlavrenko.videostreaming.search;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Radix tree of string keys, which answers with the highest scored items having a key that starts with the given prefix.
+ * Edges are labeled with whole key fragments, so there are at most two nodes per key, rather than a node per character.
+ * Every node keeps the ids of the best items of its subtree, so a lookup walks the prefix and copies a precomputed array,
+ * regardless of how many keys match. Updates recompute these arrays only along the paths of the updated keys.
+ * Reads share a lock, so lookups run in parallel and only wait for updates, which are rare compared to keystrokes.
+ * An item may have several keys, e.g. every word of a title, and is returned once even if several of them match.
+ */
+public final class PrefixIndex {
+    private static final int[] NO_IDS = new int[0];
+    private static final Node[] NO_CHILDREN = new Node[0];
+
+    private final int maxResults;
+    private final Node root = new Node("");
+    private final Map<Integer, Item> items = new HashMap<>();
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    public PrefixIndex(int maxResults) {
+        this.maxResults = maxResults;
+    }
+
+    /**
+     * Adds the item or replaces its keys and score.
+     */
+    public void put(int id, long score, Collection<String> keys) {
+        lock.writeLock().lock();
+        try {
+            Item previous = items.remove(id);
+            if (previous != null) {
+                previous.keys().forEach(key -> removeKey(key, id));
+            }
+            List<String> distinctKeys = keys.stream().distinct().toList();
+            items.put(id, new Item(distinctKeys, score));
+            distinctKeys.forEach(key -> insertKey(key, id));
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Updates scores in bulk, recomputing every node on the paths of the changed items once, deepest nodes first.
+     */
+    public void updateScores(Map<Integer, Long> scores) {
+        lock.writeLock().lock();
+        try {
+            Map<Node, Integer> affectedNodes = new IdentityHashMap<>();
+            scores.forEach((id, score) -> {
+                Item item = items.get(id);
+                if (item != null && item.score() != score) {
+                    items.put(id, new Item(item.keys(), score));
+                    item.keys().forEach(key -> collectPath(key, affectedNodes));
+                }
+            });
+            affectedNodes.entrySet().stream()
+                    .sorted(Map.Entry.<Node, Integer>comparingByValue().reversed())
+                    .forEach(node -> recomputeTop(node.getKey()));
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(int id) {
+        lock.writeLock().lock();
+        try {
+            Item item = items.remove(id);
+            if (item != null) {
+                item.keys().forEach(key -> removeKey(key, id));
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * @return ids of at most {@code limit} best items with a key starting with the prefix, the best first
+     */
+    public int[] search(String prefix, int limit) {
+        lock.readLock().lock();
+        try {
+            Node node = findPrefix(prefix);
+            return node == null ? NO_IDS : Arrays.copyOf(node.top, Math.min(limit, node.top.length));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return items.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private Node findPrefix(String prefix) {
+        Node node = root;
+        int position = 0;
+        while (position < prefix.length()) {
+            Node child = node.findChild(prefix.charAt(position));
+            if (child == null) {
+                return null;
+            }
+            int matched = commonPrefixLength(child.label, prefix, position);
+            if (matched < child.label.length() && position + matched < prefix.length()) {
+                return null;
+            }
+            position += matched;
+            node = child;
+        }
+        return node;
+    }
+
+    private void insertKey(String key, int id) {
+        Node[] path = new Node[key.length() + 1];
+        int depth = 0;
+        path[depth++] = root;
+        Node node = root;
+        int position = 0;
+        while (position < key.length()) {
+            Node child = node.findChild(key.charAt(position));
+            if (child == null) {
+                child = new Node(key.substring(position));
+                node.addChild(child);
+                position = key.length();
+            } else {
+                int matched = commonPrefixLength(child.label, key, position);
+                if (matched < child.label.length()) {
+                    child = split(node, child, matched);
+                }
+                position += matched;
+            }
+            path[depth++] = child;
+            node = child;
+        }
+        node.terminals = add(node.terminals, id);
+        for (int i = depth - 1; i >= 0; i--) {
+            recomputeTop(path[i]);
+        }
+    }
+
+    private void removeKey(String key, int id) {
+        Node[] path = new Node[key.length() + 1];
+        int depth = 0;
+        path[depth++] = root;
+        Node node = root;
+        int position = 0;
+        while (position < key.length()) {
+            Node child = node.findChild(key.charAt(position));
+            if (child == null || !key.startsWith(child.label, position)) {
+                return;
+            }
+            position += child.label.length();
+            path[depth++] = child;
+            node = child;
+        }
+        node.terminals = remove(node.terminals, id);
+        for (int i = depth - 1; i > 0; i--) {
+            compact(path[i - 1], path[i]);
+        }
+        for (int i = depth - 1; i >= 0; i--) {
+            recomputeTop(path[i]);
+        }
+    }
+
+    private void collectPath(String key, Map<Node, Integer> depths) {
+        Node node = root;
+        int depth = 0;
+        int position = 0;
+        depths.put(node, depth);
+        while (position < key.length()) {
+            node = node.findChild(key.charAt(position));
+            position += node.label.length();
+            depths.put(node, ++depth);
+        }
+    }
+
+    private static Node split(Node parent, Node child, int at) {
+        Node middle = new Node(child.label.substring(0, at));
+        parent.replaceChild(middle);
+        child.label = child.label.substring(at);
+        middle.children = new Node[]{child};
+        middle.top = child.top;
+        return middle;
+    }
+
+    /**
+     * Removes a node that has nothing under it, and merges a node that only passes through to its single child,
+     * so the tree stays at most two nodes per key after removals.
+     */
+    private static void compact(Node parent, Node node) {
+        if (node.terminals.length > 0) {
+            return;
+        }
+        if (node.children.length == 0) {
+            parent.removeChild(node);
+        } else if (node.children.length == 1) {
+            Node child = node.children[0];
+            node.label = node.label + child.label;
+            node.children = child.children;
+            node.terminals = child.terminals;
+            node.top = child.top;
+        }
+    }
+
+    private void recomputeTop(Node node) {
+        int candidateCount = node.terminals.length;
+        for (Node child : node.children) {
+            candidateCount += child.top.length;
+        }
+        int[] candidates = Arrays.copyOf(node.terminals, candidateCount);
+        int offset = node.terminals.length;
+        for (Node child : node.children) {
+            System.arraycopy(child.top, 0, candidates, offset, child.top.length);
+            offset += child.top.length;
+        }
+        node.top = Arrays.stream(candidates)
+                .filter(items::containsKey)
+                .distinct()
+                .boxed()
+                .sorted((first, second) -> compareRank(first, second))
+                .limit(maxResults)
+                .mapToInt(Integer::intValue)
+                .toArray();
+    }
+
+    private int compareRank(int first, int second) {
+        int byScore = Long.compare(items.get(second).score(), items.get(first).score());
+        return byScore != 0 ? byScore : Integer.compare(first, second);
+    }
+
+    private static int commonPrefixLength(String label, String key, int keyOffset) {
+        int length = Math.min(label.length(), key.length() - keyOffset);
+        int i = 0;
+        while (i < length && label.charAt(i) == key.charAt(keyOffset + i)) {
+            i++;
+        }
+        return i;
+    }
+
+    private static int[] add(int[] ids, int id) {
+        for (int existing : ids) {
+            if (existing == id) {
+                return ids;
+            }
+        }
+        int[] result = Arrays.copyOf(ids, ids.length + 1);
+        result[ids.length] = id;
+        return result;
+    }
+
+    private static int[] remove(int[] ids, int id) {
+        return Arrays.stream(ids).filter(existing -> existing != id).toArray();
+    }
+
+    private record Item(List<String> keys, long score) {
+    }
+
+    /**
+     * Children are sorted by the first character of their label, which is unique among siblings.
+     */
+    private static final class Node {
+        private String label;
+        private Node[] children = NO_CHILDREN;
+        private int[] terminals = NO_IDS;
+        private int[] top = NO_IDS;
+
+        private Node(String label) {
+            this.label = label;
+        }
+
+        private Node findChild(char first) {
+            int index = indexOf(first);
+            return index >= 0 ? children[index] : null;
+        }
+
+        private void addChild(Node child) {
+            int insertionPoint = -indexOf(child.label.charAt(0)) - 1;
+            Node[] result = new Node[children.length + 1];
+            System.arraycopy(children, 0, result, 0, insertionPoint);
+            result[insertionPoint] = child;
+            System.arraycopy(children, insertionPoint, result, insertionPoint + 1, children.length - insertionPoint);
+            children = result;
+        }
+
+        private void replaceChild(Node child) {
+            children[indexOf(child.label.charAt(0))] = child;
+        }
+
+        private void removeChild(Node child) {
+            int index = indexOf(child.label.charAt(0));
+            Node[] result = new Node[children.length - 1];
+            System.arraycopy(children, 0, result, 0, index);
+            System.arraycopy(children, index + 1, result, index, children.length - index - 1);
+            children = result;
+        }
+
+        private int indexOf(char first) {
+            int low = 0;
+            int high = children.length - 1;
+            while (low <= high) {
+                int middle = (low + high) >>> 1;
+                char current = children[middle].label.charAt(0);
+                if (current < first) {
+                    low = middle + 1;
+                } else if (current > first) {
+                    high = middle - 1;
+                } else {
+                    return middle;
+                }
+            }
+            return -(low + 1);
+        }
+    }
+}
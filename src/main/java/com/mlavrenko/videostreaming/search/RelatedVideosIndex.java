@@ -0,0 +1,327 @@
+package com.mlavrenko.videostreaming.search;
+
+import com.mlavrenko.videostreaming.domain.Genre;
+import com.mlavrenko.videostreaming.dto.RelatedVideoDto;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.stream.Collectors;
+
+/**
+ * Keeps precomputed lists of the most related videos, so serving them is a map lookup.
+ * Two videos are similar when they share the director, cast members, the genre and close years of release,
+ * and a similar video is ranked higher when it's more popular.
+ * <p>
+ * Candidates are found through postings by director, cast member and genre and year, rather than by comparing every pair of videos.
+ * A genre and year bucket contributes only its most popular videos, so a popular genre doesn't make the candidates quadratic.
+ * All lists are computed in parallel on a fork/join pool. A change of a single video updates only the lists it's in or may enter,
+ * so lists are patched between full computations and may miss a video that a full computation would find, until the next one.
+ * <p>
+ * Lists and videos are read without locks. Changes are expected from a single writer at a time.
+ */
+public final class RelatedVideosIndex {
+    private static final double DIRECTOR_WEIGHT = 3.0;
+    private static final double CAST_MEMBER_WEIGHT = 2.0;
+    private static final double GENRE_WEIGHT = 1.0;
+    private static final double YEAR_WEIGHT = 1.0;
+    private static final int CANDIDATES_PER_BUCKET_FACTOR = 2;
+    private static final int SEQUENTIAL_THRESHOLD = 256;
+    private static final Neighbour[] NO_NEIGHBOURS = new Neighbour[0];
+    private static final Comparator<Video> BY_POPULARITY = Comparator.comparingInt(Video::views).reversed().thenComparingLong(Video::id);
+    private static final Comparator<Neighbour> BY_SCORE = Comparator.comparingDouble(Neighbour::score).reversed().thenComparingLong(Neighbour::id);
+
+    private final int maxRelated;
+    private final int yearWindow;
+    private final Map<Long, Video> videos = new ConcurrentHashMap<>();
+    private final Map<Long, Neighbour[]> neighbours = new ConcurrentHashMap<>();
+    private final Map<Long, Set<Long>> referencedBy = new HashMap<>();
+    private final Map<String, Set<Long>> byDirector = new HashMap<>();
+    private final Map<String, Set<Long>> byCastMember = new HashMap<>();
+    private final Map<Genre, TreeMap<Integer, TreeSet<Video>>> byGenreAndYear = new EnumMap<>(Genre.class);
+
+    public RelatedVideosIndex(int maxRelated, int yearWindow) {
+        this.maxRelated = maxRelated;
+        this.yearWindow = yearWindow;
+    }
+
+    /**
+     * Adds the video without computing any lists, used to load the catalogue before {@link #computeAll(ForkJoinPool)}.
+     */
+    public void load(long id, String title, String director, Collection<String> castMembers, Genre genre, int yearOfRelease, int views) {
+        Video previous = videos.get(id);
+        if (previous != null) {
+            removePostings(previous);
+        }
+        addPostings(new Video(id, title, normalize(director), normalize(castMembers), genre, yearOfRelease, views));
+    }
+
+    /**
+     * Adds or changes the video, computing its list and patching the lists it's in or may now enter.
+     */
+    public void put(long id, String title, String director, Collection<String> castMembers, Genre genre, int yearOfRelease, int views) {
+        Set<Long> affected = new HashSet<>(referencedBy.getOrDefault(id, Set.of()));
+        load(id, title, director, castMembers, genre, yearOfRelease, views);
+        Video video = videos.get(id);
+        affected.addAll(relatedCandidates(video, Integer.MAX_VALUE));
+        affected.remove(id);
+        for (Long affectedId : affected) {
+            patch(videos.get(affectedId), video);
+        }
+        setNeighbours(id, computeNeighbours(video));
+    }
+
+    public void remove(long id) {
+        Video video = videos.get(id);
+        if (video == null) {
+            return;
+        }
+        removePostings(video);
+        setNeighbours(id, null);
+        for (Long affectedId : List.copyOf(referencedBy.getOrDefault(id, Set.of()))) {
+            patch(videos.get(affectedId), video);
+        }
+        referencedBy.remove(id);
+    }
+
+    /**
+     * Computes the lists of all videos in parallel, splitting the catalogue in halves until parts are small enough.
+     */
+    public void computeAll(ForkJoinPool pool) {
+        Video[] all = videos.values().toArray(Video[]::new);
+        pool.invoke(new ComputeNeighboursTask(all, 0, all.length));
+        referencedBy.clear();
+        neighbours.forEach((id, related) -> Arrays.stream(related).forEach(neighbour -> addReference(neighbour.id(), id)));
+    }
+
+    /**
+     * @return the most related videos ordered by relevance, or nothing if the video is unknown to the index
+     */
+    public Optional<List<RelatedVideoDto>> related(long id) {
+        return Optional.ofNullable(neighbours.get(id))
+                .map(related -> Arrays.stream(related)
+                        .map(neighbour -> Optional.ofNullable(videos.get(neighbour.id()))
+                                .map(video -> new RelatedVideoDto(video.id(), video.title(), neighbour.score())))
+                        .flatMap(Optional::stream)
+                        .toList());
+    }
+
+    public int size() {
+        return videos.size();
+    }
+
+    /**
+     * Patches the list of the video after a change of the other one. If the changed video leaves a full list,
+     * the list is computed again, since any candidate may take the freed place. Lists the changed video doesn't enter stay as they are.
+     */
+    private void patch(Video video, Video changed) {
+        if (video == null) {
+            return;
+        }
+        Neighbour[] current = neighbours.getOrDefault(video.id(), NO_NEIGHBOURS);
+        boolean listed = Arrays.stream(current).anyMatch(neighbour -> neighbour.id() == changed.id());
+        if (listed && current.length == maxRelated) {
+            setNeighbours(video.id(), computeNeighbours(video));
+            return;
+        }
+        Neighbour candidate = videos.get(changed.id()) == changed ? new Neighbour(changed.id(), score(video, changed)) : null;
+        boolean enters = candidate != null && candidate.score() > 0
+                && (current.length < maxRelated || BY_SCORE.compare(candidate, current[current.length - 1]) < 0);
+        if (!listed && !enters) {
+            return;
+        }
+        List<Neighbour> patched = new ArrayList<>(current.length + 1);
+        for (Neighbour neighbour : current) {
+            if (neighbour.id() != changed.id()) {
+                patched.add(neighbour);
+            }
+        }
+        if (enters) {
+            patched.add(candidate);
+            patched.sort(BY_SCORE);
+        }
+        setNeighbours(video.id(), patched.stream().limit(maxRelated).toArray(Neighbour[]::new));
+    }
+
+    /**
+     * The best candidates are kept in a heap bounded by the list size, with the worst of them on top, rather than sorting all candidates.
+     */
+    private Neighbour[] computeNeighbours(Video video) {
+        PriorityQueue<Neighbour> best = new PriorityQueue<>(maxRelated + 1, BY_SCORE.reversed());
+        for (Long candidateId : relatedCandidates(video, CANDIDATES_PER_BUCKET_FACTOR * maxRelated)) {
+            Video candidate = videos.get(candidateId);
+            if (candidate.id() == video.id()) {
+                continue;
+            }
+            double score = score(video, candidate);
+            if (score > 0) {
+                best.add(new Neighbour(candidate.id(), score));
+                if (best.size() > maxRelated) {
+                    best.poll();
+                }
+            }
+        }
+        Neighbour[] related = best.toArray(NO_NEIGHBOURS);
+        Arrays.sort(related, BY_SCORE);
+        return related;
+    }
+
+    private Set<Long> relatedCandidates(Video video, int perBucket) {
+        Set<Long> candidates = new HashSet<>();
+        if (video.director() != null) {
+            candidates.addAll(byDirector.getOrDefault(video.director(), Set.of()));
+        }
+        for (String castMember : video.castMembers()) {
+            candidates.addAll(byCastMember.getOrDefault(castMember, Set.of()));
+        }
+        TreeMap<Integer, TreeSet<Video>> byYear = video.genre() == null ? null : byGenreAndYear.get(video.genre());
+        if (byYear != null) {
+            for (TreeSet<Video> bucket : byYear.subMap(video.yearOfRelease() - yearWindow, true, video.yearOfRelease() + yearWindow, true).values()) {
+                bucket.stream().limit(perBucket).forEach(candidate -> candidates.add(candidate.id()));
+            }
+        }
+        return candidates;
+    }
+
+    /**
+     * The same genre counts only within the year window, the same videos the genre and year postings yield as candidates.
+     * Similarity is weighted by the logarithm of the views, so popularity breaks ties between similar videos
+     * rather than outweighing the similarity itself.
+     */
+    private double score(Video video, Video candidate) {
+        double similarity = 0;
+        if (video.director() != null && video.director().equals(candidate.director())) {
+            similarity += DIRECTOR_WEIGHT;
+        }
+        for (String castMember : video.castMembers()) {
+            if (candidate.castMembers().contains(castMember)) {
+                similarity += CAST_MEMBER_WEIGHT;
+            }
+        }
+        int yearDistance = Math.abs(video.yearOfRelease() - candidate.yearOfRelease());
+        if (video.genre() != null && video.genre() == candidate.genre() && yearDistance <= yearWindow) {
+            similarity += GENRE_WEIGHT + YEAR_WEIGHT * (1 - (double) yearDistance / (yearWindow + 1));
+        }
+        return similarity * Math.log(Math.E + candidate.views());
+    }
+
+    private void setNeighbours(long id, Neighbour[] related) {
+        Neighbour[] previous = related == null ? neighbours.remove(id) : neighbours.put(id, related);
+        if (previous != null) {
+            for (Neighbour neighbour : previous) {
+                Set<Long> references = referencedBy.get(neighbour.id());
+                if (references != null) {
+                    references.remove(id);
+                    if (references.isEmpty()) {
+                        referencedBy.remove(neighbour.id());
+                    }
+                }
+            }
+        }
+        if (related != null) {
+            for (Neighbour neighbour : related) {
+                addReference(neighbour.id(), id);
+            }
+        }
+    }
+
+    private void addReference(long referencedId, long referencingId) {
+        referencedBy.computeIfAbsent(referencedId, ignored -> new HashSet<>()).add(referencingId);
+    }
+
+    private void addPostings(Video video) {
+        videos.put(video.id(), video);
+        if (video.director() != null) {
+            byDirector.computeIfAbsent(video.director(), ignored -> new HashSet<>()).add(video.id());
+        }
+        for (String castMember : video.castMembers()) {
+            byCastMember.computeIfAbsent(castMember, ignored -> new HashSet<>()).add(video.id());
+        }
+        if (video.genre() != null) {
+            byGenreAndYear.computeIfAbsent(video.genre(), ignored -> new TreeMap<>())
+                    .computeIfAbsent(video.yearOfRelease(), ignored -> new TreeSet<>(BY_POPULARITY))
+                    .add(video);
+        }
+    }
+
+    private void removePostings(Video video) {
+        videos.remove(video.id());
+        if (video.director() != null) {
+            removePosting(byDirector, video.director(), video.id());
+        }
+        for (String castMember : video.castMembers()) {
+            removePosting(byCastMember, castMember, video.id());
+        }
+        TreeMap<Integer, TreeSet<Video>> byYear = video.genre() == null ? null : byGenreAndYear.get(video.genre());
+        if (byYear != null) {
+            TreeSet<Video> bucket = byYear.get(video.yearOfRelease());
+            if (bucket != null && bucket.remove(video) && bucket.isEmpty()) {
+                byYear.remove(video.yearOfRelease());
+            }
+        }
+    }
+
+    private static void removePosting(Map<String, Set<Long>> postings, String key, long id) {
+        Set<Long> ids = postings.get(key);
+        if (ids != null && ids.remove(id) && ids.isEmpty()) {
+            postings.remove(key);
+        }
+    }
+
+    private static String normalize(String name) {
+        if (name == null || name.isBlank()) {
+            return null;
+        }
+        return name.trim().toLowerCase(Locale.ROOT);
+    }
+
+    private static Set<String> normalize(Collection<String> names) {
+        return names.stream().map(RelatedVideosIndex::normalize).filter(Objects::nonNull).collect(Collectors.toUnmodifiableSet());
+    }
+
+    private final class ComputeNeighboursTask extends RecursiveAction {
+        private final Video[] all;
+        private final int from;
+        private final int to;
+
+        private ComputeNeighboursTask(Video[] all, int from, int to) {
+            this.all = all;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= SEQUENTIAL_THRESHOLD) {
+                for (int i = from; i < to; i++) {
+                    neighbours.put(all[i].id(), computeNeighbours(all[i]));
+                }
+                return;
+            }
+            int middle = (from + to) >>> 1;
+            invokeAll(new ComputeNeighboursTask(all, from, middle), new ComputeNeighboursTask(all, middle, to));
+        }
+    }
+
+    private record Video(long id, String title, String director, Set<String> castMembers, Genre genre, int yearOfRelease, int views) {
+    }
+
+    private record Neighbour(long id, double score) {
+    }
+}
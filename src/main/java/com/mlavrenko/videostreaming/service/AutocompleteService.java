@@ -0,0 +1,261 @@
+package com.mlavrenko.videostreaming.service;
+
+import com.mlavrenko.videostreaming.config.AutocompleteProperties;
+import com.mlavrenko.videostreaming.domain.SuggestionType;
+import com.mlavrenko.videostreaming.dto.AutocompleteSuggestionDto;
+import com.mlavrenko.videostreaming.dto.VideoSearchTermsDto;
+import com.mlavrenko.videostreaming.repository.VideoMetadataRepository;
+import com.mlavrenko.videostreaming.search.PrefixIndex;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.util.StringUtils;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * Suggests titles, directors and cast members for a search box on every keystroke, from an in-memory {@link PrefixIndex},
+ * so typing never reaches the database. Every word of a name is a key, so "knight" suggests "The Dark Knight",
+ * and matching ignores case and accents. Titles are ranked by their views, people by the total views of their videos.
+ * The index is built at startup, updated on publish, update and delete, and periodically reconciled with the database,
+ * which also refreshes the view counts.
+ */
+@Service
+public class AutocompleteService {
+    private static final Pattern DIACRITICS = Pattern.compile("\\p{M}+");
+    private static final Pattern SEPARATORS = Pattern.compile("[^\\p{L}\\p{N}]+");
+    private final VideoMetadataRepository videoMetadataRepository;
+    private final AutocompleteProperties autocompleteProperties;
+    private final PrefixIndex prefixIndex;
+    private final Map<Integer, Suggestion> suggestionsById = new ConcurrentHashMap<>();
+    private final Map<String, Suggestion> suggestionsByName = new HashMap<>();
+    private final Map<Long, IndexedVideo> indexedVideos = new HashMap<>();
+    private int nextSuggestionId;
+    private Map<Long, VideoSearchTermsDto> updatesDuringRefresh;
+
+    public AutocompleteService(VideoMetadataRepository videoMetadataRepository, AutocompleteProperties autocompleteProperties) {
+        this.videoMetadataRepository = videoMetadataRepository;
+        this.autocompleteProperties = autocompleteProperties;
+        this.prefixIndex = new PrefixIndex(autocompleteProperties.maxSuggestions());
+    }
+
+    public List<AutocompleteSuggestionDto> suggest(String prefix, int limit) {
+        String normalizedPrefix = normalize(prefix);
+        if (normalizedPrefix.isEmpty()) {
+            return List.of();
+        }
+        return Arrays.stream(prefixIndex.search(normalizedPrefix, Math.clamp(limit, 0, autocompleteProperties.maxSuggestions())))
+                .mapToObj(suggestionsById::get)
+                .filter(Objects::nonNull)
+                .map(suggestion -> new AutocompleteSuggestionDto(suggestion.text, suggestion.type, suggestion.videoId))
+                .toList();
+    }
+
+    public synchronized void index(VideoSearchTermsDto video) {
+        Map<Integer, Long> scoreUpdates = new HashMap<>();
+        apply(video, scoreUpdates);
+        prefixIndex.updateScores(scoreUpdates);
+        if (updatesDuringRefresh != null) {
+            updatesDuringRefresh.put(video.id(), video);
+        }
+    }
+
+    public synchronized void remove(Long videoId) {
+        Map<Integer, Long> scoreUpdates = new HashMap<>();
+        unindex(videoId, scoreUpdates);
+        prefixIndex.updateScores(scoreUpdates);
+        if (updatesDuringRefresh != null) {
+            updatesDuringRefresh.put(videoId, null);
+        }
+    }
+
+    /**
+     * Videos are read from the primary, a lagging replica would miss recently published videos and they would be removed.
+     * Updates made from the start of the read are recorded and replayed after the reconciliation,
+     * as the read may not see them, e.g. when they commit while shards are read one after another.
+     */
+    @Transactional
+    @Scheduled(fixedDelayString = "${autocomplete.refresh-interval}", initialDelayString = "${autocomplete.refresh-interval}")
+    public void refresh() {
+        synchronized (this) {
+            updatesDuringRefresh = new HashMap<>();
+        }
+        try (Stream<VideoSearchTermsDto> videos = videoMetadataRepository.streamAllSearchTerms()) {
+            load(videos);
+        } finally {
+            synchronized (this) {
+                updatesDuringRefresh = null;
+            }
+        }
+    }
+
+    /**
+     * Reconciles the index with the given videos, which are all the videos of the catalogue, videos missing from them are removed.
+     * Updates recorded during a refresh win over the given videos, a removed video is recorded without terms.
+     */
+    public synchronized void load(Stream<VideoSearchTermsDto> videos) {
+        Map<Integer, Long> scoreUpdates = new HashMap<>();
+        Set<Long> removedVideoIds = new HashSet<>(indexedVideos.keySet());
+        videos.forEach(video -> {
+            removedVideoIds.remove(video.id());
+            apply(video, scoreUpdates);
+        });
+        removedVideoIds.forEach(videoId -> unindex(videoId, scoreUpdates));
+        if (updatesDuringRefresh != null) {
+            updatesDuringRefresh.forEach((videoId, video) -> {
+                if (video != null) {
+                    apply(video, scoreUpdates);
+                } else {
+                    unindex(videoId, scoreUpdates);
+                }
+            });
+            updatesDuringRefresh.clear();
+        }
+        prefixIndex.updateScores(scoreUpdates);
+    }
+
+    /**
+     * When only the view count has changed, which is the usual case on refresh, only scores are updated and the keys stay as they are.
+     */
+    private void apply(VideoSearchTermsDto video, Map<Integer, Long> scoreUpdates) {
+        IndexedVideo indexed = indexedVideos.get(video.id());
+        if (indexed != null && indexed.hasSameTerms(video)) {
+            long delta = video.views() - indexed.views;
+            if (delta != 0) {
+                indexed.views = video.views();
+                indexed.suggestions.forEach(suggestion -> rescore(suggestion, delta, scoreUpdates));
+            }
+            return;
+        }
+        unindex(video.id(), scoreUpdates);
+        List<Suggestion> suggestions = new ArrayList<>();
+        if (StringUtils.hasText(video.title())) {
+            suggestions.add(reference(SuggestionType.TITLE, video.title().trim(), video.id(), video.views(), scoreUpdates));
+        }
+        if (StringUtils.hasText(video.director())) {
+            suggestions.add(reference(SuggestionType.DIRECTOR, video.director().trim(), null, video.views(), scoreUpdates));
+        }
+        for (String castMember : StringUtils.commaDelimitedListToStringArray(video.castMembers())) {
+            if (StringUtils.hasText(castMember)) {
+                suggestions.add(reference(SuggestionType.CAST_MEMBER, castMember.trim(), null, video.views(), scoreUpdates));
+            }
+        }
+        indexedVideos.put(video.id(), new IndexedVideo(video.title(), video.director(), video.castMembers(), video.views(), suggestions));
+    }
+
+    private void unindex(Long videoId, Map<Integer, Long> scoreUpdates) {
+        IndexedVideo indexed = indexedVideos.remove(videoId);
+        if (indexed == null) {
+            return;
+        }
+        for (Suggestion suggestion : indexed.suggestions) {
+            if (--suggestion.references == 0) {
+                suggestionsByName.remove(suggestion.name);
+                suggestionsById.remove(suggestion.id);
+                scoreUpdates.remove(suggestion.id);
+                prefixIndex.remove(suggestion.id);
+            } else {
+                rescore(suggestion, -indexed.views, scoreUpdates);
+            }
+        }
+    }
+
+    /**
+     * Titles are suggested per video, while a person is a single suggestion shared by all of their videos.
+     */
+    private Suggestion reference(SuggestionType type, String text, Long videoId, long views, Map<Integer, Long> scoreUpdates) {
+        String normalizedText = normalize(text);
+        String name = type + ":" + (videoId != null ? videoId : normalizedText);
+        Suggestion suggestion = suggestionsByName.get(name);
+        if (suggestion == null) {
+            suggestion = new Suggestion(nextSuggestionId++, name, type, text, videoId);
+            suggestion.score = views;
+            suggestion.references = 1;
+            suggestionsByName.put(name, suggestion);
+            suggestionsById.put(suggestion.id, suggestion);
+            prefixIndex.put(suggestion.id, views, wordSuffixes(normalizedText));
+        } else {
+            suggestion.references++;
+            rescore(suggestion, views, scoreUpdates);
+        }
+        return suggestion;
+    }
+
+    private static void rescore(Suggestion suggestion, long delta, Map<Integer, Long> scoreUpdates) {
+        suggestion.score += delta;
+        scoreUpdates.put(suggestion.id, suggestion.score);
+    }
+
+    /**
+     * "the dark knight" is found by "the", "dark" and "knight", and by prefixes of the remaining phrase, e.g. "dark kn".
+     */
+    private static List<String> wordSuffixes(String normalizedText) {
+        List<String> keys = new ArrayList<>();
+        if (normalizedText.isEmpty()) {
+            return keys;
+        }
+        keys.add(normalizedText);
+        for (int i = normalizedText.indexOf(' '); i >= 0; i = normalizedText.indexOf(' ', i + 1)) {
+            keys.add(normalizedText.substring(i + 1));
+        }
+        return keys;
+    }
+
+    static String normalize(String text) {
+        if (text == null) {
+            return "";
+        }
+        String withoutDiacritics = DIACRITICS.matcher(Normalizer.normalize(text, Normalizer.Form.NFD)).replaceAll("");
+        return SEPARATORS.matcher(withoutDiacritics.toLowerCase(Locale.ROOT)).replaceAll(" ").trim();
+    }
+
+    private static final class Suggestion {
+        private final int id;
+        private final String name;
+        private final SuggestionType type;
+        private final String text;
+        private final Long videoId;
+        private long score;
+        private int references;
+
+        private Suggestion(int id, String name, SuggestionType type, String text, Long videoId) {
+            this.id = id;
+            this.name = name;
+            this.type = type;
+            this.text = text;
+            this.videoId = videoId;
+        }
+    }
+
+    private static final class IndexedVideo {
+        private final String title;
+        private final String director;
+        private final String castMembers;
+        private final List<Suggestion> suggestions;
+        private long views;
+
+        private IndexedVideo(String title, String director, String castMembers, long views, List<Suggestion> suggestions) {
+            this.title = title;
+            this.director = director;
+            this.castMembers = castMembers;
+            this.views = views;
+            this.suggestions = suggestions;
+        }
+
+        private boolean hasSameTerms(VideoSearchTermsDto video) {
+            return Objects.equals(title, video.title()) && Objects.equals(director, video.director()) && Objects.equals(castMembers, video.castMembers());
+        }
+    }
+}
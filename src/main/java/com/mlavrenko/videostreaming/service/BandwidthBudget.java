@@ -0,0 +1,39 @@
+package com.mlavrenko.videostreaming.service;
+
+import java.util.function.LongSupplier;
+
+/**
+ * Token bucket of bytes per second with a burst of one second.
+ * Since the size of a stream is known only after it's read, bytes are consumed afterwards and the balance may go negative,
+ * in which case new throttled streams wait until the debt is paid off.
+ */
+class BandwidthBudget {
+    private static final long NANOS_PER_SECOND = 1_000_000_000L;
+    private final long bytesPerSecond;
+    private final LongSupplier nanoClock;
+    private double availableBytes;
+    private long lastRefillNanos;
+
+    BandwidthBudget(long bytesPerSecond, LongSupplier nanoClock) {
+        this.bytesPerSecond = bytesPerSecond;
+        this.nanoClock = nanoClock;
+        this.availableBytes = bytesPerSecond;
+        this.lastRefillNanos = nanoClock.getAsLong();
+    }
+
+    synchronized long nanosUntilAvailable() {
+        refill();
+        return availableBytes > 0 ? 0 : (long) Math.ceil(-availableBytes * NANOS_PER_SECOND / bytesPerSecond) + 1;
+    }
+
+    synchronized void consume(long bytes) {
+        refill();
+        availableBytes -= bytes;
+    }
+
+    private void refill() {
+        long now = nanoClock.getAsLong();
+        availableBytes = Math.min(bytesPerSecond, availableBytes + (double) (now - lastRefillNanos) * bytesPerSecond / NANOS_PER_SECOND);
+        lastRefillNanos = now;
+    }
+}
@@ -0,0 +1,122 @@
+package com.mlavrenko.videostreaming.service;
+
+import com.mlavrenko.videostreaming.config.BufferPoolProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.stereotype.Component;
+
+import java.nio.ByteBuffer;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Pool of buffers used by the storage layer for reads and writes, so serving content in steady state doesn't allocate
+ * a transfer buffer per request, which is what drives the young GC frequency on streaming nodes.
+ * Buffers are grouped into power of two size classes between the min and max buffer size, a request is served from the smallest class
+ * that fits it. Idle buffers are bounded by the max pooled memory, and requests over the max buffer size get a one-off buffer.
+ * Buffers are heap-backed, because the content ends up decoded into strings, or in byte arrays written to the response, which a direct buffer would need copying to.
+ */
+@Component
+public class BufferPool {
+    private final int minSizeShift;
+    private final int maxBufferSize;
+    private final long maxPooledMemory;
+    private final boolean leakDetection;
+    private final ArrayBlockingQueue<PooledBuffer>[] freeBuffers;
+    private final AtomicLong pooledBytes = new AtomicLong();
+    private final AtomicInteger leasedBuffers = new AtomicInteger();
+    private final Map<PooledBuffer, Throwable> leaseSites = new ConcurrentHashMap<>();
+    private final Counter pooledAllocations;
+    private final Counter oversizedAllocations;
+
+    @SuppressWarnings("unchecked")
+    public BufferPool(BufferPoolProperties bufferPoolProperties, MeterRegistry meterRegistry) {
+        this.minSizeShift = ceilLog2(Math.toIntExact(bufferPoolProperties.minBufferSize().toBytes()));
+        this.maxBufferSize = 1 << ceilLog2(Math.toIntExact(bufferPoolProperties.maxBufferSize().toBytes()));
+        this.maxPooledMemory = bufferPoolProperties.maxPooledMemory().toBytes();
+        this.leakDetection = bufferPoolProperties.leakDetection();
+        this.freeBuffers = new ArrayBlockingQueue[Math.max(1, ceilLog2(maxBufferSize) - minSizeShift + 1)];
+        for (int sizeClass = 0; sizeClass < freeBuffers.length; sizeClass++) {
+            long capacity = Math.max(1, maxPooledMemory / capacityOf(sizeClass));
+            freeBuffers[sizeClass] = new ArrayBlockingQueue<>(Math.toIntExact(Math.min(capacity, Integer.MAX_VALUE)));
+        }
+        this.pooledAllocations = meterRegistry.counter("buffer.pool.allocations", "kind", "pooled");
+        this.oversizedAllocations = meterRegistry.counter("buffer.pool.allocations", "kind", "oversized");
+        Gauge.builder("buffer.pool.pooled.bytes", pooledBytes, AtomicLong::get).register(meterRegistry);
+        Gauge.builder("buffer.pool.leased", leasedBuffers, AtomicInteger::get).register(meterRegistry);
+    }
+
+    /**
+     * Leases a buffer limited to the given size, it must be closed when no longer used.
+     */
+    public PooledBuffer acquire(int size) {
+        PooledBuffer pooledBuffer;
+        if (size > maxBufferSize) {
+            oversizedAllocations.increment();
+            pooledBuffer = new PooledBuffer(this, ByteBuffer.allocate(size), -1);
+        } else {
+            int sizeClass = Math.max(0, ceilLog2(size) - minSizeShift);
+            pooledBuffer = freeBuffers[sizeClass].poll();
+            if (pooledBuffer == null) {
+                pooledAllocations.increment();
+                pooledBuffer = new PooledBuffer(this, ByteBuffer.allocate(capacityOf(sizeClass)), sizeClass);
+            } else {
+                pooledBytes.addAndGet(-capacityOf(sizeClass));
+            }
+        }
+        pooledBuffer.lease(size);
+        leasedBuffers.incrementAndGet();
+        if (leakDetection) {
+            leaseSites.put(pooledBuffer, new Throwable("Buffer of " + size + " bytes acquired here"));
+        }
+        return pooledBuffer;
+    }
+
+    public long getPooledBytes() {
+        return pooledBytes.get();
+    }
+
+    public int getLeasedBuffers() {
+        return leasedBuffers.get();
+    }
+
+    /**
+     * Fails when any buffer is still leased, with the places where leaked buffers were acquired if leak detection is enabled.
+     */
+    public void checkLeaks() {
+        int leased = leasedBuffers.get();
+        if (leased == 0) {
+            return;
+        }
+        IllegalStateException leak = new IllegalStateException(leased + " buffer(s) were not released");
+        leaseSites.values().forEach(leak::addSuppressed);
+        throw leak;
+    }
+
+    void release(PooledBuffer pooledBuffer) {
+        leasedBuffers.decrementAndGet();
+        if (leakDetection) {
+            leaseSites.remove(pooledBuffer);
+        }
+        int sizeClass = pooledBuffer.sizeClass();
+        if (sizeClass < 0) {
+            return;
+        }
+        int capacity = capacityOf(sizeClass);
+        if (pooledBytes.addAndGet(capacity) > maxPooledMemory || !freeBuffers[sizeClass].offer(pooledBuffer)) {
+            pooledBytes.addAndGet(-capacity);
+        }
+    }
+
+    private int capacityOf(int sizeClass) {
+        return 1 << (minSizeShift + sizeClass);
+    }
+
+    private static int ceilLog2(int value) {
+        return value <= 1 ? 0 : Integer.SIZE - Integer.numberOfLeadingZeros(value - 1);
+    }
+}
@@ -0,0 +1,131 @@
+package com.mlavrenko.videostreaming.service;
+
+import com.mlavrenko.videostreaming.config.CatalogueListingProperties;
+import com.mlavrenko.videostreaming.dto.VideoCatalogueTermsDto;
+import com.mlavrenko.videostreaming.dto.VideoMetadataViewDto;
+import com.mlavrenko.videostreaming.repository.VideoMetadataRepository;
+import com.mlavrenko.videostreaming.search.ColumnarCatalogue;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionOperations;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Supplier;
+
+/**
+ * Serves the video listing from an in-memory {@link ColumnarCatalogue}, so listing and paging the catalogue doesn't touch the database.
+ * The catalogue is loaded at startup, updated on publish, update and delete, and periodically rebuilt from the database,
+ * so changes made by other nodes show up in the listing of this node after the rebuild interval at the latest.
+ * A rebuild fills a new catalogue and swaps it in, updates made from the start of the read are recorded and replayed onto it before the swap,
+ * as with the facet index.
+ * Until the catalogue is loaded, and for sort orders it doesn't support, the listing is queried from the database.
+ */
+@Service
+public class CatalogueListingService {
+    private final VideoMetadataRepository videoMetadataRepository;
+    private final CatalogueListingProperties catalogueListingProperties;
+    private final Counter memoryListings;
+    private final Counter databaseListings;
+    private final TransactionOperations transactionOperations;
+    private volatile ColumnarCatalogue catalogue;
+    private Map<Long, VideoCatalogueTermsDto> updatesDuringRebuild;
+
+    public CatalogueListingService(VideoMetadataRepository videoMetadataRepository, CatalogueListingProperties catalogueListingProperties,
+                                   TransactionOperations transactionOperations, MeterRegistry meterRegistry) {
+        this.videoMetadataRepository = videoMetadataRepository;
+        this.catalogueListingProperties = catalogueListingProperties;
+        this.transactionOperations = transactionOperations;
+        this.memoryListings = meterRegistry.counter("catalogue.listings", "source", "memory");
+        this.databaseListings = meterRegistry.counter("catalogue.listings", "source", "database");
+    }
+
+    /**
+     * @return the page, or empty if it has to be queried from the database
+     */
+    public Optional<Page<VideoMetadataViewDto>> find(String title, String director, Integer yearOfRelease, Pageable pageable) {
+        ColumnarCatalogue current = catalogue;
+        if (current == null || !ColumnarCatalogue.supports(pageable.getSort())) {
+            databaseListings.increment();
+            return Optional.empty();
+        }
+        memoryListings.increment();
+        return Optional.of(current.find(title, director, yearOfRelease, pageable));
+    }
+
+    public synchronized void index(VideoCatalogueTermsDto video) {
+        ColumnarCatalogue current = catalogue;
+        if (current != null) {
+            put(current, video);
+        }
+        if (updatesDuringRebuild != null) {
+            updatesDuringRebuild.put(video.id(), video);
+        }
+    }
+
+    public synchronized void remove(Long videoId) {
+        ColumnarCatalogue current = catalogue;
+        if (current != null) {
+            current.remove(videoId);
+        }
+        if (updatesDuringRebuild != null) {
+            updatesDuringRebuild.put(videoId, null);
+        }
+    }
+
+    /**
+     * Read in a transaction of its own, so the connection is released before the catalogue is filled.
+     * It's read from the primary, a lagging replica would miss recently published videos.
+     */
+    @Scheduled(fixedDelayString = "${catalogue-listing.rebuild-interval}", initialDelayString = "${catalogue-listing.rebuild-interval}")
+    public void rebuild() {
+        if (catalogueListingProperties.enabled()) {
+            rebuild(() -> transactionOperations.execute(status -> videoMetadataRepository.findAllCatalogueTerms()));
+        }
+    }
+
+    public void load(Collection<VideoCatalogueTermsDto> videos) {
+        if (catalogueListingProperties.enabled()) {
+            rebuild(() -> videos);
+        }
+    }
+
+    /**
+     * Updates recorded during the rebuild win over the read videos, a removed video is recorded without terms.
+     */
+    private void rebuild(Supplier<? extends Collection<VideoCatalogueTermsDto>> catalogueTerms) {
+        synchronized (this) {
+            updatesDuringRebuild = new HashMap<>();
+        }
+        try {
+            Collection<VideoCatalogueTermsDto> videos = catalogueTerms.get();
+            synchronized (this) {
+                ColumnarCatalogue rebuilt = new ColumnarCatalogue();
+                videos.forEach(video -> put(rebuilt, video));
+                updatesDuringRebuild.forEach((videoId, video) -> {
+                    if (video != null) {
+                        put(rebuilt, video);
+                    } else {
+                        rebuilt.remove(videoId);
+                    }
+                });
+                catalogue = rebuilt;
+            }
+        } finally {
+            synchronized (this) {
+                updatesDuringRebuild = null;
+            }
+        }
+    }
+
+    private static void put(ColumnarCatalogue catalogue, VideoCatalogueTermsDto video) {
+        catalogue.put(video.id(), video.title(), video.director(), VideoService.getMainActor(video.castMembers()), video.genre(),
+                video.yearOfRelease(), video.runningTime());
+    }
+}
@@ -0,0 +1,134 @@
+package com.mlavrenko.videostreaming.service;
+
+import com.mlavrenko.videostreaming.config.CatalogueSnapshotProperties;
+import com.mlavrenko.videostreaming.dto.VideoCatalogueTermsDto;
+import com.mlavrenko.videostreaming.dto.VideoFacetTermsDto;
+import com.mlavrenko.videostreaming.dto.VideoRelationTermsDto;
+import com.mlavrenko.videostreaming.dto.VideoSearchTermsDto;
+import com.mlavrenko.videostreaming.repository.VideoMetadataRepository;
+import com.mlavrenko.videostreaming.snapshot.CatalogueSnapshot;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationStartedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionOperations;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+
+/**
+ * Fills the id filter, autocomplete, facets, related videos and the listing catalogue at startup, before the node reports it's ready for traffic,
+ * from a single read of the catalogue instead of a full table scan per structure.
+ * The catalogue is loaded from a snapshot on local disk, and only rows modified since its watermark are read from the database,
+ * so a restarted node is warm in seconds. Without a snapshot the catalogue is read in full, and a snapshot is written for the next start.
+ * The snapshot is brought up to date periodically the same way, from the previous snapshot and the changes since, so writing it
+ * doesn't scan the table either. View counts in the snapshot may be stale, the periodic rebuilds of the structures refresh them.
+ * Everything is read from the primary, a lagging replica would miss recent changes for good once the watermark has moved past them.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class CatalogueSnapshotService {
+    private final VideoMetadataRepository videoMetadataRepository;
+    private final VideoIdFilter videoIdFilter;
+    private final AutocompleteService autocompleteService;
+    private final FacetService facetService;
+    private final RelatedVideosService relatedVideosService;
+    private final CatalogueListingService catalogueListingService;
+    private final CatalogueSnapshotProperties catalogueSnapshotProperties;
+    private final TransactionOperations transactionOperations;
+
+    @EventListener(ApplicationStartedEvent.class)
+    public void warmUp() {
+        long start = System.nanoTime();
+        Optional<CatalogueSnapshot> snapshot = catalogueSnapshotProperties.enabled() ? readSnapshot() : Optional.empty();
+        CatalogueSnapshot catalogue = snapshot.map(this::catchUp).orElseGet(this::readCatalogue);
+        load(catalogue.videos());
+        log.info("Loaded catalogue of {} videos {} in {} ms", catalogue.videos().size(),
+                snapshot.isPresent() ? "from snapshot" : "from database", (System.nanoTime() - start) / 1_000_000);
+        if (catalogueSnapshotProperties.enabled()) {
+            writeSnapshot(catalogue);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${catalogue-snapshot.write-interval}", initialDelayString = "${catalogue-snapshot.write-interval}")
+    public void refreshSnapshot() {
+        if (catalogueSnapshotProperties.enabled()) {
+            writeSnapshot(readSnapshot().map(this::catchUp).orElseGet(this::readCatalogue));
+        }
+    }
+
+    /**
+     * The new watermark is taken before the changes are read, so changes made while they're read are read again next time.
+     */
+    private CatalogueSnapshot catchUp(CatalogueSnapshot snapshot) {
+        Instant watermark = Instant.now();
+        Instant since = snapshot.watermark().minus(catalogueSnapshotProperties.catchUpOverlap());
+        return transactionOperations.execute(status -> new CatalogueSnapshot(watermark, merge(snapshot.videos(),
+                videoMetadataRepository.findCatalogueTermsModifiedSince(since), videoMetadataRepository.findIdsDeletedSince(since))));
+    }
+
+    private CatalogueSnapshot readCatalogue() {
+        Instant watermark = Instant.now();
+        return transactionOperations.execute(status ->
+                new CatalogueSnapshot(watermark, merge(videoMetadataRepository.findAllCatalogueTerms(), List.of(), List.of())));
+    }
+
+    /**
+     * @return videos ordered by id, with modified videos replacing their previous versions and deleted ones left out
+     */
+    static List<VideoCatalogueTermsDto> merge(List<VideoCatalogueTermsDto> videos, List<VideoCatalogueTermsDto> modified,
+                                              Collection<Long> deletedIds) {
+        Map<Long, VideoCatalogueTermsDto> merged = new TreeMap<>();
+        videos.forEach(video -> merged.put(video.id(), video));
+        modified.forEach(video -> merged.put(video.id(), video));
+        deletedIds.forEach(merged::remove);
+        return List.copyOf(merged.values());
+    }
+
+    private void load(List<VideoCatalogueTermsDto> videos) {
+        videoIdFilter.load(videos.stream().map(VideoCatalogueTermsDto::id).toList());
+        autocompleteService.load(videos.stream()
+                .map(video -> new VideoSearchTermsDto(video.id(), video.title(), video.director(), video.castMembers(), video.views())));
+        facetService.load(videos.stream()
+                .map(video -> new VideoFacetTermsDto(video.id(), video.title(), video.director(), video.genre(), video.yearOfRelease())));
+        relatedVideosService.load(videos.stream()
+                .map(video -> new VideoRelationTermsDto(video.id(), video.title(), video.director(), video.castMembers(), video.genre(),
+                        video.yearOfRelease(), video.views()))
+                .toList());
+        catalogueListingService.load(videos);
+    }
+
+    /**
+     * A missing or unreadable snapshot falls back to reading the catalogue in full, which rewrites the snapshot.
+     */
+    private Optional<CatalogueSnapshot> readSnapshot() {
+        Path path = Path.of(catalogueSnapshotProperties.location());
+        if (!Files.exists(path)) {
+            return Optional.empty();
+        }
+        try {
+            return Optional.of(CatalogueSnapshot.read(path));
+        } catch (IOException e) {
+            log.warn("Failed to read catalogue snapshot, reading the catalogue from the database", e);
+            return Optional.empty();
+        }
+    }
+
+    private void writeSnapshot(CatalogueSnapshot catalogue) {
+        try {
+            catalogue.write(Path.of(catalogueSnapshotProperties.location()));
+        } catch (IOException e) {
+            log.warn("Failed to write catalogue snapshot", e);
+        }
+    }
+}
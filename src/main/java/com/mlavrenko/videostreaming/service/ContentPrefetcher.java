@@ -0,0 +1,240 @@
+package com.mlavrenko.videostreaming.service;
+
+import com.mlavrenko.videostreaming.config.ContentPrefetchProperties;
+import com.mlavrenko.videostreaming.jfr.CacheAccessEvent;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Preview page is almost always followed by playing the same video, so serving a preview warms the head of the full content
+ * in memory, and playing it streams only the remainder from the storage.
+ * Prefetching runs on a small pool with a bounded queue, so it never competes with request threads: prefetches that don't fit
+ * the queue are dropped, and queued prefetches are cancelled together with the cache when the heap is running low.
+ * Hits and misses are published as metrics, so the prefetch size can be tuned by the hit rate.
+ * A prefetch takes the current generation when it starts reading, and every invalidation stamps the location with a newer one,
+ * so a head read before the content was replaced is dropped instead of being cached after the invalidation.
+ */
+@Slf4j
+@Service
+public class ContentPrefetcher {
+    private final VideoContentStorageService videoContentStorageService;
+    private final ContentPrefetchProperties contentPrefetchProperties;
+    private final ThreadPoolExecutor executor;
+    private final Set<String> inFlight = ConcurrentHashMap.newKeySet();
+    private final LinkedHashMap<String, PrefetchedHead> cache = new LinkedHashMap<>(16, 0.75f, true);
+    private final Counter hits;
+    private final Counter misses;
+    private final Counter dropped;
+    private final Counter cancelled;
+    private final Counter stale;
+    private final Map<String, Long> invalidations = new HashMap<>();
+    private final Set<PrefetchTask> running = new HashSet<>();
+    private long generation;
+    private long cachedBytes;
+
+    public ContentPrefetcher(VideoContentStorageService videoContentStorageService, ContentPrefetchProperties contentPrefetchProperties,
+                             MeterRegistry meterRegistry) {
+        this.videoContentStorageService = videoContentStorageService;
+        this.contentPrefetchProperties = contentPrefetchProperties;
+        this.executor = new ThreadPoolExecutor(contentPrefetchProperties.workers(), contentPrefetchProperties.workers(), 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(contentPrefetchProperties.queueCapacity()), Thread.ofPlatform().daemon().name("content-prefetch-", 0).factory(),
+                (task, pool) -> onDropped(task));
+        this.hits = meterRegistry.counter("content.prefetch.requests", "result", "hit");
+        this.misses = meterRegistry.counter("content.prefetch.requests", "result", "miss");
+        this.dropped = meterRegistry.counter("content.prefetch.dropped");
+        this.cancelled = meterRegistry.counter("content.prefetch.cancelled");
+        this.stale = meterRegistry.counter("content.prefetch.stale");
+        Gauge.builder("content.prefetch.queue.depth", executor, pool -> pool.getQueue().size()).register(meterRegistry);
+        Gauge.builder("content.prefetch.cached.bytes", this, ContentPrefetcher::getCachedBytes).register(meterRegistry);
+    }
+
+    public void prefetch(String videoLocation) {
+        if (!contentPrefetchProperties.enabled() || videoLocation == null || isCached(videoLocation) || !inFlight.add(videoLocation)) {
+            return;
+        }
+        executor.execute(new PrefetchTask(videoLocation));
+    }
+
+    /**
+     * Loads the content, which streams the prefetched head from memory and reads only the remainder from the storage.
+     * Content that fits the prefetched head entirely is served from memory only.
+     */
+    public ContentResource load(String videoLocation) throws IOException {
+        CacheAccessEvent event = CacheAccessEvent.begin("content-prefetch", videoLocation);
+        try {
+            PrefetchedHead head = getCached(videoLocation);
+            event.setHit(head != null);
+            if (head == null) {
+                misses.increment();
+                return videoContentStorageService.load(videoLocation);
+            }
+            hits.increment();
+            byte[] headContent = head.content();
+            if (headContent.length < contentPrefetchProperties.size().toBytes()) {
+                return ContentResource.of(videoLocation, headContent);
+            }
+            ContentResource content = videoContentStorageService.load(videoLocation);
+            return new ContentResource(videoLocation, content.contentLength()) {
+                @Override
+                protected InputStream open(long offset) throws IOException {
+                    if (offset >= headContent.length) {
+                        return content.open(offset);
+                    }
+                    return new SequenceInputStream(new ByteArrayInputStream(headContent, (int) offset, headContent.length - (int) offset),
+                            content.open(headContent.length));
+                }
+            };
+        } finally {
+            event.commit();
+        }
+    }
+
+    public synchronized void invalidate(String videoLocation) {
+        evict(videoLocation);
+        invalidations.put(videoLocation, ++generation);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        executor.shutdownNow();
+    }
+
+    synchronized long getCachedBytes() {
+        return cachedBytes;
+    }
+
+    private boolean isCached(String videoLocation) {
+        return getCached(videoLocation) != null;
+    }
+
+    private synchronized PrefetchedHead getCached(String videoLocation) {
+        PrefetchedHead head = cache.get(videoLocation);
+        if (head != null && System.nanoTime() - head.prefetchedAtNanos() > contentPrefetchProperties.ttl().toNanos()) {
+            evict(videoLocation);
+            return null;
+        }
+        return head;
+    }
+
+    /**
+     * Dropped when the location was invalidated after the prefetch started, as the content read might be the replaced one.
+     */
+    private synchronized void put(String videoLocation, byte[] content, long startGeneration) {
+        if (invalidations.getOrDefault(videoLocation, 0L) > startGeneration) {
+            stale.increment();
+            return;
+        }
+        evict(videoLocation);
+        cache.put(videoLocation, new PrefetchedHead(content, System.nanoTime()));
+        cachedBytes += content.length;
+        Iterator<Map.Entry<String, PrefetchedHead>> eldest = cache.entrySet().iterator();
+        while (cachedBytes > contentPrefetchProperties.maxCacheSize().toBytes() && eldest.hasNext()) {
+            cachedBytes -= eldest.next().getValue().content().length;
+            eldest.remove();
+        }
+    }
+
+    private void evict(String videoLocation) {
+        PrefetchedHead removed = cache.remove(videoLocation);
+        if (removed != null) {
+            cachedBytes -= removed.content().length;
+        }
+    }
+
+    private synchronized void start(PrefetchTask task) {
+        task.startGeneration = generation;
+        running.add(task);
+    }
+
+    /**
+     * Invalidations are kept only while a prefetch that started before them is running, so they don't pile up for every location replaced.
+     */
+    private synchronized void finish(PrefetchTask task) {
+        running.remove(task);
+        long oldestRunning = running.stream().mapToLong(PrefetchTask::startGeneration).min().orElse(generation);
+        invalidations.values().removeIf(invalidatedAt -> invalidatedAt <= oldestRunning);
+    }
+
+    private boolean isMemoryTight() {
+        Runtime runtime = Runtime.getRuntime();
+        long available = runtime.maxMemory() - (runtime.totalMemory() - runtime.freeMemory());
+        return available < contentPrefetchProperties.minFreeHeap().toBytes();
+    }
+
+    private void cancelAll() {
+        int queued = executor.getQueue().size();
+        executor.getQueue().clear();
+        inFlight.clear();
+        synchronized (this) {
+            cache.clear();
+            cachedBytes = 0;
+        }
+        cancelled.increment(queued + 1);
+    }
+
+    private void onDropped(Runnable task) {
+        if (task instanceof PrefetchTask prefetchTask) {
+            inFlight.remove(prefetchTask.videoLocation());
+        }
+        dropped.increment();
+    }
+
+    private record PrefetchedHead(byte[] content, long prefetchedAtNanos) {
+    }
+
+    private class PrefetchTask implements Runnable {
+        private final String videoLocation;
+        private long startGeneration;
+
+        PrefetchTask(String videoLocation) {
+            this.videoLocation = videoLocation;
+        }
+
+        String videoLocation() {
+            return videoLocation;
+        }
+
+        long startGeneration() {
+            return startGeneration;
+        }
+
+        @Override
+        public void run() {
+            try {
+                if (isMemoryTight()) {
+                    cancelAll();
+                    return;
+                }
+                start(this);
+                try {
+                    put(videoLocation, videoContentStorageService.loadRange(videoLocation, 0, contentPrefetchProperties.size().toBytes()), startGeneration);
+                } finally {
+                    finish(this);
+                }
+            } catch (Exception e) {
+                log.debug("Failed to prefetch content at {}", videoLocation, e);
+            } finally {
+                inFlight.remove(videoLocation);
+            }
+        }
+    }
+}
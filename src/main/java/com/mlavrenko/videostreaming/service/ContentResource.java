@@ -0,0 +1,117 @@
+package com.mlavrenko.videostreaming.service;
+
+import org.springframework.core.io.AbstractResource;
+
+import java.io.ByteArrayInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Content read from the storage only while it's written to the client, in chunks, so it's never held in memory as a whole, whatever its size.
+ * A stream opens the content at the position it's first read from, so skipping to a requested range, as range responses do,
+ * reads nothing before the range. The length is fixed when the resource is created, and content ending earlier fails the read.
+ */
+public abstract class ContentResource extends AbstractResource {
+    private final String videoLocation;
+    private final long length;
+
+    protected ContentResource(String videoLocation, long length) {
+        this.videoLocation = videoLocation;
+        this.length = length;
+    }
+
+    /**
+     * Content held in memory, e.g. a prefetched head, which is shared and must not be modified.
+     */
+    static ContentResource of(String videoLocation, byte[] content) {
+        return new ContentResource(videoLocation, content.length) {
+            @Override
+            protected InputStream open(long offset) {
+                return new ByteArrayInputStream(content, (int) offset, content.length - (int) offset);
+            }
+        };
+    }
+
+    /**
+     * Opens the content from the offset to its end.
+     */
+    protected abstract InputStream open(long offset) throws IOException;
+
+    @Override
+    public boolean exists() {
+        return true;
+    }
+
+    @Override
+    public long contentLength() {
+        return length;
+    }
+
+    @Override
+    public InputStream getInputStream() {
+        return new ContentInputStream();
+    }
+
+    @Override
+    public String getDescription() {
+        return "Video content [" + videoLocation + "]";
+    }
+
+    private class ContentInputStream extends InputStream {
+        private InputStream content;
+        private long position;
+
+        @Override
+        public int read() throws IOException {
+            byte[] single = new byte[1];
+            return read(single, 0, 1) == -1 ? -1 : single[0] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] target, int offset, int maxLength) throws IOException {
+            if (position >= length) {
+                return -1;
+            }
+            if (maxLength == 0) {
+                return 0;
+            }
+            if (content == null) {
+                content = open(position);
+            }
+            int read = content.read(target, offset, (int) Math.min(maxLength, length - position));
+            if (read == -1) {
+                throw new EOFException("Expected " + length + " bytes of " + videoLocation + ", but it ended at " + position);
+            }
+            position += read;
+            return read;
+        }
+
+        /**
+         * Skipping closes the content opened, so the next read opens it again at the new position instead of reading through the skipped bytes.
+         */
+        @Override
+        public long skip(long count) throws IOException {
+            long skipped = Math.max(0, Math.min(count, length - position));
+            if (skipped > 0) {
+                close();
+                position += skipped;
+            }
+            return skipped;
+        }
+
+        @Override
+        public int available() throws IOException {
+            return content == null ? 0 : content.available();
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (content != null) {
+                InputStream opened = content;
+                content = null;
+                opened.close();
+            }
+        }
+    }
+}
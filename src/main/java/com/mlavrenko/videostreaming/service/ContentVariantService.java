@@ -0,0 +1,252 @@
+package com.mlavrenko.videostreaming.service;
+
+import com.mlavrenko.videostreaming.config.ContentVariantProperties;
+import com.mlavrenko.videostreaming.dto.EncodedContentDto;
+import com.mlavrenko.videostreaming.jfr.CacheAccessEvent;
+import com.mlavrenko.videostreaming.media.ContentEncoding;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Keeps precompressed variants of the content, so content is compressed once instead of on every request that accepts a compressed encoding.
+ * A variant is generated on the first request accepting its encoding and stored in a local directory, named after the location of the content,
+ * so it's found without a database lookup. The compression ratio of every variant is recorded, and when the variant isn't smaller than
+ * the configured share of the content, the content is marked as not worth compressing in that encoding instead, and served as is from then on.
+ * Variants are derived from the content, so they're invalidated wherever content is replaced at the same location.
+ * Content is encoded while it's streamed from the storage into the variant file, and a variant is served from its file, so neither is held in memory.
+ * A generation takes the current generation number when it starts reading, and every invalidation stamps the location with a newer one,
+ * so a variant of content replaced while it was generated is dropped instead of being stored and served after the invalidation.
+ */
+@Slf4j
+@Service
+public class ContentVariantService {
+    private static final String SKIPPED_SUFFIX = ".skipped";
+    private final VideoContentStorageService videoContentStorageService;
+    private final ContentVariantProperties contentVariantProperties;
+    private final SingleFlight<Path, Optional<EncodedContentDto>> generations = new SingleFlight<>();
+    private final Map<ContentEncoding, DistributionSummary> compressionRatios = new EnumMap<>(ContentEncoding.class);
+    private final Map<ContentEncoding, Counter> skipped = new EnumMap<>(ContentEncoding.class);
+    private final Counter stale;
+    private final Map<String, Long> invalidations = new HashMap<>();
+    private final Set<Generation> running = new HashSet<>();
+    private long generation;
+
+    public ContentVariantService(VideoContentStorageService videoContentStorageService, ContentVariantProperties contentVariantProperties,
+                                 MeterRegistry meterRegistry) {
+        this.videoContentStorageService = videoContentStorageService;
+        this.contentVariantProperties = contentVariantProperties;
+        for (ContentEncoding encoding : ContentEncoding.values()) {
+            if (encoding != ContentEncoding.IDENTITY) {
+                compressionRatios.put(encoding, DistributionSummary.builder("content.variants.compression.ratio")
+                        .tag("encoding", encoding.token())
+                        .register(meterRegistry));
+                skipped.put(encoding, meterRegistry.counter("content.variants.skipped", "encoding", encoding.token()));
+            }
+        }
+        this.stale = meterRegistry.counter("content.variants.stale");
+    }
+
+    /**
+     * @param acceptedEncodings encodings accepted by the client, the most preferred first
+     * @return the content in the first accepted encoding with a variant that pays off, nothing if the content is to be served as is
+     */
+    public Optional<EncodedContentDto> load(String videoLocation, List<ContentEncoding> acceptedEncodings) throws IOException {
+        if (!contentVariantProperties.enabled()) {
+            return Optional.empty();
+        }
+        for (ContentEncoding encoding : acceptedEncodings) {
+            if (encoding == ContentEncoding.IDENTITY) {
+                continue;
+            }
+            Optional<EncodedContentDto> variant = loadVariant(videoLocation, encoding);
+            if (variant.isPresent()) {
+                return variant;
+            }
+        }
+        return Optional.empty();
+    }
+
+    public synchronized void invalidate(String videoLocation) throws IOException {
+        invalidations.put(videoLocation, ++generation);
+        for (ContentEncoding encoding : compressionRatios.keySet()) {
+            Path path = variantPath(videoLocation, encoding);
+            Files.deleteIfExists(path);
+            Files.deleteIfExists(skippedPath(path));
+        }
+    }
+
+    private Optional<EncodedContentDto> loadVariant(String videoLocation, ContentEncoding encoding) throws IOException {
+        Path path = variantPath(videoLocation, encoding);
+        CacheAccessEvent event = CacheAccessEvent.begin("content-variants", path.getFileName().toString());
+        try {
+            Optional<EncodedContentDto> variant = read(path, encoding);
+            if (variant.isPresent() || Files.exists(skippedPath(path))) {
+                event.setHit(true);
+                return variant;
+            }
+            return generations.execute(path, () -> generate(videoLocation, encoding, path));
+        } finally {
+            event.commit();
+        }
+    }
+
+    /**
+     * Content under the minimum size is marked as skipped without reading it, so it's not read on the next request either.
+     * A variant of content invalidated while it was generated is neither stored nor served, the content is served as is this time.
+     */
+    private Optional<EncodedContentDto> generate(String videoLocation, ContentEncoding encoding, Path path) throws IOException {
+        Generation started = start(videoLocation);
+        try {
+            ContentResource content = videoContentStorageService.load(videoLocation);
+            long contentLength = content.contentLength();
+            if (contentLength < contentVariantProperties.minSize().toBytes()) {
+                skip(path, encoding, 1, started);
+                return Optional.empty();
+            }
+            Path temporary = createTemporary(path);
+            try {
+                try (InputStream in = content.getInputStream();
+                     OutputStream out = encoding.encoder(new BufferedOutputStream(Files.newOutputStream(temporary)))) {
+                    in.transferTo(out);
+                }
+                double compressionRatio = (double) Files.size(temporary) / contentLength;
+                compressionRatios.get(encoding).record(compressionRatio);
+                if (compressionRatio > contentVariantProperties.maxCompressionRatio()) {
+                    skip(path, encoding, compressionRatio, started);
+                    return Optional.empty();
+                }
+                if (!moveInPlace(temporary, path, started)) {
+                    return Optional.empty();
+                }
+                log.debug("Stored {} variant of {} with compression ratio {}", encoding.token(), videoLocation, compressionRatio);
+                return read(path, encoding);
+            } finally {
+                Files.deleteIfExists(temporary);
+            }
+        } finally {
+            finish(started);
+        }
+    }
+
+    private void skip(Path path, ContentEncoding encoding, double compressionRatio, Generation started) throws IOException {
+        skipped.get(encoding).increment();
+        Path skippedPath = skippedPath(path);
+        Path temporary = createTemporary(skippedPath);
+        try {
+            Files.writeString(temporary, String.format(Locale.ROOT, "%.4f", compressionRatio));
+            moveInPlace(temporary, skippedPath, started);
+        } finally {
+            Files.deleteIfExists(temporary);
+        }
+    }
+
+    /**
+     * The length is read when the variant is found, and the file is streamed only while the response is written.
+     */
+    private static Optional<EncodedContentDto> read(Path path, ContentEncoding encoding) throws IOException {
+        try {
+            return Optional.of(new EncodedContentDto(new FileSystemResource(path), Files.size(path), encoding));
+        } catch (NoSuchFileException e) {
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Written to a temporary file next to the target and moved in place, so a concurrent read never serves a partially written file.
+     */
+    private static Path createTemporary(Path path) throws IOException {
+        Files.createDirectories(path.getParent());
+        return Files.createTempFile(path.getParent(), path.getFileName().toString(), ".tmp");
+    }
+
+    /**
+     * Moved under the same lock the location is invalidated with, so the file is either dropped as stale or deleted by the invalidation.
+     *
+     * @return whether the file was moved, it isn't when the location was invalidated after the generation started
+     */
+    private synchronized boolean moveInPlace(Path temporary, Path path, Generation started) throws IOException {
+        if (invalidations.getOrDefault(started.videoLocation(), 0L) > started.startedAt()) {
+            stale.increment();
+            return false;
+        }
+        Files.move(temporary, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        return true;
+    }
+
+    private synchronized Generation start(String videoLocation) {
+        Generation started = new Generation(videoLocation, generation);
+        running.add(started);
+        return started;
+    }
+
+    /**
+     * Invalidations are kept only while a generation that started before them is running, so they don't pile up for every location replaced.
+     */
+    private synchronized void finish(Generation started) {
+        running.remove(started);
+        long oldestRunning = running.stream().mapToLong(Generation::startedAt).min().orElse(generation);
+        invalidations.values().removeIf(invalidatedAt -> invalidatedAt <= oldestRunning);
+    }
+
+    /**
+     * Named by a digest of the location, which is a path or an object key of any length and character set.
+     */
+    private Path variantPath(String videoLocation, ContentEncoding encoding) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(videoLocation.getBytes(StandardCharsets.UTF_8));
+            return Path.of(contentVariantProperties.location(), HexFormat.of().formatHex(digest) + encoding.extension());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not supported", e);
+        }
+    }
+
+    private static Path skippedPath(Path variantPath) {
+        return variantPath.resolveSibling(variantPath.getFileName() + SKIPPED_SUFFIX);
+    }
+
+    /**
+     * Compared by identity, so generations of the same location started at the same generation number are tracked apart.
+     */
+    private static final class Generation {
+        private final String videoLocation;
+        private final long startedAt;
+
+        private Generation(String videoLocation, long startedAt) {
+            this.videoLocation = videoLocation;
+            this.startedAt = startedAt;
+        }
+
+        String videoLocation() {
+            return videoLocation;
+        }
+
+        long startedAt() {
+            return startedAt;
+        }
+    }
+}
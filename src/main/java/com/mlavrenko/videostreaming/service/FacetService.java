@@ -0,0 +1,88 @@
+package com.mlavrenko.videostreaming.service;
+
+import com.mlavrenko.videostreaming.dto.FacetCountsDto;
+import com.mlavrenko.videostreaming.dto.VideoFacetTermsDto;
+import com.mlavrenko.videostreaming.repository.VideoMetadataRepository;
+import com.mlavrenko.videostreaming.search.FacetIndex;
+import lombok.RequiredArgsConstructor;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.stream.Stream;
+
+/**
+ * Serves catalogue facet counts from an in-memory {@link FacetIndex} instead of GROUP BY queries per request.
+ * The index is built at startup, updated on publish, update and delete, and periodically rebuilt from the database.
+ * A rebuild fills a new index and swaps it in, so counts are served from the previous one meanwhile.
+ * Updates made from the start of the read are recorded and replayed onto the new index before the swap, so none are lost,
+ * as the read may not see them, e.g. when they commit while shards are read one after another.
+ */
+@Service
+@RequiredArgsConstructor
+public class FacetService {
+    private final VideoMetadataRepository videoMetadataRepository;
+    private volatile FacetIndex facetIndex = new FacetIndex();
+    private Map<Long, VideoFacetTermsDto> updatesDuringRebuild;
+
+    public FacetCountsDto countFacets(String title, String director, Integer yearOfRelease) {
+        return facetIndex.count(title, director, yearOfRelease);
+    }
+
+    public synchronized void index(VideoFacetTermsDto video) {
+        put(facetIndex, video);
+        if (updatesDuringRebuild != null) {
+            updatesDuringRebuild.put(video.id(), video);
+        }
+    }
+
+    public synchronized void remove(Long videoId) {
+        facetIndex.remove(videoId);
+        if (updatesDuringRebuild != null) {
+            updatesDuringRebuild.put(videoId, null);
+        }
+    }
+
+    /**
+     * Videos are read from the primary, a lagging replica would miss recently published videos.
+     */
+    @Transactional
+    @Scheduled(fixedDelayString = "${facets.rebuild-interval}", initialDelayString = "${facets.rebuild-interval}")
+    public void rebuild() {
+        synchronized (this) {
+            updatesDuringRebuild = new HashMap<>();
+        }
+        try (Stream<VideoFacetTermsDto> videos = videoMetadataRepository.streamAllFacetTerms()) {
+            load(videos);
+        } finally {
+            synchronized (this) {
+                updatesDuringRebuild = null;
+            }
+        }
+    }
+
+    /**
+     * Updates recorded during a rebuild win over the given videos, a removed video is recorded without terms.
+     */
+    public synchronized void load(Stream<VideoFacetTermsDto> videos) {
+        FacetIndex rebuilt = new FacetIndex();
+        videos.forEach(video -> put(rebuilt, video));
+        if (updatesDuringRebuild != null) {
+            updatesDuringRebuild.forEach((videoId, video) -> {
+                if (video != null) {
+                    put(rebuilt, video);
+                } else {
+                    rebuilt.remove(videoId);
+                }
+            });
+            updatesDuringRebuild.clear();
+        }
+        facetIndex = rebuilt;
+    }
+
+    private static void put(FacetIndex index, VideoFacetTermsDto video) {
+        index.put(video.id(), video.title(), video.director(), video.genre(), video.yearOfRelease());
+    }
+}
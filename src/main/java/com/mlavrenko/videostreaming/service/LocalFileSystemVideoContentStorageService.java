@@ -3,28 +3,58 @@ package com.mlavrenko.videostreaming.service;
 import com.mlavrenko.videostreaming.config.VideoContentStorageProperties;
 import com.mlavrenko.videostreaming.exception.InvalidFileUploadException;
 import com.mlavrenko.videostreaming.exception.ResourceNotFoundException;
+import com.mlavrenko.videostreaming.jfr.StorageOperationEvent;
 import lombok.RequiredArgsConstructor;
-import org.apache.commons.lang3.StringUtils;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.EOFException;
-import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
 import java.nio.charset.MalformedInputException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
 import java.util.Objects;
 
 @Service
+@ConditionalOnProperty(prefix = "video-content-storage", name = "type", havingValue = "local", matchIfMissing = true)
 @RequiredArgsConstructor
 public class LocalFileSystemVideoContentStorageService implements VideoContentStorageService {
+    private static final int MAX_TRANSFER_CHUNK = 64 * 1024;
     private final VideoContentStorageProperties videoContentStorageProperties;
+    private final BufferPool bufferPool;
 
+    /**
+     * Every stream of the content reads its own file channel, through the small buffer of whoever copies it, e.g. the response writer.
+     */
     @Override
-    public String load(String videoLocation) throws IOException {
-        Path path = validateAndResolvePath(videoLocation);
-        return Files.readString(path);
+    public ContentResource load(String videoLocation) throws IOException {
+        StorageOperationEvent event = StorageOperationEvent.begin("load", videoLocation);
+        try {
+            Path path = validateAndResolvePath(videoLocation);
+            long size = Files.size(path);
+            event.setBytes(size);
+            return new ContentResource(videoLocation, size) {
+                @Override
+                protected InputStream open(long offset) throws IOException {
+                    FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+                    try {
+                        return Channels.newInputStream(channel.position(offset));
+                    } catch (IOException e) {
+                        channel.close();
+                        throw e;
+                    }
+                }
+            };
+        } finally {
+            event.commit();
+        }
     }
 
     private static Path validateAndResolvePath(String videoLocation) {
@@ -37,23 +67,39 @@ public class LocalFileSystemVideoContentStorageService implements VideoContentSt
 
     @Override
     public String loadPreview(String videoLocation) throws IOException {
-        Path path = validateAndResolvePath(videoLocation);
-        int previewBufferSize = Math.toIntExact(videoContentStorageProperties.previewSize().toBytes());
+        return read("loadPreview", videoLocation, videoContentStorageProperties.previewSize().toBytes());
+    }
 
-        try (FileInputStream inputStream = new FileInputStream(path.toFile())) {
-            byte[] buffer = new byte[previewBufferSize];
-            int bytesRead = inputStream.read(buffer);
-            return bytesRead == -1 ? StringUtils.EMPTY : new String(buffer, 0, bytesRead);
+    /**
+     * Reads straight into the array returned, which is sized by the range, so the range is neither copied nor read through a pooled buffer.
+     */
+    @Override
+    public byte[] loadRange(String videoLocation, long offset, long length) throws IOException {
+        StorageOperationEvent event = StorageOperationEvent.begin("loadRange", videoLocation);
+        try {
+            Path path = validateAndResolvePath(videoLocation);
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+                ByteBuffer buffer = ByteBuffer.allocate(Math.toIntExact(Math.max(0, Math.min(length, channel.size() - offset))));
+                readFully(channel, buffer, offset);
+                event.setBytes(buffer.position());
+                return buffer.hasRemaining() ? Arrays.copyOf(buffer.array(), buffer.position()) : buffer.array();
+            }
+        } finally {
+            event.commit();
         }
     }
 
     @Override
-    public String upload(MultipartFile videoFile) throws IOException {
+    public String upload(MultipartFile videoFile, String fileName) throws IOException {
         try {
-            String originalFilename = Objects.requireNonNull(videoFile.getOriginalFilename(), "File name must not be null");
-            Path storagePath = Path.of(videoContentStorageProperties.location(), originalFilename);
+            Path storagePath = Path.of(videoContentStorageProperties.location(), Objects.requireNonNull(fileName, "File name must not be null"));
             Files.createDirectories(storagePath.getParent());
-            Files.write(storagePath, videoFile.getBytes());
+            StorageOperationEvent event = StorageOperationEvent.begin("upload", storagePath.toString());
+            try {
+                event.setBytes(write(videoFile, storagePath));
+            } finally {
+                event.commit();
+            }
 
             return storagePath.toString();
         } catch (MalformedInputException | EOFException | NullPointerException e) {
@@ -61,8 +107,100 @@ public class LocalFileSystemVideoContentStorageService implements VideoContentSt
         }
     }
 
+    @Override
+    public String fileNameOf(String videoLocation) {
+        return Path.of(videoContentStorageProperties.location()).relativize(Path.of(videoLocation)).toString();
+    }
+
     @Override
     public void delete(String videoLocation) throws IOException {
-        Files.deleteIfExists(Path.of(videoLocation));
+        StorageOperationEvent event = StorageOperationEvent.begin("delete", videoLocation);
+        try {
+            Files.deleteIfExists(Path.of(videoLocation));
+        } finally {
+            event.commit();
+        }
+    }
+
+    /**
+     * Reads up to the given number of bytes from the head of the content into a pooled buffer,
+     * so the decoded string is the only allocation proportional to the preview size.
+     */
+    private String read(String operation, String videoLocation, long maxLength) throws IOException {
+        StorageOperationEvent event = StorageOperationEvent.begin(operation, videoLocation);
+        try {
+            Path path = validateAndResolvePath(videoLocation);
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+                 PooledBuffer pooledBuffer = bufferPool.acquire(Math.toIntExact(Math.min(maxLength, channel.size())))) {
+                readFully(channel, pooledBuffer.buffer(), 0);
+                event.setBytes(pooledBuffer.buffer().position());
+                return pooledBuffer.toUtf8String();
+            }
+        } finally {
+            event.commit();
+        }
+    }
+
+    /**
+     * The content is forced to the disk before returning, as the metadata referencing it is committed right after,
+     * and so is the directory entry of a new file, which would otherwise be lost with a crash too.
+     *
+     * @return number of bytes written
+     */
+    private long write(MultipartFile videoFile, Path storagePath) throws IOException {
+        boolean created = Files.notExists(storagePath);
+        long size = writeContent(videoFile, storagePath);
+        if (created) {
+            forceDirectory(storagePath.getParent());
+        }
+        return size;
+    }
+
+    private long writeContent(MultipartFile videoFile, Path storagePath) throws IOException {
+        try (InputStream inputStream = videoFile.getInputStream();
+             FileChannel channel = FileChannel.open(storagePath, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+             PooledBuffer pooledBuffer = bufferPool.acquire(MAX_TRANSFER_CHUNK)) {
+            ByteBuffer buffer = pooledBuffer.buffer();
+            int bytesRead;
+            while ((bytesRead = inputStream.read(buffer.array(), 0, buffer.limit())) != -1) {
+                buffer.position(0).limit(bytesRead);
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+                buffer.clear().limit(MAX_TRANSFER_CHUNK);
+            }
+            channel.force(true);
+            return channel.size();
+        }
+    }
+
+    /**
+     * Some platforms, e.g. Windows, can't open a directory, there the entry is left to be flushed by the file system.
+     */
+    private static void forceDirectory(Path directory) throws IOException {
+        FileChannel channel;
+        try {
+            channel = FileChannel.open(directory, StandardOpenOption.READ);
+        } catch (IOException e) {
+            return;
+        }
+        try (channel) {
+            channel.force(true);
+        }
+    }
+
+    /**
+     * Reads into a heap buffer go through a temporary direct buffer cached per thread and sized to the largest read,
+     * so reads are split into chunks to keep these buffers small on every request thread.
+     */
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long offset) throws IOException {
+        int limit = buffer.limit();
+        while (buffer.position() < limit) {
+            buffer.limit(Math.min(limit, buffer.position() + MAX_TRANSFER_CHUNK));
+            if (channel.read(buffer, offset + buffer.position()) == -1) {
+                break;
+            }
+        }
+        buffer.limit(limit);
     }
 }
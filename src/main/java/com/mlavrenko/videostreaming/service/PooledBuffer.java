@@ -0,0 +1,57 @@
+package com.mlavrenko.videostreaming.service;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Buffer leased from {@link BufferPool}, returned to the pool when closed.
+ * The wrapper is pooled together with its buffer, so leasing a buffer of a known size class allocates nothing.
+ */
+public final class PooledBuffer implements AutoCloseable {
+    private final BufferPool pool;
+    private final ByteBuffer buffer;
+    private final int sizeClass;
+    private final AtomicBoolean leased = new AtomicBoolean();
+
+    PooledBuffer(BufferPool pool, ByteBuffer buffer, int sizeClass) {
+        this.pool = pool;
+        this.buffer = buffer;
+        this.sizeClass = sizeClass;
+    }
+
+    /**
+     * Buffer cleared and limited to the requested size.
+     */
+    public ByteBuffer buffer() {
+        return buffer;
+    }
+
+    public byte[] array() {
+        return buffer.array();
+    }
+
+    /**
+     * Decodes the bytes before the buffer position.
+     */
+    public String toUtf8String() {
+        return new String(buffer.array(), 0, buffer.position(), StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public void close() {
+        if (!leased.compareAndSet(true, false)) {
+            throw new IllegalStateException("Buffer is released twice");
+        }
+        pool.release(this);
+    }
+
+    int sizeClass() {
+        return sizeClass;
+    }
+
+    void lease(int size) {
+        leased.set(true);
+        buffer.clear().limit(size);
+    }
+}
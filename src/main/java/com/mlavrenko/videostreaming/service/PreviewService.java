@@ -0,0 +1,192 @@
+package com.mlavrenko.videostreaming.service;
+
+import com.mlavrenko.videostreaming.config.PreviewProperties;
+import com.mlavrenko.videostreaming.config.VideoContentStorageProperties;
+import com.mlavrenko.videostreaming.dto.VideoPreviewLocationDto;
+import com.mlavrenko.videostreaming.jfr.CacheAccessEvent;
+import com.mlavrenko.videostreaming.repository.VideoMetadataRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * Keeps the head of every video as a compact preview object of its own, generated at upload time, so loading a video
+ * doesn't read the original content, which might be on a slow storage tier. Previews are stored in a local directory
+ * and memory-mapped on read, so repeated loads are served from the page cache.
+ * The preview size is part of the file name, so a preview generated with another size is never served: videos published
+ * before previews were precomputed, previews generated with a previous size and previews missing on this node
+ * are generated from the content on first load, and previews of a previous size are also regenerated periodically in bulk.
+ */
+@Slf4j
+@Service
+public class PreviewService {
+    private static final String PREVIEW_SUFFIX = ".preview";
+    private final VideoMetadataRepository videoMetadataRepository;
+    private final VideoContentStorageService videoContentStorageService;
+    private final VideoContentStorageProperties videoContentStorageProperties;
+    private final PreviewProperties previewProperties;
+    private final Counter lazyRegenerations;
+    private final Counter bulkRegenerations;
+
+    public PreviewService(VideoMetadataRepository videoMetadataRepository, VideoContentStorageService videoContentStorageService,
+                          VideoContentStorageProperties videoContentStorageProperties, PreviewProperties previewProperties,
+                          MeterRegistry meterRegistry) {
+        this.videoMetadataRepository = videoMetadataRepository;
+        this.videoContentStorageService = videoContentStorageService;
+        this.videoContentStorageProperties = videoContentStorageProperties;
+        this.previewProperties = previewProperties;
+        this.lazyRegenerations = meterRegistry.counter("previews.regenerations", "trigger", "load");
+        this.bulkRegenerations = meterRegistry.counter("previews.regenerations", "trigger", "bulk");
+    }
+
+    /**
+     * The head is read from the uploaded file rather than from the storage, so a slow tier isn't read back right after the upload.
+     */
+    public StoredPreview create(MultipartFile videoFile) throws IOException {
+        long previewSize = previewSize();
+        byte[] preview;
+        try (InputStream inputStream = videoFile.getInputStream()) {
+            preview = inputStream.readNBytes(Math.toIntExact(previewSize));
+        }
+        String previewLocation = newPreviewLocation(previewSize);
+        write(previewLocation, preview);
+        return new StoredPreview(previewLocation, previewSize);
+    }
+
+    public LoadedPreview load(Long videoId, String videoLocation, String previewLocation, Long previewSize) throws IOException {
+        CacheAccessEvent event = CacheAccessEvent.begin("previews", String.valueOf(videoId));
+        try {
+            long currentPreviewSize = previewSize();
+            if (previewLocation != null && Objects.equals(previewSize, currentPreviewSize)) {
+                Optional<LoadedPreview> preview = read(previewLocation);
+                if (preview.isPresent()) {
+                    event.setHit(true);
+                    return preview.get();
+                }
+                lazyRegenerations.increment();
+                return decode(generate(videoLocation, previewLocation, currentPreviewSize));
+            }
+            lazyRegenerations.increment();
+            return decode(regenerate(videoId, videoLocation, previewLocation, currentPreviewSize));
+        } finally {
+            event.commit();
+        }
+    }
+
+    public void delete(String previewLocation) throws IOException {
+        if (previewLocation != null) {
+            Files.deleteIfExists(Path.of(previewLocation));
+        }
+    }
+
+    /**
+     * Regenerates previews generated with a previous preview size, a failed video is logged and skipped until the next run.
+     */
+    @Scheduled(fixedDelayString = "${previews.regeneration-interval}")
+    public void regenerateStale() {
+        long currentPreviewSize = previewSize();
+        long afterId = 0;
+        List<VideoPreviewLocationDto> batch;
+        do {
+            batch = videoMetadataRepository.findStalePreviews(currentPreviewSize, afterId,
+                    PageRequest.of(0, previewProperties.regenerationBatchSize()));
+            for (VideoPreviewLocationDto video : batch) {
+                try {
+                    regenerate(video.id(), video.videoLocation(), video.previewLocation(), currentPreviewSize);
+                    bulkRegenerations.increment();
+                } catch (IOException | RuntimeException e) {
+                    log.warn("Failed to regenerate the preview of video {}", video.id(), e);
+                }
+            }
+            if (!batch.isEmpty()) {
+                afterId = batch.getLast().id();
+            }
+        } while (batch.size() == previewProperties.regenerationBatchSize());
+    }
+
+    /**
+     * The new preview is stored and referenced before the previous one is deleted, so concurrent loads always find one of them.
+     */
+    private byte[] regenerate(Long videoId, String videoLocation, String previousPreviewLocation, long previewSize) throws IOException {
+        String previewLocation = newPreviewLocation(previewSize);
+        byte[] preview = generate(videoLocation, previewLocation, previewSize);
+        videoMetadataRepository.updatePreview(videoId, previewLocation, previewSize);
+        delete(previousPreviewLocation);
+        return preview;
+    }
+
+    private byte[] generate(String videoLocation, String previewLocation, long previewSize) throws IOException {
+        byte[] preview = videoContentStorageService.loadRange(videoLocation, 0, previewSize);
+        write(previewLocation, preview);
+        return preview;
+    }
+
+    /**
+     * The mapping outlives the channel, and the decoded string is the only copy of the preview made on the heap.
+     */
+    private static Optional<LoadedPreview> read(String previewLocation) throws IOException {
+        try (FileChannel channel = FileChannel.open(Path.of(previewLocation), StandardOpenOption.READ)) {
+            long size = channel.size();
+            return Optional.of(new LoadedPreview(StandardCharsets.UTF_8.decode(channel.map(FileChannel.MapMode.READ_ONLY, 0, size)).toString(), size));
+        } catch (NoSuchFileException e) {
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Written to a temporary file and moved in place, so a concurrent read never maps a partially written preview.
+     */
+    private static void write(String previewLocation, byte[] preview) throws IOException {
+        Path path = Path.of(previewLocation);
+        Files.createDirectories(path.getParent());
+        Path temporary = Files.createTempFile(path.getParent(), path.getFileName().toString(), ".tmp");
+        try {
+            Files.write(temporary, preview);
+            Files.move(temporary, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(temporary);
+        }
+    }
+
+    private String newPreviewLocation(long previewSize) {
+        return Path.of(previewProperties.location(), UUID.randomUUID() + "-" + previewSize + PREVIEW_SUFFIX).toString();
+    }
+
+    private long previewSize() {
+        return videoContentStorageProperties.previewSize().toBytes();
+    }
+
+    private static LoadedPreview decode(byte[] preview) {
+        return new LoadedPreview(new String(preview, StandardCharsets.UTF_8), preview.length);
+    }
+
+    /**
+     * @param previewSize preview size the preview was generated with, the preview itself is shorter if the content is
+     */
+    public record StoredPreview(String previewLocation, long previewSize) {
+    }
+
+    /**
+     * @param bytes number of bytes of the preview as it's stored, so its size is known without encoding the decoded preview again
+     */
+    public record LoadedPreview(String preview, long bytes) {
+    }
+}
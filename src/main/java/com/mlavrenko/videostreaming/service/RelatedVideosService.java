@@ -0,0 +1,115 @@
+package com.mlavrenko.videostreaming.service;
+
+import com.mlavrenko.videostreaming.config.RelatedVideosProperties;
+import com.mlavrenko.videostreaming.dto.RelatedVideoDto;
+import com.mlavrenko.videostreaming.dto.VideoRelationTermsDto;
+import com.mlavrenko.videostreaming.repository.VideoMetadataRepository;
+import com.mlavrenko.videostreaming.search.RelatedVideosIndex;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionOperations;
+import org.springframework.util.StringUtils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Serves related videos from lists precomputed by {@link RelatedVideosIndex}.
+ * All lists are computed at startup and periodically on a dedicated fork/join pool, so the computation doesn't compete
+ * with the common pool, and publish, update and delete patch them in between.
+ * A rebuild computes a new index without blocking changes, which are applied to the current index
+ * and replayed on the new one before it replaces the current one, so none are lost.
+ * Changes are recorded from before the catalogue is read, as the read may not see those committed while it runs.
+ * The catalogue is read in a transaction of its own on the primary, as a lagging replica would miss recently published videos,
+ * so no database connection is held while the lists are computed.
+ */
+@Slf4j
+@Service
+public class RelatedVideosService {
+    private final VideoMetadataRepository videoMetadataRepository;
+    private final RelatedVideosProperties relatedVideosProperties;
+    private final TransactionOperations transactionOperations;
+    private final ForkJoinPool computePool;
+    private volatile RelatedVideosIndex relatedVideosIndex;
+    private List<Consumer<RelatedVideosIndex>> changesDuringRebuild;
+
+    public RelatedVideosService(VideoMetadataRepository videoMetadataRepository, RelatedVideosProperties relatedVideosProperties,
+                                TransactionOperations transactionOperations) {
+        this.videoMetadataRepository = videoMetadataRepository;
+        this.relatedVideosProperties = relatedVideosProperties;
+        this.transactionOperations = transactionOperations;
+        this.computePool = new ForkJoinPool(relatedVideosProperties.parallelism());
+        this.relatedVideosIndex = new RelatedVideosIndex(relatedVideosProperties.maxRelated(), relatedVideosProperties.yearWindow());
+    }
+
+    /**
+     * @return related videos, or nothing if the video is unknown, e.g. before the lists are computed at startup
+     */
+    public Optional<List<RelatedVideoDto>> findRelated(Long videoId) {
+        return relatedVideosIndex.related(videoId);
+    }
+
+    public void index(VideoRelationTermsDto video) {
+        apply(relatedVideos -> relatedVideos.put(video.id(), video.title(), video.director(), parseCastMembers(video.castMembers()),
+                video.genre(), video.yearOfRelease(), video.views()));
+    }
+
+    public void remove(Long videoId) {
+        apply(relatedVideos -> relatedVideos.remove(videoId));
+    }
+
+    @Scheduled(fixedDelayString = "${related-videos.rebuild-interval}", initialDelayString = "${related-videos.rebuild-interval}")
+    public void rebuild() {
+        rebuild(() -> transactionOperations.execute(status -> videoMetadataRepository.findAllRelationTerms()));
+    }
+
+    public void load(List<VideoRelationTermsDto> videos) {
+        rebuild(() -> videos);
+    }
+
+    private void rebuild(Supplier<List<VideoRelationTermsDto>> catalogue) {
+        synchronized (this) {
+            changesDuringRebuild = new ArrayList<>();
+        }
+        try {
+            List<VideoRelationTermsDto> videos = catalogue.get();
+            RelatedVideosIndex rebuilt = new RelatedVideosIndex(relatedVideosProperties.maxRelated(), relatedVideosProperties.yearWindow());
+            videos.forEach(video -> rebuilt.load(video.id(), video.title(), video.director(),
+                    parseCastMembers(video.castMembers()), video.genre(), video.yearOfRelease(), video.views()));
+            long start = System.nanoTime();
+            rebuilt.computeAll(computePool);
+            log.debug("Computed related videos of {} videos in {} ms", rebuilt.size(), (System.nanoTime() - start) / 1_000_000);
+            synchronized (this) {
+                changesDuringRebuild.forEach(change -> change.accept(rebuilt));
+                relatedVideosIndex = rebuilt;
+            }
+        } finally {
+            synchronized (this) {
+                changesDuringRebuild = null;
+            }
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        computePool.shutdownNow();
+    }
+
+    private synchronized void apply(Consumer<RelatedVideosIndex> change) {
+        change.accept(relatedVideosIndex);
+        if (changesDuringRebuild != null) {
+            changesDuringRebuild.add(change);
+        }
+    }
+
+    private static List<String> parseCastMembers(String castMembers) {
+        return Arrays.asList(StringUtils.commaDelimitedListToStringArray(castMembers));
+    }
+}
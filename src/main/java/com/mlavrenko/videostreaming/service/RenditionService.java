@@ -0,0 +1,123 @@
+package com.mlavrenko.videostreaming.service;
+
+import com.mlavrenko.videostreaming.config.RenditionProperties;
+import com.mlavrenko.videostreaming.domain.VideoRendition;
+import com.mlavrenko.videostreaming.dto.PlaybackHintsDto;
+import com.mlavrenko.videostreaming.dto.VideoRenditionDto;
+import com.mlavrenko.videostreaming.repository.VideoRenditionRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+import org.springframework.util.StringUtils;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Keeps bitrate and resolution variants of videos and picks the one to play for a client,
+ * so clients on slow or metered connections aren't served the full bitrate master.
+ * Renditions are stored next to the master, named after it with the rendition label, e.g. video-720p.mp4 for video.mp4.
+ */
+@Service
+@RequiredArgsConstructor
+public class RenditionService {
+    private final VideoRenditionRepository videoRenditionRepository;
+    private final VideoContentStorageService videoContentStorageService;
+    private final ContentVariantService contentVariantService;
+    private final RenditionProperties renditionProperties;
+    private final SingleFlight<Long, List<Rendition>> renditionLookups = new SingleFlight<>();
+
+    /**
+     * Adds the rendition or replaces the one with the same label. Content is uploaded first,
+     * and deleted as a compensation if saving fails, unless it replaced the content of an existing rendition.
+     * Variants of replaced content are invalidated right after the upload, so they're never served for the new content.
+     */
+    public VideoRenditionDto addRendition(Long videoId, String masterLocation, VideoRenditionDto renditionDto, MultipartFile videoFile)
+            throws IOException {
+        Optional<VideoRendition> existing = videoRenditionRepository.findByVideoIdAndLabel(videoId, renditionDto.label());
+        Optional<String> replacedLocation = existing.map(VideoRendition::getVideoLocation);
+        String fileName = siblingFileName(videoContentStorageService.fileNameOf(masterLocation), renditionDto.label());
+        String videoLocation = videoContentStorageService.upload(videoFile, fileName);
+        contentVariantService.invalidate(videoLocation);
+        try {
+            VideoRendition rendition = existing.orElseGet(VideoRendition::new);
+            rendition.setVideoId(videoId);
+            rendition.setLabel(renditionDto.label());
+            rendition.setBitrate(renditionDto.bitrate());
+            rendition.setHeight(renditionDto.height());
+            rendition.setVideoLocation(videoLocation);
+            return toVideoRenditionDto(videoRenditionRepository.save(rendition));
+        } catch (RuntimeException e) {
+            if (!replacedLocation.map(videoLocation::equals).orElse(false)) {
+                videoContentStorageService.delete(videoLocation);
+            }
+            throw e;
+        }
+    }
+
+    public List<VideoRenditionDto> findRenditions(Long videoId) {
+        return videoRenditionRepository.findAllByVideoIdOrderByBitrateDesc(videoId).stream()
+                .map(RenditionService::toVideoRenditionDto)
+                .toList();
+    }
+
+    /**
+     * The master is played when the client sent no hints, so clients unaware of renditions keep getting the original quality,
+     * or when the video has no renditions. Its bitrate isn't known, so a client with hints is never upgraded to it.
+     * Renditions of a video are looked up once for all concurrent plays of it.
+     */
+    public String selectLocation(Long videoId, String masterLocation, PlaybackHintsDto hints) throws IOException {
+        if (hints.isEmpty()) {
+            return masterLocation;
+        }
+        List<Rendition> renditions = renditionLookups.execute(videoId, () -> videoRenditionRepository.findAllByVideoIdOrderByBitrateDesc(videoId)
+                .stream()
+                .map(rendition -> new Rendition(rendition.getBitrate(), rendition.getVideoLocation()))
+                .toList());
+        return select(renditions, hints, renditionProperties.downlinkUtilization())
+                .map(Rendition::videoLocation)
+                .orElse(masterLocation);
+    }
+
+    /**
+     * Picks the highest bitrate within the budget of the client, or the lowest one when none fits, since a rendition still costs
+     * less than the master. Save-Data always gets the lowest bitrate.
+     *
+     * @param renditions renditions ordered from the highest bitrate
+     */
+    static Optional<Rendition> select(List<Rendition> renditions, PlaybackHintsDto hints, double downlinkUtilization) {
+        if (renditions.isEmpty()) {
+            return Optional.empty();
+        }
+        Rendition lowest = renditions.getLast();
+        if (hints.saveData()) {
+            return Optional.of(lowest);
+        }
+        double budget = Double.MAX_VALUE;
+        if (hints.maxBitrate() != null) {
+            budget = hints.maxBitrate();
+        }
+        if (hints.downlink() != null) {
+            budget = Math.min(budget, hints.downlink() * 1000 * downlinkUtilization);
+        }
+        for (Rendition rendition : renditions) {
+            if (rendition.bitrate() <= budget) {
+                return Optional.of(rendition);
+            }
+        }
+        return Optional.of(lowest);
+    }
+
+    static String siblingFileName(String masterFileName, String label) {
+        String extension = StringUtils.getFilenameExtension(masterFileName);
+        return StringUtils.stripFilenameExtension(masterFileName) + "-" + label + (extension == null ? "" : "." + extension);
+    }
+
+    private static VideoRenditionDto toVideoRenditionDto(VideoRendition rendition) {
+        return new VideoRenditionDto(rendition.getLabel(), rendition.getBitrate(), rendition.getHeight());
+    }
+
+    record Rendition(int bitrate, String videoLocation) {
+    }
+}
@@ -0,0 +1,291 @@
+package com.mlavrenko.videostreaming.service;
+
+import com.mlavrenko.videostreaming.exception.ResourceNotFoundException;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.time.Duration;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * Minimal client of the S3 REST API, covering only the operations needed by {@link S3VideoContentStorageService}.
+ * Implemented on top of the JDK HTTP client with AWS Signature Version 4 and unsigned payloads, so no SDK is required,
+ * and any S3-compatible store addressed path-style (endpoint/bucket/key) can be used.
+ * The number of requests in flight is bounded, which bounds the number of pooled connections, and throttling, server errors
+ * and I/O failures are retried with exponential backoff and full jitter.
+ */
+public class S3ObjectClient {
+    private static final String ALGORITHM = "AWS4-HMAC-SHA256";
+    private static final String UNSIGNED_PAYLOAD = "UNSIGNED-PAYLOAD";
+    private static final String SIGNED_HEADERS = "host;x-amz-content-sha256;x-amz-date";
+    private static final DateTimeFormatter AMZ_DATE = DateTimeFormatter.ofPattern("yyyyMMdd'T'HHmmss'Z'");
+    private static final Pattern UPLOAD_ID = Pattern.compile("<UploadId>(.+?)</UploadId>");
+    private static final Duration MAX_BACKOFF = Duration.ofSeconds(5);
+
+    private final HttpClient httpClient;
+    private final URI endpoint;
+    private final String region;
+    private final String bucket;
+    private final String accessKey;
+    private final String secretKey;
+    private final Duration requestTimeout;
+    private final int maxRetries;
+    private final Duration initialBackoff;
+    private final Semaphore connections;
+
+    public S3ObjectClient(URI endpoint, String region, String bucket, String accessKey, String secretKey,
+                          int maxConnections, Duration requestTimeout, int maxRetries, Duration initialBackoff) {
+        this.endpoint = endpoint;
+        this.region = region;
+        this.bucket = bucket;
+        this.accessKey = accessKey;
+        this.secretKey = secretKey;
+        this.requestTimeout = requestTimeout;
+        this.maxRetries = maxRetries;
+        this.initialBackoff = initialBackoff;
+        this.connections = new Semaphore(maxConnections, true);
+        this.httpClient = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(requestTimeout)
+                .build();
+    }
+
+    public void putObject(String key, byte[] content, int length) throws IOException {
+        execute("PUT", key, Map.of(), null, bodyOf(content, length), response -> null);
+    }
+
+    public String createMultipartUpload(String key) throws IOException {
+        String body = execute("POST", key, Map.of("uploads", ""), null, HttpRequest.BodyPublishers.noBody(), S3ObjectClient::readString);
+        Matcher matcher = UPLOAD_ID.matcher(body);
+        if (!matcher.find()) {
+            throw new IOException("Multipart upload id is missing in the response: " + body);
+        }
+        return matcher.group(1);
+    }
+
+    public String uploadPart(String key, String uploadId, int partNumber, byte[] content, int length) throws IOException {
+        return execute("PUT", key, Map.of("partNumber", String.valueOf(partNumber), "uploadId", uploadId), null, bodyOf(content, length),
+                response -> response.headers().firstValue("ETag")
+                        .orElseThrow(() -> new IOException("ETag is missing for part " + partNumber + " of " + key)));
+    }
+
+    public void completeMultipartUpload(String key, String uploadId, List<String> partETags) throws IOException {
+        StringBuilder body = new StringBuilder("<CompleteMultipartUpload>");
+        for (int i = 0; i < partETags.size(); i++) {
+            body.append("<Part><PartNumber>").append(i + 1).append("</PartNumber><ETag>").append(partETags.get(i)).append("</ETag></Part>");
+        }
+        body.append("</CompleteMultipartUpload>");
+        String response = execute("POST", key, Map.of("uploadId", uploadId), null,
+                HttpRequest.BodyPublishers.ofString(body.toString()), S3ObjectClient::readString);
+        if (response.contains("<Error>")) {
+            throw new IOException("Failed to complete multipart upload of " + key + ": " + response);
+        }
+    }
+
+    public void abortMultipartUpload(String key, String uploadId) throws IOException {
+        execute("DELETE", key, Map.of("uploadId", uploadId), null, HttpRequest.BodyPublishers.noBody(), response -> null);
+    }
+
+    public long getObjectSize(String key) throws IOException {
+        return execute("HEAD", key, Map.of(), null, HttpRequest.BodyPublishers.noBody(),
+                response -> response.headers().firstValueAsLong("Content-Length")
+                        .orElseThrow(() -> new IOException("Content-Length is missing for " + key)));
+    }
+
+    /**
+     * Reads the whole object when {@code length} is negative, and the range starting at {@code offset} otherwise,
+     * directly into the target array, so a large object can be assembled from ranges read in parallel without intermediate copies.
+     *
+     * @return number of bytes read
+     */
+    public int getObject(String key, long offset, int length, byte[] target, int targetOffset) throws IOException {
+        String range = length < 0 ? null : "bytes=" + offset + "-" + (offset + length - 1);
+        int maxLength = length < 0 ? target.length - targetOffset : length;
+        return execute("GET", key, Map.of(), range, HttpRequest.BodyPublishers.noBody(), response -> {
+            if (range != null) {
+                checkPartialContent(key, offset, response);
+            }
+            return response.body().readNBytes(target, targetOffset, maxLength);
+        });
+    }
+
+    public void deleteObject(String key) throws IOException {
+        execute("DELETE", key, Map.of(), null, HttpRequest.BodyPublishers.noBody(), response -> null);
+    }
+
+    private <T> T execute(String method, String key, Map<String, String> query, String range, HttpRequest.BodyPublisher body,
+                          ResponseReader<T> reader) throws IOException {
+        for (int attempt = 0; ; attempt++) {
+            acquireConnection();
+            try {
+                HttpResponse<InputStream> response = httpClient.send(sign(method, key, query, range, body), HttpResponse.BodyHandlers.ofInputStream());
+                try (InputStream ignored = response.body()) {
+                    int status = response.statusCode();
+                    if (status == 404) {
+                        throw new ResourceNotFoundException("Video file not found at the specified path: " + key);
+                    }
+                    if (status < 300) {
+                        return reader.read(response);
+                    }
+                    String error = readString(response);
+                    if (!isRetryable(status) || attempt >= maxRetries) {
+                        throw new IOException("S3 request " + method + " " + key + " failed with status " + status + ": " + error);
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while calling S3");
+            } catch (IOException e) {
+                if (attempt >= maxRetries || e instanceof InterruptedIOException) {
+                    throw e;
+                }
+            } finally {
+                connections.release();
+            }
+            backoff(attempt);
+        }
+    }
+
+    /**
+     * A store or a proxy ignoring the range answers with the whole object, which would otherwise be read as if it was the range.
+     */
+    private static void checkPartialContent(String key, long offset, HttpResponse<InputStream> response) throws IOException {
+        String contentRange = response.headers().firstValue("Content-Range").orElse(null);
+        if (response.statusCode() != 206 || contentRange == null || !contentRange.startsWith("bytes " + offset + "-")) {
+            throw new IOException("Expected bytes from offset " + offset + " of " + key + ", but got status " + response.statusCode()
+                    + " with Content-Range " + contentRange);
+        }
+    }
+
+    private HttpRequest sign(String method, String key, Map<String, String> query, String range, HttpRequest.BodyPublisher body) {
+        ZonedDateTime now = ZonedDateTime.now(ZoneOffset.UTC);
+        String amzDate = AMZ_DATE.format(now);
+        String date = amzDate.substring(0, 8);
+        String canonicalUri = endpoint.getRawPath().replaceAll("/$", "") + "/" + encode(bucket, false) + "/" + encode(key, true);
+        String canonicalQuery = new TreeMap<>(query).entrySet().stream()
+                .map(entry -> encode(entry.getKey(), false) + "=" + encode(entry.getValue(), false))
+                .collect(Collectors.joining("&"));
+        String host = endpoint.getPort() == -1 ? endpoint.getHost() : endpoint.getHost() + ":" + endpoint.getPort();
+        String canonicalRequest = String.join("\n",
+                method,
+                canonicalUri,
+                canonicalQuery,
+                "host:" + host,
+                "x-amz-content-sha256:" + UNSIGNED_PAYLOAD,
+                "x-amz-date:" + amzDate,
+                "",
+                SIGNED_HEADERS,
+                UNSIGNED_PAYLOAD);
+        String scope = date + "/" + region + "/s3/aws4_request";
+        String stringToSign = String.join("\n", ALGORITHM, amzDate, scope, hex(sha256(canonicalRequest)));
+        byte[] signingKey = hmac(hmac(hmac(hmac(("AWS4" + secretKey).getBytes(StandardCharsets.UTF_8), date), region), "s3"), "aws4_request");
+        String authorization = ALGORITHM + " Credential=" + accessKey + "/" + scope
+                + ", SignedHeaders=" + SIGNED_HEADERS
+                + ", Signature=" + hex(hmac(signingKey, stringToSign));
+
+        HttpRequest.Builder builder = HttpRequest.newBuilder()
+                .uri(URI.create(endpoint.getScheme() + "://" + host + canonicalUri + (canonicalQuery.isEmpty() ? "" : "?" + canonicalQuery)))
+                .timeout(requestTimeout)
+                .header("x-amz-content-sha256", UNSIGNED_PAYLOAD)
+                .header("x-amz-date", amzDate)
+                .header("Authorization", authorization)
+                .method(method, body);
+        if (range != null) {
+            builder.header("Range", range);
+        }
+        return builder.build();
+    }
+
+    private void acquireConnection() throws InterruptedIOException {
+        try {
+            connections.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for an S3 connection");
+        }
+    }
+
+    private void backoff(int attempt) throws InterruptedIOException {
+        long maxDelay = Math.min(MAX_BACKOFF.toMillis(), initialBackoff.toMillis() << Math.min(attempt, 20));
+        try {
+            Thread.sleep(ThreadLocalRandom.current().nextLong(maxDelay + 1));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while backing off");
+        }
+    }
+
+    private static boolean isRetryable(int status) {
+        return status == 429 || status >= 500;
+    }
+
+    private static HttpRequest.BodyPublisher bodyOf(byte[] content, int length) {
+        return HttpRequest.BodyPublishers.ofByteArray(content, 0, length);
+    }
+
+    private static String readString(HttpResponse<InputStream> response) throws IOException {
+        return new String(response.body().readAllBytes(), StandardCharsets.UTF_8);
+    }
+
+    private static String encode(String value, boolean keepSlash) {
+        StringBuilder encoded = new StringBuilder();
+        for (byte b : value.getBytes(StandardCharsets.UTF_8)) {
+            char c = (char) (b & 0xFF);
+            if ((c >= 'A' && c <= 'Z') || (c >= 'a' && c <= 'z') || (c >= '0' && c <= '9')
+                    || c == '-' || c == '_' || c == '.' || c == '~' || (keepSlash && c == '/')) {
+                encoded.append(c);
+            } else {
+                encoded.append('%').append(HexFormat.of().withUpperCase().toHexDigits(b));
+            }
+        }
+        return encoded.toString();
+    }
+
+    private static byte[] hmac(byte[] key, String data) {
+        try {
+            Mac mac = Mac.getInstance("HmacSHA256");
+            mac.init(new SecretKeySpec(key, "HmacSHA256"));
+            return mac.doFinal(data.getBytes(StandardCharsets.UTF_8));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("HmacSHA256 is not available", e);
+        }
+    }
+
+    private static byte[] sha256(String data) {
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(data.getBytes(StandardCharsets.UTF_8));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    private static String hex(byte[] bytes) {
+        return HexFormat.of().formatHex(bytes);
+    }
+
+    @FunctionalInterface
+    private interface ResponseReader<T> {
+        T read(HttpResponse<InputStream> response) throws IOException;
+    }
+}
@@ -0,0 +1,355 @@
+package com.mlavrenko.videostreaming.service;
+
+import com.mlavrenko.videostreaming.config.S3StorageProperties;
+import com.mlavrenko.videostreaming.config.VideoContentStorageProperties;
+import com.mlavrenko.videostreaming.exception.InvalidFileUploadException;
+import jakarta.annotation.PreDestroy;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+import org.springframework.util.StringUtils;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.MalformedInputException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Stores video content in an S3-compatible object store, keyed by the original file name.
+ * Uploads larger than a part are streamed from the request as a multipart upload, with parts uploaded in parallel while the next ones
+ * are read, so at most a few parts are held in memory at a time. Content played is streamed as consecutive ranges of a part each,
+ * and large range reads are split into ranges fetched in parallel straight into the resulting array.
+ * Part, stream and preview buffers are leased from {@link BufferPool}.
+ */
+@Service
+@ConditionalOnProperty(prefix = "video-content-storage", name = "type", havingValue = "s3")
+public class S3VideoContentStorageService implements VideoContentStorageService {
+    private final VideoContentStorageProperties videoContentStorageProperties;
+    private final BufferPool bufferPool;
+    private final S3ObjectClient s3ObjectClient;
+    private final ExecutorService transferExecutor;
+    private final int partSize;
+    private final long parallelReadThreshold;
+    private final int maxParallelParts;
+
+    public S3VideoContentStorageService(VideoContentStorageProperties videoContentStorageProperties, S3StorageProperties s3StorageProperties,
+                                        BufferPool bufferPool) {
+        this.videoContentStorageProperties = videoContentStorageProperties;
+        this.bufferPool = bufferPool;
+        this.s3ObjectClient = new S3ObjectClient(s3StorageProperties.endpoint(), s3StorageProperties.region(), s3StorageProperties.bucket(),
+                s3StorageProperties.accessKey(), s3StorageProperties.secretKey(), s3StorageProperties.maxConnections(),
+                s3StorageProperties.requestTimeout(), s3StorageProperties.maxRetries(), s3StorageProperties.initialBackoff());
+        this.transferExecutor = Executors.newFixedThreadPool(s3StorageProperties.maxConnections(),
+                Thread.ofPlatform().daemon().name("s3-transfer-", 0).factory());
+        this.partSize = Math.toIntExact(s3StorageProperties.partSize().toBytes());
+        this.parallelReadThreshold = s3StorageProperties.parallelReadThreshold().toBytes();
+        this.maxParallelParts = s3StorageProperties.maxConnections();
+    }
+
+    @Override
+    public ContentResource load(String videoLocation) throws IOException {
+        long size = s3ObjectClient.getObjectSize(videoLocation);
+        return new ContentResource(videoLocation, size) {
+            @Override
+            protected InputStream open(long offset) {
+                return new RangedInputStream(videoLocation, offset, size);
+            }
+        };
+    }
+
+    @Override
+    public String loadPreview(String videoLocation) throws IOException {
+        return read(videoLocation, videoContentStorageProperties.previewSize().toBytes());
+    }
+
+    @Override
+    public byte[] loadRange(String videoLocation, long offset, long length) throws IOException {
+        long size = s3ObjectClient.getObjectSize(videoLocation);
+        byte[] content = new byte[Math.toIntExact(Math.max(0, Math.min(length, size - offset)))];
+        readInto(videoLocation, offset, content, content.length);
+        return content;
+    }
+
+    @Override
+    public String upload(MultipartFile videoFile, String fileName) throws IOException {
+        try {
+            String key = Objects.requireNonNull(StringUtils.hasText(fileName) ? fileName : null, "File name must not be empty");
+            try (InputStream inputStream = videoFile.getInputStream()) {
+                PooledBuffer firstPart = bufferPool.acquire(partSize);
+                int firstPartLength = readPart(inputStream, firstPart);
+                if (firstPartLength < partSize) {
+                    try (firstPart) {
+                        s3ObjectClient.putObject(key, firstPart.array(), firstPartLength);
+                    }
+                } else {
+                    uploadMultipart(key, firstPart, inputStream);
+                }
+            }
+            return key;
+        } catch (MalformedInputException | EOFException | NullPointerException e) {
+            throw new InvalidFileUploadException("Failed to upload an invalid file:", e);
+        }
+    }
+
+    @Override
+    public String fileNameOf(String videoLocation) {
+        return videoLocation;
+    }
+
+    @Override
+    public void delete(String videoLocation) throws IOException {
+        s3ObjectClient.deleteObject(videoLocation);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        transferExecutor.shutdownNow();
+    }
+
+    /**
+     * Reads the head of the content into a pooled buffer, so the decoded string is the only allocation proportional to the preview size.
+     */
+    private String read(String videoLocation, long maxLength) throws IOException {
+        long size = s3ObjectClient.getObjectSize(videoLocation);
+        try (PooledBuffer pooledBuffer = bufferPool.acquire(Math.toIntExact(Math.min(maxLength, size)))) {
+            ByteBuffer buffer = pooledBuffer.buffer();
+            readInto(videoLocation, 0, buffer.array(), buffer.limit());
+            buffer.position(buffer.limit());
+            return pooledBuffer.toUtf8String();
+        }
+    }
+
+    private void readInto(String videoLocation, long offset, byte[] target, int length) throws IOException {
+        if (length == 0) {
+            return;
+        }
+        if (length <= parallelReadThreshold) {
+            getRange(videoLocation, offset, length, target, 0);
+            return;
+        }
+        List<Future<Integer>> ranges = new ArrayList<>();
+        for (int rangeStart = 0; rangeStart < length; rangeStart += partSize) {
+            int targetOffset = rangeStart;
+            int rangeLength = Math.min(partSize, length - rangeStart);
+            ranges.add(transferExecutor.submit(() -> getRange(videoLocation, offset + targetOffset, rangeLength, target, targetOffset)));
+        }
+        for (Future<Integer> range : ranges) {
+            await(range, ranges);
+        }
+    }
+
+    /**
+     * A short read means the object has changed since its size was read, so the target would be served partly unfilled.
+     */
+    private int getRange(String videoLocation, long offset, int length, byte[] target, int targetOffset) throws IOException {
+        int read = s3ObjectClient.getObject(videoLocation, offset, length, target, targetOffset);
+        if (read != length) {
+            throw new EOFException("Expected " + length + " bytes at offset " + offset + " of " + videoLocation + ", but read " + read);
+        }
+        return read;
+    }
+
+    /**
+     * Reads the object as consecutive ranges of a part each into a single pooled buffer, which is leased by the first read
+     * and returned to the pool when the stream is closed, so a stream holds at most one part in memory, whatever the object size.
+     */
+    private class RangedInputStream extends InputStream {
+        private final String videoLocation;
+        private final long end;
+        private long offset;
+        private PooledBuffer part;
+        private boolean closed;
+
+        RangedInputStream(String videoLocation, long offset, long end) {
+            this.videoLocation = videoLocation;
+            this.offset = offset;
+            this.end = end;
+        }
+
+        @Override
+        public int read() throws IOException {
+            ByteBuffer buffer = fill();
+            return buffer == null ? -1 : buffer.get() & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] target, int targetOffset, int maxLength) throws IOException {
+            if (maxLength == 0) {
+                return 0;
+            }
+            ByteBuffer buffer = fill();
+            if (buffer == null) {
+                return -1;
+            }
+            int read = Math.min(maxLength, buffer.remaining());
+            buffer.get(target, targetOffset, read);
+            return read;
+        }
+
+        @Override
+        public int available() {
+            return part == null ? 0 : part.buffer().remaining();
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+            if (part != null) {
+                part.close();
+                part = null;
+            }
+        }
+
+        private ByteBuffer fill() throws IOException {
+            if (closed) {
+                throw new IOException("Stream of " + videoLocation + " is closed");
+            }
+            if (part != null && part.buffer().hasRemaining()) {
+                return part.buffer();
+            }
+            if (offset >= end) {
+                return null;
+            }
+            if (part == null) {
+                part = bufferPool.acquire(partSize);
+                part.buffer().limit(0);
+            }
+            int length = (int) Math.min(partSize, end - offset);
+            getRange(videoLocation, offset, length, part.array(), 0);
+            offset += length;
+            return part.buffer().clear().limit(length);
+        }
+    }
+
+    /**
+     * Reading of the next part waits until there is a free upload slot, which bounds the memory used by a single upload.
+     * Every part buffer is returned to the pool as soon as the part is uploaded.
+     * Failed upload is aborted, so the store doesn't keep orphaned parts.
+     */
+    private void uploadMultipart(String key, PooledBuffer firstPart, InputStream inputStream) throws IOException {
+        PooledBuffer part = firstPart;
+        String uploadId = null;
+        List<Future<String>> parts = new ArrayList<>();
+        try {
+            uploadId = s3ObjectClient.createMultipartUpload(key);
+            Semaphore uploadSlots = new Semaphore(maxParallelParts);
+            int partLength = partSize;
+            while (partLength > 0) {
+                acquire(uploadSlots);
+                parts.add(submitPart(key, uploadId, parts.size() + 1, part, partLength, uploadSlots));
+                part = null;
+                PooledBuffer nextPart = bufferPool.acquire(partSize);
+                partLength = readPart(inputStream, nextPart);
+                part = nextPart;
+            }
+            List<String> partETags = new ArrayList<>();
+            for (Future<String> uploadedPart : parts) {
+                partETags.add(await(uploadedPart, parts));
+            }
+            s3ObjectClient.completeMultipartUpload(key, uploadId, partETags);
+        } catch (IOException | RuntimeException e) {
+            awaitQuietly(parts);
+            if (uploadId != null) {
+                abort(key, uploadId, e);
+            }
+            throw e;
+        } finally {
+            if (part != null) {
+                part.close();
+            }
+        }
+    }
+
+    private void abort(String key, String uploadId, Exception failure) {
+        try {
+            s3ObjectClient.abortMultipartUpload(key, uploadId);
+        } catch (IOException | RuntimeException abortFailure) {
+            failure.addSuppressed(abortFailure);
+        }
+    }
+
+    private Future<String> submitPart(String key, String uploadId, int partNumber, PooledBuffer part, int partLength, Semaphore uploadSlots) {
+        return transferExecutor.submit(() -> {
+            try (part) {
+                return s3ObjectClient.uploadPart(key, uploadId, partNumber, part.array(), partLength);
+            } finally {
+                uploadSlots.release();
+            }
+        });
+    }
+
+    private int readPart(InputStream inputStream, PooledBuffer part) throws IOException {
+        try {
+            return inputStream.readNBytes(part.array(), 0, partSize);
+        } catch (IOException | RuntimeException e) {
+            part.close();
+            throw e;
+        }
+    }
+
+    private static void acquire(Semaphore semaphore) throws InterruptedIOException {
+        try {
+            semaphore.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for an upload slot");
+        }
+    }
+
+    /**
+     * On failure or interrupt, waits for the other transfers before rethrowing, because they are still using buffers
+     * that are returned to the pool afterward.
+     */
+    private static <T> T await(Future<T> future, List<? extends Future<?>> siblings) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            awaitQuietly(siblings);
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for a transfer");
+        } catch (ExecutionException e) {
+            awaitQuietly(siblings);
+            if (e.getCause() instanceof IOException ioException) {
+                throw ioException;
+            }
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw new IOException("Transfer failed", e.getCause());
+        }
+    }
+
+    /**
+     * Transfers are not cancelled, as a cancelled future completes while its task may still be writing into the buffer.
+     * An interrupt doesn't stop the wait either, it's restored once all transfers have completed, each bounded by the request timeout.
+     */
+    private static void awaitQuietly(List<? extends Future<?>> transfers) {
+        boolean interrupted = false;
+        for (Future<?> transfer : transfers) {
+            while (true) {
+                try {
+                    transfer.get();
+                    break;
+                } catch (ExecutionException e) {
+                    // the first failure is the one reported
+                    break;
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package com.mlavrenko.videostreaming.service;
+
+import com.mlavrenko.videostreaming.config.StreamAdmissionProperties;
+import com.mlavrenko.videostreaming.config.StreamAdmissionProperties.PriorityLimits;
+import com.mlavrenko.videostreaming.domain.StreamPriority;
+import com.mlavrenko.videostreaming.exception.ServiceOverloadedException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.ToLongFunction;
+
+/**
+ * Limits the number of concurrent streams and bytes per second that hit the storage on this node.
+ * Every priority class has its own pool of stream permits, so a spike of full plays can't starve previews, while all classes share
+ * the node bandwidth budget. A stream that can't be admitted waits in a fair queue up to the class deadline,
+ * and is rejected with {@link ServiceOverloadedException} otherwise, so clients are told to retry instead of stalling.
+ * Admission happens before any database work, so queued streams don't hold database connections.
+ */
+@Service
+public class StreamAdmissionService {
+    private final StreamAdmissionProperties streamAdmissionProperties;
+    private final BandwidthBudget bandwidthBudget;
+    private final Map<StreamPriority, Semaphore> permits = new EnumMap<>(StreamPriority.class);
+    private final Map<StreamPriority, Counter> concurrencyRejections = new EnumMap<>(StreamPriority.class);
+    private final Map<StreamPriority, Counter> bandwidthRejections = new EnumMap<>(StreamPriority.class);
+    private final Counter bytesTransferred;
+
+    public StreamAdmissionService(StreamAdmissionProperties streamAdmissionProperties, MeterRegistry meterRegistry) {
+        this.streamAdmissionProperties = streamAdmissionProperties;
+        this.bandwidthBudget = new BandwidthBudget(streamAdmissionProperties.maxBytesPerSecond().toBytes(), System::nanoTime);
+        this.bytesTransferred = meterRegistry.counter("stream.admission.bytes");
+        for (StreamPriority priority : StreamPriority.values()) {
+            Semaphore semaphore = new Semaphore(getLimits(priority).maxConcurrentStreams(), true);
+            permits.put(priority, semaphore);
+            String tag = priority.name().toLowerCase();
+            Gauge.builder("stream.admission.queue.depth", semaphore, Semaphore::getQueueLength).tag("priority", tag).register(meterRegistry);
+            Gauge.builder("stream.admission.active", semaphore, s -> getLimits(priority).maxConcurrentStreams() - s.availablePermits())
+                    .tag("priority", tag)
+                    .register(meterRegistry);
+            concurrencyRejections.put(priority, meterRegistry.counter("stream.admission.rejections", "priority", tag, "reason", "concurrency"));
+            bandwidthRejections.put(priority, meterRegistry.counter("stream.admission.rejections", "priority", tag, "reason", "bandwidth"));
+        }
+    }
+
+    public <T> T admit(StreamPriority priority, StreamOperation<T> operation, ToLongFunction<T> bytes) throws IOException {
+        PriorityLimits limits = getLimits(priority);
+        long deadline = System.nanoTime() + limits.queueTimeout().toNanos();
+        Semaphore semaphore = permits.get(priority);
+        if (!tryAcquire(semaphore, limits.queueTimeout())) {
+            concurrencyRejections.get(priority).increment();
+            throw new ServiceOverloadedException("Too many concurrent streams", streamAdmissionProperties.retryAfter());
+        }
+        try {
+            if (limits.bandwidthThrottled()) {
+                awaitBandwidth(priority, deadline);
+            }
+            T result = operation.execute();
+            long transferred = bytes.applyAsLong(result);
+            bandwidthBudget.consume(transferred);
+            bytesTransferred.increment(transferred);
+            return result;
+        } finally {
+            semaphore.release();
+        }
+    }
+
+    private void awaitBandwidth(StreamPriority priority, long deadline) {
+        long waitNanos;
+        while ((waitNanos = bandwidthBudget.nanosUntilAvailable()) > 0) {
+            if (System.nanoTime() + waitNanos > deadline) {
+                bandwidthRejections.get(priority).increment();
+                Duration retryAfter = Duration.ofNanos(waitNanos);
+                throw new ServiceOverloadedException("Node bandwidth budget is exhausted", max(retryAfter, streamAdmissionProperties.retryAfter()));
+            }
+            LockSupport.parkNanos(waitNanos);
+            if (Thread.currentThread().isInterrupted()) {
+                throw new ServiceOverloadedException("Interrupted while waiting for bandwidth", streamAdmissionProperties.retryAfter());
+            }
+        }
+    }
+
+    private static boolean tryAcquire(Semaphore semaphore, Duration queueTimeout) {
+        try {
+            return queueTimeout.isZero() ? semaphore.tryAcquire() : semaphore.tryAcquire(queueTimeout.toNanos(), TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private PriorityLimits getLimits(StreamPriority priority) {
+        PriorityLimits limits = streamAdmissionProperties.priorities().get(priority);
+        if (limits == null) {
+            throw new IllegalStateException("Admission limits are not configured for priority " + priority);
+        }
+        return limits;
+    }
+
+    private static Duration max(Duration first, Duration second) {
+        return first.compareTo(second) >= 0 ? first : second;
+    }
+}
@@ -0,0 +1,8 @@
+package com.mlavrenko.videostreaming.service;
+
+import java.io.IOException;
+
+@FunctionalInterface
+public interface StreamOperation<T> {
+    T execute() throws IOException;
+}
@@ -0,0 +1,204 @@
+package com.mlavrenko.videostreaming.service;
+
+import com.mlavrenko.videostreaming.config.EngagementProperties;
+import com.mlavrenko.videostreaming.datasource.VideoShards;
+import com.mlavrenko.videostreaming.domain.EngagementType;
+import com.mlavrenko.videostreaming.domain.VideoViewerSketch;
+import com.mlavrenko.videostreaming.repository.VideoViewerSketchRepository;
+import com.mlavrenko.videostreaming.sketch.HyperLogLog;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionOperations;
+
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+/**
+ * Estimates distinct viewers per video, so refreshes by the same client do not inflate engagement statistics.
+ * Viewers are recorded into in-memory HyperLogLog sketches of the current day, and only sketches that have actually changed
+ * are merged into the node's persisted rows on a schedule. Estimates merge all persisted windows of all nodes
+ * with the sketches of this node that are not flushed yet. Daily windows past the roll-up age are rolled up into a single row per video,
+ * so the number of rows an estimate merges is bounded by the number of nodes and the days within the roll-up age.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class UniqueViewerService {
+    /**
+     * Rolled-up rows are told apart from the rows of nodes by a node id no host name can have.
+     */
+    static final String ROLLED_UP_NODE_ID = "*";
+    static final LocalDate ROLLED_UP_WINDOW_START = LocalDate.EPOCH;
+    private final VideoViewerSketchRepository videoViewerSketchRepository;
+    private final EngagementProperties engagementProperties;
+    private final VideoShards videoShards;
+    private final TransactionOperations transactionOperations;
+    private final Map<Long, Map<SketchWindow, HyperLogLog>> localSketches = new ConcurrentHashMap<>();
+    private final Set<SketchKey> dirtySketches = ConcurrentHashMap.newKeySet();
+
+    public void recordImpression(Long videoId, String viewerId) {
+        record(videoId, EngagementType.IMPRESSION, viewerId);
+    }
+
+    public void recordView(Long videoId, String viewerId) {
+        record(videoId, EngagementType.VIEW, viewerId);
+    }
+
+    @Transactional(readOnly = true)
+    public long estimateUniqueViewers(Long videoId, EngagementType engagementType) {
+        HyperLogLog merged = new HyperLogLog(engagementProperties.sketchPrecision());
+        for (VideoViewerSketch sketch : videoViewerSketchRepository.findAllByVideoIdAndEngagementType(videoId, engagementType)) {
+            merged = merge(merged, toHyperLogLog(sketch));
+        }
+        for (Map.Entry<SketchWindow, HyperLogLog> sketch : localSketches.getOrDefault(videoId, Map.of()).entrySet()) {
+            if (sketch.getKey().engagementType() == engagementType) {
+                merged = merge(merged, sketch.getValue());
+            }
+        }
+        return merged.estimate();
+    }
+
+    /**
+     * Sketch is removed from the dirty set before its registers are copied, so an update racing with the flush marks it dirty again
+     * and is persisted by the next flush. Sketches of past windows are dropped from memory once they are persisted,
+     * while per-video maps are kept, so a concurrent update never lands in a map that is already detached.
+     * Sketches are persisted in a transaction per shard, as sketches are kept on the shard of their video.
+     */
+    @Scheduled(fixedDelayString = "${engagement.sketch-flush-interval}")
+    public void flush() {
+        Map<Integer, List<SketchKey>> keysByShard = Set.copyOf(dirtySketches).stream()
+                .collect(Collectors.groupingBy(key -> videoShards.shardOf(key.videoId())));
+        keysByShard.values().forEach(keys -> transactionOperations.executeWithoutResult(status -> keys.forEach(this::flushSketch)));
+        evictPastWindows();
+    }
+
+    /**
+     * The rolled-up row is locked before the rows to roll up are read, so nodes rolling up the same video take turns,
+     * and the later one finds nothing left to roll up. A video that fails, e.g. as another node has just created its rolled-up row,
+     * is left to the next run.
+     */
+    @Scheduled(fixedDelayString = "${engagement.sketch-roll-up-interval}")
+    public void rollUp() {
+        LocalDate before = today().minusDays(engagementProperties.sketchRollUpAge().toDays());
+        List<Long> videoIds = videoViewerSketchRepository.findVideoIdsToRollUp(before, ROLLED_UP_NODE_ID,
+                PageRequest.ofSize(engagementProperties.sketchRollUpBatchSize()));
+        for (Long videoId : videoIds) {
+            try {
+                transactionOperations.executeWithoutResult(status -> rollUp(videoId, before));
+            } catch (DataAccessException e) {
+                log.warn("Failed to roll up viewer sketches of video {}", videoId, e);
+            }
+        }
+    }
+
+    @PreDestroy
+    void flushOnShutdown() {
+        flush();
+    }
+
+    private void flushSketch(SketchKey key) {
+        dirtySketches.remove(key);
+        HyperLogLog sketch = localSketches.getOrDefault(key.videoId(), Map.of()).get(key.window());
+        if (sketch != null) {
+            persist(key, sketch);
+        }
+    }
+
+    private void rollUp(Long videoId, LocalDate before) {
+        for (EngagementType engagementType : EngagementType.values()) {
+            VideoViewerSketch rolledUp = videoViewerSketchRepository.lockSketch(videoId, engagementType, ROLLED_UP_WINDOW_START, ROLLED_UP_NODE_ID)
+                    .orElseGet(() -> createSketch(videoId, engagementType, ROLLED_UP_WINDOW_START, ROLLED_UP_NODE_ID));
+            List<VideoViewerSketch> sketches = videoViewerSketchRepository.findAllByVideoIdAndEngagementTypeAndWindowStartBeforeAndNodeIdNot(
+                    videoId, engagementType, before, ROLLED_UP_NODE_ID);
+            if (sketches.isEmpty()) {
+                continue;
+            }
+            HyperLogLog merged = rolledUp.getRegisters() == null ? new HyperLogLog(engagementProperties.sketchPrecision()) : toHyperLogLog(rolledUp);
+            for (VideoViewerSketch sketch : sketches) {
+                merged = merge(merged, toHyperLogLog(sketch));
+            }
+            setRegisters(rolledUp, merged);
+            videoViewerSketchRepository.save(rolledUp);
+            videoViewerSketchRepository.deleteAll(sketches);
+        }
+    }
+
+    private void record(Long videoId, EngagementType engagementType, String viewerId) {
+        if (viewerId == null) {
+            return;
+        }
+        SketchWindow window = new SketchWindow(engagementType, today());
+        HyperLogLog sketch = localSketches.computeIfAbsent(videoId, id -> new ConcurrentHashMap<>())
+                .computeIfAbsent(window, w -> new HyperLogLog(engagementProperties.sketchPrecision()));
+        if (sketch.offer(viewerId)) {
+            dirtySketches.add(new SketchKey(videoId, window));
+        }
+    }
+
+    private void persist(SketchKey key, HyperLogLog sketch) {
+        VideoViewerSketch persisted = videoViewerSketchRepository.findByVideoIdAndEngagementTypeAndWindowStartAndNodeId(
+                        key.videoId(), key.window().engagementType(), key.window().windowStart(), engagementProperties.nodeId())
+                .orElseGet(() -> createSketch(key.videoId(), key.window().engagementType(), key.window().windowStart(), engagementProperties.nodeId()));
+        setRegisters(persisted, persisted.getRegisters() == null ? sketch : merge(toHyperLogLog(persisted), sketch));
+        videoViewerSketchRepository.save(persisted);
+    }
+
+    private static VideoViewerSketch createSketch(Long videoId, EngagementType engagementType, LocalDate windowStart, String nodeId) {
+        VideoViewerSketch sketch = new VideoViewerSketch();
+        sketch.setVideoId(videoId);
+        sketch.setEngagementType(engagementType);
+        sketch.setWindowStart(windowStart);
+        sketch.setNodeId(nodeId);
+        return sketch;
+    }
+
+    private static void setRegisters(VideoViewerSketch sketch, HyperLogLog registers) {
+        sketch.setSketchPrecision(registers.precision());
+        sketch.setRegisters(registers.toBytes());
+    }
+
+    private static HyperLogLog toHyperLogLog(VideoViewerSketch sketch) {
+        HyperLogLog hyperLogLog = HyperLogLog.fromBytes(sketch.getRegisters());
+        if (hyperLogLog.precision() != sketch.getSketchPrecision()) {
+            throw new IllegalStateException("Registers of viewer sketch " + sketch.getId() + " don't match its precision " + sketch.getSketchPrecision());
+        }
+        return hyperLogLog;
+    }
+
+    /**
+     * Sketches written with a different configured precision are merged at the lower precision, so changing the precision never fails a merge,
+     * but estimates only gain from a higher precision once no sketch of a lower one is merged.
+     * The first sketch is merged into unless it has to be reduced, the other one is never modified.
+     */
+    private static HyperLogLog merge(HyperLogLog sketch, HyperLogLog other) {
+        int precision = Math.min(sketch.precision(), other.precision());
+        return sketch.reduce(precision).merge(other.reduce(precision));
+    }
+
+    private void evictPastWindows() {
+        LocalDate today = today();
+        localSketches.forEach((videoId, windows) -> windows.keySet().removeIf(window ->
+                window.windowStart().isBefore(today) && !dirtySketches.contains(new SketchKey(videoId, window))));
+    }
+
+    private static LocalDate today() {
+        return LocalDate.now(ZoneOffset.UTC);
+    }
+
+    private record SketchWindow(EngagementType engagementType, LocalDate windowStart) {
+    }
+
+    private record SketchKey(Long videoId, SketchWindow window) {
+    }
+}
@@ -7,12 +7,32 @@ import java.io.IOException;
 /**
  * Service interface for handling operations related to video content storage.
  * This interface defines methods to upload, delete, and retrieve video files in the storage system.
- * Content always represented as a string that acts as a mock to the actual video content as suggested per task specification.
+ * Content always represented as text that acts as a mock to the actual video content as suggested per task specification.
  * Introduced cause there is a room for replacement by other storage alternatives, e.g. AWS S3.
+ * Implementation is chosen by the video-content-storage.type property: local (default) or s3.
  */
 public interface VideoContentStorageService {
-    String load(String videoLocation) throws IOException;
+    /**
+     * @return the whole content, as it's sent to the client, so it's never decoded on the way,
+     * streamed from the storage while it's written rather than read up front
+     */
+    ContentResource load(String videoLocation) throws IOException;
     String loadPreview(String videoLocation) throws IOException;
-    String upload(MultipartFile videoFile) throws IOException;
+    /**
+     * Reads up to {@code length} bytes of the content starting from {@code offset}, the result is shorter if the content ends earlier.
+     * The range is read into a single array, so it's meant for parts of the content, e.g. a preview or a chunk, the whole content is {@link #load(String)}.
+     */
+    byte[] loadRange(String videoLocation, long offset, long length) throws IOException;
+    default String upload(MultipartFile videoFile) throws IOException {
+        return upload(videoFile, videoFile.getOriginalFilename());
+    }
+    /**
+     * Stores the content under the given file name rather than the original one, e.g. a rendition next to the master it's derived from.
+     */
+    String upload(MultipartFile videoFile, String fileName) throws IOException;
+    /**
+     * Reverses {@link #upload(MultipartFile, String)}, returning the file name the content at the location was uploaded with.
+     */
+    String fileNameOf(String videoLocation);
     void delete(String videoLocation) throws IOException;
 }
@@ -0,0 +1,206 @@
+package com.mlavrenko.videostreaming.service;
+
+import com.mlavrenko.videostreaming.config.VideoIdFilterProperties;
+import com.mlavrenko.videostreaming.datasource.VideoShards;
+import com.mlavrenko.videostreaming.repository.VideoMetadataRepository;
+import com.mlavrenko.videostreaming.sketch.BloomFilter;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * Answers that a video certainly doesn't exist without a database round trip, so requests for random or deleted ids
+ * from scrapers and broken clients are rejected cheaply. Only false positives of the filter reach the database.
+ * Live ids are kept in a Bloom filter, which is rebuilt from the database at startup and periodically, and updated on publish.
+ * Ids found to be missing, including deleted ones, are remembered in a negative cache for a short time.
+ * Ids are allocated in blocks, every node and shard consuming blocks of its own, so ids don't ascend across the cluster.
+ * The filter only rejects ids of blocks it has read ids from, up to the highest id read from the block,
+ * while ids of other blocks and above that high-water mark always go to the database, so videos published by other nodes are found
+ * before the next rebuild. Ids above the highest id of their shard have never been committed, so they are rejected as well,
+ * and the highest ids are read again when they are older than the refresh interval, so random ids reach the database at most once per interval.
+ * Until the filter is built, every id goes to the database.
+ */
+@Slf4j
+@Service
+public class VideoIdFilter {
+    private final VideoMetadataRepository videoMetadataRepository;
+    private final VideoIdFilterProperties videoIdFilterProperties;
+    private final Map<Long, Long> missingIds = new ConcurrentHashMap<>();
+    private final Map<Long, Long> highestIdPerShard = new ConcurrentHashMap<>();
+    private final AtomicLong highestIdsReadAt;
+    private final Counter bloomRejections;
+    private final Counter highWaterMarkRejections;
+    private final Counter negativeCacheRejections;
+    private final Counter falsePositives;
+    private volatile KnownIds knownIds;
+    private volatile BloomFilter rebuiltIds;
+
+    public VideoIdFilter(VideoMetadataRepository videoMetadataRepository, VideoIdFilterProperties videoIdFilterProperties, MeterRegistry meterRegistry) {
+        this.videoMetadataRepository = videoMetadataRepository;
+        this.videoIdFilterProperties = videoIdFilterProperties;
+        this.bloomRejections = meterRegistry.counter("video.id.filter.rejections", "reason", "bloom");
+        this.negativeCacheRejections = meterRegistry.counter("video.id.filter.rejections", "reason", "negative-cache");
+        this.highWaterMarkRejections = meterRegistry.counter("video.id.filter.rejections", "reason", "high-water-mark");
+        this.highestIdsReadAt = new AtomicLong(System.nanoTime() - videoIdFilterProperties.highWaterMarkRefreshInterval().toNanos());
+        this.falsePositives = meterRegistry.counter("video.id.filter.false.positives");
+    }
+
+    public boolean mightExist(Long id) {
+        if (!videoIdFilterProperties.enabled()) {
+            return true;
+        }
+        Long missingUntil = missingIds.get(id);
+        if (missingUntil != null) {
+            if (System.nanoTime() - missingUntil < 0) {
+                negativeCacheRejections.increment();
+                return false;
+            }
+            missingIds.remove(id, missingUntil);
+        }
+        KnownIds known = knownIds;
+        if (known == null) {
+            return true;
+        }
+        if (isAboveHighestId(id)) {
+            highWaterMarkRejections.increment();
+            return false;
+        }
+        if (!known.covers(id) || known.liveIds().mightContain(id)) {
+            return true;
+        }
+        bloomRejections.increment();
+        return false;
+    }
+
+    public void recordExisting(Long id) {
+        missingIds.remove(id);
+        highestIdPerShard.merge(VideoShards.encodedShardOf(id), id, Math::max);
+        KnownIds known = knownIds;
+        if (known != null) {
+            known.liveIds().put(id);
+        }
+        BloomFilter rebuilding = rebuiltIds;
+        if (rebuilding != null) {
+            rebuilding.put(id);
+        }
+    }
+
+    public void recordMissing(Long id) {
+        KnownIds known = knownIds;
+        if (known != null && known.covers(id) && known.liveIds().mightContain(id)) {
+            falsePositives.increment();
+        }
+        if (missingIds.size() >= videoIdFilterProperties.negativeCacheMaxSize()) {
+            long now = System.nanoTime();
+            missingIds.values().removeIf(missingUntil -> now - missingUntil >= 0);
+            if (missingIds.size() >= videoIdFilterProperties.negativeCacheMaxSize()) {
+                return;
+            }
+        }
+        missingIds.put(id, System.nanoTime() + videoIdFilterProperties.negativeCacheTtl().toNanos());
+    }
+
+    /**
+     * Ids recorded while the filter is rebuilt are added to both filters, so none are lost when the rebuilt filter replaces the current one.
+     * Ids are read from the primary, a lagging replica would miss recently published videos.
+     */
+    @Transactional
+    @Scheduled(fixedDelayString = "${video-id-filter.rebuild-interval}", initialDelayString = "${video-id-filter.rebuild-interval}")
+    public void rebuild() {
+        if (!videoIdFilterProperties.enabled()) {
+            return;
+        }
+        long startedAt = System.nanoTime();
+        try (Stream<Long> ids = videoMetadataRepository.streamAllIds()) {
+            rebuild(videoMetadataRepository.count(), ids);
+        }
+        highestIdsReadAt.set(startedAt);
+    }
+
+    /**
+     * Builds the filter from ids already read, e.g. from a catalogue snapshot at startup.
+     * The highest ids of the snapshot may be outdated, so they are read again on the first id above them.
+     */
+    public void load(Collection<Long> ids) {
+        if (videoIdFilterProperties.enabled()) {
+            rebuild(ids.size(), ids.stream());
+        }
+    }
+
+    /**
+     * High-water marks are taken from the ids read here only, an id recorded as existing in between doesn't vouch for lower ids of its block,
+     * which may be committed by another node later.
+     */
+    private void rebuild(long liveCount, Stream<Long> ids) {
+        BloomFilter rebuilding = new BloomFilter(Math.max(videoIdFilterProperties.expectedIds(), 2 * liveCount),
+                videoIdFilterProperties.falsePositiveProbability());
+        Map<Long, Long> highestIdPerBlock = new HashMap<>();
+        int idBlockSize = videoIdFilterProperties.idBlockSize();
+        rebuiltIds = rebuilding;
+        try {
+            ids.forEach(id -> {
+                rebuilding.put(id);
+                highestIdPerBlock.merge(blockOf(id, idBlockSize), id, Math::max);
+                highestIdPerShard.merge(VideoShards.encodedShardOf(id), id, Math::max);
+            });
+            knownIds = new KnownIds(rebuilding, highestIdPerBlock, idBlockSize);
+        } finally {
+            rebuiltIds = null;
+        }
+        log.debug("Rebuilt video id filter of {} ids in {} blocks with {} bits", liveCount, highestIdPerBlock.size(), rebuilding.bitSize());
+    }
+
+    /**
+     * Only one request reads the highest ids again once they are outdated, concurrent ones go to the database meanwhile.
+     * Highest ids only ever grow, a deleted video doesn't make its id assignable again.
+     */
+    private boolean isAboveHighestId(long id) {
+        if (id <= highestIdOfShard(id)) {
+            return false;
+        }
+        long readAt = highestIdsReadAt.get();
+        long now = System.nanoTime();
+        if (now - readAt < videoIdFilterProperties.highWaterMarkRefreshInterval().toNanos()) {
+            return true;
+        }
+        if (!highestIdsReadAt.compareAndSet(readAt, now)) {
+            return false;
+        }
+        for (Long highestId : videoMetadataRepository.findHighestIds()) {
+            if (highestId != null) {
+                highestIdPerShard.merge(VideoShards.encodedShardOf(highestId), highestId, Math::max);
+            }
+        }
+        return id > highestIdOfShard(id);
+    }
+
+    private long highestIdOfShard(long id) {
+        return highestIdPerShard.getOrDefault(VideoShards.encodedShardOf(id), 0L);
+    }
+
+    /**
+     * Sequences start at 1 on every shard, so blocks are counted from the first id within the shard, and keyed together with the shard,
+     * which keeps blocks of different shards apart. Blocks can't be counted from the global id, as 2^48 is not a multiple of the block size.
+     */
+    private static long blockOf(long id, int idBlockSize) {
+        long localId = VideoShards.localIdOf(id);
+        return (id - localId) | Math.floorDiv(localId - 1, idBlockSize);
+    }
+
+    private record KnownIds(BloomFilter liveIds, Map<Long, Long> highestIdPerBlock, int idBlockSize) {
+        boolean covers(long id) {
+            Long highestId = highestIdPerBlock.get(blockOf(id, idBlockSize));
+            return highestId != null && id <= highestId;
+        }
+    }
+}
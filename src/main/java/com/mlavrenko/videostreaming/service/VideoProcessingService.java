@@ -0,0 +1,317 @@
+package com.mlavrenko.videostreaming.service;
+
+import com.mlavrenko.videostreaming.config.VideoProcessingProperties;
+import com.mlavrenko.videostreaming.datasource.ReadYourWritesTracker;
+import com.mlavrenko.videostreaming.domain.ProcessingStage;
+import com.mlavrenko.videostreaming.domain.ProcessingStatus;
+import com.mlavrenko.videostreaming.domain.VideoMetadata;
+import com.mlavrenko.videostreaming.domain.VideoProcessingJob;
+import com.mlavrenko.videostreaming.dto.VideoProcessingStatusDto;
+import com.mlavrenko.videostreaming.exception.ServiceOverloadedException;
+import com.mlavrenko.videostreaming.media.Mp4Probe;
+import com.mlavrenko.videostreaming.repository.VideoMetadataRepository;
+import com.mlavrenko.videostreaming.repository.VideoProcessingJobRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionOperations;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.io.IOException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.util.HexFormat;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Processes uploaded videos after publishing has returned: checksums the content, probes the container for the running time,
+ * splits the content into segments and enriches the metadata with what was found.
+ * Jobs are persisted together with the metadata of the published video and run on a small pool with a bounded queue.
+ * Publishing is rejected while the queue is full, so a burst of uploads can't pile up unbounded work on a node.
+ * Every stage persists its result and renews the lease of the job, so jobs interrupted by a restart are resumed from the stage they were at,
+ * and failed stages are retried on the next resume up to the configured number of attempts. Stages are idempotent,
+ * so a job taken over after an expired lease yields the same result even if the previous worker is still running.
+ * Storage I/O runs outside of transactions, every job update is a short transaction of its own.
+ */
+@Slf4j
+@Service
+public class VideoProcessingService {
+    private final VideoProcessingJobRepository videoProcessingJobRepository;
+    private final VideoMetadataRepository videoMetadataRepository;
+    private final VideoContentStorageService videoContentStorageService;
+    private final ReadYourWritesTracker readYourWritesTracker;
+    private final VideoProcessingProperties videoProcessingProperties;
+    private final TransactionOperations transactionOperations;
+    private final MeterRegistry meterRegistry;
+    private final ThreadPoolExecutor executor;
+    private final Set<Long> inFlight = ConcurrentHashMap.newKeySet();
+    private final Counter rejections;
+
+    public VideoProcessingService(VideoProcessingJobRepository videoProcessingJobRepository, VideoMetadataRepository videoMetadataRepository,
+                                  VideoContentStorageService videoContentStorageService, ReadYourWritesTracker readYourWritesTracker,
+                                  VideoProcessingProperties videoProcessingProperties, TransactionOperations transactionOperations,
+                                  MeterRegistry meterRegistry) {
+        this.videoProcessingJobRepository = videoProcessingJobRepository;
+        this.videoMetadataRepository = videoMetadataRepository;
+        this.videoContentStorageService = videoContentStorageService;
+        this.readYourWritesTracker = readYourWritesTracker;
+        this.videoProcessingProperties = videoProcessingProperties;
+        this.transactionOperations = transactionOperations;
+        this.meterRegistry = meterRegistry;
+        this.executor = new ThreadPoolExecutor(videoProcessingProperties.workers(), videoProcessingProperties.workers(), 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(videoProcessingProperties.queueCapacity()), Thread.ofPlatform().daemon().name("video-processing-", 0).factory(),
+                (task, pool) -> onDeferred(task));
+        this.rejections = meterRegistry.counter("video.processing.rejections");
+        Gauge.builder("video.processing.queue.depth", executor, pool -> pool.getQueue().size()).register(meterRegistry);
+        Gauge.builder("video.processing.active", executor, ThreadPoolExecutor::getActiveCount).register(meterRegistry);
+    }
+
+    /**
+     * Called before the upload, so a rejected publish doesn't transfer the content at all.
+     */
+    public void checkCapacity() {
+        if (executor.getQueue().remainingCapacity() == 0) {
+            rejections.increment();
+            throw new ServiceOverloadedException("Too many videos waiting for processing", videoProcessingProperties.retryAfter());
+        }
+    }
+
+    /**
+     * Has to be called in the transaction saving the video, the job is queued once it commits.
+     */
+    public void createJob(Long videoId) {
+        VideoProcessingJob job = new VideoProcessingJob();
+        job.setVideoId(videoId);
+        job.setStage(ProcessingStage.CHECKSUM);
+        job.setStatus(ProcessingStatus.QUEUED);
+        job.setUpdatedAt(Instant.now());
+        videoProcessingJobRepository.save(job);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    submit(videoId);
+                }
+            });
+        } else {
+            submit(videoId);
+        }
+    }
+
+    public Optional<VideoProcessingStatusDto> findStatus(Long videoId) {
+        return videoProcessingJobRepository.findByVideoId(videoId).map(VideoProcessingService::toVideoProcessingStatusDto);
+    }
+
+    /**
+     * Runs at startup too, which resumes jobs left behind by the previous run. Only as many jobs as fit the queue are picked up.
+     */
+    @Scheduled(fixedDelayString = "${video-processing.resume-interval}")
+    public void resumePendingJobs() {
+        int capacity = executor.getQueue().remainingCapacity();
+        if (capacity > 0) {
+            videoProcessingJobRepository.findVideoIdsToResume(Instant.now(), PageRequest.ofSize(capacity)).forEach(this::submit);
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        executor.shutdownNow();
+    }
+
+    void submit(Long videoId) {
+        if (inFlight.add(videoId)) {
+            executor.execute(new ProcessingTask(videoId));
+        }
+    }
+
+    void process(Long videoId) {
+        Optional<ClaimedJob> claimed = claim(videoId);
+        if (claimed.isEmpty()) {
+            return;
+        }
+        VideoProcessingJob job = claimed.get().job();
+        String videoLocation = claimed.get().videoLocation();
+        if (videoLocation == null) {
+            job.setAttempts(videoProcessingProperties.maxAttempts());
+            fail(job, "Video is deleted");
+            return;
+        }
+        ProcessingStage stage = job.getStage();
+        try {
+            while (stage != null) {
+                runStage(stage, job, videoLocation);
+                stage = next(stage);
+                if (stage == null) {
+                    job.setStatus(ProcessingStatus.COMPLETED);
+                    job.setLeaseExpiresAt(null);
+                } else {
+                    job.setStage(stage);
+                    job.setLeaseExpiresAt(Instant.now().plus(videoProcessingProperties.leaseDuration()));
+                }
+                job.setLastError(null);
+                job.setUpdatedAt(Instant.now());
+                job = videoProcessingJobRepository.save(job);
+            }
+        } catch (IOException | RuntimeException e) {
+            if (executor.isShutdown()) {
+                return;
+            }
+            log.warn("Processing of video {} failed at stage {}", videoId, stage, e);
+            job.setAttempts(job.getAttempts() + 1);
+            fail(job, String.valueOf(e.getMessage()));
+        }
+    }
+
+    /**
+     * The job is read on the primary in the claiming transaction, so a worker never starts from a stale replica copy.
+     */
+    private Optional<ClaimedJob> claim(Long videoId) {
+        Instant now = Instant.now();
+        return transactionOperations.execute(status -> {
+            if (videoProcessingJobRepository.claim(videoId, now, now.plus(videoProcessingProperties.leaseDuration())) == 0) {
+                return Optional.empty();
+            }
+            return videoProcessingJobRepository.findByVideoId(videoId)
+                    .map(job -> new ClaimedJob(job, videoMetadataRepository.findById(videoId).map(VideoMetadata::getVideoLocation).orElse(null)));
+        });
+    }
+
+    private void runStage(ProcessingStage stage, VideoProcessingJob job, String videoLocation) throws IOException {
+        long start = System.nanoTime();
+        String outcome = "failure";
+        try {
+            switch (stage) {
+                case CHECKSUM -> checksum(job, videoLocation);
+                case PROBE -> job.setProbedRunningTime(Mp4Probe.probeDuration(
+                        (offset, length) -> videoContentStorageService.loadRange(videoLocation, offset, length), job.getContentLength()).orElse(null));
+                case SEGMENT -> job.setSegmentCount(Math.toIntExact(Math.ceilDiv(job.getContentLength(), videoProcessingProperties.segmentSize().toBytes())));
+                case ENRICH -> enrich(job);
+            }
+            outcome = "success";
+        } finally {
+            meterRegistry.timer("video.processing.stage", "stage", stage.name().toLowerCase(), "outcome", outcome)
+                    .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /**
+     * Content is read in ranges, so checksumming a large video doesn't hold it in memory.
+     */
+    private void checksum(VideoProcessingJob job, String videoLocation) throws IOException {
+        MessageDigest digest = createDigest();
+        int chunkSize = Math.toIntExact(videoProcessingProperties.checksumChunkSize().toBytes());
+        long offset = 0;
+        byte[] chunk;
+        do {
+            chunk = videoContentStorageService.loadRange(videoLocation, offset, chunkSize);
+            digest.update(chunk);
+            offset += chunk.length;
+        } while (chunk.length == chunkSize);
+        job.setChecksum(HexFormat.of().formatHex(digest.digest()));
+        job.setContentLength(offset);
+    }
+
+    /**
+     * The running time given by the publisher is kept, the probed one only fills it in when it's missing.
+     */
+    private void enrich(VideoProcessingJob job) {
+        if (job.getProbedRunningTime() == null) {
+            return;
+        }
+        transactionOperations.executeWithoutResult(status -> videoMetadataRepository.findById(job.getVideoId())
+                .filter(video -> video.getRunningTime() == null || video.getRunningTime().isZero())
+                .ifPresent(video -> {
+                    readYourWritesTracker.recordWrite(video.getId());
+                    video.setRunningTime(job.getProbedRunningTime());
+                }));
+    }
+
+    /**
+     * A job that failed less times than allowed goes back to the queue and is retried from the failed stage on the next resume.
+     */
+    private void fail(VideoProcessingJob job, String error) {
+        job.setStatus(job.getAttempts() >= videoProcessingProperties.maxAttempts() ? ProcessingStatus.FAILED : ProcessingStatus.QUEUED);
+        job.setLeaseExpiresAt(null);
+        job.setLastError(error);
+        job.setUpdatedAt(Instant.now());
+        try {
+            videoProcessingJobRepository.save(job);
+        } catch (RuntimeException e) {
+            log.warn("Failed to record the failure of processing of video {}, it's resumed once its lease expires", job.getVideoId(), e);
+        }
+    }
+
+    private void onDeferred(Runnable task) {
+        if (task instanceof ProcessingTask processingTask) {
+            inFlight.remove(processingTask.videoId());
+        }
+    }
+
+    private static ProcessingStage next(ProcessingStage stage) {
+        ProcessingStage[] stages = ProcessingStage.values();
+        return stage.ordinal() + 1 < stages.length ? stages[stage.ordinal() + 1] : null;
+    }
+
+    private static MessageDigest createDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not supported", e);
+        }
+    }
+
+    private static VideoProcessingStatusDto toVideoProcessingStatusDto(VideoProcessingJob job) {
+        return new VideoProcessingStatusDto(
+                job.getVideoId(),
+                job.getStage(),
+                job.getStatus(),
+                job.getAttempts(),
+                job.getChecksum(),
+                job.getContentLength(),
+                job.getSegmentCount(),
+                job.getLastError(),
+                job.getUpdatedAt()
+        );
+    }
+
+    private record ClaimedJob(VideoProcessingJob job, String videoLocation) {
+    }
+
+    /**
+     * A task that doesn't fit the queue is left to be resumed later, its job stays persisted as queued.
+     */
+    private class ProcessingTask implements Runnable {
+        private final Long videoId;
+
+        ProcessingTask(Long videoId) {
+            this.videoId = videoId;
+        }
+
+        Long videoId() {
+            return videoId;
+        }
+
+        @Override
+        public void run() {
+            try {
+                process(videoId);
+            } catch (Exception e) {
+                log.warn("Failed to process video {}", videoId, e);
+            } finally {
+                inFlight.remove(videoId);
+            }
+        }
+    }
+}
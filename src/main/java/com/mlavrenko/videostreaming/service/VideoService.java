@@ -1,52 +1,156 @@
 package com.mlavrenko.videostreaming.service;
 
+import com.mlavrenko.videostreaming.datasource.ReadYourWritesTracker;
+import com.mlavrenko.videostreaming.domain.EngagementType;
 import com.mlavrenko.videostreaming.domain.VideoMetadata;
+import com.mlavrenko.videostreaming.dto.EncodedContentDto;
 import com.mlavrenko.videostreaming.dto.EngagementStatisticsDto;
+import com.mlavrenko.videostreaming.dto.FacetCountsDto;
+import com.mlavrenko.videostreaming.dto.PlaybackHintsDto;
+import com.mlavrenko.videostreaming.dto.RelatedVideoDto;
+import com.mlavrenko.videostreaming.dto.VideoCatalogueTermsDto;
+import com.mlavrenko.videostreaming.dto.VideoFacetTermsDto;
+import com.mlavrenko.videostreaming.dto.VideoManifestDto;
 import com.mlavrenko.videostreaming.dto.VideoMetadataDto;
 import com.mlavrenko.videostreaming.dto.VideoMetadataViewDto;
 import com.mlavrenko.videostreaming.dto.VideoMetadataWithPreviewDto;
+import com.mlavrenko.videostreaming.dto.VideoProcessingStatusDto;
+import com.mlavrenko.videostreaming.dto.VideoRelationTermsDto;
+import com.mlavrenko.videostreaming.dto.VideoRenditionDto;
+import com.mlavrenko.videostreaming.dto.VideoSearchTermsDto;
 import com.mlavrenko.videostreaming.exception.ResourceNotFoundException;
+import com.mlavrenko.videostreaming.jfr.VideoOperationEvent;
+import com.mlavrenko.videostreaming.media.ContentEncoding;
 import com.mlavrenko.videostreaming.repository.VideoMetadataRepository;
 import jakarta.validation.Valid;
-import lombok.RequiredArgsConstructor;
 import org.springframework.beans.BeanUtils;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.domain.Specification;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionOperations;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.util.StringUtils;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
+import java.time.Instant;
+import java.util.List;
 import java.util.Optional;
 
+/**
+ * Storage I/O never runs inside a database transaction, so slow storage can't drain the connection pool and starve metadata-only requests.
+ * Streaming and publishing methods are not transactional, every metadata step is a short transaction of its own.
+ */
 @Service
-@Transactional
-@RequiredArgsConstructor
 public class VideoService {
     private final VideoMetadataRepository videoMetadataRepository;
     private final VideoContentStorageService videoContentStorageService;
     private final VideoSearchSpecification videoSearchSpecification;
+    private final UniqueViewerService uniqueViewerService;
+    private final ReadYourWritesTracker readYourWritesTracker;
+    private final ContentPrefetcher contentPrefetcher;
+    private final ContentVariantService contentVariantService;
+    private final VideoIdFilter videoIdFilter;
+    private final AutocompleteService autocompleteService;
+    private final FacetService facetService;
+    private final CatalogueListingService catalogueListingService;
+    private final RelatedVideosService relatedVideosService;
+    private final RenditionService renditionService;
+    private final VideoProcessingService videoProcessingService;
+    private final PreviewService previewService;
+    private final TransactionOperations transactionOperations;
+    private final TransactionOperations readOnlyTransaction;
+    private final SingleFlight<Long, VideoSnapshot> metadataLookups = new SingleFlight<>();
+    private final SingleFlight<Long, PreviewService.LoadedPreview> previewReads = new SingleFlight<>();
+    private final SingleFlight<String, ContentResource> contentReads = new SingleFlight<>();
 
+    public VideoService(VideoMetadataRepository videoMetadataRepository, VideoContentStorageService videoContentStorageService,
+                        VideoSearchSpecification videoSearchSpecification, UniqueViewerService uniqueViewerService,
+                        ReadYourWritesTracker readYourWritesTracker, ContentPrefetcher contentPrefetcher, ContentVariantService contentVariantService,
+                        VideoIdFilter videoIdFilter, AutocompleteService autocompleteService, FacetService facetService,
+                        CatalogueListingService catalogueListingService, RelatedVideosService relatedVideosService, RenditionService renditionService,
+                        VideoProcessingService videoProcessingService, PreviewService previewService, TransactionOperations transactionOperations,
+                        PlatformTransactionManager transactionManager) {
+        this.videoMetadataRepository = videoMetadataRepository;
+        this.videoContentStorageService = videoContentStorageService;
+        this.videoSearchSpecification = videoSearchSpecification;
+        this.uniqueViewerService = uniqueViewerService;
+        this.readYourWritesTracker = readYourWritesTracker;
+        this.contentPrefetcher = contentPrefetcher;
+        this.contentVariantService = contentVariantService;
+        this.videoIdFilter = videoIdFilter;
+        this.autocompleteService = autocompleteService;
+        this.facetService = facetService;
+        this.catalogueListingService = catalogueListingService;
+        this.relatedVideosService = relatedVideosService;
+        this.renditionService = renditionService;
+        this.videoProcessingService = videoProcessingService;
+        this.previewService = previewService;
+        this.transactionOperations = transactionOperations;
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+        transactionTemplate.setReadOnly(true);
+        this.readOnlyTransaction = transactionTemplate;
+    }
+
+    /**
+     * Content is uploaded before the metadata is saved, and deleted as a compensation if saving fails,
+     * including failures on commit, which a transaction around the whole method would raise after the cleanup.
+     * The metadata is saved together with the processing job, so the video is returned once its content and the job are durable,
+     * and the processing continues in the background.
+     * The preview is generated from the uploaded file and compensated the same way as the content.
+     */
     public VideoMetadataDto publishVideo(@Valid VideoMetadataDto videoMetadataDto, MultipartFile videoFile) throws IOException {
+        videoProcessingService.checkCapacity();
+        VideoOperationEvent event = VideoOperationEvent.begin("publish", null);
         String videoLocation = null;
+        String previewLocation = null;
         try {
-            videoLocation = videoContentStorageService.upload(videoFile);
+            videoLocation = event.storage(() -> videoContentStorageService.upload(videoFile));
+            contentPrefetcher.invalidate(videoLocation);
+            contentVariantService.invalidate(videoLocation);
+            PreviewService.StoredPreview preview = event.storage(() -> previewService.create(videoFile));
+            previewLocation = preview.previewLocation();
             VideoMetadata videoMetadata = toVideoMetadata(videoMetadataDto, new VideoMetadata());
             videoMetadata.setVideoLocation(videoLocation);
-            return toVideoMetadataDto(videoMetadataRepository.save(videoMetadata));
+            videoMetadata.setPreviewLocation(previewLocation);
+            videoMetadata.setPreviewSize(preview.previewSize());
+            VideoMetadata saved = event.database(() -> transactionOperations.execute(status -> {
+                VideoMetadata persisted = videoMetadataRepository.save(videoMetadata);
+                videoProcessingService.createJob(persisted.getId());
+                indexAfterCommit(persisted);
+                return persisted;
+            }));
+            event.setVideoId(saved.getId());
+            readYourWritesTracker.recordWrite(saved.getId());
+            videoIdFilter.recordExisting(saved.getId());
+            return toVideoMetadataDto(saved);
         } catch (Exception e) {
-            rollbackVideoUpload(videoLocation);
+            String uploadedVideo = videoLocation;
+            String uploadedPreview = previewLocation;
+            compensate(e, () -> rollbackVideoUpload(uploadedVideo));
+            compensate(e, () -> previewService.delete(uploadedPreview));
             throw e;
+        } finally {
+            event.commit();
         }
     }
 
+    @Transactional
     public VideoMetadataDto updateMetadata(Long id, VideoMetadataDto videoMetadataDto) {
+        checkMightExist(id);
+        readYourWritesTracker.recordWrite(id);
         return videoMetadataRepository.findById(id)
                 .map(videoMetadata -> toVideoMetadata(videoMetadataDto, videoMetadata))
-                .map(VideoService::toVideoMetadataDto)
-                .orElseThrow(VideoService::createNotFoundException);
+                .map(videoMetadata -> {
+                    indexAfterCommit(videoMetadata);
+                    return toVideoMetadataDto(videoMetadata);
+                })
+                .orElseThrow(() -> createNotFoundException(id));
     }
 
     /**
@@ -55,24 +159,75 @@ public class VideoService {
      * 2. proceed as if resource has been deleted, cause result is the same as for deleting of existing resource - resource does not exist
      * The first approach is chosen.
      */
+    @Transactional
     public void softDeleteVideo(Long id) {
+        checkMightExist(id);
         if (videoMetadataRepository.existsById(id)) {
+            readYourWritesTracker.recordWrite(id);
+            videoMetadataRepository.markModified(id, Instant.now());
             videoMetadataRepository.deleteById(id);
+            afterCommit(() -> {
+                videoIdFilter.recordMissing(id);
+                autocompleteService.remove(id);
+                facetService.remove(id);
+                relatedVideosService.remove(id);
+                catalogueListingService.remove(id);
+            });
         } else {
-            throw createNotFoundException();
+            throw createNotFoundException(id);
         }
     }
 
-    public VideoMetadataWithPreviewDto loadVideo(Long id) throws IOException {
-        VideoMetadata video = videoMetadataRepository.findById(id).orElseThrow(VideoService::createNotFoundException);
-        video.incrementImpressions();
-        return new VideoMetadataWithPreviewDto(toVideoMetadataViewDto(video), videoContentStorageService.loadPreview(video.getVideoLocation()));
+    /**
+     * When a title launches, thousands of concurrent loads of the same video share a single metadata lookup and a single preview read,
+     * while engagement is still counted per request. The preview is read from its own precomputed object, not from the content.
+     */
+    public VideoMetadataWithPreviewDto loadVideo(Long id, String viewerId) throws IOException {
+        VideoOperationEvent event = VideoOperationEvent.begin("load", id);
+        try {
+            VideoSnapshot video = event.database(() -> findVideoSnapshot(id));
+            event.database(() -> videoMetadataRepository.incrementImpressions(id));
+            uniqueViewerService.recordImpression(id, viewerId);
+            PreviewService.LoadedPreview preview = event.storage(() -> previewReads.execute(id,
+                    () -> previewService.load(id, video.videoLocation(), video.previewLocation(), video.previewSize())));
+            contentPrefetcher.prefetch(video.videoLocation());
+            return new VideoMetadataWithPreviewDto(video.metadata(), preview.preview(), preview.bytes());
+        } finally {
+            event.commit();
+        }
     }
 
-    public String playVideo(Long id) throws IOException {
-        VideoMetadata videoMetadata = videoMetadataRepository.findById(id).orElseThrow(VideoService::createNotFoundException);
-        videoMetadata.incrementViews();
-        return videoContentStorageService.load(videoMetadata.getVideoLocation());
+    /**
+     * A precompressed variant is served as is when the client accepts its encoding, otherwise the content is read as before.
+     *
+     * @param acceptedEncodings encodings accepted by the client, the most preferred first
+     */
+    public EncodedContentDto playVideo(Long id, String viewerId, PlaybackHintsDto hints, List<ContentEncoding> acceptedEncodings) throws IOException {
+        VideoOperationEvent event = VideoOperationEvent.begin("play", id);
+        try {
+            VideoSnapshot video = event.database(() -> findVideoSnapshot(id));
+            event.database(() -> videoMetadataRepository.incrementViews(id));
+            uniqueViewerService.recordView(id, viewerId);
+            String videoLocation = event.database(() -> renditionService.selectLocation(id, video.videoLocation(), hints));
+            Optional<EncodedContentDto> variant = event.storage(() -> contentVariantService.load(videoLocation, acceptedEncodings));
+            if (variant.isPresent()) {
+                return variant.get();
+            }
+            ContentResource content = event.storage(() -> contentReads.execute(videoLocation, () -> contentPrefetcher.load(videoLocation)));
+            return new EncodedContentDto(content, content.contentLength(), ContentEncoding.IDENTITY);
+        } finally {
+            event.commit();
+        }
+    }
+
+    public VideoRenditionDto addRendition(Long id, @Valid VideoRenditionDto renditionDto, MultipartFile videoFile) throws IOException {
+        VideoSnapshot video = findVideoSnapshot(id);
+        return renditionService.addRendition(id, video.videoLocation(), renditionDto, videoFile);
+    }
+
+    public VideoManifestDto getManifest(Long id) throws IOException {
+        findVideoSnapshot(id);
+        return new VideoManifestDto(id, renditionService.findRenditions(id));
     }
 
     /**
@@ -81,16 +236,112 @@ public class VideoService {
      * In this case, by following YAGNI principle, it would be better to have only required params.
      * Also, it might be a case, that filtering might be done by any field, but adding all fields as optional params
      * might reduce maintainability, so some generic search alternative might be introduced.
+     * The method is not transactional, so a listing served from memory doesn't take a connection,
+     * the database query runs in the read-only transaction of the repository.
      */
     public Page<VideoMetadataViewDto> listAllVideos(String title, String director, Integer yearOfRelease, Pageable pageable) {
-        Specification<VideoMetadata> specification = videoSearchSpecification.createSearchSpecification(title, director, yearOfRelease);
-        return videoMetadataRepository.findAll(specification, pageable).map(VideoService::toVideoMetadataViewDto);
+        return catalogueListingService.find(title, director, yearOfRelease, pageable).orElseGet(() -> {
+            Specification<VideoMetadata> specification = videoSearchSpecification.createSearchSpecification(title, director, yearOfRelease);
+            return videoMetadataRepository.findAll(specification, pageable).map(VideoService::toVideoMetadataViewDto);
+        });
+    }
+
+    /**
+     * Counts follow the same title, director and year filters as the listing.
+     */
+    public FacetCountsDto countFacets(String title, String director, Integer yearOfRelease) {
+        return facetService.countFacets(title, director, yearOfRelease);
+    }
+
+    /**
+     * Related videos are served from memory, the database is only asked whether a video unknown to the precomputed lists exists.
+     */
+    public List<RelatedVideoDto> findRelatedVideos(Long id) {
+        checkMightExist(id);
+        return relatedVideosService.findRelated(id).orElseGet(() -> readOnlyTransaction.execute(status -> {
+            readYourWritesTracker.routeToPrimaryIfRecentlyWritten(id);
+            if (!videoMetadataRepository.existsById(id)) {
+                throw createNotFoundException(id);
+            }
+            return List.of();
+        }));
     }
 
+    /**
+     * Videos published before processing was introduced have no job and are reported as not found.
+     */
+    @Transactional(readOnly = true)
+    public VideoProcessingStatusDto getProcessingStatus(Long id) {
+        checkMightExist(id);
+        readYourWritesTracker.routeToPrimaryIfRecentlyWritten(id);
+        return videoProcessingService.findStatus(id).orElseThrow(() -> new ResourceNotFoundException("Processing job not found"));
+    }
+
+    @Transactional(readOnly = true)
     public EngagementStatisticsDto getEngagementStatistics(Long id) {
+        checkMightExist(id);
+        readYourWritesTracker.routeToPrimaryIfRecentlyWritten(id);
         return videoMetadataRepository.findById(id)
-                .map(video -> new EngagementStatisticsDto(video.getImpressions(), video.getViews()))
-                .orElseThrow(VideoService::createNotFoundException);
+                .map(video -> new EngagementStatisticsDto(
+                        video.getImpressions(),
+                        video.getViews(),
+                        uniqueViewerService.estimateUniqueViewers(id, EngagementType.IMPRESSION),
+                        uniqueViewerService.estimateUniqueViewers(id, EngagementType.VIEW)))
+                .orElseThrow(() -> createNotFoundException(id));
+    }
+
+    /**
+     * The lookup is a read-only transaction of its own, so it's served by a replica unless the video was recently written by this node.
+     */
+    private VideoSnapshot findVideoSnapshot(Long id) throws IOException {
+        checkMightExist(id);
+        return metadataLookups.execute(id, () -> readOnlyTransaction.execute(status -> {
+            readYourWritesTracker.routeToPrimaryIfRecentlyWritten(id);
+            VideoMetadata video = videoMetadataRepository.findById(id).orElseThrow(() -> createNotFoundException(id));
+            videoIdFilter.recordExisting(id);
+            return new VideoSnapshot(toVideoMetadataViewDto(video), video.getVideoLocation(), video.getPreviewLocation(), video.getPreviewSize());
+        }));
+    }
+
+    /**
+     * Guaranteed 404s are answered without a database round trip.
+     */
+    private void checkMightExist(Long id) {
+        if (!videoIdFilter.mightExist(id)) {
+            throw createNotFoundException();
+        }
+    }
+
+    /**
+     * Terms are taken from the video right away, while the indexes only see them once they are committed.
+     */
+    private void indexAfterCommit(VideoMetadata video) {
+        VideoSearchTermsDto searchTerms = toVideoSearchTermsDto(video);
+        VideoFacetTermsDto facetTerms = toVideoFacetTermsDto(video);
+        VideoRelationTermsDto relationTerms = toVideoRelationTermsDto(video);
+        VideoCatalogueTermsDto catalogueTerms = toVideoCatalogueTermsDto(video);
+        afterCommit(() -> {
+            autocompleteService.index(searchTerms);
+            facetService.index(facetTerms);
+            relatedVideosService.index(relationTerms);
+            catalogueListingService.index(catalogueTerms);
+        });
+    }
+
+    /**
+     * In-memory state is updated once the transaction commits, so a rolled back change is never served from it.
+     */
+    private static void afterCommit(Runnable update) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    update.run();
+                }
+            });
+        } else {
+            update.run();
+        }
     }
 
     private void rollbackVideoUpload(String videoLocation) throws IOException {
@@ -99,6 +350,33 @@ public class VideoService {
         }
     }
 
+    /**
+     * Runs a compensation of a failed publish, a compensation failing is attached to the original failure, so the other compensations still run
+     * and the original failure is the one rethrown.
+     */
+    private static void compensate(Exception failure, Compensation compensation) {
+        try {
+            compensation.run();
+        } catch (Exception compensationFailure) {
+            failure.addSuppressed(compensationFailure);
+        }
+    }
+
+    @FunctionalInterface
+    private interface Compensation {
+        void run() throws IOException;
+    }
+
+    /**
+     * A miss read on a replica is not remembered, as the video may have been published on another node and not be replicated yet.
+     */
+    private ResourceNotFoundException createNotFoundException(Long id) {
+        if (!readYourWritesTracker.isReadingFromReplica()) {
+            videoIdFilter.recordMissing(id);
+        }
+        return createNotFoundException();
+    }
+
     private static ResourceNotFoundException createNotFoundException() {
         return new ResourceNotFoundException("Video not found");
     }
@@ -132,14 +410,65 @@ public class VideoService {
         );
     }
 
+    private static VideoSearchTermsDto toVideoSearchTermsDto(VideoMetadata videoMetadata) {
+        return new VideoSearchTermsDto(
+                videoMetadata.getId(),
+                videoMetadata.getTitle(),
+                videoMetadata.getDirector(),
+                videoMetadata.getCastMembers(),
+                videoMetadata.getViews()
+        );
+    }
+
+    private static VideoFacetTermsDto toVideoFacetTermsDto(VideoMetadata videoMetadata) {
+        return new VideoFacetTermsDto(
+                videoMetadata.getId(),
+                videoMetadata.getTitle(),
+                videoMetadata.getDirector(),
+                videoMetadata.getGenre(),
+                videoMetadata.getYearOfRelease()
+        );
+    }
+
+    private static VideoRelationTermsDto toVideoRelationTermsDto(VideoMetadata videoMetadata) {
+        return new VideoRelationTermsDto(
+                videoMetadata.getId(),
+                videoMetadata.getTitle(),
+                videoMetadata.getDirector(),
+                videoMetadata.getCastMembers(),
+                videoMetadata.getGenre(),
+                videoMetadata.getYearOfRelease(),
+                videoMetadata.getViews()
+        );
+    }
+
+    private static VideoCatalogueTermsDto toVideoCatalogueTermsDto(VideoMetadata videoMetadata) {
+        return new VideoCatalogueTermsDto(
+                videoMetadata.getId(),
+                videoMetadata.getTitle(),
+                videoMetadata.getDirector(),
+                videoMetadata.getCastMembers(),
+                videoMetadata.getGenre(),
+                videoMetadata.getYearOfRelease(),
+                videoMetadata.getRunningTime(),
+                videoMetadata.getViews()
+        );
+    }
+
     /**
      * Assumption, for a simplicity, that the main actor goes first in a comma-delimited list of cast members.
      */
-    private static String getMainActor(String castMembers) {
+    static String getMainActor(String castMembers) {
         return Optional.ofNullable(castMembers)
                 .filter(s -> !s.isBlank())
                 .map(StringUtils::commaDelimitedListToStringArray)
                 .map(actors -> actors[0])
                 .orElse(null);
     }
+
+    /**
+     * Immutable view of the video shared by coalesced lookups, managed entities can't be shared between transactions.
+     */
+    private record VideoSnapshot(VideoMetadataViewDto metadata, String videoLocation, String previewLocation, Long previewSize) {
+    }
 }
@@ -0,0 +1,82 @@
+package com.mlavrenko.videostreaming.sketch;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+
+/**
+ * Bloom filter of long keys, used to answer that a video id certainly doesn't exist without asking the database.
+ * The filter is sized for the expected number of keys and the false positive probability, e.g. ~1.2MB for a million ids at 1%.
+ * Bit indexes are derived from two halves of a single 64-bit hash (Kirsch-Mitzenmacher), so a lookup hashes the key once.
+ * Keys can't be removed, so the filter is expected to be rebuilt from the source of truth from time to time.
+ * Updates are lock-free, so a single filter can be shared by all request threads.
+ */
+public final class BloomFilter {
+    private static final VarHandle BITS = MethodHandles.arrayElementVarHandle(long[].class);
+
+    private final long[] bits;
+    private final long bitSize;
+    private final int hashFunctions;
+
+    public BloomFilter(long expectedInsertions, double falsePositiveProbability) {
+        if (expectedInsertions <= 0) {
+            throw new IllegalArgumentException("Expected insertions must be positive: " + expectedInsertions);
+        }
+        if (falsePositiveProbability <= 0 || falsePositiveProbability >= 1) {
+            throw new IllegalArgumentException("False positive probability must be between 0 and 1: " + falsePositiveProbability);
+        }
+        long optimalBits = (long) Math.ceil(-expectedInsertions * Math.log(falsePositiveProbability) / (Math.log(2) * Math.log(2)));
+        this.bits = new long[Math.toIntExact(Math.max(1, (optimalBits + Long.SIZE - 1) / Long.SIZE))];
+        this.bitSize = (long) bits.length * Long.SIZE;
+        this.hashFunctions = (int) Math.max(1, Math.min(16, Math.round((double) bitSize / expectedInsertions * Math.log(2))));
+    }
+
+    /**
+     * @return true if the filter has changed, i.e. the key certainly hasn't been added before.
+     */
+    public boolean put(long key) {
+        long hash = hash(key);
+        int first = (int) hash;
+        int second = (int) (hash >>> 32);
+        boolean changed = false;
+        for (int i = 1; i <= hashFunctions; i++) {
+            long index = Math.floorMod(first + (long) i * second, bitSize);
+            long mask = 1L << index;
+            changed |= ((long) BITS.getAndBitwiseOr(bits, (int) (index >>> 6), mask) & mask) == 0;
+        }
+        return changed;
+    }
+
+    public boolean mightContain(long key) {
+        long hash = hash(key);
+        int first = (int) hash;
+        int second = (int) (hash >>> 32);
+        for (int i = 1; i <= hashFunctions; i++) {
+            long index = Math.floorMod(first + (long) i * second, bitSize);
+            if (((long) BITS.getVolatile(bits, (int) (index >>> 6)) & (1L << index)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public long bitSize() {
+        return bitSize;
+    }
+
+    public int hashFunctions() {
+        return hashFunctions;
+    }
+
+    /**
+     * MurmurHash3 finalizer, which spreads sequential ids over the whole 64-bit range.
+     */
+    static long hash(long key) {
+        long hash = key;
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
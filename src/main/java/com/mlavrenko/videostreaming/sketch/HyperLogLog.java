@@ -0,0 +1,160 @@
+package com.mlavrenko.videostreaming.sketch;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+
+/**
+ * HyperLogLog cardinality sketch, used to estimate the number of distinct viewers without storing viewer identifiers.
+ * Registers are kept as a plain byte array, so a sketch of precision p occupies 2^p bytes (2KB for the default p = 11,
+ * which gives ~2.3% standard error) and can be persisted as is.
+ * Sketches of the same precision are merged by taking a register-wise maximum, so merging is commutative and idempotent,
+ * which makes it safe to combine sketches from different nodes and time windows, or to merge the same sketch twice.
+ * Updates are lock-free, so a single sketch can be shared by all request threads.
+ */
+public final class HyperLogLog {
+    public static final int MIN_PRECISION = 4;
+    public static final int MAX_PRECISION = 16;
+    private static final VarHandle REGISTERS = MethodHandles.arrayElementVarHandle(byte[].class);
+
+    private final int precision;
+    private final byte[] registers;
+
+    public HyperLogLog(int precision) {
+        if (precision < MIN_PRECISION || precision > MAX_PRECISION) {
+            throw new IllegalArgumentException("Precision must be between " + MIN_PRECISION + " and " + MAX_PRECISION + ": " + precision);
+        }
+        this.precision = precision;
+        this.registers = new byte[1 << precision];
+    }
+
+    public static HyperLogLog fromBytes(byte[] registers) {
+        int precision = Integer.numberOfTrailingZeros(registers.length);
+        if (Integer.bitCount(registers.length) != 1) {
+            throw new IllegalArgumentException("Number of registers must be a power of two: " + registers.length);
+        }
+        HyperLogLog hyperLogLog = new HyperLogLog(precision);
+        System.arraycopy(registers, 0, hyperLogLog.registers, 0, registers.length);
+        return hyperLogLog;
+    }
+
+    /**
+     * @return true if the sketch has changed, i.e. it has to be persisted again.
+     */
+    public boolean offer(String value) {
+        return offerHash(hash(value));
+    }
+
+    boolean offerHash(long hash) {
+        int index = (int) (hash >>> (Long.SIZE - precision));
+        byte rank = (byte) (Long.numberOfLeadingZeros((hash << precision) | (1L << (precision - 1))) + 1);
+        byte current = (byte) REGISTERS.getVolatile(registers, index);
+        while (rank > current) {
+            if (REGISTERS.compareAndSet(registers, index, current, rank)) {
+                return true;
+            }
+            current = (byte) REGISTERS.getVolatile(registers, index);
+        }
+        return false;
+    }
+
+    public HyperLogLog merge(HyperLogLog other) {
+        if (other.precision != precision) {
+            throw new IllegalArgumentException("Cannot merge sketches of different precision: " + precision + " and " + other.precision);
+        }
+        for (int i = 0; i < registers.length; i++) {
+            byte rank = (byte) REGISTERS.getVolatile(other.registers, i);
+            byte current = (byte) REGISTERS.getVolatile(registers, i);
+            while (rank > current && !REGISTERS.compareAndSet(registers, i, current, rank)) {
+                current = (byte) REGISTERS.getVolatile(registers, i);
+            }
+        }
+        return this;
+    }
+
+    /**
+     * Folds the sketch into a sketch of a lower precision, which is what the lower precision sketch would be if it had been offered the same values,
+     * so sketches written with a different configured precision can still be merged.
+     * The bits of the index dropped by the lower precision are the leading bits of the rest of the hash, so they're prepended to the rank.
+     *
+     * @return this sketch if the precision is the same, a new sketch otherwise
+     */
+    public HyperLogLog reduce(int precision) {
+        if (precision > this.precision) {
+            throw new IllegalArgumentException("Cannot increase precision of a sketch: " + this.precision + " to " + precision);
+        }
+        if (precision == this.precision) {
+            return this;
+        }
+        HyperLogLog reduced = new HyperLogLog(precision);
+        int droppedBits = this.precision - precision;
+        for (int i = 0; i < registers.length; i++) {
+            byte rank = (byte) REGISTERS.getVolatile(registers, i);
+            if (rank == 0) {
+                continue;
+            }
+            int dropped = i & ((1 << droppedBits) - 1);
+            byte reducedRank = dropped == 0
+                    ? (byte) (rank + droppedBits)
+                    : (byte) (Integer.numberOfLeadingZeros(dropped) - (Integer.SIZE - droppedBits) + 1);
+            int index = i >>> droppedBits;
+            reduced.registers[index] = (byte) Math.max(reduced.registers[index], reducedRank);
+        }
+        return reduced;
+    }
+
+    public long estimate() {
+        double sum = 0;
+        int zeroRegisters = 0;
+        for (int i = 0; i < registers.length; i++) {
+            byte rank = (byte) REGISTERS.getVolatile(registers, i);
+            sum += 1.0 / (1L << rank);
+            if (rank == 0) {
+                zeroRegisters++;
+            }
+        }
+        double m = registers.length;
+        double estimate = alpha(registers.length) * m * m / sum;
+        if (estimate <= 2.5 * m && zeroRegisters > 0) {
+            estimate = m * Math.log(m / zeroRegisters);
+        }
+        return Math.round(estimate);
+    }
+
+    public int precision() {
+        return precision;
+    }
+
+    public byte[] toBytes() {
+        byte[] copy = new byte[registers.length];
+        for (int i = 0; i < registers.length; i++) {
+            copy[i] = (byte) REGISTERS.getVolatile(registers, i);
+        }
+        return copy;
+    }
+
+    private static double alpha(int m) {
+        return switch (m) {
+            case 16 -> 0.673;
+            case 32 -> 0.697;
+            case 64 -> 0.709;
+            default -> 0.7213 / (1 + 1.079 / m);
+        };
+    }
+
+    /**
+     * 64-bit FNV-1a over the characters followed by the MurmurHash3 finalizer, so no intermediate byte array is allocated.
+     */
+    static long hash(String value) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < value.length(); i++) {
+            hash ^= value.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
@@ -0,0 +1,143 @@
+package com.mlavrenko.videostreaming.snapshot;
+
+import com.mlavrenko.videostreaming.domain.Genre;
+import com.mlavrenko.videostreaming.dto.VideoCatalogueTermsDto;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Catalogue fields of all live videos, ordered by id, with the time up to which changes are included.
+ * The binary format is a header with a magic number, format version, watermark and number of videos, followed by the videos
+ * and a CRC32 of everything before it. Strings are length-prefixed UTF-8, a negative length stands for null,
+ * and running times are nanoseconds, the smallest long stands for null.
+ * A snapshot is memory-mapped on read, so the file is decoded straight from the page cache without copying it to the heap first.
+ */
+public record CatalogueSnapshot(Instant watermark, List<VideoCatalogueTermsDto> videos) {
+    private static final int MAGIC = 0x56435331;
+    private static final int VERSION = 2;
+    private static final int CHECKSUM_SIZE = Integer.BYTES;
+    private static final int MIN_VIDEO_SIZE = 2 * Long.BYTES + 6 * Integer.BYTES;
+    private static final long NO_RUNNING_TIME = Long.MIN_VALUE;
+
+    /**
+     * @throws IOException if the file is not a snapshot of this version or is corrupt, e.g. truncated by a crash while it was copied
+     */
+    public static CatalogueSnapshot read(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (channel.size() < CHECKSUM_SIZE) {
+                throw new IOException("Catalogue snapshot is truncated: " + path);
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            int contentSize = buffer.limit() - CHECKSUM_SIZE;
+            CRC32 checksum = new CRC32();
+            checksum.update(buffer.slice(0, contentSize));
+            if ((int) checksum.getValue() != buffer.getInt(contentSize)) {
+                throw new IOException("Catalogue snapshot checksum mismatch: " + path);
+            }
+            return decode(buffer.slice(0, contentSize), path);
+        }
+    }
+
+    /**
+     * Written to a temporary file and moved in place, so a crash while writing leaves the previous snapshot intact.
+     */
+    public void write(Path path) throws IOException {
+        Path directory = path.toAbsolutePath().getParent();
+        Files.createDirectories(directory);
+        Path temporary = Files.createTempFile(directory, path.getFileName().toString(), ".tmp");
+        try {
+            try (OutputStream file = new BufferedOutputStream(Files.newOutputStream(temporary))) {
+                CheckedOutputStream checked = new CheckedOutputStream(file, new CRC32());
+                encode(new DataOutputStream(checked));
+                new DataOutputStream(file).writeInt((int) checked.getChecksum().getValue());
+            }
+            Files.move(temporary, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(temporary);
+        }
+    }
+
+    private void encode(DataOutputStream out) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeLong(watermark.getEpochSecond());
+        out.writeInt(watermark.getNano());
+        out.writeInt(videos.size());
+        for (VideoCatalogueTermsDto video : videos) {
+            out.writeLong(video.id());
+            writeString(out, video.title());
+            writeString(out, video.director());
+            writeString(out, video.castMembers());
+            writeString(out, video.genre() == null ? null : video.genre().name());
+            out.writeInt(video.yearOfRelease());
+            out.writeLong(video.runningTime() == null ? NO_RUNNING_TIME : video.runningTime().toNanos());
+            out.writeInt(video.views());
+        }
+    }
+
+    private static CatalogueSnapshot decode(ByteBuffer buffer, Path path) throws IOException {
+        try {
+            if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+                throw new IOException("Not a catalogue snapshot of version " + VERSION + ": " + path);
+            }
+            Instant watermark = Instant.ofEpochSecond(buffer.getLong(), buffer.getInt());
+            int count = buffer.getInt();
+            if (count < 0 || count > buffer.remaining() / MIN_VIDEO_SIZE) {
+                throw new IOException("Catalogue snapshot is corrupt: " + path);
+            }
+            List<VideoCatalogueTermsDto> videos = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                long id = buffer.getLong();
+                String title = readString(buffer);
+                String director = readString(buffer);
+                String castMembers = readString(buffer);
+                String genre = readString(buffer);
+                int yearOfRelease = buffer.getInt();
+                long runningTime = buffer.getLong();
+                videos.add(new VideoCatalogueTermsDto(id, title, director, castMembers, genre == null ? null : Genre.valueOf(genre), yearOfRelease,
+                        runningTime == NO_RUNNING_TIME ? null : Duration.ofNanos(runningTime), buffer.getInt()));
+            }
+            return new CatalogueSnapshot(watermark, videos);
+        } catch (BufferUnderflowException | IndexOutOfBoundsException | IllegalArgumentException e) {
+            throw new IOException("Catalogue snapshot is corrupt: " + path, e);
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        if (length < 0) {
+            return null;
+        }
+        String value = StandardCharsets.UTF_8.decode(buffer.slice(buffer.position(), length)).toString();
+        buffer.position(buffer.position() + length);
+        return value;
+    }
+}
@@ -0,0 +1,294 @@
+package com.mlavrenko.videostreaming.controller;
+
+import com.mlavrenko.videostreaming.config.VideoContentStorageProperties;
+import com.mlavrenko.videostreaming.datasource.RecordingDataSource;
+import com.mlavrenko.videostreaming.datasource.StatementBudget;
+import com.mlavrenko.videostreaming.datasource.StatementRecording;
+import com.mlavrenko.videostreaming.datasource.StatementRecordingConfiguration;
+import com.mlavrenko.videostreaming.domain.Genre;
+import com.mlavrenko.videostreaming.domain.ProcessingStage;
+import com.mlavrenko.videostreaming.domain.ProcessingStatus;
+import com.mlavrenko.videostreaming.domain.VideoMetadata;
+import com.mlavrenko.videostreaming.domain.VideoProcessingJob;
+import com.mlavrenko.videostreaming.domain.VideoRendition;
+import com.mlavrenko.videostreaming.repository.VideoMetadataRepository;
+import com.mlavrenko.videostreaming.repository.VideoProcessingJobRepository;
+import com.mlavrenko.videostreaming.repository.VideoRenditionRepository;
+import com.mlavrenko.videostreaming.service.RelatedVideosService;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.util.FileSystemUtils;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.multipart;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Budgets of statements, rows fetched and connections per endpoint, so a change adding a database round trip,
+ * such as an entity load where a projection would do or a query for what is known in memory, fails here with the statements it ran.
+ * Unlike the other integration tests, these are not transactional, so every request takes connections of its own, as in production.
+ * They use a database of their own, so the rows they commit don't affect the ids expected by other tests.
+ * Sequences are used once before the measured request, so fetching a block of ids isn't counted against the endpoint.
+ */
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:statement-budget;mode=PostgreSQL;DB_CLOSE_DELAY=-1",
+        "video-content-storage.location=" + VideoControllerStatementBudgetTest.STORAGE_LOCATION
+})
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+@Import(StatementRecordingConfiguration.class)
+class VideoControllerStatementBudgetTest {
+    static final String STORAGE_LOCATION = "${java.io.tmpdir}/video-streaming-api/statement-budget";
+    private static final String API_PATH = "/api/v1/videos";
+    @Autowired
+    private MockMvc mockMvc;
+    @Autowired
+    private RecordingDataSource recordingDataSource;
+    @Autowired
+    private VideoMetadataRepository videoMetadataRepository;
+    @Autowired
+    private VideoRenditionRepository videoRenditionRepository;
+    @Autowired
+    private VideoProcessingJobRepository videoProcessingJobRepository;
+    @Autowired
+    private RelatedVideosService relatedVideosService;
+    @Autowired
+    private VideoContentStorageProperties videoContentStorageProperties;
+
+    @AfterEach
+    void tearDown() {
+        videoProcessingJobRepository.deleteAllInBatch();
+        videoRenditionRepository.deleteAllInBatch();
+        videoMetadataRepository.deleteAllInBatch();
+    }
+
+    @AfterAll
+    static void cleanUp() throws IOException {
+        FileSystemUtils.deleteRecursively(Path.of(System.getProperty("java.io.tmpdir"), "video-streaming-api", "statement-budget"));
+    }
+
+    @Test
+    void testPublishWhenValidThenWithinBudget() throws Exception {
+        saveVideo("Video A");
+        saveJob(saveVideo("Video B").getId());
+        MockMultipartFile metadata = new MockMultipartFile("metadata", "metadata.json", MediaType.APPLICATION_JSON_VALUE, """
+                {"title":"Video C","synopsis":"Synopsis C","director":"Director A","castMembers":"Actor A","yearOfRelease":2022,"genre":"DRAMA","runningTime":"PT90M"}"""
+                .getBytes());
+        MockMultipartFile videoFile = new MockMultipartFile("videoFile", "published.mp4", MediaType.APPLICATION_OCTET_STREAM_VALUE,
+                "Published content".getBytes());
+
+        StatementRecording recording = recordingDataSource.record(() ->
+                mockMvc.perform(multipart(API_PATH).file(metadata).file(videoFile)).andExpect(status().isAccepted()));
+
+        new StatementBudget(0, 2, 0, 1).assertWithin("POST " + API_PATH, recording);
+    }
+
+    @Test
+    void testUpdateWhenVideoExistsThenWithinBudget() throws Exception {
+        VideoMetadata video = saveVideo("Video A");
+
+        StatementRecording recording = recordingDataSource.record(() -> mockMvc.perform(put(API_PATH + "/" + video.getId())
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("""
+                                {"title":"Renamed","synopsis":"Synopsis A","director":"Director A","castMembers":"Actor A","yearOfRelease":2022,"genre":"DRAMA","runningTime":"PT90M"}"""))
+                .andExpect(status().isOk()));
+
+        new StatementBudget(1, 1, 1, 1).assertWithin("PUT " + API_PATH + "/{id}", recording);
+    }
+
+    /**
+     * The existence check is a query of its own, and deleting loads the entity before soft-deleting it.
+     */
+    @Test
+    void testDelistWhenVideoExistsThenWithinBudget() throws Exception {
+        VideoMetadata video = saveVideo("Video A");
+
+        StatementRecording recording = recordingDataSource.record(() ->
+                mockMvc.perform(delete(API_PATH + "/" + video.getId())).andExpect(status().isNoContent()));
+
+        new StatementBudget(2, 2, 2, 1).assertWithin("DELETE " + API_PATH + "/{id}", recording);
+    }
+
+    /**
+     * The impression is counted in a transaction of its own, after the metadata is read.
+     */
+    @Test
+    void testLoadWhenPreviewPrecomputedThenWithinBudget() throws Exception {
+        VideoMetadata video = createVideo("Video A");
+        Path preview = Files.writeString(createStorageFile("preview-a.preview"), "Preview");
+        video.setPreviewLocation(preview.toString());
+        video.setPreviewSize(videoContentStorageProperties.previewSize().toBytes());
+        VideoMetadata saved = videoMetadataRepository.save(video);
+
+        StatementRecording recording = recordingDataSource.record(() ->
+                mockMvc.perform(get(API_PATH + "/" + saved.getId())).andExpect(status().isOk()));
+
+        new StatementBudget(1, 1, 1, 2).assertWithin("GET " + API_PATH + "/{id}", recording);
+    }
+
+    @Test
+    void testPlayWhenNoHintsThenWithinBudget() throws Exception {
+        VideoMetadata video = saveVideo("Video A");
+
+        StatementRecording recording = recordingDataSource.record(() ->
+                mockMvc.perform(get(API_PATH + "/" + video.getId() + "/play")).andExpect(status().isOk()));
+
+        new StatementBudget(1, 1, 1, 2).assertWithin("GET " + API_PATH + "/{id}/play", recording);
+    }
+
+    @Test
+    void testAddRenditionWhenNewLabelThenWithinBudget() throws Exception {
+        VideoMetadata video = saveVideo("Video A");
+        videoRenditionRepository.save(createRendition(video.getId(), "480p", 1200));
+        MockMultipartFile rendition = new MockMultipartFile("rendition", "rendition.json", MediaType.APPLICATION_JSON_VALUE, """
+                {"label":"720p","bitrate":2500,"height":720}""".getBytes());
+        MockMultipartFile videoFile = new MockMultipartFile("videoFile", "video-720p.mp4", MediaType.APPLICATION_OCTET_STREAM_VALUE,
+                "Rendition content".getBytes());
+
+        StatementRecording recording = recordingDataSource.record(() -> mockMvc.perform(multipart(API_PATH + "/" + video.getId() + "/renditions")
+                        .file(rendition)
+                        .file(videoFile))
+                .andExpect(status().isCreated()));
+
+        new StatementBudget(2, 1, 1, 3).assertWithin("POST " + API_PATH + "/{id}/renditions", recording);
+    }
+
+    @Test
+    void testManifestWhenRenditionExistsThenWithinBudget() throws Exception {
+        VideoMetadata video = saveVideo("Video A");
+        videoRenditionRepository.save(createRendition(video.getId(), "480p", 1200));
+
+        StatementRecording recording = recordingDataSource.record(() ->
+                mockMvc.perform(get(API_PATH + "/" + video.getId() + "/manifest")).andExpect(status().isOk()));
+
+        new StatementBudget(2, 0, 2, 2).assertWithin("GET " + API_PATH + "/{id}/manifest", recording);
+    }
+
+    @Test
+    void testRelatedWhenPrecomputedThenServedWithoutDatabase() throws Exception {
+        VideoMetadata video = saveVideo("Video A");
+        saveVideo("Video B");
+        relatedVideosService.rebuild();
+
+        StatementRecording recording = recordingDataSource.record(() ->
+                mockMvc.perform(get(API_PATH + "/" + video.getId() + "/related")).andExpect(status().isOk()));
+
+        new StatementBudget(0, 0, 0, 0).assertWithin("GET " + API_PATH + "/{id}/related", recording);
+    }
+
+    /**
+     * A full page needs the count query for the total, only a first page that isn't full is counted without it.
+     */
+    @Test
+    void testListAllWhenPageFullThenWithinBudget() throws Exception {
+        saveVideo("Video A");
+        saveVideo("Video B");
+
+        StatementRecording recording = recordingDataSource.record(() ->
+                mockMvc.perform(get(API_PATH).param("size", "1")).andExpect(status().isOk()));
+
+        new StatementBudget(2, 0, 2, 1).assertWithin("GET " + API_PATH, recording);
+    }
+
+    @Test
+    void testFacetsWhenCalledThenServedWithoutDatabase() throws Exception {
+        StatementRecording recording = recordingDataSource.record(() ->
+                mockMvc.perform(get(API_PATH + "/facets").param("director", "director")).andExpect(status().isOk()));
+
+        new StatementBudget(0, 0, 0, 0).assertWithin("GET " + API_PATH + "/facets", recording);
+    }
+
+    @Test
+    void testAutocompleteWhenCalledThenServedWithoutDatabase() throws Exception {
+        StatementRecording recording = recordingDataSource.record(() ->
+                mockMvc.perform(get(API_PATH + "/autocomplete").param("prefix", "vid")).andExpect(status().isOk()));
+
+        new StatementBudget(0, 0, 0, 0).assertWithin("GET " + API_PATH + "/autocomplete", recording);
+    }
+
+    @Test
+    void testProcessingStatusWhenJobExistsThenWithinBudget() throws Exception {
+        VideoMetadata video = saveVideo("Video A");
+        saveJob(video.getId());
+
+        StatementRecording recording = recordingDataSource.record(() ->
+                mockMvc.perform(get(API_PATH + "/" + video.getId() + "/processing")).andExpect(status().isOk()));
+
+        new StatementBudget(1, 0, 1, 1).assertWithin("GET " + API_PATH + "/{id}/processing", recording);
+    }
+
+    /**
+     * Counters are read with the video, and unique viewers from the persisted sketches of each engagement type.
+     */
+    @Test
+    void testEngagementStatisticsWhenVideoExistsThenWithinBudget() throws Exception {
+        VideoMetadata video = saveVideo("Video A");
+
+        StatementRecording recording = recordingDataSource.record(() ->
+                mockMvc.perform(get(API_PATH + "/" + video.getId() + "/engagement-statistics")).andExpect(status().isOk()));
+
+        new StatementBudget(3, 0, 1, 1).assertWithin("GET " + API_PATH + "/{id}/engagement-statistics", recording);
+    }
+
+    private VideoMetadata saveVideo(String title) throws IOException {
+        return videoMetadataRepository.save(createVideo(title));
+    }
+
+    private VideoMetadata createVideo(String title) throws IOException {
+        Path content = Files.writeString(createStorageFile(title.replace(' ', '-') + "-" + System.nanoTime() + ".mp4"), "Content of " + title);
+        VideoMetadata video = new VideoMetadata();
+        video.setTitle(title);
+        video.setSynopsis("Synopsis of " + title);
+        video.setDirector("Director A");
+        video.setCastMembers("Actor A");
+        video.setGenre(Genre.DRAMA);
+        video.setYearOfRelease(2022);
+        video.setRunningTime(Duration.ofMinutes(90));
+        video.setVideoLocation(content.toString());
+        return video;
+    }
+
+    private Path createStorageFile(String fileName) throws IOException {
+        Path directory = Files.createDirectories(Path.of(videoContentStorageProperties.location()));
+        return directory.resolve(fileName);
+    }
+
+    /**
+     * Completed, so the processing workers don't pick it up.
+     */
+    private void saveJob(Long videoId) {
+        VideoProcessingJob job = new VideoProcessingJob();
+        job.setVideoId(videoId);
+        job.setStage(ProcessingStage.ENRICH);
+        job.setStatus(ProcessingStatus.COMPLETED);
+        job.setUpdatedAt(Instant.now());
+        videoProcessingJobRepository.save(job);
+    }
+
+    private static VideoRendition createRendition(Long videoId, String label, int bitrate) {
+        VideoRendition rendition = new VideoRendition();
+        rendition.setVideoId(videoId);
+        rendition.setLabel(label);
+        rendition.setBitrate(bitrate);
+        rendition.setHeight(480);
+        rendition.setVideoLocation("rendition-" + label + ".mp4");
+        return rendition;
+    }
+}
@@ -1,11 +1,16 @@
 package com.mlavrenko.videostreaming.controller;
 
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.mlavrenko.videostreaming.IntegrationTest;
 import com.mlavrenko.videostreaming.domain.Genre;
 import com.mlavrenko.videostreaming.domain.VideoMetadata;
+import com.mlavrenko.videostreaming.domain.VideoRendition;
 import com.mlavrenko.videostreaming.dto.VideoMetadataDto;
 import com.mlavrenko.videostreaming.repository.VideoMetadataRepository;
+import com.mlavrenko.videostreaming.repository.VideoRenditionRepository;
+import com.mlavrenko.videostreaming.service.FacetService;
+import com.mlavrenko.videostreaming.service.RelatedVideosService;
 import org.junit.jupiter.api.AfterAll;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.params.ParameterizedTest;
@@ -13,21 +18,31 @@ import org.junit.jupiter.params.provider.CsvSource;
 import org.mockito.Mockito;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+import org.springframework.http.converter.smile.MappingJackson2SmileHttpMessageConverter;
 import org.springframework.mock.web.MockMultipartFile;
 import org.springframework.test.web.servlet.MockMvc;
 
+import java.io.ByteArrayInputStream;
 import java.io.EOFException;
 import java.io.File;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.time.Duration;
+import java.util.Arrays;
+import java.util.zip.GZIPInputStream;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertAll;
 import static org.mockito.Mockito.doThrow;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.multipart;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
@@ -35,12 +50,23 @@ import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.
 @AutoConfigureMockMvc
 class VideoControllerTest {
     private static final String API_PATH = "/api/v1/videos";
+    private static final MediaType SMILE = MediaType.parseMediaType("application/x-jackson-smile");
     @Autowired
     private MockMvc mockMvc;
     @Autowired
     private ObjectMapper objectMapper;
     @Autowired
     private VideoMetadataRepository videoMetadataRepository;
+    @Autowired
+    private FacetService facetService;
+    @Autowired
+    private RelatedVideosService relatedVideosService;
+    @Autowired
+    private VideoRenditionRepository videoRenditionRepository;
+    @Autowired
+    private MappingJackson2CborHttpMessageConverter cborHttpMessageConverter;
+    @Autowired
+    private MappingJackson2SmileHttpMessageConverter smileHttpMessageConverter;
 
     @AfterAll
     static void cleanUp() throws IOException {
@@ -71,8 +97,8 @@ class VideoControllerTest {
                         .file(videoFile)
                         .contentType(MediaType.MULTIPART_FORM_DATA))
                 .andExpectAll(
-                        status().isCreated(),
-                        jsonPath("$.id").value(1),
+                        status().isAccepted(),
+                        jsonPath("$.id").isNumber(),
                         jsonPath("$.title").value(videoMetadataDto.title()),
                         jsonPath("$.director").value(videoMetadataDto.director()),
                         jsonPath("$.yearOfRelease").value(videoMetadataDto.yearOfRelease())
@@ -85,11 +111,24 @@ class VideoControllerTest {
                 .comparingOnlyFields("title", "director", "yearOfRelease", "castMembers", "genre", "runningTime")
                 .isEqualTo(videoMetadataDto);
 
+        Long id = videoMetadataRepository.findAll().getFirst().getId();
+        mockMvc.perform(get(API_PATH + "/" + id + "/processing"))
+                .andExpectAll(
+                        status().isOk(),
+                        jsonPath("$.videoId").value(id),
+                        jsonPath("$.stage").value("CHECKSUM"),
+                        jsonPath("$.status").value("QUEUED")
+                );
+
         File storedFile = new File("uploads/video.mp4");
         assertThat(storedFile).exists();
         assertThat(Files.readString(storedFile.toPath())).isEqualTo(videoContent);
 
+        Path storedPreview = Path.of(videoMetadataRepository.findAll().getFirst().getPreviewLocation());
+        assertThat(Files.readString(storedPreview)).isEqualTo(videoContent);
+
         Files.deleteIfExists(storedFile.toPath());
+        Files.deleteIfExists(storedPreview);
     }
 
     @Test
@@ -162,6 +201,13 @@ class VideoControllerTest {
         mockMvc.perform(get("/api/v1/videos/999/engagement-statistics")).andExpect(status().isNotFound());
     }
 
+    @Test
+    void testAutocompleteShouldReturnBadRequestWhenLimitIsNotPositive() throws Exception {
+        mockMvc.perform(get(API_PATH + "/autocomplete").param("prefix", "vid").param("limit", "-1"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.limit").exists());
+    }
+
     @ParameterizedTest
     @CsvSource({
             "Video A, , ",
@@ -191,6 +237,184 @@ class VideoControllerTest {
                 .andExpect(status().isOk());
     }
 
+    @Test
+    void testFacetsShouldCountMatchingVideosPerGenreAndYear() throws Exception {
+        videoMetadataRepository.save(createVideo("Video A", "Director A", Genre.ACTION, 2022));
+        videoMetadataRepository.save(createVideo("Video B", "Director A", Genre.DRAMA, 2023));
+        videoMetadataRepository.save(createVideo("Video C", "Director C", Genre.ACTION, 2015));
+        facetService.rebuild();
+
+        mockMvc.perform(get(API_PATH + "/facets")
+                        .param("director", "director a")
+                        .param("yearOfRelease", "2022"))
+                .andExpectAll(
+                        status().isOk(),
+                        jsonPath("$.total").value(1),
+                        jsonPath("$.genres.ACTION").value(1),
+                        jsonPath("$.genres.DRAMA").doesNotExist(),
+                        jsonPath("$.yearsOfRelease.2022").value(1),
+                        jsonPath("$.yearsOfRelease.2023").value(1),
+                        jsonPath("$.yearsOfRelease.2015").doesNotExist(),
+                        jsonPath("$.decades.2020").value(2)
+                );
+    }
+
+    @Test
+    void testRelatedShouldReturnVideosOfSameDirector() throws Exception {
+        VideoMetadata video = videoMetadataRepository.save(createVideo("Video A", "Director A", Genre.ACTION, 2022));
+        VideoMetadata sameDirector = videoMetadataRepository.save(createVideo("Video B", "Director A", Genre.DRAMA, 2000));
+        videoMetadataRepository.save(createVideo("Video C", "Director C", Genre.COMEDY, 1990));
+        relatedVideosService.rebuild();
+
+        mockMvc.perform(get(API_PATH + "/" + video.getId() + "/related"))
+                .andExpectAll(
+                        status().isOk(),
+                        jsonPath("$.length()").value(1),
+                        jsonPath("$[0].id").value(sameDirector.getId()),
+                        jsonPath("$[0].title").value("Video B")
+                );
+    }
+
+    @Test
+    void testManifestShouldListRenditionsFromHighestBitrate() throws Exception {
+        VideoMetadata video = videoMetadataRepository.save(createVideo("Video A", "Director A", Genre.ACTION, 2022));
+        videoRenditionRepository.save(createRendition(video.getId(), "480p", 1200, 480, "uploads/video-480p.mp4"));
+        videoRenditionRepository.save(createRendition(video.getId(), "1080p", 5000, 1080, "uploads/video-1080p.mp4"));
+
+        mockMvc.perform(get(API_PATH + "/" + video.getId() + "/manifest"))
+                .andExpectAll(
+                        status().isOk(),
+                        header().string("Accept-CH", "Downlink, Save-Data"),
+                        jsonPath("$.videoId").value(video.getId()),
+                        jsonPath("$.renditions.length()").value(2),
+                        jsonPath("$.renditions[0].label").value("1080p"),
+                        jsonPath("$.renditions[1].label").value("480p")
+                );
+    }
+
+    @Test
+    void testListAllShouldEncodeCborWhenAcceptedAndJsonByDefault() throws Exception {
+        VideoMetadata video = createVideo("Binary Video", "Director A", Genre.ACTION, 2022);
+        video.setRunningTime(Duration.ofMinutes(90));
+        videoMetadataRepository.save(video);
+
+        byte[] cbor = mockMvc.perform(get(API_PATH).param("title", "Binary").accept(MediaType.APPLICATION_CBOR))
+                .andExpectAll(
+                        status().isOk(),
+                        content().contentType(MediaType.APPLICATION_CBOR)
+                )
+                .andReturn().getResponse().getContentAsByteArray();
+        JsonNode page = cborHttpMessageConverter.getObjectMapper().readTree(cbor);
+
+        assertAll(
+                () -> assertThat(page.at("/content/0/title").asText()).isEqualTo("Binary Video"),
+                () -> assertThat(page.at("/content/0/genre").asText()).isEqualTo("ACTION"),
+                () -> assertThat(page.at("/content/0/runningTime").asLong()).isEqualTo(Duration.ofMinutes(90).toMillis()),
+                () -> mockMvc.perform(get(API_PATH).param("title", "Binary")).andExpectAll(
+                        content().contentType(MediaType.APPLICATION_JSON),
+                        jsonPath("$.content[0].runningTime").value("PT1H30M"))
+        );
+    }
+
+    @Test
+    void testEngagementStatisticsShouldEncodeSmileWhenAccepted() throws Exception {
+        VideoMetadata video = createVideo("Video A", "Director A", Genre.ACTION, 2022);
+        video.setViews(7);
+        video = videoMetadataRepository.save(video);
+
+        byte[] smile = mockMvc.perform(get(API_PATH + "/" + video.getId() + "/engagement-statistics").accept(SMILE))
+                .andExpectAll(
+                        status().isOk(),
+                        content().contentType(SMILE)
+                )
+                .andReturn().getResponse().getContentAsByteArray();
+
+        assertThat(smileHttpMessageConverter.getObjectMapper().readTree(smile).get("views").asLong()).isEqualTo(7);
+    }
+
+    @Test
+    void testPlayShouldServeRenditionWithinClientBandwidth() throws Exception {
+        Path master = Files.createTempFile("test-master", ".txt");
+        Path lowRendition = Files.createTempFile("test-rendition", ".txt");
+        Files.writeString(master, "master content");
+        Files.writeString(lowRendition, "low content");
+        VideoMetadata video = createVideo("Video A", "Director A", Genre.ACTION, 2022);
+        video.setVideoLocation(master.toString());
+        video = videoMetadataRepository.save(video);
+        videoRenditionRepository.save(createRendition(video.getId(), "480p", 1200, 480, lowRendition.toString()));
+
+        mockMvc.perform(get(API_PATH + "/" + video.getId() + "/play").header("Downlink", "2.5"))
+                .andExpectAll(
+                        status().isOk(),
+                        header().string("Accept-CH", "Downlink, Save-Data"),
+                        content().string("low content")
+                );
+        mockMvc.perform(get(API_PATH + "/" + video.getId() + "/play"))
+                .andExpect(content().string("master content"));
+
+        Files.deleteIfExists(master);
+        Files.deleteIfExists(lowRendition);
+    }
+
+    @Test
+    void testPlayShouldServeGzipVariantWhenAcceptedAndRangesOfIt() throws Exception {
+        Path master = Files.createTempFile("test-master", ".txt");
+        String masterContent = "frame ".repeat(1000);
+        Files.writeString(master, masterContent);
+        VideoMetadata video = createVideo("Video A", "Director A", Genre.ACTION, 2022);
+        video.setVideoLocation(master.toString());
+        video = videoMetadataRepository.save(video);
+        String playPath = API_PATH + "/" + video.getId() + "/play";
+
+        byte[] gzip = mockMvc.perform(get(playPath).header(HttpHeaders.ACCEPT_ENCODING, "gzip, deflate, br"))
+                .andExpectAll(
+                        status().isOk(),
+                        header().string(HttpHeaders.CONTENT_ENCODING, "gzip"),
+                        header().string(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING),
+                        header().string(HttpHeaders.ACCEPT_RANGES, "bytes")
+                )
+                .andReturn().getResponse().getContentAsByteArray();
+
+        assertAll(
+                () -> assertThat(new GZIPInputStream(new ByteArrayInputStream(gzip)).readAllBytes()).asString(StandardCharsets.UTF_8)
+                        .isEqualTo(masterContent),
+                () -> mockMvc.perform(get(playPath).header(HttpHeaders.ACCEPT_ENCODING, "gzip").header(HttpHeaders.RANGE, "bytes=10-19"))
+                        .andExpectAll(
+                                status().isPartialContent(),
+                                header().string(HttpHeaders.CONTENT_ENCODING, "gzip"),
+                                header().string(HttpHeaders.CONTENT_RANGE, "bytes 10-19/" + gzip.length),
+                                content().bytes(Arrays.copyOfRange(gzip, 10, 20))
+                        ),
+                () -> mockMvc.perform(get(playPath))
+                        .andExpectAll(
+                                status().isOk(),
+                                header().doesNotExist(HttpHeaders.CONTENT_ENCODING),
+                                content().string(masterContent)
+                        )
+        );
+
+        Files.deleteIfExists(master);
+    }
+
+    private static VideoMetadata createVideo(String title, String director, Genre genre, int yearOfRelease) {
+        VideoMetadata video = new VideoMetadata();
+        video.setTitle(title);
+        video.setDirector(director);
+        video.setGenre(genre);
+        video.setYearOfRelease(yearOfRelease);
+        return video;
+    }
+
+    private static VideoRendition createRendition(Long videoId, String label, int bitrate, int height, String videoLocation) {
+        VideoRendition rendition = new VideoRendition();
+        rendition.setVideoId(videoId);
+        rendition.setLabel(label);
+        rendition.setBitrate(bitrate);
+        rendition.setHeight(height);
+        rendition.setVideoLocation(videoLocation);
+        return rendition;
+    }
+
     private static VideoMetadataDto getVideoMetadataDto() {
         return new VideoMetadataDto(
                 null,
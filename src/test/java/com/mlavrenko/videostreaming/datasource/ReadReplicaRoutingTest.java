@@ -0,0 +1,126 @@
+package com.mlavrenko.videostreaming.datasource;
+
+import com.mlavrenko.videostreaming.domain.Genre;
+import com.mlavrenko.videostreaming.domain.VideoMetadata;
+import com.mlavrenko.videostreaming.dto.EngagementStatisticsDto;
+import com.mlavrenko.videostreaming.dto.VideoMetadataDto;
+import com.mlavrenko.videostreaming.dto.VideoMetadataViewDto;
+import com.mlavrenko.videostreaming.exception.ResourceNotFoundException;
+import com.mlavrenko.videostreaming.repository.VideoMetadataRepository;
+import com.mlavrenko.videostreaming.service.VideoService;
+import liquibase.exception.LiquibaseException;
+import liquibase.integration.spring.SpringLiquibase;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.core.io.DefaultResourceLoader;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.io.IOException;
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.junit.jupiter.api.Assertions.assertAll;
+
+/**
+ * Two embedded H2 databases stand in for the primary and the replica. Replication is not simulated,
+ * so rows differ between them on purpose, which shows what database served each read.
+ */
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:routing-primary;mode=PostgreSQL;DB_CLOSE_DELAY=-1",
+        "read-replicas.enabled=true",
+        "read-replicas.read-your-writes-window=1m",
+        "read-replicas.replicas[0].url=" + ReadReplicaRoutingTest.REPLICA_URL,
+        "read-replicas.replicas[0].username=sa",
+        "read-replicas.replicas[0].password=password"
+})
+@ActiveProfiles("test")
+class ReadReplicaRoutingTest {
+    static final String REPLICA_URL = "jdbc:h2:mem:routing-replica;mode=PostgreSQL;DB_CLOSE_DELAY=-1";
+    private static final String INSERT_VIDEO = """
+            INSERT INTO video_metadata (id, deleted, title, director, year_of_release, genre, impressions, views)
+            VALUES (?, FALSE, ?, 'Replica Director', 2020, 'DRAMA', ?, ?)""";
+    @Autowired
+    private VideoService videoService;
+    @Autowired
+    private VideoMetadataRepository videoMetadataRepository;
+    private JdbcTemplate replicaJdbcTemplate;
+
+    @BeforeEach
+    void setUp() throws LiquibaseException {
+        DriverManagerDataSource replica = new DriverManagerDataSource(REPLICA_URL, "sa", "password");
+        SpringLiquibase liquibase = new SpringLiquibase();
+        liquibase.setDataSource(replica);
+        liquibase.setChangeLog("classpath:/db/changelog/db.changelog-master.xml");
+        liquibase.setResourceLoader(new DefaultResourceLoader());
+        liquibase.afterPropertiesSet();
+        replicaJdbcTemplate = new JdbcTemplate(replica);
+    }
+
+    @AfterEach
+    void tearDown() {
+        videoMetadataRepository.deleteAllInBatch();
+        replicaJdbcTemplate.update("DELETE FROM video_metadata");
+    }
+
+    @Test
+    void testListAllVideosWhenReplicaAvailableThenReadsFromReplica() {
+        VideoMetadata video = videoMetadataRepository.save(createVideo("Primary title"));
+        replicaJdbcTemplate.update(INSERT_VIDEO, video.getId(), "Replica title", 0, 0);
+
+        assertThat(videoService.listAllVideos(null, null, null, PageRequest.of(0, 10)))
+                .extracting(VideoMetadataViewDto::title)
+                .containsExactly("Replica title");
+    }
+
+    @Test
+    void testGetEngagementStatisticsWhenVideoRecentlyUpdatedThenReadsYourWritesFromPrimary() {
+        VideoMetadata updated = videoMetadataRepository.save(createVideo("Updated"));
+        VideoMetadata untouched = videoMetadataRepository.save(createVideo("Untouched"));
+        replicaJdbcTemplate.update(INSERT_VIDEO, updated.getId(), "Updated", 7, 3);
+        replicaJdbcTemplate.update(INSERT_VIDEO, untouched.getId(), "Untouched", 7, 3);
+
+        videoService.updateMetadata(updated.getId(), new VideoMetadataDto(
+                null, "Updated again", "Synopsis", "Director", "Actor", 2021, Genre.DRAMA, Duration.ofMinutes(90)));
+
+        assertAll(
+                () -> assertThat(videoService.getEngagementStatistics(updated.getId())).isEqualTo(new EngagementStatisticsDto(0, 0, 0, 0)),
+                () -> assertThat(videoService.getEngagementStatistics(untouched.getId())).isEqualTo(new EngagementStatisticsDto(7, 3, 0, 0))
+        );
+    }
+
+    @Test
+    void testGetManifestWhenVideoRecentlyUpdatedThenFindsItOnPrimary() throws IOException {
+        VideoMetadata video = videoMetadataRepository.save(createVideo("Updated"));
+
+        videoService.updateMetadata(video.getId(), new VideoMetadataDto(
+                null, "Updated again", "Synopsis", "Director", "Actor", 2021, Genre.DRAMA, Duration.ofMinutes(90)));
+
+        assertThat(videoService.getManifest(video.getId()).videoId()).isEqualTo(video.getId());
+    }
+
+    @Test
+    void testGetManifestWhenVideoNotReplicatedYetThenMissIsNotRemembered() throws IOException {
+        VideoMetadata video = videoMetadataRepository.save(createVideo("Not replicated"));
+
+        assertThatThrownBy(() -> videoService.getManifest(video.getId())).isInstanceOf(ResourceNotFoundException.class);
+        replicaJdbcTemplate.update(INSERT_VIDEO, video.getId(), "Not replicated", 0, 0);
+
+        assertThat(videoService.getManifest(video.getId()).videoId()).isEqualTo(video.getId());
+    }
+
+    private static VideoMetadata createVideo(String title) {
+        VideoMetadata video = new VideoMetadata();
+        video.setTitle(title);
+        video.setDirector("Primary Director");
+        video.setYearOfRelease(2020);
+        video.setGenre(Genre.DRAMA);
+        return video;
+    }
+}
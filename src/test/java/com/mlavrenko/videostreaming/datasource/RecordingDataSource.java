@@ -0,0 +1,123 @@
+package com.mlavrenko.videostreaming.datasource;
+
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * Test-time proxy of the data source, recording statements executed, rows fetched and connections held by the code run
+ * by {@link #record(RecordedAction)}. Only connections acquired on the recording thread are recorded, so background work,
+ * such as scheduled rebuilds or processing jobs, doesn't count against the request that happened to run at the same time.
+ */
+public class RecordingDataSource extends DelegatingDataSource {
+    private final ThreadLocal<StatementRecording> currentRecording = new ThreadLocal<>();
+
+    public RecordingDataSource(DataSource targetDataSource) {
+        super(targetDataSource);
+    }
+
+    public StatementRecording record(RecordedAction action) throws Exception {
+        StatementRecording recording = new StatementRecording();
+        currentRecording.set(recording);
+        try {
+            action.run();
+        } finally {
+            currentRecording.remove();
+        }
+        return recording;
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        return recordConnection(super.getConnection());
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        return recordConnection(super.getConnection(username, password));
+    }
+
+    private Connection recordConnection(Connection connection) {
+        StatementRecording recording = currentRecording.get();
+        if (recording == null) {
+            return connection;
+        }
+        long acquiredAt = System.nanoTime();
+        recording.recordConnection();
+        boolean[] closed = new boolean[1];
+        return proxy(Connection.class, (proxy, method, args) -> {
+            if ("close".equals(method.getName()) && !closed[0]) {
+                closed[0] = true;
+                recording.recordConnectionHold(System.nanoTime() - acquiredAt);
+            }
+            Object result = invoke(connection, method, args);
+            if (result instanceof Statement statement) {
+                String sql = args != null && args.length > 0 && args[0] instanceof String prepared ? prepared : null;
+                return recordStatement(method.getReturnType(), statement, sql, recording);
+            }
+            return result;
+        });
+    }
+
+    /**
+     * Statements of a batch are recorded one by one when the batch is executed.
+     */
+    private static Object recordStatement(Class<?> type, Statement statement, String preparedSql, StatementRecording recording) {
+        int[] batched = new int[1];
+        return proxy(type, (proxy, method, args) -> {
+            String name = method.getName();
+            String sql = args != null && args.length > 0 && args[0] instanceof String executed ? executed : preparedSql;
+            if ("addBatch".equals(name)) {
+                batched[0]++;
+            } else if ("executeBatch".equals(name) || "executeLargeBatch".equals(name)) {
+                for (int i = 0; i < batched[0]; i++) {
+                    recording.recordStatement(sql);
+                }
+                batched[0] = 0;
+            } else if (name.startsWith("execute")) {
+                recording.recordStatement(sql);
+            }
+            Object result = invoke(statement, method, args);
+            if (result instanceof ResultSet resultSet) {
+                return recordRows(resultSet, recording);
+            }
+            return result;
+        });
+    }
+
+    private static ResultSet recordRows(ResultSet resultSet, StatementRecording recording) {
+        return proxy(ResultSet.class, (proxy, method, args) -> {
+            Object result = invoke(resultSet, method, args);
+            if ("next".equals(method.getName()) && Boolean.TRUE.equals(result)) {
+                recording.recordRow();
+            }
+            return result;
+        });
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T proxy(Class<T> type, InvocationHandler handler) {
+        return (T) Proxy.newProxyInstance(RecordingDataSource.class.getClassLoader(), new Class<?>[]{type}, handler);
+    }
+
+    private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    @FunctionalInterface
+    public interface RecordedAction {
+        void run() throws Exception;
+    }
+}
@@ -0,0 +1,82 @@
+package com.mlavrenko.videostreaming.datasource;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.springframework.transaction.support.TransactionSynchronizationManager.setCurrentTransactionReadOnly;
+
+class ReplicaRoutingDataSourceTest {
+    private final DataSource primary = mock(DataSource.class);
+    private final DataSource replica = mock(DataSource.class);
+    private final Connection primaryConnection = mock(Connection.class);
+    private final Connection replicaConnection = mock(Connection.class);
+    private final ReplicaRoutingDataSource routingDataSource = new ReplicaRoutingDataSource(primary, List.of(replica));
+
+    @BeforeEach
+    void setUp() throws SQLException {
+        when(primary.getConnection()).thenReturn(primaryConnection);
+    }
+
+    @AfterEach
+    void tearDown() {
+        setCurrentTransactionReadOnly(false);
+    }
+
+    @Test
+    void testGetConnectionWhenReadWriteTransactionThenRoutesToPrimary() throws SQLException {
+        when(replica.getConnection()).thenReturn(replicaConnection);
+
+        assertThat(routingDataSource.getConnection()).isSameAs(primaryConnection);
+    }
+
+    @Test
+    void testGetConnectionWhenReadOnlyTransactionThenRoutesToReplica() throws SQLException {
+        when(replica.getConnection()).thenReturn(replicaConnection);
+        setCurrentTransactionReadOnly(true);
+
+        assertThat(routingDataSource.getConnection()).isSameAs(replicaConnection);
+    }
+
+    @Test
+    void testGetConnectionWithCredentialsWhenReadOnlyTransactionThenRoutesToReplicaWithCredentials() throws SQLException {
+        when(primary.getConnection("user", "secret")).thenReturn(primaryConnection);
+        when(replica.getConnection("user", "secret")).thenReturn(replicaConnection);
+        Connection readWrite = routingDataSource.getConnection("user", "secret");
+        setCurrentTransactionReadOnly(true);
+
+        assertAll(
+                () -> assertThat(readWrite).isSameAs(primaryConnection),
+                () -> assertThat(routingDataSource.getConnection("user", "secret")).isSameAs(replicaConnection)
+        );
+    }
+
+    @Test
+    void testGetConnectionWhenReplicaFailsThenFailsOverToPrimaryUntilHealthy() throws SQLException {
+        when(replica.getConnection()).thenThrow(new SQLException("Connection refused"));
+        setCurrentTransactionReadOnly(true);
+
+        Connection failedOver = routingDataSource.getConnection();
+        int healthyAfterFailure = routingDataSource.getHealthyReplicaCount();
+
+        when(replica.getConnection()).thenReturn(replicaConnection);
+        when(replicaConnection.isValid(1)).thenReturn(true);
+        routingDataSource.checkHealth();
+
+        assertAll(
+                () -> assertThat(failedOver).isSameAs(primaryConnection),
+                () -> assertThat(healthyAfterFailure).isZero(),
+                () -> assertThat(routingDataSource.getHealthyReplicaCount()).isOne(),
+                () -> assertThat(routingDataSource.getConnection()).isSameAs(replicaConnection)
+        );
+    }
+}
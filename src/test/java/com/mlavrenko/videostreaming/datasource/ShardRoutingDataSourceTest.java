@@ -0,0 +1,37 @@
+package com.mlavrenko.videostreaming.datasource;
+
+import org.junit.jupiter.api.Test;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class ShardRoutingDataSourceTest {
+    private final DataSource firstShard = mock(DataSource.class);
+    private final DataSource secondShard = mock(DataSource.class);
+    private final Connection firstShardConnection = mock(Connection.class);
+    private final Connection secondShardConnection = mock(Connection.class);
+    private final ShardRoutingDataSource routingDataSource = new ShardRoutingDataSource(List.of(firstShard, secondShard));
+
+    @Test
+    void testGetConnectionWithCredentialsWhenShardBoundThenRoutesToShardWithCredentials() throws SQLException {
+        when(firstShard.getConnection("user", "secret")).thenReturn(firstShardConnection);
+        when(secondShard.getConnection("user", "secret")).thenReturn(secondShardConnection);
+        Connection unbound = routingDataSource.getConnection("user", "secret");
+        Integer previous = ShardRoutingDataSource.bind(1);
+        try {
+            assertAll(
+                    () -> assertThat(unbound).isSameAs(firstShardConnection),
+                    () -> assertThat(routingDataSource.getConnection("user", "secret")).isSameAs(secondShardConnection)
+            );
+        } finally {
+            ShardRoutingDataSource.restore(previous);
+        }
+    }
+}
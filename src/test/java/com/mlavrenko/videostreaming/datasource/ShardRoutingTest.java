@@ -0,0 +1,115 @@
+package com.mlavrenko.videostreaming.datasource;
+
+import com.mlavrenko.videostreaming.domain.Genre;
+import com.mlavrenko.videostreaming.domain.VideoMetadata;
+import com.mlavrenko.videostreaming.dto.VideoMetadataViewDto;
+import com.mlavrenko.videostreaming.repository.VideoMetadataRepository;
+import com.mlavrenko.videostreaming.service.VideoService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.support.TransactionOperations;
+
+import java.util.List;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.junit.jupiter.api.Assertions.assertAll;
+
+/**
+ * Three embedded H2 databases stand in for the shards, each migrated by Liquibase on startup.
+ * Rows are read from every shard directly, which shows what shard a video was routed to.
+ */
+@SpringBootTest(properties = {
+        "spring.datasource.url=" + ShardRoutingTest.FIRST_SHARD_URL,
+        "sharding.enabled=true",
+        "sharding.shards[0].url=" + ShardRoutingTest.SECOND_SHARD_URL,
+        "sharding.shards[0].username=sa",
+        "sharding.shards[0].password=password",
+        "sharding.shards[1].url=" + ShardRoutingTest.THIRD_SHARD_URL,
+        "sharding.shards[1].username=sa",
+        "sharding.shards[1].password=password"
+})
+@ActiveProfiles("test")
+class ShardRoutingTest {
+    static final String FIRST_SHARD_URL = "jdbc:h2:mem:shard-0;mode=PostgreSQL;DB_CLOSE_DELAY=-1";
+    static final String SECOND_SHARD_URL = "jdbc:h2:mem:shard-1;mode=PostgreSQL;DB_CLOSE_DELAY=-1";
+    static final String THIRD_SHARD_URL = "jdbc:h2:mem:shard-2;mode=PostgreSQL;DB_CLOSE_DELAY=-1";
+    private static final List<JdbcTemplate> SHARDS = Stream.of(FIRST_SHARD_URL, SECOND_SHARD_URL, THIRD_SHARD_URL)
+            .map(url -> new JdbcTemplate(new DriverManagerDataSource(url, "sa", "password")))
+            .toList();
+    @Autowired
+    private VideoService videoService;
+    @Autowired
+    private VideoMetadataRepository videoMetadataRepository;
+    @Autowired
+    private VideoShards videoShards;
+    @Autowired
+    private TransactionOperations transactionOperations;
+
+    @AfterEach
+    void tearDown() {
+        SHARDS.forEach(shard -> shard.update("DELETE FROM video_metadata"));
+    }
+
+    @Test
+    void testSaveWhenVideosCreatedThenSpreadAcrossShardsWithIdsOfTheirShard() {
+        List<Long> ids = IntStream.range(0, 6).mapToObj(index -> videoMetadataRepository.save(createVideo("Video " + index)).getId()).toList();
+
+        assertAll(
+                () -> assertThat(ids).doesNotHaveDuplicates(),
+                () -> assertThat(videoShards.shardCount()).isEqualTo(3),
+                () -> IntStream.range(0, SHARDS.size()).forEach(shard -> assertThat(findIds(shard))
+                        .hasSize(2)
+                        .allSatisfy(id -> assertThat(videoShards.shardOf(id)).isEqualTo(shard))),
+                () -> assertThat(ids).allSatisfy(id -> assertThat(videoMetadataRepository.findById(id)).isPresent())
+        );
+    }
+
+    @Test
+    void testListAllVideosWhenVideosOnEveryShardThenPageMergedInSortOrderWithTotalOfAllShards() {
+        Stream.of("Echo", "Alpha", "Foxtrot", "Charlie", "Delta", "Bravo", "Golf").forEach(title -> videoMetadataRepository.save(createVideo(title)));
+
+        Page<VideoMetadataViewDto> page = videoService.listAllVideos(null, null, null, PageRequest.of(1, 3, Sort.by("title")));
+
+        assertAll(
+                () -> assertThat(page.getContent()).extracting(VideoMetadataViewDto::title).containsExactly("Delta", "Echo", "Foxtrot"),
+                () -> assertThat(page.getTotalElements()).isEqualTo(7),
+                () -> assertThat(page.getTotalPages()).isEqualTo(3),
+                () -> assertThat(videoMetadataRepository.count()).isEqualTo(7)
+        );
+    }
+
+    @Test
+    void testTransactionWhenAccessingVideosOfAnotherShardThenRejected() {
+        Long first = videoMetadataRepository.save(createVideo("First")).getId();
+        Long second = videoMetadataRepository.save(createVideo("Second")).getId();
+
+        assertThatThrownBy(() -> transactionOperations.executeWithoutResult(status -> {
+            videoMetadataRepository.findById(first);
+            videoMetadataRepository.findById(second);
+        })).isInstanceOf(IllegalStateException.class);
+    }
+
+    private static List<Long> findIds(int shard) {
+        return SHARDS.get(shard).queryForList("SELECT id FROM video_metadata", Long.class);
+    }
+
+    private static VideoMetadata createVideo(String title) {
+        VideoMetadata video = new VideoMetadata();
+        video.setTitle(title);
+        video.setDirector("Director");
+        video.setYearOfRelease(2020);
+        video.setGenre(Genre.DRAMA);
+        return video;
+    }
+}
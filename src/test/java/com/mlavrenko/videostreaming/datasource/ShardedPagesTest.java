@@ -0,0 +1,74 @@
+package com.mlavrenko.videostreaming.datasource;
+
+import com.mlavrenko.videostreaming.domain.Genre;
+import com.mlavrenko.videostreaming.domain.VideoMetadata;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertAll;
+
+class ShardedPagesTest {
+
+    @Test
+    void testHeadOfWhenPageRequestedThenEveryRowUpToEndOfPageSortedWithIdTieBreak() {
+        Pageable head = ShardedPages.headOf(PageRequest.of(2, 10, Sort.by("title")));
+
+        assertAll(
+                () -> assertThat(head.getPageNumber()).isZero(),
+                () -> assertThat(head.getPageSize()).isEqualTo(30),
+                () -> assertThat(head.getSort()).isEqualTo(Sort.by("title", "id"))
+        );
+    }
+
+    @Test
+    void testMergeWhenShardsSortedThenRequestedPageOfMergedOrderWithTotalOfAllShards() {
+        Pageable pageable = PageRequest.of(1, 2, Sort.by("title"));
+        List<Page<VideoMetadata>> shardPages = List.of(
+                page(10, video(1, "Alpha"), video(2, "Delta")),
+                page(5, video(3, "Bravo"), video(4, "Bravo")),
+                page(0));
+
+        Page<VideoMetadata> merged = ShardedPages.merge(shardPages, pageable);
+
+        assertAll(
+                () -> assertThat(merged.getContent()).extracting(VideoMetadata::getId).containsExactly(4L, 2L),
+                () -> assertThat(merged.getTotalElements()).isEqualTo(15),
+                () -> assertThat(merged.getPageable()).isEqualTo(pageable)
+        );
+    }
+
+    @Test
+    void testMergeWhenDescendingWithNullsAndEnumsThenDatabaseOrderFollowed() {
+        VideoMetadata untitled = video(1, null);
+        VideoMetadata drama = video(2, "Drama");
+        drama.setGenre(Genre.DRAMA);
+        VideoMetadata comedy = video(3, "Comedy");
+        comedy.setGenre(Genre.COMEDY);
+
+        assertAll(
+                () -> assertThat(ShardedPages.merge(List.of(page(2, drama, untitled)), PageRequest.of(0, 3, Sort.by("title").descending())).getContent())
+                        .containsExactly(untitled, drama),
+                () -> assertThat(ShardedPages.merge(List.of(page(1, drama), page(1, comedy)), PageRequest.of(0, 2, Sort.by("genre"))).getContent())
+                        .containsExactly(comedy, drama)
+        );
+    }
+
+    @SafeVarargs
+    private static <T> Page<T> page(long total, T... content) {
+        return new PageImpl<>(List.of(content), PageRequest.of(0, Math.max(1, content.length)), total);
+    }
+
+    private static VideoMetadata video(long id, String title) {
+        VideoMetadata video = new VideoMetadata();
+        video.setId(id);
+        video.setTitle(title);
+        return video;
+    }
+}
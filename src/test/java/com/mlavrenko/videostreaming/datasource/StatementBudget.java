@@ -0,0 +1,37 @@
+package com.mlavrenko.videostreaming.datasource;
+
+import com.mlavrenko.videostreaming.datasource.StatementRecording.StatementType;
+
+import java.util.List;
+
+/**
+ * Upper bounds of the database work of an endpoint. A recording over budget fails with a table of the budget next to what was recorded,
+ * followed by the recorded statements, so the change that added a round trip is easy to spot.
+ * Connection hold time is reported but not budgeted, it depends on the machine running the tests.
+ */
+public record StatementBudget(int reads, int writes, int rows, int connections) {
+    public void assertWithin(String endpoint, StatementRecording recording) {
+        List<Line> lines = List.of(
+                new Line("reads", reads, recording.count(StatementType.READ)),
+                new Line("writes", writes, recording.count(StatementType.WRITE)),
+                new Line("rows fetched", rows, recording.rows()),
+                new Line("connections", connections, recording.connections()));
+        if (lines.stream().noneMatch(Line::exceeded)) {
+            return;
+        }
+        StringBuilder report = new StringBuilder(endpoint).append(" exceeded its statement budget\n");
+        report.append(String.format("  %-16s %8s %8s%n", "", "budget", "actual"));
+        lines.forEach(line -> report.append(String.format("  %-16s %8d %8d%s%n", line.name(), line.budget(), line.actual(),
+                line.exceeded() ? "   <-- +" + (line.actual() - line.budget()) : "")));
+        report.append(String.format("  %-16s %8s %8.1f ms%n", "connection hold", "-", recording.connectionHold().toNanos() / 1e6));
+        report.append("Recorded statements:\n");
+        recording.statements().forEach(statement -> report.append(String.format("  %-6s %s%n", statement.type(), statement.sql())));
+        throw new AssertionError(report.toString());
+    }
+
+    private record Line(String name, int budget, int actual) {
+        boolean exceeded() {
+            return actual > budget;
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package com.mlavrenko.videostreaming.datasource;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Statements, rows and connections recorded by {@link RecordingDataSource} for one action, e.g. a request.
+ */
+public class StatementRecording {
+    private final List<RecordedStatement> statements = new ArrayList<>();
+    private int rows;
+    private int connections;
+    private long connectionHoldNanos;
+
+    synchronized void recordStatement(String sql) {
+        statements.add(new RecordedStatement(StatementType.of(sql), sql));
+    }
+
+    synchronized void recordRow() {
+        rows++;
+    }
+
+    synchronized void recordConnection() {
+        connections++;
+    }
+
+    synchronized void recordConnectionHold(long nanos) {
+        connectionHoldNanos += nanos;
+    }
+
+    public synchronized List<RecordedStatement> statements() {
+        return List.copyOf(statements);
+    }
+
+    public synchronized int count(StatementType type) {
+        return (int) statements.stream().filter(statement -> statement.type() == type).count();
+    }
+
+    public synchronized int rows() {
+        return rows;
+    }
+
+    public synchronized int connections() {
+        return connections;
+    }
+
+    /**
+     * Sum of the time from acquiring to closing each connection.
+     */
+    public synchronized Duration connectionHold() {
+        return Duration.ofNanos(connectionHoldNanos);
+    }
+
+    public record RecordedStatement(StatementType type, String sql) {
+    }
+
+    /**
+     * Anything other than a query counts as a write, since it may change state.
+     */
+    public enum StatementType {
+        READ,
+        WRITE;
+
+        static StatementType of(String sql) {
+            String keyword = sql == null ? "" : sql.stripLeading().split("\\s+", 2)[0].toLowerCase(Locale.ROOT);
+            return switch (keyword) {
+                case "select", "with", "values" -> READ;
+                default -> WRITE;
+            };
+        }
+    }
+}
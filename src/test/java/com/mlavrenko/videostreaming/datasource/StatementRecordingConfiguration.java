@@ -0,0 +1,23 @@
+package com.mlavrenko.videostreaming.datasource;
+
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+
+import javax.sql.DataSource;
+
+/**
+ * Wraps the application data source into a {@link RecordingDataSource}, which can then be injected into the test.
+ */
+@TestConfiguration(proxyBeanMethods = false)
+public class StatementRecordingConfiguration {
+    @Bean
+    static BeanPostProcessor recordingDataSourcePostProcessor() {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                return bean instanceof DataSource dataSource && !(bean instanceof RecordingDataSource) ? new RecordingDataSource(dataSource) : bean;
+            }
+        };
+    }
+}
@@ -0,0 +1,132 @@
+package com.mlavrenko.videostreaming.jfr;
+
+import com.mlavrenko.videostreaming.config.FlightRecorderProperties;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.boot.actuate.endpoint.web.WebEndpointResponse;
+import org.springframework.core.io.Resource;
+import org.springframework.util.unit.DataSize;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertAll;
+
+class FlightRecordingEndpointTest {
+    @TempDir
+    private Path recordingDirectory;
+    private FlightRecordingEndpoint flightRecordingEndpoint;
+
+    @AfterEach
+    void stopRecording() {
+        if (flightRecordingEndpoint != null) {
+            flightRecordingEndpoint.stop();
+        }
+    }
+
+    @Test
+    void testDumpWhenRecordingStartedThenEventsAboveThresholdRecorded() throws Exception {
+        flightRecordingEndpoint = createFlightRecordingEndpoint(Duration.ZERO);
+        flightRecordingEndpoint.start(null);
+        StorageOperationEvent storageOperation = StorageOperationEvent.begin("load", "uploads/video.mp4");
+        storageOperation.setBytes(1024);
+        storageOperation.commit();
+        VideoOperationEvent videoOperation = VideoOperationEvent.begin("play", 42L);
+        videoOperation.database(() -> sleep(Duration.ofMillis(5)));
+        videoOperation.commit();
+
+        WebEndpointResponse<Resource> response = flightRecordingEndpoint.dump();
+
+        List<RecordedEvent> events = RecordingFile.readAllEvents(response.getBody().getFile().toPath());
+        RecordedEvent recordedStorageOperation = findEvent(events, "com.mlavrenko.videostreaming.StorageOperation");
+        RecordedEvent recordedVideoOperation = findEvent(events, "com.mlavrenko.videostreaming.VideoOperation");
+        assertAll(
+                () -> assertThat(response.getStatus()).isEqualTo(WebEndpointResponse.STATUS_OK),
+                () -> assertThat(recordedStorageOperation.getString("path")).isEqualTo("uploads/video.mp4"),
+                () -> assertThat(recordedStorageOperation.getLong("bytes")).isEqualTo(1024),
+                () -> assertThat(recordedVideoOperation.getLong("videoId")).isEqualTo(42),
+                () -> assertThat(recordedVideoOperation.getDuration("databaseTime")).isGreaterThanOrEqualTo(Duration.ofMillis(5)),
+                () -> assertThat(recordedVideoOperation.getDuration("storageTime")).isZero()
+        );
+    }
+
+    @Test
+    void testDumpWhenEventsBelowThresholdThenNotRecorded() throws Exception {
+        flightRecordingEndpoint = createFlightRecordingEndpoint(Duration.ofHours(1));
+        flightRecordingEndpoint.start(null);
+        StorageOperationEvent.begin("load", "uploads/video.mp4").commit();
+
+        WebEndpointResponse<Resource> response = flightRecordingEndpoint.dump();
+
+        assertThat(RecordingFile.readAllEvents(response.getBody().getFile().toPath()))
+                .noneMatch(event -> event.getEventType().getName().startsWith("com.mlavrenko.videostreaming."));
+    }
+
+    @Test
+    void testDumpWhenNoRecordingStartedOrStoppedThenNotFound() throws Exception {
+        flightRecordingEndpoint = createFlightRecordingEndpoint(Duration.ZERO);
+        WebEndpointResponse<Resource> notStarted = flightRecordingEndpoint.dump();
+        flightRecordingEndpoint.start(null);
+        flightRecordingEndpoint.stop();
+
+        WebEndpointResponse<Resource> stopped = flightRecordingEndpoint.dump();
+
+        assertAll(
+                () -> assertThat(notStarted.getStatus()).isEqualTo(WebEndpointResponse.STATUS_NOT_FOUND),
+                () -> assertThat(stopped.getStatus()).isEqualTo(WebEndpointResponse.STATUS_NOT_FOUND)
+        );
+    }
+
+    @Test
+    void testDumpWhenDumpedTwiceThenFilePerDumpDeletedOnceRead() throws Exception {
+        flightRecordingEndpoint = createFlightRecordingEndpoint(Duration.ZERO);
+        flightRecordingEndpoint.start(null);
+        Resource first = flightRecordingEndpoint.dump().getBody();
+        Resource second = flightRecordingEndpoint.dump().getBody();
+
+        try (InputStream content = first.getInputStream()) {
+            content.transferTo(OutputStream.nullOutputStream());
+        }
+
+        assertAll(
+                () -> assertThat(first.getFile()).isNotEqualTo(second.getFile()),
+                () -> assertThat(first.getFile()).doesNotExist(),
+                () -> assertThat(second.getFile()).exists()
+        );
+    }
+
+    @Test
+    void testStartWhenRecordingRunningThenRecordingKept() throws Exception {
+        flightRecordingEndpoint = createFlightRecordingEndpoint(Duration.ZERO);
+        Object startTime = flightRecordingEndpoint.start(null).get("startTime");
+
+        assertThat(flightRecordingEndpoint.start(Duration.ofMinutes(1)))
+                .containsEntry("state", "RUNNING")
+                .containsEntry("startTime", startTime);
+    }
+
+    private FlightRecordingEndpoint createFlightRecordingEndpoint(Duration threshold) {
+        return new FlightRecordingEndpoint(new FlightRecorderProperties(recordingDirectory.toString(),
+                Duration.ofMinutes(5), DataSize.ofMegabytes(16),
+                new FlightRecorderProperties.Thresholds(threshold, threshold, threshold, threshold)));
+    }
+
+    private static RecordedEvent findEvent(List<RecordedEvent> events, String name) {
+        return events.stream()
+                .filter(event -> event.getEventType().getName().equals(name))
+                .findFirst()
+                .orElseThrow();
+    }
+
+    private static Void sleep(Duration duration) throws InterruptedException {
+        Thread.sleep(duration);
+        return null;
+    }
+}
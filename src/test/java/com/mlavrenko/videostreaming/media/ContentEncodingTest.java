@@ -0,0 +1,55 @@
+package com.mlavrenko.videostreaming.media;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.NullAndEmptySource;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.GZIPInputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertAll;
+
+class ContentEncodingTest {
+    @ParameterizedTest
+    @ValueSource(strings = {"gzip", "GZIP", "br, gzip", "gzip;q=0.5, identity", "*", "deflate, *;q=0.1", "gzip ; q=1.0"})
+    void testAcceptedByWhenGzipAcceptedThenGzipListed(String acceptEncoding) {
+        assertThat(ContentEncoding.acceptedBy(acceptEncoding)).containsExactly(ContentEncoding.GZIP);
+    }
+
+    @ParameterizedTest
+    @NullAndEmptySource
+    @ValueSource(strings = {"identity", "br, deflate", "gzip;q=0", "*;q=0", "*, gzip;q=0", "gzip;q=invalid"})
+    void testAcceptedByWhenGzipNotAcceptedThenNothingListed(String acceptEncoding) {
+        assertThat(ContentEncoding.acceptedBy(acceptEncoding)).isEmpty();
+    }
+
+    @Test
+    void testEncodeWhenGzipThenDecodedToContent() throws IOException {
+        byte[] content = "frame ".repeat(1000).getBytes(StandardCharsets.UTF_8);
+
+        byte[] encoded = ContentEncoding.GZIP.encode(content);
+
+        assertAll(
+                () -> assertThat(decodeGzip(encoded)).isEqualTo(content),
+                () -> assertThat(encoded.length).isLessThan(content.length / 10)
+        );
+    }
+
+    @Test
+    void testEncodeWhenIdentityThenContentReturnedAsIs() throws IOException {
+        byte[] content = "content".getBytes(StandardCharsets.UTF_8);
+
+        assertThat(ContentEncoding.IDENTITY.encode(content)).isSameAs(content);
+    }
+
+    private static byte[] decodeGzip(byte[] encoded) throws IOException {
+        try (InputStream decoded = new GZIPInputStream(new ByteArrayInputStream(encoded))) {
+            return decoded.readAllBytes();
+        }
+    }
+}
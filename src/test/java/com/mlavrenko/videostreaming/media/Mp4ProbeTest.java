@@ -0,0 +1,88 @@
+package com.mlavrenko.videostreaming.media;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertAll;
+
+class Mp4ProbeTest {
+    @Test
+    void testProbeDurationWhenMovieBoxAfterMediaDataThenDurationReadWithoutMediaData() throws IOException {
+        byte[] content = concat(box("ftyp", "isom".getBytes(StandardCharsets.ISO_8859_1)), box("mdat", new byte[100_000]),
+                box("moov", box("mvhd", movieHeaderV0(1000, 5_400_500))));
+        AtomicLong bytesRead = new AtomicLong();
+
+        assertAll(
+                () -> assertThat(Mp4Probe.probeDuration(reader(content, bytesRead), content.length))
+                        .contains(Duration.ofMinutes(90).plusMillis(500)),
+                () -> assertThat(bytesRead.get()).isLessThan(200)
+        );
+    }
+
+    @Test
+    void testProbeDurationWhenVersion1HeaderThenDurationRead() throws IOException {
+        byte[] content = concat(box("ftyp", new byte[4]), box("moov", concat(box("trak", new byte[16]), box("mvhd", movieHeaderV1(600, 600L * 7200)))));
+
+        assertThat(Mp4Probe.probeDuration(reader(content, new AtomicLong()), content.length)).contains(Duration.ofHours(2));
+    }
+
+    @Test
+    void testProbeDurationWhenLargeSizeBoxThenSkipped() throws IOException {
+        byte[] mediaData = ByteBuffer.allocate(16 + 32).putInt(1).put("mdat".getBytes(StandardCharsets.ISO_8859_1)).putLong(48).array();
+        byte[] content = concat(box("ftyp", new byte[4]), mediaData, box("moov", box("mvhd", movieHeaderV0(90_000, 90_000L * 30))));
+
+        assertThat(Mp4Probe.probeDuration(reader(content, new AtomicLong()), content.length)).contains(Duration.ofSeconds(30));
+    }
+
+    @Test
+    void testProbeDurationWhenNotMp4ThenEmpty() throws IOException {
+        byte[] content = "Kinda video content".getBytes(StandardCharsets.UTF_8);
+
+        assertThat(Mp4Probe.probeDuration(reader(content, new AtomicLong()), content.length)).isEmpty();
+    }
+
+    @Test
+    void testProbeDurationWhenTruncatedThenEmpty() throws IOException {
+        byte[] complete = concat(box("ftyp", new byte[4]), box("moov", box("mvhd", movieHeaderV0(1000, 1000))));
+        byte[] content = Arrays.copyOf(complete, complete.length - 20);
+
+        assertThat(Mp4Probe.probeDuration(reader(content, new AtomicLong()), content.length)).isEmpty();
+    }
+
+    private static Mp4Probe.RangeReader reader(byte[] content, AtomicLong bytesRead) {
+        return (offset, length) -> {
+            int from = (int) Math.min(offset, content.length);
+            byte[] range = Arrays.copyOfRange(content, from, (int) Math.min((long) from + length, content.length));
+            bytesRead.addAndGet(range.length);
+            return range;
+        };
+    }
+
+    private static byte[] movieHeaderV0(int timescale, long duration) {
+        return ByteBuffer.allocate(100).put((byte) 0).position(12).putInt(timescale).putInt((int) duration).array();
+    }
+
+    private static byte[] movieHeaderV1(int timescale, long duration) {
+        return ByteBuffer.allocate(112).put((byte) 1).position(20).putInt(timescale).putLong(duration).array();
+    }
+
+    private static byte[] box(String type, byte[] content) {
+        return ByteBuffer.allocate(8 + content.length).putInt(8 + content.length).put(type.getBytes(StandardCharsets.ISO_8859_1)).put(content).array();
+    }
+
+    private static byte[] concat(byte[]... parts) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (byte[] part : parts) {
+            out.writeBytes(part);
+        }
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,95 @@
+package com.mlavrenko.videostreaming.search;
+
+import com.mlavrenko.videostreaming.domain.Genre;
+import com.mlavrenko.videostreaming.dto.VideoMetadataViewDto;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.junit.jupiter.api.Assertions.assertAll;
+
+class ColumnarCatalogueTest {
+    private final ColumnarCatalogue catalogue = new ColumnarCatalogue();
+
+    @BeforeEach
+    void setUp() {
+        catalogue.put(1, "The Dark Knight", "Christopher Nolan", "Christian Bale", Genre.ACTION, 2008, Duration.ofMinutes(152));
+        catalogue.put(2, "Inception", "Christopher Nolan", "Leonardo DiCaprio", Genre.THRILLER, 2010, null);
+        catalogue.put(3, "Heat", "Michael Mann", null, null, 1995, Duration.ofMinutes(170));
+        catalogue.put(4, "Collateral", "Michael Mann", "Tom Cruise", Genre.DRAMA, 2004, Duration.ofMinutes(120));
+    }
+
+    @Test
+    void testFindWhenTextFiltersThenMatchesSubstringIgnoringCase() {
+        Page<VideoMetadataViewDto> page = catalogue.find("A", "MANN", null, Pageable.unpaged());
+
+        assertAll(
+                () -> assertThat(page.getTotalElements()).isEqualTo(2),
+                () -> assertThat(page.getContent()).containsExactly(
+                        new VideoMetadataViewDto(3L, "Heat", "Michael Mann", null, null, Duration.ofMinutes(170)),
+                        new VideoMetadataViewDto(4L, "Collateral", "Michael Mann", "Tom Cruise", Genre.DRAMA, Duration.ofMinutes(120)))
+        );
+    }
+
+    @Test
+    void testFindWhenSortedAndPagedThenPageOfSortedMatches() {
+        Page<VideoMetadataViewDto> page = catalogue.find(null, null, null, PageRequest.of(1, 2, Sort.by("title")));
+
+        assertAll(
+                () -> assertThat(page.getTotalElements()).isEqualTo(4),
+                () -> assertThat(page.getContent()).extracting(VideoMetadataViewDto::id).containsExactly(2L, 1L)
+        );
+    }
+
+    @Test
+    void testFindWhenSortedByNullableColumnThenNullsLastAscendingAndFirstDescending() {
+        Page<VideoMetadataViewDto> ascending = catalogue.find(null, null, null, PageRequest.of(0, 10, Sort.by("runningTime")));
+        Page<VideoMetadataViewDto> descending = catalogue.find(null, null, null, PageRequest.of(0, 10, Sort.by(Sort.Direction.DESC, "genre")));
+
+        assertAll(
+                () -> assertThat(ascending.getContent()).extracting(VideoMetadataViewDto::id).containsExactly(4L, 1L, 3L, 2L),
+                () -> assertThat(descending.getContent()).extracting(VideoMetadataViewDto::id).containsExactly(3L, 2L, 4L, 1L)
+        );
+    }
+
+    @Test
+    void testFindWhenSortKeysEqualThenOrderedById() {
+        Page<VideoMetadataViewDto> page = catalogue.find(null, "nolan", null, PageRequest.of(0, 10, Sort.by("director")));
+
+        assertThat(page.getContent()).extracting(VideoMetadataViewDto::id).containsExactly(1L, 2L);
+    }
+
+    @Test
+    void testPutAndRemoveWhenVideosChangeThenListingFollowsAndRowsAreReused() {
+        catalogue.put(2, "Inception", "Christopher Nolan", "Leonardo DiCaprio", Genre.THRILLER, 2011, null);
+        catalogue.remove(3);
+        catalogue.put(5, "Tenet", "Christopher Nolan", "John David Washington", Genre.ACTION, 2020, Duration.ofMinutes(150));
+
+        assertAll(
+                () -> assertThat(catalogue.size()).isEqualTo(4),
+                () -> assertThat(catalogue.find(null, null, 2011, Pageable.unpaged()).getContent()).extracting(VideoMetadataViewDto::id)
+                        .containsExactly(2L),
+                () -> assertThat(catalogue.find(null, "mann", null, Pageable.unpaged()).getContent()).extracting(VideoMetadataViewDto::id)
+                        .containsExactly(4L),
+                () -> assertThat(catalogue.find(null, null, null, PageRequest.of(0, 10, Sort.by(Sort.Direction.DESC, "yearOfRelease"))).getContent())
+                        .extracting(VideoMetadataViewDto::id).containsExactly(5L, 2L, 1L, 4L)
+        );
+    }
+
+    @Test
+    void testFindWhenSortPropertyNotInCatalogueThenRejected() {
+        Pageable pageable = PageRequest.of(0, 10, Sort.by("synopsis"));
+
+        assertAll(
+                () -> assertThat(ColumnarCatalogue.supports(pageable.getSort())).isFalse(),
+                () -> assertThatThrownBy(() -> catalogue.find(null, null, null, pageable)).isInstanceOf(IllegalArgumentException.class)
+        );
+    }
+}
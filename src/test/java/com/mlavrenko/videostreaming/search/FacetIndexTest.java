@@ -0,0 +1,83 @@
+package com.mlavrenko.videostreaming.search;
+
+import com.mlavrenko.videostreaming.domain.Genre;
+import com.mlavrenko.videostreaming.dto.FacetCountsDto;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertAll;
+
+class FacetIndexTest {
+    private final FacetIndex facetIndex = new FacetIndex();
+
+    @BeforeEach
+    void setUp() {
+        facetIndex.put(1, "The Dark Knight", "Christopher Nolan", Genre.ACTION, 2008);
+        facetIndex.put(2, "Inception", "Christopher Nolan", Genre.THRILLER, 2010);
+        facetIndex.put(3, "Heat", "Michael Mann", Genre.ACTION, 1995);
+        facetIndex.put(4, "Collateral", "Michael Mann", Genre.THRILLER, 2004);
+    }
+
+    @Test
+    void testCountWhenNoFiltersThenCountsAllVideos() {
+        FacetCountsDto counts = facetIndex.count(null, null, null);
+
+        assertAll(
+                () -> assertThat(counts.total()).isEqualTo(4),
+                () -> assertThat(counts.genres()).isEqualTo(Map.of(Genre.ACTION, 2, Genre.THRILLER, 2)),
+                () -> assertThat(counts.yearsOfRelease()).containsExactly(Map.entry(1995, 1), Map.entry(2004, 1), Map.entry(2008, 1), Map.entry(2010, 1)),
+                () -> assertThat(counts.decades()).containsExactly(Map.entry(1990, 1), Map.entry(2000, 2), Map.entry(2010, 1))
+        );
+    }
+
+    @Test
+    void testCountWhenTextFiltersThenMatchesSubstringIgnoringCase() {
+        FacetCountsDto counts = facetIndex.count("A", "MANN", null);
+
+        assertAll(
+                () -> assertThat(counts.total()).isEqualTo(2),
+                () -> assertThat(counts.genres()).isEqualTo(Map.of(Genre.ACTION, 1, Genre.THRILLER, 1)),
+                () -> assertThat(counts.decades()).containsExactly(Map.entry(1990, 1), Map.entry(2000, 1))
+        );
+    }
+
+    @Test
+    void testCountWhenYearFilterThenYearCountsIgnoreIt() {
+        FacetCountsDto counts = facetIndex.count(null, "nolan", 2008);
+
+        assertAll(
+                () -> assertThat(counts.total()).isEqualTo(1),
+                () -> assertThat(counts.genres()).isEqualTo(Map.of(Genre.ACTION, 1)),
+                () -> assertThat(counts.yearsOfRelease()).containsExactly(Map.entry(2008, 1), Map.entry(2010, 1))
+        );
+    }
+
+    @Test
+    void testPutAndRemoveWhenVideosChangeThenCountsFollowAndOrdinalsAreReused() {
+        facetIndex.put(2, "Inception", "Christopher Nolan", Genre.DRAMA, 2010);
+        facetIndex.remove(3);
+        facetIndex.remove(42);
+        facetIndex.put(5, "Tenet", "Christopher Nolan", Genre.ACTION, 2020);
+
+        FacetCountsDto counts = facetIndex.count(null, null, null);
+
+        assertAll(
+                () -> assertThat(facetIndex.size()).isEqualTo(4),
+                () -> assertThat(counts.genres()).isEqualTo(Map.of(Genre.ACTION, 2, Genre.THRILLER, 1, Genre.DRAMA, 1)),
+                () -> assertThat(counts.decades()).containsExactly(Map.entry(2000, 2), Map.entry(2010, 1), Map.entry(2020, 1)),
+                () -> assertThat(facetIndex.count("heat", null, null).total()).isZero()
+        );
+    }
+
+    @Test
+    void testDecadeOfWhenYearThenReturnsFirstYearOfDecade() {
+        assertAll(
+                () -> assertThat(FacetIndex.decadeOf(1999)).isEqualTo(1990),
+                () -> assertThat(FacetIndex.decadeOf(2000)).isEqualTo(2000),
+                () -> assertThat(FacetIndex.decadeOf(-5)).isEqualTo(-10)
+        );
+    }
+}
@@ -0,0 +1,142 @@
+package com.mlavrenko.videostreaming.search;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertAll;
+
+class PrefixIndexTest {
+
+    @Test
+    void testSearchWhenKeysShareFragmentsThenReturnsMatchesOrderedByScore() {
+        PrefixIndex prefixIndex = new PrefixIndex(10);
+        prefixIndex.put(1, 10, List.of("interstellar"));
+        prefixIndex.put(2, 30, List.of("inception"));
+        prefixIndex.put(3, 20, List.of("insomnia"));
+        prefixIndex.put(4, 40, List.of("memento"));
+
+        assertAll(
+                () -> assertThat(prefixIndex.search("in", 10)).containsExactly(2, 3, 1),
+                () -> assertThat(prefixIndex.search("inc", 10)).containsExactly(2),
+                () -> assertThat(prefixIndex.search("inception", 10)).containsExactly(2),
+                () -> assertThat(prefixIndex.search("inceptions", 10)).isEmpty(),
+                () -> assertThat(prefixIndex.search("x", 10)).isEmpty(),
+                () -> assertThat(prefixIndex.search("", 10)).containsExactly(4, 2, 3, 1),
+                () -> assertThat(prefixIndex.search("in", 2)).containsExactly(2, 3)
+        );
+    }
+
+    @Test
+    void testSearchWhenSeveralKeysOfItemMatchThenItemReturnedOnce() {
+        PrefixIndex prefixIndex = new PrefixIndex(10);
+        prefixIndex.put(1, 10, List.of("the dark knight", "dark knight", "knight"));
+        prefixIndex.put(2, 5, List.of("the dark knight rises", "dark knight rises", "knight rises", "rises"));
+
+        assertAll(
+                () -> assertThat(prefixIndex.search("dark", 10)).containsExactly(1, 2),
+                () -> assertThat(prefixIndex.search("knight r", 10)).containsExactly(2),
+                () -> assertThat(prefixIndex.search("d", 10)).containsExactly(1, 2)
+        );
+    }
+
+    @Test
+    void testUpdateScoresWhenScoresChangeThenOrderChanges() {
+        PrefixIndex prefixIndex = new PrefixIndex(10);
+        prefixIndex.put(1, 10, List.of("alien"));
+        prefixIndex.put(2, 20, List.of("aliens"));
+
+        prefixIndex.updateScores(Map.of(1, 30L, 3, 100L));
+
+        assertThat(prefixIndex.search("alien", 10)).containsExactly(1, 2);
+    }
+
+    @Test
+    void testRemoveWhenItemRemovedThenNoLongerFoundAndOthersKept() {
+        PrefixIndex prefixIndex = new PrefixIndex(10);
+        prefixIndex.put(1, 10, List.of("heat"));
+        prefixIndex.put(2, 20, List.of("heathers"));
+
+        prefixIndex.remove(2);
+        prefixIndex.remove(42);
+
+        assertAll(
+                () -> assertThat(prefixIndex.search("heat", 10)).containsExactly(1),
+                () -> assertThat(prefixIndex.search("heath", 10)).isEmpty(),
+                () -> assertThat(prefixIndex.size()).isEqualTo(1)
+        );
+    }
+
+    @Test
+    void testPutWhenItemReindexedThenOldKeysRemoved() {
+        PrefixIndex prefixIndex = new PrefixIndex(10);
+        prefixIndex.put(1, 10, List.of("solaris"));
+
+        prefixIndex.put(1, 10, List.of("stalker"));
+
+        assertAll(
+                () -> assertThat(prefixIndex.search("so", 10)).isEmpty(),
+                () -> assertThat(prefixIndex.search("st", 10)).containsExactly(1)
+        );
+    }
+
+    @Test
+    void testSearchWhenRandomUpdatesThenMatchesBruteForce() {
+        Random random = new Random(42);
+        int maxResults = 5;
+        PrefixIndex prefixIndex = new PrefixIndex(maxResults);
+        Map<Integer, List<String>> keys = new HashMap<>();
+        Map<Integer, Long> scores = new HashMap<>();
+
+        for (int step = 0; step < 5_000; step++) {
+            int id = random.nextInt(100);
+            switch (random.nextInt(3)) {
+                case 0 -> {
+                    List<String> itemKeys = new ArrayList<>();
+                    for (int i = random.nextInt(3); i >= 0; i--) {
+                        itemKeys.add(randomKey(random));
+                    }
+                    long score = random.nextInt(50);
+                    prefixIndex.put(id, score, itemKeys);
+                    keys.put(id, itemKeys);
+                    scores.put(id, score);
+                }
+                case 1 -> {
+                    prefixIndex.remove(id);
+                    keys.remove(id);
+                    scores.remove(id);
+                }
+                default -> {
+                    long score = random.nextInt(50);
+                    prefixIndex.updateScores(Map.of(id, score));
+                    scores.computeIfPresent(id, (ignored, previous) -> score);
+                }
+            }
+            String prefix = randomKey(random).substring(0, random.nextInt(3));
+            int[] expected = keys.entrySet().stream()
+                    .filter(entry -> entry.getValue().stream().anyMatch(key -> key.startsWith(prefix)))
+                    .map(Map.Entry::getKey)
+                    .sorted((left, right) -> scores.get(left).equals(scores.get(right))
+                            ? Integer.compare(left, right)
+                            : Long.compare(scores.get(right), scores.get(left)))
+                    .limit(maxResults)
+                    .mapToInt(Integer::intValue)
+                    .toArray();
+
+            assertThat(prefixIndex.search(prefix, maxResults)).as("prefix '%s' at step %d", prefix, step).containsExactly(expected);
+        }
+    }
+
+    private static String randomKey(Random random) {
+        StringBuilder key = new StringBuilder();
+        for (int i = random.nextInt(6); i >= 0; i--) {
+            key.append("ab ".charAt(random.nextInt(3)));
+        }
+        return key.toString();
+    }
+}
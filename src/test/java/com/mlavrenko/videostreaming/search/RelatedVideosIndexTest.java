@@ -0,0 +1,109 @@
+package com.mlavrenko.videostreaming.search;
+
+import com.mlavrenko.videostreaming.domain.Genre;
+import com.mlavrenko.videostreaming.dto.RelatedVideoDto;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertAll;
+
+class RelatedVideosIndexTest {
+    private final ForkJoinPool pool = new ForkJoinPool(2);
+
+    @AfterEach
+    void tearDown() {
+        pool.shutdownNow();
+    }
+
+    @Test
+    void testComputeAllWhenVideosShareDirectorCastAndGenreThenRankedBySimilarity() {
+        RelatedVideosIndex index = new RelatedVideosIndex(10, 5);
+        index.load(1, "The Dark Knight", "Christopher Nolan", List.of("Christian Bale", "Heath Ledger"), Genre.ACTION, 2008, 100);
+        index.load(2, "Batman Begins", "Christopher Nolan", List.of("Christian Bale"), Genre.ACTION, 2005, 100);
+        index.load(3, "Inception", "Christopher Nolan", List.of("Leonardo DiCaprio"), Genre.THRILLER, 2010, 100);
+        index.load(4, "Heat", "Michael Mann", List.of("Al Pacino"), Genre.ACTION, 1995, 100);
+        index.load(5, "Die Hard", "John McTiernan", List.of("Bruce Willis"), Genre.ACTION, 1988, 100);
+
+        index.computeAll(pool);
+
+        assertAll(
+                () -> assertThat(index.related(1).orElseThrow()).extracting(RelatedVideoDto::id).containsExactly(2L, 3L),
+                () -> assertThat(index.related(4).orElseThrow()).isEmpty(),
+                () -> assertThat(index.related(42)).isEmpty()
+        );
+    }
+
+    @Test
+    void testComputeAllWhenEquallySimilarThenMorePopularRankedFirst() {
+        RelatedVideosIndex index = new RelatedVideosIndex(10, 5);
+        index.load(1, "Heat", "Michael Mann", List.of(), Genre.ACTION, 1995, 10);
+        index.load(2, "Collateral", "Michael Mann", List.of(), Genre.THRILLER, 2004, 10);
+        index.load(3, "Miami Vice", "Michael Mann", List.of(), Genre.THRILLER, 2006, 1_000);
+
+        index.computeAll(pool);
+
+        assertThat(index.related(1).orElseThrow()).extracting(RelatedVideoDto::id).containsExactly(3L, 2L);
+    }
+
+    @Test
+    void testPutAndRemoveWhenVideosChangeThenListsPatched() {
+        RelatedVideosIndex index = new RelatedVideosIndex(10, 5);
+        index.load(1, "Heat", "Michael Mann", List.of("Al Pacino"), Genre.ACTION, 1995, 10);
+        index.computeAll(pool);
+
+        index.put(2, "Collateral", "Michael Mann", List.of("Tom Cruise"), Genre.THRILLER, 2004, 10);
+        index.put(3, "The Insider", "Michael Mann", List.of("Al Pacino"), Genre.DRAMA, 1999, 10);
+        List<RelatedVideoDto> afterPublish = index.related(1).orElseThrow();
+        index.put(3, "The Insider", "Someone Else", List.of(), Genre.DRAMA, 1999, 10);
+        List<RelatedVideoDto> afterUpdate = index.related(1).orElseThrow();
+        index.remove(2);
+
+        assertAll(
+                () -> assertThat(afterPublish).extracting(RelatedVideoDto::id).containsExactly(3L, 2L),
+                () -> assertThat(afterUpdate).extracting(RelatedVideoDto::id).containsExactly(2L),
+                () -> assertThat(index.related(1).orElseThrow()).isEmpty(),
+                () -> assertThat(index.related(2)).isEmpty()
+        );
+    }
+
+    @Test
+    void testPutWhenRandomChangesThenListsMatchFullComputation() {
+        Random random = new Random(7);
+        String[] people = {"a", "b", "c", "d", "e", "f", "g", "h"};
+        RelatedVideosIndex index = new RelatedVideosIndex(3, 2);
+        Map<Long, Object[]> catalogue = new HashMap<>();
+
+        for (int step = 0; step < 500; step++) {
+            long id = random.nextInt(30);
+            if (random.nextInt(4) == 0) {
+                index.remove(id);
+                catalogue.remove(id);
+            } else {
+                Object[] video = {random.nextBoolean() ? people[random.nextInt(people.length)] : null,
+                        List.of(people[random.nextInt(people.length)]), Genre.values()[random.nextInt(2)], 2000 + random.nextInt(6), random.nextInt(100)};
+                index.put(id, "title", (String) video[0], castOf(video), (Genre) video[2], (int) video[3], (int) video[4]);
+                catalogue.put(id, video);
+            }
+            RelatedVideosIndex computed = new RelatedVideosIndex(3, 2);
+            catalogue.forEach((videoId, video) ->
+                    computed.load(videoId, "title", (String) video[0], castOf(video), (Genre) video[2], (int) video[3], (int) video[4]));
+            computed.computeAll(pool);
+
+            for (long videoId = 0; videoId < 30; videoId++) {
+                assertThat(index.related(videoId)).as("video %d at step %d", videoId, step).isEqualTo(computed.related(videoId));
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<String> castOf(Object[] video) {
+        return (List<String>) video[1];
+    }
+}
@@ -0,0 +1,133 @@
+package com.mlavrenko.videostreaming.service;
+
+import com.mlavrenko.videostreaming.config.AutocompleteProperties;
+import com.mlavrenko.videostreaming.domain.SuggestionType;
+import com.mlavrenko.videostreaming.dto.AutocompleteSuggestionDto;
+import com.mlavrenko.videostreaming.dto.VideoSearchTermsDto;
+import com.mlavrenko.videostreaming.repository.VideoMetadataRepository;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class AutocompleteServiceTest {
+    private static final VideoSearchTermsDto DARK_KNIGHT =
+            new VideoSearchTermsDto(1L, "The Dark Knight", "Christopher Nolan", "Christian Bale, Heath Ledger", 100);
+    private static final VideoSearchTermsDto INCEPTION =
+            new VideoSearchTermsDto(2L, "Inception", "Christopher Nolan", "Leonardo DiCaprio", 50);
+    private static final VideoSearchTermsDto AMELIE =
+            new VideoSearchTermsDto(3L, "Amélie", "Jean-Pierre Jeunet", "Audrey Tautou", 70);
+
+    private final VideoMetadataRepository videoMetadataRepository = mock(VideoMetadataRepository.class);
+    private final AutocompleteService autocompleteService =
+            new AutocompleteService(videoMetadataRepository, new AutocompleteProperties(10, Duration.ofMinutes(1)));
+
+    @Test
+    void testSuggestWhenPrefixOfAnyWordThenReturnsMatchingTitlesAndPeople() {
+        autocompleteService.index(DARK_KNIGHT);
+        autocompleteService.index(INCEPTION);
+        autocompleteService.index(AMELIE);
+
+        assertAll(
+                () -> assertThat(autocompleteService.suggest("kni", 10))
+                        .containsExactly(new AutocompleteSuggestionDto("The Dark Knight", SuggestionType.TITLE, 1L)),
+                () -> assertThat(autocompleteService.suggest("Dark K", 10))
+                        .containsExactly(new AutocompleteSuggestionDto("The Dark Knight", SuggestionType.TITLE, 1L)),
+                () -> assertThat(autocompleteService.suggest("ame", 10))
+                        .containsExactly(new AutocompleteSuggestionDto("Amélie", SuggestionType.TITLE, 3L)),
+                () -> assertThat(autocompleteService.suggest("pierre", 10))
+                        .containsExactly(new AutocompleteSuggestionDto("Jean-Pierre Jeunet", SuggestionType.DIRECTOR, null)),
+                () -> assertThat(autocompleteService.suggest("  ", 10)).isEmpty()
+        );
+    }
+
+    @Test
+    void testSuggestWhenPersonInSeveralVideosThenRankedByTotalViews() {
+        autocompleteService.index(DARK_KNIGHT);
+        autocompleteService.index(INCEPTION);
+
+        assertAll(
+                () -> assertThat(autocompleteService.suggest("chr", 10)).extracting(AutocompleteSuggestionDto::text)
+                        .containsExactly("Christopher Nolan", "Christian Bale"),
+                () -> assertThat(autocompleteService.suggest("chr", 1)).extracting(AutocompleteSuggestionDto::text)
+                        .containsExactly("Christopher Nolan")
+        );
+    }
+
+    @Test
+    void testIndexWhenTermsChangedThenOldTermsNoLongerSuggested() {
+        autocompleteService.index(DARK_KNIGHT);
+
+        autocompleteService.index(new VideoSearchTermsDto(1L, "Batman Begins", "Christopher Nolan", "Christian Bale", 100));
+
+        assertAll(
+                () -> assertThat(autocompleteService.suggest("dark", 10)).isEmpty(),
+                () -> assertThat(autocompleteService.suggest("heath", 10)).isEmpty(),
+                () -> assertThat(autocompleteService.suggest("beg", 10)).extracting(AutocompleteSuggestionDto::text).containsExactly("Batman Begins")
+        );
+    }
+
+    @Test
+    void testRemoveWhenVideoRemovedThenSharedPeopleKept() {
+        autocompleteService.index(DARK_KNIGHT);
+        autocompleteService.index(INCEPTION);
+
+        autocompleteService.remove(2L);
+
+        assertAll(
+                () -> assertThat(autocompleteService.suggest("incep", 10)).isEmpty(),
+                () -> assertThat(autocompleteService.suggest("leo", 10)).isEmpty(),
+                () -> assertThat(autocompleteService.suggest("nolan", 10)).extracting(AutocompleteSuggestionDto::text).containsExactly("Christopher Nolan")
+        );
+    }
+
+    @Test
+    void testRefreshWhenViewsChangedAndVideoDeletedThenRankingUpdated() {
+        when(videoMetadataRepository.streamAllSearchTerms()).thenReturn(Stream.of(DARK_KNIGHT, INCEPTION, AMELIE));
+        autocompleteService.refresh();
+        VideoSearchTermsDto popularInception = new VideoSearchTermsDto(2L, "Inception", "Christopher Nolan", "Leonardo DiCaprio", 500);
+        VideoSearchTermsDto popularAmelie = new VideoSearchTermsDto(3L, "Amélie", "Jean-Pierre Jeunet", "Audrey Tautou", 1000);
+        when(videoMetadataRepository.streamAllSearchTerms()).thenReturn(Stream.of(popularInception, popularAmelie));
+
+        autocompleteService.refresh();
+
+        assertAll(
+                () -> assertThat(autocompleteService.suggest("j", 10)).extracting(AutocompleteSuggestionDto::text)
+                        .containsExactly("Jean-Pierre Jeunet"),
+                () -> assertThat(autocompleteService.suggest("i", 10)).extracting(AutocompleteSuggestionDto::text)
+                        .containsExactly("Inception"),
+                () -> assertThat(autocompleteService.suggest("c", 10)).extracting(AutocompleteSuggestionDto::text)
+                        .containsExactly("Christopher Nolan"),
+                () -> assertThat(autocompleteService.suggest("a", 10)).extracting(AutocompleteSuggestionDto::text)
+                        .containsExactly("Amélie", "Audrey Tautou")
+        );
+    }
+
+    @Test
+    void testRefreshWhenVideosUpdatedDuringReadThenUpdatesKept() {
+        when(videoMetadataRepository.streamAllSearchTerms()).thenReturn(Stream.of(DARK_KNIGHT, INCEPTION));
+        autocompleteService.refresh();
+        VideoSearchTermsDto renamedInception = new VideoSearchTermsDto(2L, "Inception Redux", "Christopher Nolan", "Leonardo DiCaprio", 50);
+        when(videoMetadataRepository.streamAllSearchTerms()).thenAnswer(invocation -> {
+            autocompleteService.index(AMELIE);
+            autocompleteService.index(renamedInception);
+            autocompleteService.remove(DARK_KNIGHT.id());
+            return Stream.of(DARK_KNIGHT, INCEPTION);
+        });
+
+        autocompleteService.refresh();
+
+        assertAll(
+                () -> assertThat(autocompleteService.suggest("am", 10)).extracting(AutocompleteSuggestionDto::text)
+                        .containsExactly("Amélie"),
+                () -> assertThat(autocompleteService.suggest("inception", 10)).extracting(AutocompleteSuggestionDto::text)
+                        .containsExactly("Inception Redux"),
+                () -> assertThat(autocompleteService.suggest("dark", 10)).isEmpty()
+        );
+    }
+}
@@ -0,0 +1,107 @@
+package com.mlavrenko.videostreaming.service;
+
+import com.mlavrenko.videostreaming.config.BufferPoolProperties;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+import org.springframework.util.unit.DataSize;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.junit.jupiter.api.Assertions.assertAll;
+
+class BufferPoolTest {
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final BufferPool bufferPool = new BufferPool(
+            new BufferPoolProperties(DataSize.ofBytes(16), DataSize.ofBytes(128), DataSize.ofBytes(256), true), meterRegistry);
+
+    @ParameterizedTest
+    @CsvSource({
+            "0, 16",
+            "1, 16",
+            "16, 16",
+            "17, 32",
+            "100, 128",
+            "129, 129",
+    })
+    void testAcquireWhenSizeRequestedThenServedFromSmallestFittingClass(int size, int expectedCapacity) {
+        try (PooledBuffer pooledBuffer = bufferPool.acquire(size)) {
+            assertAll(
+                    () -> assertThat(pooledBuffer.buffer().capacity()).isEqualTo(expectedCapacity),
+                    () -> assertThat(pooledBuffer.buffer().limit()).isEqualTo(size),
+                    () -> assertThat(pooledBuffer.buffer().position()).isZero()
+            );
+        }
+    }
+
+    @Test
+    void testAcquireWhenBufferReleasedThenReusedWithoutAllocation() {
+        PooledBuffer first = bufferPool.acquire(20);
+        first.buffer().put((byte) 1);
+        first.close();
+
+        try (PooledBuffer second = bufferPool.acquire(30)) {
+            assertAll(
+                    () -> assertThat(second).isSameAs(first),
+                    () -> assertThat(second.buffer().position()).isZero(),
+                    () -> assertThat(second.buffer().limit()).isEqualTo(30),
+                    () -> assertThat(meterRegistry.get("buffer.pool.allocations").tag("kind", "pooled").counter().count()).isOne()
+            );
+        }
+    }
+
+    @Test
+    void testReleaseWhenPooledMemoryExceededThenBufferDropped() {
+        PooledBuffer first = bufferPool.acquire(128);
+        PooledBuffer second = bufferPool.acquire(128);
+        PooledBuffer third = bufferPool.acquire(128);
+
+        first.close();
+        second.close();
+        third.close();
+
+        assertThat(bufferPool.getPooledBytes()).isEqualTo(256);
+    }
+
+    @Test
+    void testReleaseWhenOversizedBufferThenNotPooled() {
+        bufferPool.acquire(1_000).close();
+
+        assertAll(
+                () -> assertThat(bufferPool.getPooledBytes()).isZero(),
+                () -> assertThat(meterRegistry.get("buffer.pool.allocations").tag("kind", "oversized").counter().count()).isOne()
+        );
+    }
+
+    @Test
+    void testCloseWhenReleasedTwiceThenThrowsException() {
+        PooledBuffer pooledBuffer = bufferPool.acquire(16);
+        pooledBuffer.close();
+
+        assertThatThrownBy(pooledBuffer::close).isInstanceOf(IllegalStateException.class);
+    }
+
+    @Test
+    void testCheckLeaksWhenBufferNotReleasedThenReportsAcquisitionSite() {
+        bufferPool.acquire(16);
+
+        assertThatThrownBy(bufferPool::checkLeaks)
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessage("1 buffer(s) were not released")
+                .satisfies(leak -> assertThat(leak.getSuppressed()).singleElement()
+                        .satisfies(site -> assertThat(site.getStackTrace()[1].getMethodName())
+                                .isEqualTo("testCheckLeaksWhenBufferNotReleasedThenReportsAcquisitionSite")));
+    }
+
+    @Test
+    void testCheckLeaksWhenAllBuffersReleasedThenPasses() {
+        bufferPool.acquire(16).close();
+        bufferPool.acquire(1_000).close();
+
+        bufferPool.checkLeaks();
+
+        assertThat(bufferPool.getLeasedBuffers()).isZero();
+    }
+}
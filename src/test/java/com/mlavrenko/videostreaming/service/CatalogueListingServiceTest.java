@@ -0,0 +1,49 @@
+package com.mlavrenko.videostreaming.service;
+
+import com.mlavrenko.videostreaming.config.CatalogueListingProperties;
+import com.mlavrenko.videostreaming.domain.Genre;
+import com.mlavrenko.videostreaming.dto.VideoCatalogueTermsDto;
+import com.mlavrenko.videostreaming.dto.VideoMetadataViewDto;
+import com.mlavrenko.videostreaming.repository.VideoMetadataRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.transaction.support.TransactionOperations;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class CatalogueListingServiceTest {
+    private static final VideoCatalogueTermsDto DARK_KNIGHT = createVideo(1L, "The Dark Knight");
+    private static final VideoCatalogueTermsDto INCEPTION = createVideo(2L, "Inception");
+    private static final VideoCatalogueTermsDto HEAT = createVideo(3L, "Heat");
+
+    private final VideoMetadataRepository videoMetadataRepository = mock(VideoMetadataRepository.class);
+    private final CatalogueListingService catalogueListingService = new CatalogueListingService(videoMetadataRepository,
+            new CatalogueListingProperties(true, Duration.ofMinutes(5)), TransactionOperations.withoutTransaction(), new SimpleMeterRegistry());
+
+    @Test
+    void testRebuildWhenVideosChangedDuringReadThenChangesKept() {
+        VideoCatalogueTermsDto renamedInception = createVideo(2L, "Inception Redux");
+        when(videoMetadataRepository.findAllCatalogueTerms()).thenAnswer(invocation -> {
+            catalogueListingService.index(HEAT);
+            catalogueListingService.index(renamedInception);
+            catalogueListingService.remove(DARK_KNIGHT.id());
+            return List.of(DARK_KNIGHT, INCEPTION);
+        });
+
+        catalogueListingService.rebuild();
+
+        assertThat(catalogueListingService.find(null, null, null, PageRequest.of(0, 10)).orElseThrow())
+                .extracting(VideoMetadataViewDto::title)
+                .containsExactlyInAnyOrder("Inception Redux", "Heat");
+    }
+
+    private static VideoCatalogueTermsDto createVideo(Long id, String title) {
+        return new VideoCatalogueTermsDto(id, title, "Director", "Actor", Genre.ACTION, 2010, Duration.ofMinutes(120), 0);
+    }
+}
@@ -0,0 +1,107 @@
+package com.mlavrenko.videostreaming.service;
+
+import com.mlavrenko.videostreaming.config.CatalogueSnapshotProperties;
+import com.mlavrenko.videostreaming.domain.Genre;
+import com.mlavrenko.videostreaming.dto.VideoCatalogueTermsDto;
+import com.mlavrenko.videostreaming.dto.VideoRelationTermsDto;
+import com.mlavrenko.videostreaming.repository.VideoMetadataRepository;
+import com.mlavrenko.videostreaming.snapshot.CatalogueSnapshot;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.transaction.support.TransactionOperations;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class CatalogueSnapshotServiceTest {
+    private static final Instant WATERMARK = Instant.parse("2026-01-01T10:00:00Z");
+    private static final VideoCatalogueTermsDto FIRST = new VideoCatalogueTermsDto(1L, "First", "Director", "Actor", Genre.DRAMA, 2001,
+            Duration.ofMinutes(90), 10);
+    private static final VideoCatalogueTermsDto SECOND = new VideoCatalogueTermsDto(2L, "Second", "Director", "Actor", Genre.DRAMA, 2002,
+            Duration.ofMinutes(100), 20);
+    private static final VideoCatalogueTermsDto THIRD = new VideoCatalogueTermsDto(3L, "Third", "Director", "Actor", Genre.ACTION, 2003, null, 30);
+    @TempDir
+    private Path directory;
+    private final VideoMetadataRepository videoMetadataRepository = mock(VideoMetadataRepository.class);
+    private final VideoIdFilter videoIdFilter = mock(VideoIdFilter.class);
+    private final RelatedVideosService relatedVideosService = mock(RelatedVideosService.class);
+    private final CatalogueListingService catalogueListingService = mock(CatalogueListingService.class);
+
+    @Test
+    void testWarmUpWhenSnapshotExistsThenOnlyChangesSinceWatermarkRead() throws IOException {
+        Path path = directory.resolve("catalogue.snapshot");
+        new CatalogueSnapshot(WATERMARK, List.of(FIRST, SECOND)).write(path);
+        VideoCatalogueTermsDto renamed = new VideoCatalogueTermsDto(1L, "Renamed", "Director", "Actor", Genre.DRAMA, 2001, Duration.ofMinutes(90), 10);
+        Instant since = WATERMARK.minus(Duration.ofMinutes(1));
+        when(videoMetadataRepository.findCatalogueTermsModifiedSince(since)).thenReturn(List.of(renamed, THIRD));
+        when(videoMetadataRepository.findIdsDeletedSince(since)).thenReturn(List.of(2L));
+
+        createService(path, true).warmUp();
+
+        CatalogueSnapshot written = CatalogueSnapshot.read(path);
+        assertAll(
+                () -> verify(videoMetadataRepository, never()).findAllCatalogueTerms(),
+                () -> verify(relatedVideosService).load(List.of(toRelationTerms(renamed), toRelationTerms(THIRD))),
+                () -> verify(catalogueListingService).load(List.of(renamed, THIRD)),
+                () -> verify(videoIdFilter).load(List.of(1L, 3L)),
+                () -> assertThat(written.videos()).containsExactly(renamed, THIRD),
+                () -> assertThat(written.watermark()).isAfter(WATERMARK)
+        );
+    }
+
+    @Test
+    void testWarmUpWhenNoSnapshotThenCatalogueReadInFullAndSnapshotWritten() throws IOException {
+        Path path = directory.resolve("catalogue.snapshot");
+        when(videoMetadataRepository.findAllCatalogueTerms()).thenReturn(List.of(SECOND, FIRST));
+
+        createService(path, true).warmUp();
+
+        assertAll(
+                () -> verify(relatedVideosService).load(List.of(toRelationTerms(FIRST), toRelationTerms(SECOND))),
+                () -> verify(catalogueListingService).load(List.of(FIRST, SECOND)),
+                () -> verify(videoMetadataRepository, never()).findCatalogueTermsModifiedSince(any()),
+                () -> assertThat(CatalogueSnapshot.read(path).videos()).containsExactly(FIRST, SECOND)
+        );
+    }
+
+    @Test
+    void testWarmUpWhenDisabledThenSnapshotIgnored() throws IOException {
+        Path path = directory.resolve("catalogue.snapshot");
+        new CatalogueSnapshot(WATERMARK, List.of(FIRST)).write(path);
+        when(videoMetadataRepository.findAllCatalogueTerms()).thenReturn(List.of(SECOND));
+
+        createService(path, false).warmUp();
+
+        assertAll(
+                () -> verify(relatedVideosService).load(List.of(toRelationTerms(SECOND))),
+                () -> assertThat(CatalogueSnapshot.read(path).videos()).containsExactly(FIRST)
+        );
+    }
+
+    @Test
+    void testMergeWhenVideoModifiedAndDeletedThenDeletionWins() {
+        assertThat(CatalogueSnapshotService.merge(List.of(FIRST, SECOND), List.of(SECOND), List.of(2L))).containsExactly(FIRST);
+    }
+
+    private CatalogueSnapshotService createService(Path path, boolean enabled) {
+        return new CatalogueSnapshotService(videoMetadataRepository, videoIdFilter, mock(AutocompleteService.class), mock(FacetService.class),
+                relatedVideosService, catalogueListingService, new CatalogueSnapshotProperties(enabled, path.toString(), Duration.ofMinutes(5), Duration.ofMinutes(1)),
+                TransactionOperations.withoutTransaction());
+    }
+
+    private static VideoRelationTermsDto toRelationTerms(VideoCatalogueTermsDto video) {
+        return new VideoRelationTermsDto(video.id(), video.title(), video.director(), video.castMembers(), video.genre(), video.yearOfRelease(),
+                video.views());
+    }
+}
@@ -0,0 +1,143 @@
+package com.mlavrenko.videostreaming.service;
+
+import com.mlavrenko.videostreaming.config.ContentPrefetchProperties;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.util.unit.DataSize;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class ContentPrefetcherTest {
+    private static final String VIDEO_LOCATION = "uploads/video.mp4";
+    private static final String CONTENT = "sample content which is long enough";
+    private final VideoContentStorageService storageService = mock(VideoContentStorageService.class);
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final ContentPrefetcher prefetcher = new ContentPrefetcher(storageService, new ContentPrefetchProperties(
+            true, DataSize.ofBytes(16), 1, 4, DataSize.ofKilobytes(1), Duration.ofMinutes(1), DataSize.ofBytes(0)), meterRegistry);
+
+    @AfterEach
+    void tearDown() {
+        prefetcher.shutdown();
+    }
+
+    @Test
+    void testLoadWhenHeadPrefetchedThenReadsOnlyRemainder() throws IOException {
+        byte[] content = CONTENT.getBytes(StandardCharsets.UTF_8);
+        List<Long> openedAt = new ArrayList<>();
+        when(storageService.loadRange(VIDEO_LOCATION, 0, 16)).thenReturn(Arrays.copyOf(content, 16));
+        when(storageService.load(VIDEO_LOCATION)).thenReturn(new ContentResource(VIDEO_LOCATION, content.length) {
+            @Override
+            protected InputStream open(long offset) {
+                openedAt.add(offset);
+                return new ByteArrayInputStream(content, (int) offset, content.length - (int) offset);
+            }
+        });
+
+        prefetcher.prefetch(VIDEO_LOCATION);
+        verify(storageService, timeout(5_000)).loadRange(VIDEO_LOCATION, 0, 16);
+        awaitCached();
+
+        assertAll(
+                () -> assertThat(prefetcher.load(VIDEO_LOCATION).getContentAsString(StandardCharsets.UTF_8)).isEqualTo(CONTENT),
+                () -> assertThat(openedAt).containsExactly(16L),
+                () -> assertThat(meterRegistry.get("content.prefetch.requests").tag("result", "hit").counter().count()).isOne()
+        );
+    }
+
+    @Test
+    void testLoadWhenContentFitsPrefetchedHeadThenStorageNotRead() throws IOException {
+        when(storageService.loadRange(VIDEO_LOCATION, 0, 16)).thenReturn("short".getBytes(StandardCharsets.UTF_8));
+        prefetcher.prefetch(VIDEO_LOCATION);
+        awaitCached();
+
+        assertAll(
+                () -> assertThat(prefetcher.load(VIDEO_LOCATION).getContentAsString(StandardCharsets.UTF_8)).isEqualTo("short"),
+                () -> verify(storageService, never()).load(anyString())
+        );
+    }
+
+    @Test
+    void testLoadWhenNotPrefetchedThenLoadsWholeContent() throws IOException {
+        when(storageService.load(VIDEO_LOCATION)).thenReturn(ContentResource.of(VIDEO_LOCATION, CONTENT.getBytes(StandardCharsets.UTF_8)));
+
+        assertAll(
+                () -> assertThat(prefetcher.load(VIDEO_LOCATION).getContentAsString(StandardCharsets.UTF_8)).isEqualTo(CONTENT),
+                () -> assertThat(meterRegistry.get("content.prefetch.requests").tag("result", "miss").counter().count()).isOne()
+        );
+    }
+
+    @Test
+    void testLoadWhenInvalidatedThenLoadsWholeContent() throws IOException {
+        when(storageService.loadRange(VIDEO_LOCATION, 0, 16)).thenReturn("short".getBytes(StandardCharsets.UTF_8));
+        when(storageService.load(VIDEO_LOCATION)).thenReturn(ContentResource.of(VIDEO_LOCATION, "replaced".getBytes(StandardCharsets.UTF_8)));
+        prefetcher.prefetch(VIDEO_LOCATION);
+        awaitCached();
+
+        prefetcher.invalidate(VIDEO_LOCATION);
+
+        assertThat(prefetcher.load(VIDEO_LOCATION).getContentAsString(StandardCharsets.UTF_8)).isEqualTo("replaced");
+    }
+
+    @Test
+    void testPrefetchWhenInvalidatedWhileReadingThenStaleHeadNotCached() throws IOException {
+        when(storageService.loadRange(VIDEO_LOCATION, 0, 16)).thenAnswer(invocation -> {
+            prefetcher.invalidate(VIDEO_LOCATION);
+            return "stale".getBytes(StandardCharsets.UTF_8);
+        });
+        when(storageService.load(VIDEO_LOCATION)).thenReturn(ContentResource.of(VIDEO_LOCATION, "replaced".getBytes(StandardCharsets.UTF_8)));
+
+        prefetcher.prefetch(VIDEO_LOCATION);
+        awaitCounted("content.prefetch.stale");
+
+        assertAll(
+                () -> assertThat(prefetcher.getCachedBytes()).isZero(),
+                () -> assertThat(prefetcher.load(VIDEO_LOCATION).getContentAsString(StandardCharsets.UTF_8)).isEqualTo("replaced")
+        );
+    }
+
+    @Test
+    void testPrefetchWhenInvalidatedBeforeReadingThenHeadCached() throws IOException {
+        prefetcher.invalidate(VIDEO_LOCATION);
+        when(storageService.loadRange(VIDEO_LOCATION, 0, 16)).thenReturn("replaced".getBytes(StandardCharsets.UTF_8));
+
+        prefetcher.prefetch(VIDEO_LOCATION);
+        awaitCached();
+
+        assertAll(
+                () -> assertThat(prefetcher.load(VIDEO_LOCATION).getContentAsString(StandardCharsets.UTF_8)).isEqualTo("replaced"),
+                () -> assertThat(meterRegistry.get("content.prefetch.stale").counter().count()).isZero()
+        );
+    }
+
+    private void awaitCounted(String counter) {
+        long deadline = System.nanoTime() + Duration.ofSeconds(5).toNanos();
+        while (meterRegistry.get(counter).counter().count() == 0 && System.nanoTime() < deadline) {
+            Thread.onSpinWait();
+        }
+    }
+
+    private void awaitCached() {
+        long deadline = System.nanoTime() + Duration.ofSeconds(5).toNanos();
+        while (prefetcher.getCachedBytes() == 0 && System.nanoTime() < deadline) {
+            Thread.onSpinWait();
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package com.mlavrenko.videostreaming.service;
+
+import com.mlavrenko.videostreaming.config.ContentVariantProperties;
+import com.mlavrenko.videostreaming.dto.EncodedContentDto;
+import com.mlavrenko.videostreaming.media.ContentEncoding;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Optional;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+class ContentVariantServiceTest {
+    private static final String VIDEO_LOCATION = "uploads/video.mp4";
+    private static final List<ContentEncoding> GZIP = List.of(ContentEncoding.GZIP);
+    private static final byte[] COMPRESSIBLE_CONTENT = "frame ".repeat(1000).getBytes(StandardCharsets.UTF_8);
+    @TempDir
+    private Path variantDirectory;
+    private final VideoContentStorageService videoContentStorageService = mock(VideoContentStorageService.class);
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Test
+    void testLoadWhenContentCompressibleThenVariantStoredAndServedWithoutReadingContentAgain() throws IOException {
+        ContentVariantService contentVariantService = createContentVariantService(true);
+        when(videoContentStorageService.load(VIDEO_LOCATION)).thenReturn(ContentResource.of(VIDEO_LOCATION, COMPRESSIBLE_CONTENT));
+
+        Optional<EncodedContentDto> generated = contentVariantService.load(VIDEO_LOCATION, GZIP);
+        Optional<EncodedContentDto> stored = contentVariantService.load(VIDEO_LOCATION, GZIP);
+
+        assertAll(
+                () -> assertThat(generated).get().extracting(EncodedContentDto::encoding).isEqualTo(ContentEncoding.GZIP),
+                () -> assertThat(stored).get().extracting(EncodedContentDto::content).isEqualTo(generated.get().content()),
+                () -> assertThat(stored.get().content().getContentAsByteArray()).isEqualTo(ContentEncoding.GZIP.encode(COMPRESSIBLE_CONTENT)),
+                () -> verify(videoContentStorageService, times(1)).load(VIDEO_LOCATION),
+                () -> assertThat(meterRegistry.get("content.variants.compression.ratio").summary().max()).isLessThan(0.1)
+        );
+    }
+
+    @Test
+    void testLoadWhenVariantDoesNotPayOffThenSkippedWithoutReadingContentAgain() throws IOException {
+        ContentVariantService contentVariantService = createContentVariantService(true);
+        byte[] incompressibleContent = new byte[4096];
+        new Random(42).nextBytes(incompressibleContent);
+        when(videoContentStorageService.load(VIDEO_LOCATION)).thenReturn(ContentResource.of(VIDEO_LOCATION, incompressibleContent));
+
+        assertAll(
+                () -> assertThat(contentVariantService.load(VIDEO_LOCATION, GZIP)).isEmpty(),
+                () -> assertThat(contentVariantService.load(VIDEO_LOCATION, GZIP)).isEmpty(),
+                () -> verify(videoContentStorageService, times(1)).load(VIDEO_LOCATION),
+                () -> assertThat(meterRegistry.get("content.variants.skipped").counter().count()).isEqualTo(1)
+        );
+    }
+
+    @Test
+    void testLoadWhenContentSmallerThanMinSizeThenSkippedWithoutCompressing() throws IOException {
+        ContentVariantService contentVariantService = createContentVariantService(true);
+        when(videoContentStorageService.load(VIDEO_LOCATION)).thenReturn(ContentResource.of(VIDEO_LOCATION, "short".getBytes(StandardCharsets.UTF_8)));
+
+        assertAll(
+                () -> assertThat(contentVariantService.load(VIDEO_LOCATION, GZIP)).isEmpty(),
+                () -> assertThat(meterRegistry.get("content.variants.compression.ratio").summary().count()).isZero(),
+                () -> assertThat(meterRegistry.get("content.variants.skipped").counter().count()).isEqualTo(1)
+        );
+    }
+
+    @Test
+    void testLoadWhenInvalidatedThenVariantGeneratedFromReplacedContent() throws IOException {
+        ContentVariantService contentVariantService = createContentVariantService(true);
+        byte[] replacedContent = "scene ".repeat(1000).getBytes(StandardCharsets.UTF_8);
+        when(videoContentStorageService.load(VIDEO_LOCATION))
+                .thenReturn(ContentResource.of(VIDEO_LOCATION, COMPRESSIBLE_CONTENT), ContentResource.of(VIDEO_LOCATION, replacedContent));
+        contentVariantService.load(VIDEO_LOCATION, GZIP);
+
+        contentVariantService.invalidate(VIDEO_LOCATION);
+
+        assertThat(contentVariantService.load(VIDEO_LOCATION, GZIP).orElseThrow().content().getContentAsByteArray())
+                .isEqualTo(ContentEncoding.GZIP.encode(replacedContent));
+    }
+
+    @Test
+    void testLoadWhenInvalidatedDuringGenerationThenStaleVariantNotStored() throws IOException {
+        ContentVariantService contentVariantService = createContentVariantService(true);
+        byte[] replacedContent = "scene ".repeat(1000).getBytes(StandardCharsets.UTF_8);
+        when(videoContentStorageService.load(VIDEO_LOCATION))
+                .thenAnswer(invocation -> {
+                    contentVariantService.invalidate(VIDEO_LOCATION);
+                    return ContentResource.of(VIDEO_LOCATION, COMPRESSIBLE_CONTENT);
+                })
+                .thenReturn(ContentResource.of(VIDEO_LOCATION, replacedContent));
+
+        Optional<EncodedContentDto> stale = contentVariantService.load(VIDEO_LOCATION, GZIP);
+
+        assertAll(
+                () -> assertThat(stale).isEmpty(),
+                () -> assertThat(meterRegistry.get("content.variants.stale").counter().count()).isEqualTo(1),
+                () -> assertThat(contentVariantService.load(VIDEO_LOCATION, GZIP).orElseThrow().content().getContentAsByteArray())
+                        .isEqualTo(ContentEncoding.GZIP.encode(replacedContent))
+        );
+    }
+
+    @Test
+    void testLoadWhenNoEncodingAcceptedOrDisabledThenContentNotRead() throws IOException {
+        assertAll(
+                () -> assertThat(createContentVariantService(true).load(VIDEO_LOCATION, List.of())).isEmpty(),
+                () -> assertThat(createContentVariantService(false).load(VIDEO_LOCATION, GZIP)).isEmpty(),
+                () -> verifyNoInteractions(videoContentStorageService)
+        );
+    }
+
+    private ContentVariantService createContentVariantService(boolean enabled) {
+        return new ContentVariantService(videoContentStorageService,
+                new ContentVariantProperties(enabled, variantDirectory.toString(), DataSize.ofKilobytes(1), 0.9), meterRegistry);
+    }
+}
@@ -0,0 +1,53 @@
+package com.mlavrenko.videostreaming.service;
+
+import com.mlavrenko.videostreaming.domain.Genre;
+import com.mlavrenko.videostreaming.dto.FacetCountsDto;
+import com.mlavrenko.videostreaming.dto.VideoFacetTermsDto;
+import com.mlavrenko.videostreaming.repository.VideoMetadataRepository;
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class FacetServiceTest {
+    private static final VideoFacetTermsDto DARK_KNIGHT = new VideoFacetTermsDto(1L, "The Dark Knight", "Christopher Nolan", Genre.ACTION, 2008);
+    private static final VideoFacetTermsDto INCEPTION = new VideoFacetTermsDto(2L, "Inception", "Christopher Nolan", Genre.THRILLER, 2010);
+    private static final VideoFacetTermsDto HEAT = new VideoFacetTermsDto(3L, "Heat", "Michael Mann", Genre.ACTION, 1995);
+
+    private final VideoMetadataRepository videoMetadataRepository = mock(VideoMetadataRepository.class);
+    private final FacetService facetService = new FacetService(videoMetadataRepository);
+
+    @Test
+    void testRebuildWhenVideosUpdatedDuringReadThenUpdatesKept() {
+        VideoFacetTermsDto dramaInception = new VideoFacetTermsDto(2L, "Inception", "Christopher Nolan", Genre.DRAMA, 2010);
+        when(videoMetadataRepository.streamAllFacetTerms()).thenAnswer(invocation -> {
+            facetService.index(HEAT);
+            facetService.index(dramaInception);
+            facetService.remove(DARK_KNIGHT.id());
+            return Stream.of(DARK_KNIGHT, INCEPTION);
+        });
+
+        facetService.rebuild();
+
+        FacetCountsDto counts = facetService.countFacets(null, null, null);
+        assertAll(
+                () -> assertThat(counts.total()).isEqualTo(2),
+                () -> assertThat(counts.genres()).isEqualTo(Map.of(Genre.ACTION, 1, Genre.DRAMA, 1))
+        );
+    }
+
+    @Test
+    void testIndexWhenNoRebuildRunningThenUpdatesNotReplayedOnNextRebuild() {
+        facetService.index(HEAT);
+        when(videoMetadataRepository.streamAllFacetTerms()).thenReturn(Stream.of(DARK_KNIGHT));
+
+        facetService.rebuild();
+
+        assertThat(facetService.countFacets(null, null, null).total()).isEqualTo(1);
+    }
+}
@@ -0,0 +1,226 @@
+package com.mlavrenko.videostreaming.service;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * In-process stand-in for an S3-compatible store, implementing just the path-style operations used by {@link S3ObjectClient}.
+ * Signatures are not verified, only their presence. Requests can be failed on purpose to exercise retries,
+ * and the highest number of concurrent requests is recorded to verify parallel transfers.
+ */
+class InMemoryS3Server implements AutoCloseable {
+    private static final Pattern PART_NUMBER = Pattern.compile("<PartNumber>(\\d+)</PartNumber>");
+    private static final Pattern RANGE = Pattern.compile("bytes=(\\d+)-(\\d+)");
+    private final String bucket;
+    private final HttpServer server;
+    private final ExecutorService executor = Executors.newFixedThreadPool(32);
+    private final Map<String, byte[]> objects = new ConcurrentHashMap<>();
+    private final Map<String, byte[]> parts = new ConcurrentHashMap<>();
+    private final Map<String, byte[]> replacementsAfterHead = new ConcurrentHashMap<>();
+    private final AtomicInteger failuresToInject = new AtomicInteger();
+    private volatile boolean ignoreRanges;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger maxInFlight = new AtomicInteger();
+    private final AtomicInteger rangedGets = new AtomicInteger();
+    private final AtomicInteger completedMultipartUploads = new AtomicInteger();
+    private final AtomicInteger abortedMultipartUploads = new AtomicInteger();
+
+    InMemoryS3Server(String bucket) throws IOException {
+        this.bucket = bucket;
+        this.server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        this.server.setExecutor(executor);
+        this.server.createContext("/", this::handle);
+        this.server.start();
+    }
+
+    URI getEndpoint() {
+        return URI.create("http://localhost:" + server.getAddress().getPort());
+    }
+
+    byte[] getObject(String key) {
+        return objects.get(key);
+    }
+
+    void replaceObjectAfterNextHead(String key, byte[] replacement) {
+        replacementsAfterHead.put(key, replacement);
+    }
+
+    void failNextRequests(int count) {
+        failuresToInject.set(count);
+    }
+
+    /**
+     * Answers ranged reads with the whole object, as a store or proxy not supporting ranges does.
+     */
+    void ignoreRanges() {
+        ignoreRanges = true;
+    }
+
+    int getMaxInFlight() {
+        return maxInFlight.get();
+    }
+
+    int getRangedGets() {
+        return rangedGets.get();
+    }
+
+    int getCompletedMultipartUploads() {
+        return completedMultipartUploads.get();
+    }
+
+    int getAbortedMultipartUploads() {
+        return abortedMultipartUploads.get();
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+        try (exchange) {
+            byte[] body = exchange.getRequestBody().readAllBytes();
+            if (failuresToInject.getAndUpdate(count -> Math.max(0, count - 1)) > 0) {
+                respond(exchange, 503, "<Error><Code>SlowDown</Code></Error>");
+                return;
+            }
+            String authorization = exchange.getRequestHeaders().getFirst("Authorization");
+            if (authorization == null || !authorization.startsWith("AWS4-HMAC-SHA256 Credential=")) {
+                respond(exchange, 403, "<Error><Code>AccessDenied</Code></Error>");
+                return;
+            }
+            String key = exchange.getRequestURI().getPath().substring(bucket.length() + 2);
+            Map<String, String> query = parseQuery(exchange.getRequestURI().getRawQuery());
+            switch (exchange.getRequestMethod()) {
+                case "PUT" -> put(exchange, key, query, body);
+                case "POST" -> post(exchange, key, query, body);
+                case "GET" -> get(exchange, key);
+                case "HEAD" -> head(exchange, key);
+                case "DELETE" -> delete(exchange, key, query);
+                default -> respond(exchange, 405, "");
+            }
+        } finally {
+            inFlight.decrementAndGet();
+        }
+    }
+
+    private void put(HttpExchange exchange, String key, Map<String, String> query, byte[] body) throws IOException {
+        if (query.containsKey("uploadId")) {
+            parts.put(query.get("uploadId") + "/" + query.get("partNumber"), body);
+            exchange.getResponseHeaders().set("ETag", "\"" + query.get("partNumber") + "-" + query.get("uploadId") + "\"");
+        } else {
+            objects.put(key, body);
+        }
+        respond(exchange, 200, "");
+    }
+
+    private void post(HttpExchange exchange, String key, Map<String, String> query, byte[] body) throws IOException {
+        if (query.containsKey("uploads")) {
+            respond(exchange, 200, "<InitiateMultipartUploadResult><UploadId>" + UUID.randomUUID() + "</UploadId></InitiateMultipartUploadResult>");
+            return;
+        }
+        String uploadId = query.get("uploadId");
+        ByteArrayOutputStream content = new ByteArrayOutputStream();
+        Matcher partNumbers = PART_NUMBER.matcher(new String(body, StandardCharsets.UTF_8));
+        while (partNumbers.find()) {
+            byte[] part = parts.remove(uploadId + "/" + partNumbers.group(1));
+            if (part == null) {
+                respond(exchange, 400, "<Error><Code>InvalidPart</Code></Error>");
+                return;
+            }
+            content.write(part);
+        }
+        objects.put(key, content.toByteArray());
+        completedMultipartUploads.incrementAndGet();
+        respond(exchange, 200, "<CompleteMultipartUploadResult><Key>" + key + "</Key></CompleteMultipartUploadResult>");
+    }
+
+    private void get(HttpExchange exchange, String key) throws IOException {
+        byte[] object = objects.get(key);
+        if (object == null) {
+            respond(exchange, 404, "<Error><Code>NoSuchKey</Code></Error>");
+            return;
+        }
+        String range = exchange.getRequestHeaders().getFirst("Range");
+        if (range == null || ignoreRanges) {
+            respond(exchange, 200, object);
+            return;
+        }
+        rangedGets.incrementAndGet();
+        Matcher matcher = RANGE.matcher(range);
+        if (!matcher.matches() || Integer.parseInt(matcher.group(1)) >= object.length) {
+            respond(exchange, 416, "<Error><Code>InvalidRange</Code></Error>");
+            return;
+        }
+        int start = Integer.parseInt(matcher.group(1));
+        int end = Math.min(Integer.parseInt(matcher.group(2)), object.length - 1);
+        exchange.getResponseHeaders().set("Content-Range", "bytes " + start + "-" + end + "/" + object.length);
+        respond(exchange, 206, Arrays.copyOfRange(object, start, end + 1));
+    }
+
+    private void head(HttpExchange exchange, String key) throws IOException {
+        byte[] object = objects.get(key);
+        if (object != null) {
+            exchange.getResponseHeaders().set("Content-Length", String.valueOf(object.length));
+        }
+        exchange.sendResponseHeaders(object == null ? 404 : 200, -1);
+        byte[] replacement = replacementsAfterHead.remove(key);
+        if (replacement != null) {
+            objects.put(key, replacement);
+        }
+    }
+
+    private void delete(HttpExchange exchange, String key, Map<String, String> query) throws IOException {
+        if (query.containsKey("uploadId")) {
+            parts.keySet().removeIf(part -> part.startsWith(query.get("uploadId") + "/"));
+            abortedMultipartUploads.incrementAndGet();
+        } else {
+            objects.remove(key);
+        }
+        exchange.sendResponseHeaders(204, -1);
+    }
+
+    private static void respond(HttpExchange exchange, int status, String body) throws IOException {
+        respond(exchange, status, body.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static void respond(HttpExchange exchange, int status, byte[] body) throws IOException {
+        boolean hasBody = body.length > 0 && !"HEAD".equals(exchange.getRequestMethod());
+        exchange.sendResponseHeaders(status, hasBody ? body.length : -1);
+        if (hasBody) {
+            exchange.getResponseBody().write(body);
+        }
+    }
+
+    private static Map<String, String> parseQuery(String rawQuery) {
+        Map<String, String> query = new HashMap<>();
+        if (rawQuery == null || rawQuery.isEmpty()) {
+            return query;
+        }
+        for (String parameter : rawQuery.split("&")) {
+            String[] keyValue = parameter.split("=", 2);
+            query.put(URLDecoder.decode(keyValue[0], StandardCharsets.UTF_8),
+                    keyValue.length > 1 ? URLDecoder.decode(keyValue[1], StandardCharsets.UTF_8) : "");
+        }
+        return query;
+    }
+}
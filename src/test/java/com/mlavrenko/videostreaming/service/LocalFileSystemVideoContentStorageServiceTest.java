@@ -1,9 +1,12 @@
 package com.mlavrenko.videostreaming.service;
 
+import com.mlavrenko.videostreaming.config.BufferPoolProperties;
 import com.mlavrenko.videostreaming.config.VideoContentStorageProperties;
 import com.mlavrenko.videostreaming.exception.InvalidFileUploadException;
 import com.mlavrenko.videostreaming.exception.ResourceNotFoundException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.Nested;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.params.ParameterizedTest;
@@ -13,8 +16,11 @@ import org.springframework.mock.web.MockMultipartFile;
 import org.springframework.util.unit.DataSize;
 import org.springframework.web.multipart.MultipartFile;
 
+import java.io.EOFException;
 import java.io.IOException;
+import java.io.InputStream;
 import java.nio.charset.MalformedInputException;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 
@@ -26,8 +32,15 @@ import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 class LocalFileSystemVideoContentStorageServiceTest {
+    private final BufferPool bufferPool = new BufferPool(
+            new BufferPoolProperties(DataSize.ofBytes(8), DataSize.ofKilobytes(64), DataSize.ofKilobytes(256), true), new SimpleMeterRegistry());
     private final LocalFileSystemVideoContentStorageService service =
-            new LocalFileSystemVideoContentStorageService(new VideoContentStorageProperties("uploads", DataSize.ofBytes(16)));
+            new LocalFileSystemVideoContentStorageService(new VideoContentStorageProperties("uploads", DataSize.ofBytes(16)), bufferPool);
+
+    @AfterEach
+    void checkLeaks() {
+        bufferPool.checkLeaks();
+    }
 
     @AfterAll
     static void cleanUp() throws IOException {
@@ -62,6 +75,27 @@ class LocalFileSystemVideoContentStorageServiceTest {
         }
     }
 
+    @Nested
+    class LoadRangeTests {
+        @ParameterizedTest
+        @CsvSource(value = {
+                "0, 6, sample",
+                "7, 7, content",
+                "7, 100, content",
+                "20, 5, ''",
+        })
+        void testLoadRangeWhenValidPathThenReturnsRangeWithinContent(long offset, long length, String expected) throws IOException {
+            Path tempFile = Files.createTempFile("test-range", ".txt");
+            Files.writeString(tempFile, "sample content");
+
+            byte[] result = service.loadRange(tempFile.toString(), offset, length);
+
+            assertThat(new String(result)).isEqualTo(expected);
+
+            Files.deleteIfExists(tempFile);
+        }
+    }
+
     @Nested
     class UploadTests {
         @Test
@@ -78,7 +112,7 @@ class LocalFileSystemVideoContentStorageServiceTest {
             Path expectedPath = Path.of("uploads", mockMultipartFile.getOriginalFilename());
             assertAll(
                     () -> assertThat(result).isEqualTo(expectedPath.toString()),
-                    () -> assertThat(Files.exists(expectedPath)).isTrue()
+                    () -> assertThat(Files.readAllBytes(expectedPath)).containsExactly(1, 2, 3, 4)
             );
 
             Files.deleteIfExists(expectedPath);
@@ -100,11 +134,11 @@ class LocalFileSystemVideoContentStorageServiceTest {
         void testUploadWhenMalformedFileThenThrowsInvalidFileUploadException() throws IOException {
             MultipartFile mockMultipartFile = mock(MultipartFile.class);
             when(mockMultipartFile.getOriginalFilename()).thenReturn("malformed-video.mp4");
-            when(mockMultipartFile.getBytes()).thenThrow(new MalformedInputException(123));
+            when(mockMultipartFile.getInputStream()).thenThrow(new MalformedInputException(123));
 
             assertAll(
                     () -> assertThatThrownBy(() -> service.upload(mockMultipartFile)).isInstanceOf(InvalidFileUploadException.class),
-                    () -> verify(mockMultipartFile).getBytes()
+                    () -> verify(mockMultipartFile).getInputStream()
             );
         }
     }
@@ -116,9 +150,54 @@ class LocalFileSystemVideoContentStorageServiceTest {
             Path tempFile = Files.createTempFile("test-video", ".txt");
             String sampleContent = "sample content";
             Files.writeString(tempFile, sampleContent);
-            String result = service.load(tempFile.toString());
+            ContentResource result = service.load(tempFile.toString());
+
+            assertAll(
+                    () -> assertThat(result.getContentAsString(StandardCharsets.UTF_8)).isEqualTo(sampleContent),
+                    () -> assertThat(result.contentLength()).isEqualTo(sampleContent.length())
+            );
+
+            Files.deleteIfExists(tempFile);
+        }
+
+        @Test
+        void testLoadWhenContentLargerThanTransferChunkThenReturnsWholeContent() throws IOException {
+            Path tempFile = Files.createTempFile("test-video", ".txt");
+            String sampleContent = "sample content ".repeat(10_000);
+            Files.writeString(tempFile, sampleContent);
+
+            assertAll(
+                    () -> assertThat(service.load(tempFile.toString()).getContentAsString(StandardCharsets.UTF_8)).isEqualTo(sampleContent),
+                    () -> assertThat(service.load(tempFile.toString()).getContentAsString(StandardCharsets.UTF_8)).isEqualTo(sampleContent),
+                    () -> assertThat(bufferPool.getLeasedBuffers()).isZero()
+            );
+
+            Files.deleteIfExists(tempFile);
+        }
+
+        @Test
+        void testLoadWhenStreamSkippedThenReadsFromSkippedPosition() throws IOException {
+            Path tempFile = Files.createTempFile("test-video", ".txt");
+            Files.writeString(tempFile, "sample content");
+
+            try (InputStream content = service.load(tempFile.toString()).getInputStream()) {
+                assertAll(
+                        () -> assertThat(content.skip(7)).isEqualTo(7),
+                        () -> assertThat(content.readAllBytes()).asString(StandardCharsets.UTF_8).isEqualTo("content")
+                );
+            }
+
+            Files.deleteIfExists(tempFile);
+        }
+
+        @Test
+        void testLoadWhenFileTruncatedAfterOpenThenReadFailsWithEOFException() throws IOException {
+            Path tempFile = Files.createTempFile("test-video", ".txt");
+            Files.writeString(tempFile, "sample content");
+            ContentResource content = service.load(tempFile.toString());
+            Files.writeString(tempFile, "short");
 
-            assertThat(result).isEqualTo(sampleContent);
+            assertThatThrownBy(content::getContentAsByteArray).isInstanceOf(EOFException.class);
 
             Files.deleteIfExists(tempFile);
         }
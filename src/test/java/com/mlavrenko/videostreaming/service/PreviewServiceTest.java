@@ -0,0 +1,142 @@
+package com.mlavrenko.videostreaming.service;
+
+import com.mlavrenko.videostreaming.config.PreviewProperties;
+import com.mlavrenko.videostreaming.config.VideoContentStorageProperties;
+import com.mlavrenko.videostreaming.dto.VideoPreviewLocationDto;
+import com.mlavrenko.videostreaming.repository.VideoMetadataRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+class PreviewServiceTest {
+    private static final Long VIDEO_ID = 1L;
+    private static final String VIDEO_LOCATION = "uploads/video.mp4";
+    private static final long PREVIEW_SIZE = 8;
+    @TempDir
+    private Path previewDirectory;
+    private final VideoMetadataRepository videoMetadataRepository = mock(VideoMetadataRepository.class);
+    private final VideoContentStorageService videoContentStorageService = mock(VideoContentStorageService.class);
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Test
+    void testCreateWhenUploadedThenHeadStoredAndLoadedWithoutReadingContent() throws IOException {
+        PreviewService previewService = createPreviewService();
+
+        PreviewService.StoredPreview preview = previewService.create(
+                new MockMultipartFile("videoFile", "video.mp4", "video/mp4", "Kinda video content".getBytes(StandardCharsets.UTF_8)));
+
+        assertAll(
+                () -> assertThat(preview.previewSize()).isEqualTo(PREVIEW_SIZE),
+                () -> assertThat(Path.of(preview.previewLocation())).startsWith(previewDirectory),
+                () -> assertThat(previewService.load(VIDEO_ID, VIDEO_LOCATION, preview.previewLocation(), PREVIEW_SIZE))
+                        .isEqualTo(new PreviewService.LoadedPreview("Kinda vi", 8)),
+                () -> verifyNoInteractions(videoContentStorageService, videoMetadataRepository)
+        );
+    }
+
+    @Test
+    void testLoadWhenPreviewHasMultiByteCharactersThenStoredBytesCounted() throws IOException {
+        PreviewService previewService = createPreviewService();
+        Path stored = Files.writeString(previewDirectory.resolve("stored-8.preview"), "Kinövö", StandardCharsets.UTF_8);
+
+        PreviewService.LoadedPreview preview = previewService.load(VIDEO_ID, VIDEO_LOCATION, stored.toString(), PREVIEW_SIZE);
+
+        assertAll(
+                () -> assertThat(preview.preview()).isEqualTo("Kinövö"),
+                () -> assertThat(preview.bytes()).isEqualTo(8)
+        );
+    }
+
+    @Test
+    void testLoadWhenNoPreviewStoredThenGeneratedFromContentAndReferenced() throws IOException {
+        PreviewService previewService = createPreviewService();
+        when(videoContentStorageService.loadRange(VIDEO_LOCATION, 0, PREVIEW_SIZE)).thenReturn("Kinda vi".getBytes(StandardCharsets.UTF_8));
+
+        PreviewService.LoadedPreview preview = previewService.load(VIDEO_ID, VIDEO_LOCATION, null, null);
+
+        assertAll(
+                () -> assertThat(preview).isEqualTo(new PreviewService.LoadedPreview("Kinda vi", 8)),
+                () -> assertThat(previewDirectory).isDirectoryContaining(path -> path.getFileName().toString().endsWith("-8.preview")),
+                () -> verify(videoMetadataRepository).updatePreview(eq(VIDEO_ID), anyString(), eq(PREVIEW_SIZE)),
+                () -> assertThat(meterRegistry.get("previews.regenerations").tag("trigger", "load").counter().count()).isOne()
+        );
+    }
+
+    @Test
+    void testLoadWhenPreviewSizeChangedThenRegeneratedAndPreviousDeleted() throws IOException {
+        PreviewService previewService = createPreviewService();
+        Path previous = Files.writeString(previewDirectory.resolve("previous-4.preview"), "Kind");
+        when(videoContentStorageService.loadRange(VIDEO_LOCATION, 0, PREVIEW_SIZE)).thenReturn("Kinda vi".getBytes(StandardCharsets.UTF_8));
+
+        PreviewService.LoadedPreview preview = previewService.load(VIDEO_ID, VIDEO_LOCATION, previous.toString(), 4L);
+
+        assertAll(
+                () -> assertThat(preview).isEqualTo(new PreviewService.LoadedPreview("Kinda vi", 8)),
+                () -> assertThat(previous).doesNotExist(),
+                () -> verify(videoMetadataRepository).updatePreview(eq(VIDEO_ID), anyString(), eq(PREVIEW_SIZE))
+        );
+    }
+
+    @Test
+    void testLoadWhenPreviewMissingOnThisNodeThenRestoredAtSameLocation() throws IOException {
+        PreviewService previewService = createPreviewService();
+        Path missing = previewDirectory.resolve("missing-8.preview");
+        when(videoContentStorageService.loadRange(VIDEO_LOCATION, 0, PREVIEW_SIZE)).thenReturn("Kinda vi".getBytes(StandardCharsets.UTF_8));
+
+        PreviewService.LoadedPreview preview = previewService.load(VIDEO_ID, VIDEO_LOCATION, missing.toString(), PREVIEW_SIZE);
+
+        assertAll(
+                () -> assertThat(preview).isEqualTo(new PreviewService.LoadedPreview("Kinda vi", 8)),
+                () -> assertThat(missing).hasContent("Kinda vi"),
+                () -> verify(videoMetadataRepository, never()).updatePreview(any(), any(), any())
+        );
+    }
+
+    @Test
+    void testRegenerateStaleWhenSeveralPagesThenAllRegeneratedAndFailuresSkipped() throws IOException {
+        PreviewService previewService = createPreviewService();
+        when(videoMetadataRepository.findStalePreviews(PREVIEW_SIZE, 0L, PageRequest.of(0, 1)))
+                .thenReturn(List.of(new VideoPreviewLocationDto(1L, "uploads/missing.mp4", null)));
+        when(videoMetadataRepository.findStalePreviews(PREVIEW_SIZE, 1L, PageRequest.of(0, 1)))
+                .thenReturn(List.of(new VideoPreviewLocationDto(2L, VIDEO_LOCATION, null)));
+        when(videoMetadataRepository.findStalePreviews(PREVIEW_SIZE, 2L, PageRequest.of(0, 1))).thenReturn(List.of());
+        when(videoContentStorageService.loadRange(eq("uploads/missing.mp4"), anyLong(), anyLong())).thenThrow(new IOException("Not found"));
+        when(videoContentStorageService.loadRange(VIDEO_LOCATION, 0, PREVIEW_SIZE)).thenReturn("Kinda vi".getBytes(StandardCharsets.UTF_8));
+
+        previewService.regenerateStale();
+
+        assertAll(
+                () -> verify(videoMetadataRepository, never()).updatePreview(eq(1L), any(), any()),
+                () -> verify(videoMetadataRepository).updatePreview(eq(2L), anyString(), eq(PREVIEW_SIZE)),
+                () -> assertThat(meterRegistry.get("previews.regenerations").tag("trigger", "bulk").counter().count()).isOne()
+        );
+    }
+
+    private PreviewService createPreviewService() {
+        return new PreviewService(videoMetadataRepository, videoContentStorageService,
+                new VideoContentStorageProperties("uploads", DataSize.ofBytes(PREVIEW_SIZE)),
+                new PreviewProperties(previewDirectory.toString(), Duration.ofMinutes(10), 1), meterRegistry);
+    }
+}
@@ -0,0 +1,53 @@
+package com.mlavrenko.videostreaming.service;
+
+import com.mlavrenko.videostreaming.config.RelatedVideosProperties;
+import com.mlavrenko.videostreaming.domain.Genre;
+import com.mlavrenko.videostreaming.dto.RelatedVideoDto;
+import com.mlavrenko.videostreaming.dto.VideoRelationTermsDto;
+import com.mlavrenko.videostreaming.repository.VideoMetadataRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionOperations;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class RelatedVideosServiceTest {
+    private static final VideoRelationTermsDto DARK_KNIGHT =
+            new VideoRelationTermsDto(1L, "The Dark Knight", "Christopher Nolan", "Christian Bale", Genre.ACTION, 2008, 100);
+    private static final VideoRelationTermsDto INCEPTION =
+            new VideoRelationTermsDto(2L, "Inception", "Christopher Nolan", "Leonardo DiCaprio", Genre.THRILLER, 2010, 100);
+    private static final VideoRelationTermsDto BATMAN_BEGINS =
+            new VideoRelationTermsDto(3L, "Batman Begins", "Christopher Nolan", "Christian Bale", Genre.ACTION, 2005, 100);
+
+    private final VideoMetadataRepository videoMetadataRepository = mock(VideoMetadataRepository.class);
+    private final RelatedVideosService relatedVideosService = new RelatedVideosService(videoMetadataRepository,
+            new RelatedVideosProperties(10, 5, 2, Duration.ofMinutes(10)), TransactionOperations.withoutTransaction());
+
+    @AfterEach
+    void tearDown() {
+        relatedVideosService.shutdown();
+    }
+
+    @Test
+    void testRebuildWhenVideosChangedDuringReadThenChangesKept() {
+        when(videoMetadataRepository.findAllRelationTerms()).thenAnswer(invocation -> {
+            relatedVideosService.index(BATMAN_BEGINS);
+            relatedVideosService.remove(INCEPTION.id());
+            return List.of(DARK_KNIGHT, INCEPTION);
+        });
+
+        relatedVideosService.rebuild();
+
+        assertAll(
+                () -> assertThat(relatedVideosService.findRelated(DARK_KNIGHT.id()).orElseThrow()).extracting(RelatedVideoDto::id)
+                        .containsExactly(BATMAN_BEGINS.id()),
+                () -> assertThat(relatedVideosService.findRelated(INCEPTION.id())).isEmpty()
+        );
+    }
+}
@@ -0,0 +1,114 @@
+package com.mlavrenko.videostreaming.service;
+
+import com.mlavrenko.videostreaming.config.RenditionProperties;
+import com.mlavrenko.videostreaming.domain.VideoRendition;
+import com.mlavrenko.videostreaming.dto.PlaybackHintsDto;
+import com.mlavrenko.videostreaming.dto.VideoRenditionDto;
+import com.mlavrenko.videostreaming.repository.VideoRenditionRepository;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+class RenditionServiceTest {
+    private static final List<RenditionService.Rendition> RENDITIONS = List.of(
+            new RenditionService.Rendition(5000, "video-1080p.mp4"),
+            new RenditionService.Rendition(2500, "video-720p.mp4"),
+            new RenditionService.Rendition(1200, "video-480p.mp4"));
+    private final VideoRenditionRepository videoRenditionRepository = mock(VideoRenditionRepository.class);
+    private final VideoContentStorageService videoContentStorageService = mock(VideoContentStorageService.class);
+    private final RenditionService renditionService =
+            new RenditionService(videoRenditionRepository, videoContentStorageService, mock(ContentVariantService.class), new RenditionProperties(0.8));
+
+    @ParameterizedTest
+    @CsvSource(value = {
+            "null, 10.0, false, video-1080p.mp4",
+            "3000, null, false, video-720p.mp4",
+            "3000, 2.0, false, video-480p.mp4",
+            "null, 0.5, false, video-480p.mp4",
+            "null, 10.0, true, video-480p.mp4",
+    }, nullValues = "null")
+    void testSelectWhenHintsGivenThenPicksHighestBitrateWithinBudget(Integer maxBitrate, Double downlink, boolean saveData, String expected) {
+        assertThat(RenditionService.select(RENDITIONS, new PlaybackHintsDto(maxBitrate, downlink, saveData), 0.8))
+                .map(RenditionService.Rendition::videoLocation)
+                .contains(expected);
+    }
+
+    @Test
+    void testSelectWhenNoRenditionsThenEmpty() {
+        assertThat(RenditionService.select(List.of(), new PlaybackHintsDto(1000, null, false), 0.8)).isEmpty();
+    }
+
+    @Test
+    void testSelectLocationWhenNoHintsThenMasterWithoutLookup() throws IOException {
+        assertAll(
+                () -> assertThat(renditionService.selectLocation(1L, "video.mp4", PlaybackHintsDto.NONE)).isEqualTo("video.mp4"),
+                () -> verifyNoInteractions(videoRenditionRepository)
+        );
+    }
+
+    @Test
+    void testSelectLocationWhenNoRenditionsThenMaster() throws IOException {
+        when(videoRenditionRepository.findAllByVideoIdOrderByBitrateDesc(1L)).thenReturn(List.of());
+
+        assertThat(renditionService.selectLocation(1L, "video.mp4", new PlaybackHintsDto(null, null, true))).isEqualTo("video.mp4");
+    }
+
+    @ParameterizedTest
+    @CsvSource({
+            "video.mp4, video-720p.mp4",
+            "dir/video.mp4, dir/video-720p.mp4",
+            "video, video-720p",
+    })
+    void testSiblingFileNameWhenLabelGivenThenAppendedBeforeExtension(String masterFileName, String expected) {
+        assertThat(RenditionService.siblingFileName(masterFileName, "720p")).isEqualTo(expected);
+    }
+
+    @Test
+    void testAddRenditionWhenSaveFailsThenUploadedContentDeleted() throws IOException {
+        MultipartFile videoFile = new MockMultipartFile("videoFile", "low.mp4", "video/mp4", new byte[]{1});
+        when(videoRenditionRepository.findByVideoIdAndLabel(1L, "480p")).thenReturn(Optional.empty());
+        when(videoContentStorageService.fileNameOf("uploads/video.mp4")).thenReturn("video.mp4");
+        when(videoContentStorageService.upload(videoFile, "video-480p.mp4")).thenReturn("uploads/video-480p.mp4");
+        when(videoRenditionRepository.save(any())).thenThrow(new DataIntegrityViolationException("duplicate"));
+
+        assertAll(
+                () -> assertThatThrownBy(() -> renditionService.addRendition(1L, "uploads/video.mp4",
+                        new VideoRenditionDto("480p", 1200, 480), videoFile)).isInstanceOf(DataIntegrityViolationException.class),
+                () -> verify(videoContentStorageService).delete("uploads/video-480p.mp4")
+        );
+    }
+
+    @Test
+    void testAddRenditionWhenReplacingSaveFailsThenExistingContentKept() throws IOException {
+        MultipartFile videoFile = new MockMultipartFile("videoFile", "low.mp4", "video/mp4", new byte[]{1});
+        VideoRendition existing = new VideoRendition();
+        existing.setVideoLocation("uploads/video-480p.mp4");
+        when(videoRenditionRepository.findByVideoIdAndLabel(1L, "480p")).thenReturn(Optional.of(existing));
+        when(videoContentStorageService.fileNameOf("uploads/video.mp4")).thenReturn("video.mp4");
+        when(videoContentStorageService.upload(videoFile, "video-480p.mp4")).thenReturn("uploads/video-480p.mp4");
+        when(videoRenditionRepository.save(any())).thenThrow(new DataIntegrityViolationException("duplicate"));
+
+        assertAll(
+                () -> assertThatThrownBy(() -> renditionService.addRendition(1L, "uploads/video.mp4",
+                        new VideoRenditionDto("480p", 1200, 480), videoFile)).isInstanceOf(DataIntegrityViolationException.class),
+                () -> verify(videoContentStorageService, never()).delete(any())
+        );
+    }
+}
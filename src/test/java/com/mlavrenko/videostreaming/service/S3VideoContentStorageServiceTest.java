@@ -0,0 +1,196 @@
+package com.mlavrenko.videostreaming.service;
+
+import com.mlavrenko.videostreaming.config.BufferPoolProperties;
+import com.mlavrenko.videostreaming.config.S3StorageProperties;
+import com.mlavrenko.videostreaming.config.VideoContentStorageProperties;
+import com.mlavrenko.videostreaming.exception.InvalidFileUploadException;
+import com.mlavrenko.videostreaming.exception.ResourceNotFoundException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.util.unit.DataSize;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.junit.jupiter.api.Assertions.assertAll;
+
+class S3VideoContentStorageServiceTest {
+    private static final String BUCKET = "video-content";
+    private static final int PART_SIZE = 8;
+    private static final int MAX_CONNECTIONS = 4;
+    private static final String LARGE_CONTENT = "0123456789abcdefghijklmnopqrstuvwxyzABCDEFGHIJKLMN";
+    private final BufferPool bufferPool = new BufferPool(
+            new BufferPoolProperties(DataSize.ofBytes(8), DataSize.ofBytes(64), DataSize.ofKilobytes(1), true), new SimpleMeterRegistry());
+    private InMemoryS3Server s3Server;
+    private S3VideoContentStorageService service;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        s3Server = new InMemoryS3Server(BUCKET);
+        service = new S3VideoContentStorageService(
+                new VideoContentStorageProperties("uploads", DataSize.ofBytes(16)),
+                new S3StorageProperties(s3Server.getEndpoint(), "us-east-1", BUCKET, "access-key", "secret-key",
+                        DataSize.ofBytes(PART_SIZE), DataSize.ofBytes(16), MAX_CONNECTIONS, Duration.ofSeconds(5), 3, Duration.ofMillis(1)),
+                bufferPool);
+    }
+
+    @AfterEach
+    void tearDown() {
+        service.shutdown();
+        s3Server.close();
+        bufferPool.checkLeaks();
+    }
+
+    @Nested
+    class UploadTests {
+        @Test
+        void testUploadWhenFileLargerThanPartThenUploadsMultipart() throws IOException {
+            String result = service.upload(createFile("movies/large video.mp4", LARGE_CONTENT));
+
+            assertAll(
+                    () -> assertThat(result).isEqualTo("movies/large video.mp4"),
+                    () -> assertThat(s3Server.getObject(result)).asString(StandardCharsets.UTF_8).isEqualTo(LARGE_CONTENT),
+                    () -> assertThat(s3Server.getCompletedMultipartUploads()).isOne()
+            );
+        }
+
+        @Test
+        void testUploadWhenFileSmallerThanPartThenUploadsSingleObject() throws IOException {
+            String result = service.upload(createFile("small.mp4", "tiny"));
+
+            assertAll(
+                    () -> assertThat(s3Server.getObject(result)).asString(StandardCharsets.UTF_8).isEqualTo("tiny"),
+                    () -> assertThat(s3Server.getCompletedMultipartUploads()).isZero()
+            );
+        }
+
+        @Test
+        void testUploadWhenStoreIsThrottlingThenRetries() throws IOException {
+            s3Server.failNextRequests(2);
+
+            String result = service.upload(createFile("small.mp4", "tiny"));
+
+            assertThat(s3Server.getObject(result)).asString(StandardCharsets.UTF_8).isEqualTo("tiny");
+        }
+
+        @Test
+        void testUploadWhenStoreKeepsFailingThenThrowsIOException() {
+            s3Server.failNextRequests(1_000);
+
+            assertThatThrownBy(() -> service.upload(createFile("large.mp4", LARGE_CONTENT))).isInstanceOf(IOException.class);
+        }
+
+        @Test
+        void testUploadWhenInvalidFileNameThenThrowsException() {
+            assertThatThrownBy(() -> service.upload(createFile(null, "tiny"))).isInstanceOf(InvalidFileUploadException.class);
+        }
+    }
+
+    @Nested
+    class LoadTests {
+        @Test
+        void testLoadWhenObjectIsLargeThenStreamsConsecutiveRanges() throws IOException {
+            String location = service.upload(createFile("large.mp4", LARGE_CONTENT));
+
+            ContentResource result = service.load(location);
+
+            assertAll(
+                    () -> assertThat(result.contentLength()).isEqualTo(LARGE_CONTENT.length()),
+                    () -> assertThat(result.getContentAsString(StandardCharsets.UTF_8)).isEqualTo(LARGE_CONTENT),
+                    () -> assertThat(s3Server.getRangedGets()).isEqualTo((LARGE_CONTENT.length() + PART_SIZE - 1) / PART_SIZE),
+                    () -> assertThat(bufferPool.getLeasedBuffers()).isZero()
+            );
+        }
+
+        @Test
+        void testLoadWhenStreamSkippedThenReadsOnlyRangesAfterSkip() throws IOException {
+            String location = service.upload(createFile("large.mp4", LARGE_CONTENT));
+
+            try (InputStream content = service.load(location).getInputStream()) {
+                assertAll(
+                        () -> assertThat(content.skip(40)).isEqualTo(40),
+                        () -> assertThat(content.readAllBytes()).asString(StandardCharsets.UTF_8).isEqualTo(LARGE_CONTENT.substring(40)),
+                        () -> assertThat(s3Server.getRangedGets()).isEqualTo(2)
+                );
+            }
+        }
+
+        @Test
+        void testLoadRangeWhenRangeIsLargeThenReadsRangesInParallel() throws IOException {
+            String location = service.upload(createFile("large.mp4", LARGE_CONTENT));
+
+            byte[] result = service.loadRange(location, 0, LARGE_CONTENT.length());
+
+            assertAll(
+                    () -> assertThat(result).asString(StandardCharsets.UTF_8).isEqualTo(LARGE_CONTENT),
+                    () -> assertThat(s3Server.getRangedGets()).isEqualTo((LARGE_CONTENT.length() + PART_SIZE - 1) / PART_SIZE),
+                    () -> assertThat(s3Server.getMaxInFlight()).isBetween(1, MAX_CONNECTIONS)
+            );
+        }
+
+        @Test
+        void testLoadPreviewWhenObjectExistsThenReturnsItsHead() throws IOException {
+            String location = service.upload(createFile("large.mp4", LARGE_CONTENT));
+
+            assertThat(service.loadPreview(location)).isEqualTo(LARGE_CONTENT.substring(0, 16));
+        }
+
+        @Test
+        void testLoadRangeWhenRangeExceedsObjectThenReturnsRemainder() throws IOException {
+            String location = service.upload(createFile("small.mp4", "sample content"));
+
+            assertThat(service.loadRange(location, 7, 100)).asString(StandardCharsets.UTF_8).isEqualTo("content");
+        }
+
+        @Test
+        void testLoadWhenObjectShrinksAfterSizeIsReadThenThrowsEOFException() throws IOException {
+            String location = service.upload(createFile("large.mp4", LARGE_CONTENT));
+            s3Server.replaceObjectAfterNextHead(location, "short".getBytes(StandardCharsets.UTF_8));
+
+            ContentResource content = service.load(location);
+
+            assertThatThrownBy(content::getContentAsByteArray)
+                    .isInstanceOf(EOFException.class)
+                    .hasMessageContaining("Expected " + PART_SIZE + " bytes at offset 0 of " + location);
+        }
+
+        @Test
+        void testLoadRangeWhenStoreIgnoresRangeThenThrowsIOException() throws IOException {
+            String location = service.upload(createFile("small.mp4", "sample content"));
+            s3Server.ignoreRanges();
+
+            assertThatThrownBy(() -> service.loadRange(location, 7, 100))
+                    .isInstanceOf(IOException.class)
+                    .hasMessageContaining("Expected bytes from offset 7 of " + location + ", but got status 200");
+        }
+
+        @Test
+        void testLoadWhenObjectDoesNotExistThenThrowsResourceNotFoundException() {
+            assertThatThrownBy(() -> service.load("nonexistent.mp4"))
+                    .isInstanceOf(ResourceNotFoundException.class)
+                    .hasMessageContaining("Video file not found at the specified path: nonexistent.mp4");
+        }
+    }
+
+    @Test
+    void testDeleteWhenObjectExistsThenObjectDeleted() throws IOException {
+        String location = service.upload(createFile("small.mp4", "tiny"));
+
+        service.delete(location);
+
+        assertThat(s3Server.getObject(location)).isNull();
+    }
+
+    private static MockMultipartFile createFile(String name, String content) {
+        return new MockMultipartFile("videoFile", name, "video/mp4", content.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,80 @@
+package com.mlavrenko.videostreaming.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.junit.jupiter.api.Assertions.assertAll;
+
+class SingleFlightTest {
+    private static final int CALLERS = 8;
+    private final SingleFlight<String, String> singleFlight = new SingleFlight<>();
+
+    @Test
+    void testExecuteWhenConcurrentCallsWithSameKeyThenOperationRunsOnce() throws Exception {
+        AtomicInteger executions = new AtomicInteger();
+        CountDownLatch arrived = new CountDownLatch(CALLERS);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(CALLERS);
+        try {
+            List<Future<String>> results = IntStream.range(0, CALLERS)
+                    .mapToObj(i -> executor.submit(() -> {
+                        arrived.countDown();
+                        return singleFlight.execute("video", () -> {
+                            executions.incrementAndGet();
+                            await(release);
+                            return "content";
+                        });
+                    }))
+                    .toList();
+            assertThat(arrived.await(5, TimeUnit.SECONDS)).isTrue();
+            Thread.sleep(200);
+            release.countDown();
+
+            for (Future<String> result : results) {
+                assertThat(result.get(5, TimeUnit.SECONDS)).isEqualTo("content");
+            }
+            assertThat(executions).hasValue(1);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void testExecuteWhenSequentialCallsThenNothingIsCached() throws IOException {
+        AtomicInteger executions = new AtomicInteger();
+
+        singleFlight.execute("video", () -> "content-" + executions.incrementAndGet());
+        String second = singleFlight.execute("video", () -> "content-" + executions.incrementAndGet());
+
+        assertAll(
+                () -> assertThat(second).isEqualTo("content-2"),
+                () -> assertThat(executions).hasValue(2)
+        );
+    }
+
+    @Test
+    void testExecuteWhenOperationFailsThenFailureIsPropagated() {
+        assertThatThrownBy(() -> singleFlight.execute("video", () -> {
+            throw new IOException("Read failed");
+        })).isInstanceOf(IOException.class).hasMessage("Read failed");
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
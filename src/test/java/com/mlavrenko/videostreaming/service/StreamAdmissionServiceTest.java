@@ -0,0 +1,94 @@
+package com.mlavrenko.videostreaming.service;
+
+import com.mlavrenko.videostreaming.config.StreamAdmissionProperties;
+import com.mlavrenko.videostreaming.config.StreamAdmissionProperties.PriorityLimits;
+import com.mlavrenko.videostreaming.domain.StreamPriority;
+import com.mlavrenko.videostreaming.exception.ServiceOverloadedException;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.assertj.core.api.InstanceOfAssertFactories;
+import org.junit.jupiter.api.Test;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.junit.jupiter.api.Assertions.assertAll;
+
+class StreamAdmissionServiceTest {
+    private static final Duration RETRY_AFTER = Duration.ofSeconds(1);
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final StreamAdmissionService service = new StreamAdmissionService(new StreamAdmissionProperties(
+            DataSize.ofBytes(100),
+            RETRY_AFTER,
+            Map.of(
+                    StreamPriority.PREVIEW, new PriorityLimits(1, Duration.ZERO, false),
+                    StreamPriority.PLAY, new PriorityLimits(1, Duration.ZERO, true)
+            )), meterRegistry);
+
+    @Test
+    void testAdmitWhenWithinBudgetThenExecutesOperation() throws IOException {
+        String result = service.admit(StreamPriority.PLAY, () -> "content", String::length);
+
+        assertThat(result).isEqualTo("content");
+    }
+
+    @Test
+    void testAdmitWhenPriorityClassIsBusyThenRejectsOnlyThatClass() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        CompletableFuture<String> play = CompletableFuture.supplyAsync(() -> {
+            try {
+                return service.admit(StreamPriority.PLAY, () -> {
+                    started.countDown();
+                    await(release);
+                    return "content";
+                }, String::length);
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+
+        assertAll(
+                () -> assertThatThrownBy(() -> service.admit(StreamPriority.PLAY, () -> "content", String::length))
+                        .isInstanceOf(ServiceOverloadedException.class)
+                        .extracting("retryAfter").isEqualTo(RETRY_AFTER),
+                () -> assertThat(service.admit(StreamPriority.PREVIEW, () -> "preview", String::length)).isEqualTo("preview"),
+                () -> assertThat(meterRegistry.get("stream.admission.queue.depth").tag("priority", "play").gauge().value()).isZero(),
+                () -> assertThat(meterRegistry.get("stream.admission.rejections").tag("priority", "play").tag("reason", "concurrency")
+                        .counter().count()).isEqualTo(1)
+        );
+
+        release.countDown();
+        assertThat(play.get(5, TimeUnit.SECONDS)).isEqualTo("content");
+    }
+
+    @Test
+    void testAdmitWhenBandwidthBudgetExhaustedThenRejectsThrottledStreams() throws IOException {
+        service.admit(StreamPriority.PLAY, () -> "x".repeat(1_000), String::length);
+
+        assertAll(
+                () -> assertThatThrownBy(() -> service.admit(StreamPriority.PLAY, () -> "content", String::length))
+                        .isInstanceOf(ServiceOverloadedException.class)
+                        .extracting("retryAfter", InstanceOfAssertFactories.DURATION).isGreaterThan(Duration.ofSeconds(8)),
+                () -> assertThat(service.admit(StreamPriority.PREVIEW, () -> "preview", String::length)).isEqualTo("preview"),
+                () -> assertThat(meterRegistry.get("stream.admission.rejections").tag("priority", "play").tag("reason", "bandwidth")
+                        .counter().count()).isEqualTo(1)
+        );
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
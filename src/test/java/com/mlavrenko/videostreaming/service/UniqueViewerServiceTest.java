@@ -0,0 +1,70 @@
+package com.mlavrenko.videostreaming.service;
+
+import com.mlavrenko.videostreaming.IntegrationTest;
+import com.mlavrenko.videostreaming.domain.EngagementType;
+import com.mlavrenko.videostreaming.domain.VideoViewerSketch;
+import com.mlavrenko.videostreaming.repository.VideoViewerSketchRepository;
+import com.mlavrenko.videostreaming.sketch.HyperLogLog;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+import static org.junit.jupiter.api.Assertions.assertAll;
+
+@IntegrationTest
+class UniqueViewerServiceTest {
+    private static final LocalDate TODAY = LocalDate.now(ZoneOffset.UTC);
+    @Autowired
+    private UniqueViewerService uniqueViewerService;
+    @Autowired
+    private VideoViewerSketchRepository videoViewerSketchRepository;
+
+    @Test
+    void testRollUpWhenWindowsPastRollUpAgeThenMergedIntoSingleRowWithSameEstimate() {
+        videoViewerSketchRepository.save(createSketch(42L, "node-a", TODAY.minusDays(30), 11, "viewer-1", "viewer-2"));
+        videoViewerSketchRepository.save(createSketch(42L, "node-b", TODAY.minusDays(30), 11, "viewer-2", "viewer-3"));
+        videoViewerSketchRepository.save(createSketch(42L, "node-a", TODAY.minusDays(20), 11, "viewer-4"));
+        videoViewerSketchRepository.save(createSketch(42L, "node-a", TODAY, 11, "viewer-1", "viewer-5"));
+        long estimate = uniqueViewerService.estimateUniqueViewers(42L, EngagementType.VIEW);
+
+        uniqueViewerService.rollUp();
+
+        assertAll(
+                () -> assertThat(estimate).isEqualTo(5),
+                () -> assertThat(uniqueViewerService.estimateUniqueViewers(42L, EngagementType.VIEW)).isEqualTo(estimate),
+                () -> assertThat(videoViewerSketchRepository.findAllByVideoIdAndEngagementType(42L, EngagementType.VIEW))
+                        .extracting(VideoViewerSketch::getNodeId, VideoViewerSketch::getWindowStart)
+                        .containsExactlyInAnyOrder(
+                                tuple(UniqueViewerService.ROLLED_UP_NODE_ID, UniqueViewerService.ROLLED_UP_WINDOW_START),
+                                tuple("node-a", TODAY))
+        );
+    }
+
+    @Test
+    void testEstimateWhenSketchesOfDifferentPrecisionThenMergedAtLowerPrecision() {
+        videoViewerSketchRepository.save(createSketch(43L, "node-a", TODAY.minusDays(1), 12, "viewer-1", "viewer-2"));
+        videoViewerSketchRepository.save(createSketch(43L, "node-b", TODAY.minusDays(1), 10, "viewer-2", "viewer-3"));
+        uniqueViewerService.recordView(43L, "viewer-4");
+
+        assertThat(uniqueViewerService.estimateUniqueViewers(43L, EngagementType.VIEW)).isEqualTo(4);
+    }
+
+    private static VideoViewerSketch createSketch(Long videoId, String nodeId, LocalDate windowStart, int precision, String... viewerIds) {
+        HyperLogLog hyperLogLog = new HyperLogLog(precision);
+        for (String viewerId : viewerIds) {
+            hyperLogLog.offer(viewerId);
+        }
+        VideoViewerSketch sketch = new VideoViewerSketch();
+        sketch.setVideoId(videoId);
+        sketch.setEngagementType(EngagementType.VIEW);
+        sketch.setWindowStart(windowStart);
+        sketch.setNodeId(nodeId);
+        sketch.setSketchPrecision(precision);
+        sketch.setRegisters(hyperLogLog.toBytes());
+        return sketch;
+    }
+}
@@ -0,0 +1,161 @@
+package com.mlavrenko.videostreaming.service;
+
+import com.mlavrenko.videostreaming.config.VideoIdFilterProperties;
+import com.mlavrenko.videostreaming.repository.VideoMetadataRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class VideoIdFilterTest {
+    private static final int ID_BLOCK_SIZE = 50;
+    private final VideoMetadataRepository videoMetadataRepository = mock(VideoMetadataRepository.class);
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Test
+    void testMightExistWhenFilterNotBuiltThenEveryIdGoesToDatabase() {
+        VideoIdFilter videoIdFilter = createFilter(true, Duration.ofMinutes(1));
+
+        assertThat(videoIdFilter.mightExist(1L)).isTrue();
+    }
+
+    @Test
+    void testMightExistWhenFilterRebuiltThenOnlyLiveIdsGoToDatabase() {
+        VideoIdFilter videoIdFilter = createFilter(true, Duration.ofMinutes(1));
+        rebuild(videoIdFilter, 1L, 3L, 5L);
+
+        assertAll(
+                () -> assertThat(videoIdFilter.mightExist(3L)).isTrue(),
+                () -> assertThat(videoIdFilter.mightExist(4L)).isFalse(),
+                () -> assertThat(videoIdFilter.mightExist(6L)).isFalse(),
+                () -> assertThat(meterRegistry.get("video.id.filter.rejections").tag("reason", "bloom").counter().count()).isOne(),
+                () -> assertThat(meterRegistry.get("video.id.filter.rejections").tag("reason", "high-water-mark").counter().count()).isOne(),
+                () -> verify(videoMetadataRepository, never()).findHighestIds()
+        );
+    }
+
+    @Test
+    void testMightExistWhenIdInBlockNotReadYetThenGoesToDatabase() {
+        VideoIdFilter videoIdFilter = createFilter(true, Duration.ofMinutes(1));
+        long secondShardId = (1L << 48) | 1;
+        rebuild(videoIdFilter, 1L, 3L, 2L * ID_BLOCK_SIZE + 2, secondShardId);
+
+        assertAll(
+                () -> assertThat(videoIdFilter.mightExist(2L)).isFalse(),
+                () -> assertThat(videoIdFilter.mightExist(ID_BLOCK_SIZE + 1L)).isTrue(),
+                () -> assertThat(videoIdFilter.mightExist(2L * ID_BLOCK_SIZE + 1)).isFalse(),
+                () -> assertThat(videoIdFilter.mightExist(secondShardId + 1)).isFalse()
+        );
+    }
+
+    @Test
+    void testMightExistWhenShardIdNearBlockEdgeThenBlockCountedWithinShard() {
+        VideoIdFilter videoIdFilter = createFilter(true, Duration.ofMinutes(1));
+        long secondShard = 1L << 48;
+        rebuild(videoIdFilter, 1L, secondShard | (ID_BLOCK_SIZE + 10));
+
+        assertAll(
+                () -> assertThat(videoIdFilter.mightExist(secondShard | (ID_BLOCK_SIZE - 4))).isTrue(),
+                () -> assertThat(videoIdFilter.mightExist(secondShard | (ID_BLOCK_SIZE + 9))).isFalse()
+        );
+    }
+
+    @Test
+    void testMightExistWhenIdAboveHighestIdOfShardThenHighestIdsReadAgainOncePerInterval() {
+        VideoIdFilter videoIdFilter = createFilter(true, Duration.ofMinutes(1), Duration.ZERO);
+        rebuild(videoIdFilter, 1L, 5L);
+        when(videoMetadataRepository.findHighestIds()).thenReturn(Arrays.asList(7L, null));
+
+        assertAll(
+                () -> assertThat(videoIdFilter.mightExist(7L)).isTrue(),
+                () -> assertThat(videoIdFilter.mightExist(8L)).isFalse(),
+                () -> verify(videoMetadataRepository, times(2)).findHighestIds()
+        );
+    }
+
+    @Test
+    void testMightExistWhenHighestIdsReadRecentlyThenIdAboveRejectedWithoutDatabase() {
+        VideoIdFilter videoIdFilter = createFilter(true, Duration.ofMinutes(1));
+        videoIdFilter.load(List.of(1L, 5L));
+        when(videoMetadataRepository.findHighestIds()).thenReturn(List.of(5L));
+
+        assertAll(
+                () -> assertThat(videoIdFilter.mightExist(9L)).isFalse(),
+                () -> assertThat(videoIdFilter.mightExist(10L)).isFalse(),
+                () -> verify(videoMetadataRepository, times(1)).findHighestIds()
+        );
+    }
+
+    @Test
+    void testMightExistWhenIdPublishedAfterRebuildThenGoesToDatabase() {
+        VideoIdFilter videoIdFilter = createFilter(true, Duration.ofMinutes(1));
+        rebuild(videoIdFilter, 1L, 5L);
+
+        videoIdFilter.recordExisting(3L);
+
+        assertThat(videoIdFilter.mightExist(3L)).isTrue();
+    }
+
+    @Test
+    void testMightExistWhenIdDeletedThenRejectedUntilNegativeCacheExpires() throws InterruptedException {
+        VideoIdFilter videoIdFilter = createFilter(true, Duration.ofMillis(50));
+        rebuild(videoIdFilter, 1L, 3L);
+
+        videoIdFilter.recordMissing(3L);
+        boolean mightExistWhenCached = videoIdFilter.mightExist(3L);
+        Thread.sleep(100);
+
+        assertAll(
+                () -> assertThat(mightExistWhenCached).isFalse(),
+                () -> assertThat(videoIdFilter.mightExist(3L)).isTrue(),
+                () -> assertThat(meterRegistry.get("video.id.filter.false.positives").counter().count()).isOne()
+        );
+    }
+
+    @Test
+    void testMightExistWhenMissingIdPublishedThenNoLongerRejected() {
+        VideoIdFilter videoIdFilter = createFilter(true, Duration.ofMinutes(1));
+
+        videoIdFilter.recordMissing(7L);
+        videoIdFilter.recordExisting(7L);
+
+        assertThat(videoIdFilter.mightExist(7L)).isTrue();
+    }
+
+    @Test
+    void testMightExistWhenDisabledThenEveryIdGoesToDatabase() {
+        VideoIdFilter videoIdFilter = createFilter(false, Duration.ofMinutes(1));
+        rebuild(videoIdFilter, 1L);
+
+        videoIdFilter.recordMissing(2L);
+
+        assertThat(videoIdFilter.mightExist(2L)).isTrue();
+    }
+
+    private void rebuild(VideoIdFilter videoIdFilter, Long... ids) {
+        when(videoMetadataRepository.count()).thenReturn((long) ids.length);
+        when(videoMetadataRepository.streamAllIds()).thenReturn(Stream.of(ids));
+        videoIdFilter.rebuild();
+    }
+
+    private VideoIdFilter createFilter(boolean enabled, Duration negativeCacheTtl) {
+        return createFilter(enabled, negativeCacheTtl, Duration.ofMinutes(1));
+    }
+
+    private VideoIdFilter createFilter(boolean enabled, Duration negativeCacheTtl, Duration highWaterMarkRefreshInterval) {
+        return new VideoIdFilter(videoMetadataRepository, new VideoIdFilterProperties(enabled, 1_000, 0.001, negativeCacheTtl, 100,
+                Duration.ofMinutes(1), ID_BLOCK_SIZE, highWaterMarkRefreshInterval), meterRegistry);
+    }
+}
@@ -0,0 +1,180 @@
+package com.mlavrenko.videostreaming.service;
+
+import com.mlavrenko.videostreaming.config.VideoProcessingProperties;
+import com.mlavrenko.videostreaming.datasource.ReadYourWritesTracker;
+import com.mlavrenko.videostreaming.domain.ProcessingStage;
+import com.mlavrenko.videostreaming.domain.ProcessingStatus;
+import com.mlavrenko.videostreaming.domain.VideoMetadata;
+import com.mlavrenko.videostreaming.domain.VideoProcessingJob;
+import com.mlavrenko.videostreaming.repository.VideoMetadataRepository;
+import com.mlavrenko.videostreaming.repository.VideoProcessingJobRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionOperations;
+import org.springframework.util.unit.DataSize;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+class VideoProcessingServiceTest {
+    private static final Long VIDEO_ID = 1L;
+    private static final String VIDEO_LOCATION = "uploads/video.mp4";
+    private final VideoProcessingJobRepository videoProcessingJobRepository = mock(VideoProcessingJobRepository.class);
+    private final VideoMetadataRepository videoMetadataRepository = mock(VideoMetadataRepository.class);
+    private final VideoContentStorageService videoContentStorageService = mock(VideoContentStorageService.class);
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final VideoProcessingService videoProcessingService = new VideoProcessingService(videoProcessingJobRepository, videoMetadataRepository,
+            videoContentStorageService, mock(ReadYourWritesTracker.class),
+            new VideoProcessingProperties(1, 4, 2, Duration.ofMinutes(1), Duration.ofMinutes(1), Duration.ofSeconds(30),
+                    DataSize.ofBytes(64), DataSize.ofBytes(100)),
+            TransactionOperations.withoutTransaction(), meterRegistry);
+    private final VideoMetadata video = new VideoMetadata();
+    private final VideoProcessingJob job = new VideoProcessingJob();
+
+    @BeforeEach
+    void setUp() {
+        video.setId(VIDEO_ID);
+        video.setVideoLocation(VIDEO_LOCATION);
+        job.setVideoId(VIDEO_ID);
+        job.setStage(ProcessingStage.CHECKSUM);
+        job.setStatus(ProcessingStatus.RUNNING);
+        when(videoProcessingJobRepository.claim(eq(VIDEO_ID), any(), any())).thenReturn(1);
+        when(videoProcessingJobRepository.findByVideoId(VIDEO_ID)).thenReturn(Optional.of(job));
+        when(videoProcessingJobRepository.save(any(VideoProcessingJob.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        when(videoMetadataRepository.findById(VIDEO_ID)).thenReturn(Optional.of(video));
+    }
+
+    @AfterEach
+    void tearDown() {
+        videoProcessingService.shutdown();
+    }
+
+    @Test
+    void testProcessWhenMp4UploadedThenAllStagesCompletedAndRunningTimeFilled() throws Exception {
+        byte[] content = createMp4(1000, 5_400_000, 300);
+        stubContent(content);
+
+        videoProcessingService.process(VIDEO_ID);
+
+        assertAll(
+                () -> assertThat(job.getStatus()).isEqualTo(ProcessingStatus.COMPLETED),
+                () -> assertThat(job.getStage()).isEqualTo(ProcessingStage.ENRICH),
+                () -> assertThat(job.getChecksum()).isEqualTo(HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(content))),
+                () -> assertThat(job.getContentLength()).isEqualTo(content.length),
+                () -> assertThat(job.getSegmentCount()).isEqualTo((content.length + 99) / 100),
+                () -> assertThat(job.getLeaseExpiresAt()).isNull(),
+                () -> assertThat(video.getRunningTime()).isEqualTo(Duration.ofMinutes(90)),
+                () -> assertThat(meterRegistry.get("video.processing.stage").tag("stage", "probe").tag("outcome", "success").timer().count())
+                        .isOne()
+        );
+    }
+
+    @Test
+    void testProcessWhenRunningTimeGivenThenKept() throws IOException {
+        video.setRunningTime(Duration.ofMinutes(95));
+        stubContent(createMp4(1000, 5_400_000, 0));
+
+        videoProcessingService.process(VIDEO_ID);
+
+        assertAll(
+                () -> assertThat(job.getStatus()).isEqualTo(ProcessingStatus.COMPLETED),
+                () -> assertThat(video.getRunningTime()).isEqualTo(Duration.ofMinutes(95))
+        );
+    }
+
+    @Test
+    void testProcessWhenResumedThenCompletedStagesSkipped() throws IOException {
+        job.setStage(ProcessingStage.SEGMENT);
+        job.setContentLength(250L);
+
+        videoProcessingService.process(VIDEO_ID);
+
+        assertAll(
+                () -> assertThat(job.getStatus()).isEqualTo(ProcessingStatus.COMPLETED),
+                () -> assertThat(job.getSegmentCount()).isEqualTo(3),
+                () -> verify(videoContentStorageService, never()).loadRange(anyString(), anyLong(), anyLong())
+        );
+    }
+
+    @Test
+    void testProcessWhenStageFailsThenQueuedForRetryUntilAttemptsExhausted() throws IOException {
+        when(videoContentStorageService.loadRange(anyString(), anyLong(), anyLong())).thenThrow(new IOException("Storage unavailable"));
+
+        videoProcessingService.process(VIDEO_ID);
+        ProcessingStatus afterFirstAttempt = job.getStatus();
+        videoProcessingService.process(VIDEO_ID);
+
+        assertAll(
+                () -> assertThat(afterFirstAttempt).isEqualTo(ProcessingStatus.QUEUED),
+                () -> assertThat(job.getStatus()).isEqualTo(ProcessingStatus.FAILED),
+                () -> assertThat(job.getStage()).isEqualTo(ProcessingStage.CHECKSUM),
+                () -> assertThat(job.getAttempts()).isEqualTo(2),
+                () -> assertThat(job.getLastError()).isEqualTo("Storage unavailable")
+        );
+    }
+
+    @Test
+    void testProcessWhenClaimedByAnotherWorkerThenNothingDone() {
+        when(videoProcessingJobRepository.claim(eq(VIDEO_ID), any(), any())).thenReturn(0);
+
+        videoProcessingService.process(VIDEO_ID);
+
+        assertAll(
+                () -> verifyNoInteractions(videoContentStorageService),
+                () -> verify(videoProcessingJobRepository, never()).save(any())
+        );
+    }
+
+    @Test
+    void testProcessWhenVideoDeletedThenFailed() {
+        when(videoMetadataRepository.findById(VIDEO_ID)).thenReturn(Optional.empty());
+
+        videoProcessingService.process(VIDEO_ID);
+
+        assertAll(
+                () -> assertThat(job.getStatus()).isEqualTo(ProcessingStatus.FAILED),
+                () -> verifyNoInteractions(videoContentStorageService)
+        );
+    }
+
+    private void stubContent(byte[] content) throws IOException {
+        when(videoContentStorageService.loadRange(eq(VIDEO_LOCATION), anyLong(), anyLong())).thenAnswer(invocation -> {
+            int from = (int) Math.min(invocation.<Long>getArgument(1), content.length);
+            return Arrays.copyOfRange(content, from, (int) Math.min(from + invocation.<Long>getArgument(2), content.length));
+        });
+    }
+
+    private static byte[] createMp4(int timescale, int duration, int mediaDataSize) {
+        byte[] movieHeader = ByteBuffer.allocate(100).put((byte) 0).position(12).putInt(timescale).putInt(duration).array();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.writeBytes(box("ftyp", "isom".getBytes(StandardCharsets.ISO_8859_1)));
+        out.writeBytes(box("mdat", new byte[mediaDataSize]));
+        out.writeBytes(box("moov", box("mvhd", movieHeader)));
+        return out.toByteArray();
+    }
+
+    private static byte[] box(String type, byte[] content) {
+        return ByteBuffer.allocate(8 + content.length).putInt(8 + content.length).put(type.getBytes(StandardCharsets.ISO_8859_1)).put(content).array();
+    }
+}
@@ -0,0 +1,155 @@
+package com.mlavrenko.videostreaming.service;
+
+import com.mlavrenko.videostreaming.domain.Genre;
+import com.mlavrenko.videostreaming.domain.VideoMetadata;
+import com.mlavrenko.videostreaming.dto.PlaybackHintsDto;
+import com.mlavrenko.videostreaming.dto.VideoMetadataDto;
+import com.mlavrenko.videostreaming.repository.VideoMetadataRepository;
+import com.zaxxer.hikari.HikariDataSource;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.stubbing.Answer;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.web.multipart.MultipartFile;
+
+import javax.sql.DataSource;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.when;
+
+/**
+ * Holds more concurrent streams in the storage than there are pooled connections, and checks that no connection is used meanwhile,
+ * so metadata-only requests are still served.
+ */
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:storage-latency;mode=PostgreSQL;DB_CLOSE_DELAY=-1",
+        "spring.datasource.hikari.maximum-pool-size=2",
+        "spring.datasource.hikari.connection-timeout=500ms",
+        "content-prefetch.enabled=false"
+})
+@ActiveProfiles("test")
+class VideoServiceStorageLatencyTest {
+    private static final int CONCURRENT_STREAMS = 8;
+    private static final String VIEWER_ID = "viewer-1";
+    @Autowired
+    private VideoService videoService;
+    @Autowired
+    private VideoMetadataRepository videoMetadataRepository;
+    @Autowired
+    private DataSource dataSource;
+    @MockitoBean
+    private VideoContentStorageService videoContentStorageService;
+    @MockitoBean
+    private VideoProcessingService videoProcessingService;
+    private final CountDownLatch storageEntered = new CountDownLatch(CONCURRENT_STREAMS);
+    private final CountDownLatch storageReleased = new CountDownLatch(1);
+    private final ExecutorService executor = Executors.newFixedThreadPool(CONCURRENT_STREAMS);
+    private final List<Long> videoIds = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        for (int i = 0; i < CONCURRENT_STREAMS; i++) {
+            videoIds.add(videoMetadataRepository.save(createVideo(i)).getId());
+        }
+    }
+
+    @AfterEach
+    void tearDown() {
+        storageReleased.countDown();
+        executor.shutdownNow();
+        videoMetadataRepository.deleteAllInBatch();
+    }
+
+    @Test
+    void testLoadVideoWhenStorageIsSlowThenNoConnectionHeldDuringPreviewRead() throws Exception {
+        when(videoContentStorageService.loadRange(anyString(), anyLong(), anyLong())).thenAnswer(slowStorage("preview".getBytes(StandardCharsets.UTF_8)));
+
+        List<Future<?>> streams = new ArrayList<>();
+        videoIds.forEach(id -> streams.add(executor.submit(() -> videoService.loadVideo(id, VIEWER_ID))));
+
+        assertConnectionsIdleWhileStorageIsBusy(streams);
+    }
+
+    @Test
+    void testPlayVideoWhenStorageIsSlowThenNoConnectionHeldDuringContentRead() throws Exception {
+        when(videoContentStorageService.load(anyString())).thenAnswer(slowStorage(ContentResource.of("uploads/video.mp4", "content".getBytes(StandardCharsets.UTF_8))));
+
+        List<Future<?>> streams = new ArrayList<>();
+        videoIds.forEach(id -> streams.add(executor.submit(() -> videoService.playVideo(id, VIEWER_ID, PlaybackHintsDto.NONE, List.of()))));
+
+        assertConnectionsIdleWhileStorageIsBusy(streams);
+        assertThat(videoMetadataRepository.findAllById(videoIds)).extracting(VideoMetadata::getViews).containsOnly(1);
+    }
+
+    @Test
+    void testPublishVideoWhenStorageIsSlowThenNoConnectionHeldDuringUpload() throws Exception {
+        when(videoContentStorageService.upload(any(MultipartFile.class))).thenAnswer(slowStorage("uploads/video.mp4"));
+
+        List<Future<?>> uploads = new ArrayList<>();
+        for (int i = 0; i < CONCURRENT_STREAMS; i++) {
+            VideoMetadataDto videoMetadataDto = new VideoMetadataDto(
+                    null, "Uploaded " + i, "Synopsis", "Director", "Actor", 2020, Genre.DRAMA, Duration.ofMinutes(90));
+            uploads.add(executor.submit(() -> videoService.publishVideo(videoMetadataDto,
+                    new MockMultipartFile("videoFile", "video.mp4", "video/mp4", "content".getBytes(StandardCharsets.UTF_8)))));
+        }
+
+        assertConnectionsIdleWhileStorageIsBusy(uploads);
+        assertThat(videoMetadataRepository.count()).isEqualTo(2L * CONCURRENT_STREAMS);
+    }
+
+    private void assertConnectionsIdleWhileStorageIsBusy(List<Future<?>> streams) throws Exception {
+        assertThat(storageEntered.await(10, TimeUnit.SECONDS)).isTrue();
+
+        assertAll(
+                () -> assertThat(getActiveConnections()).isZero(),
+                () -> assertThat(videoService.listAllVideos(null, null, null, PageRequest.of(0, 100))).hasSizeGreaterThanOrEqualTo(CONCURRENT_STREAMS),
+                () -> assertThat(getActiveConnections()).isZero()
+        );
+
+        storageReleased.countDown();
+        for (Future<?> stream : streams) {
+            stream.get(10, TimeUnit.SECONDS);
+        }
+    }
+
+    private <T> Answer<T> slowStorage(T result) {
+        return invocation -> {
+            storageEntered.countDown();
+            assertThat(storageReleased.await(10, TimeUnit.SECONDS)).isTrue();
+            return result;
+        };
+    }
+
+    private int getActiveConnections() throws Exception {
+        return dataSource.unwrap(HikariDataSource.class).getHikariPoolMXBean().getActiveConnections();
+    }
+
+    private static VideoMetadata createVideo(int index) {
+        VideoMetadata video = new VideoMetadata();
+        video.setTitle("Stored " + index);
+        video.setDirector("Director");
+        video.setYearOfRelease(2020);
+        video.setGenre(Genre.DRAMA);
+        video.setVideoLocation("uploads/video-" + index + ".mp4");
+        return video;
+    }
+}
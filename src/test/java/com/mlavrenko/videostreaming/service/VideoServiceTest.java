@@ -1,14 +1,23 @@
 package com.mlavrenko.videostreaming.service;
 
 import com.mlavrenko.videostreaming.IntegrationTest;
+import com.mlavrenko.videostreaming.domain.EngagementType;
 import com.mlavrenko.videostreaming.domain.Genre;
 import com.mlavrenko.videostreaming.domain.VideoMetadata;
+import com.mlavrenko.videostreaming.dto.EncodedContentDto;
 import com.mlavrenko.videostreaming.dto.EngagementStatisticsDto;
+import com.mlavrenko.videostreaming.dto.PlaybackHintsDto;
+import com.mlavrenko.videostreaming.dto.RelatedVideoDto;
+import com.mlavrenko.videostreaming.dto.VideoFacetTermsDto;
 import com.mlavrenko.videostreaming.dto.VideoMetadataDto;
 import com.mlavrenko.videostreaming.dto.VideoMetadataViewDto;
 import com.mlavrenko.videostreaming.dto.VideoMetadataWithPreviewDto;
+import com.mlavrenko.videostreaming.dto.VideoSearchTermsDto;
 import com.mlavrenko.videostreaming.exception.ResourceNotFoundException;
+import com.mlavrenko.videostreaming.exception.ServiceOverloadedException;
+import com.mlavrenko.videostreaming.media.ContentEncoding;
 import com.mlavrenko.videostreaming.repository.VideoMetadataRepository;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.Mockito;
 import org.springframework.beans.BeanUtils;
@@ -18,9 +27,12 @@ import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.jpa.domain.Specification;
 import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.time.Duration;
 import java.util.List;
 import java.util.Optional;
@@ -29,12 +41,19 @@ import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import static org.junit.jupiter.api.Assertions.assertAll;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
 import static org.mockito.Mockito.verifyNoMoreInteractions;
 import static org.mockito.Mockito.when;
 
 @IntegrationTest
 class VideoServiceTest {
+    private static final String VIEWER_ID = "viewer-1";
+    private static final String PREVIEW_LOCATION = "previews/video.preview";
+    private static final long PREVIEW_SIZE = 16;
     @Autowired
     private VideoService videoService;
     @MockitoBean
@@ -43,14 +62,35 @@ class VideoServiceTest {
     private VideoContentStorageService videoContentStorageService;
     @MockitoBean
     private VideoSearchSpecification videoSearchSpecification;
+    @MockitoBean
+    private UniqueViewerService uniqueViewerService;
+    @MockitoBean
+    private VideoIdFilter videoIdFilter;
+    @MockitoBean
+    private AutocompleteService autocompleteService;
+    @MockitoBean
+    private FacetService facetService;
+    @MockitoBean
+    private RelatedVideosService relatedVideosService;
+    @MockitoBean
+    private VideoProcessingService videoProcessingService;
+    @MockitoBean
+    private PreviewService previewService;
+
+    @BeforeEach
+    void setUp() {
+        when(videoIdFilter.mightExist(any())).thenReturn(true);
+    }
 
     @Test
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
     void testPublishVideoWhenInputValidThenSuccessfulUpload() throws IOException {
         VideoMetadataDto videoMetadataDto = createSampleVideoDto();
         MultipartFile videoFile = Mockito.mock(MultipartFile.class);
 
         String fakeLocation = "fake-location/video.mp4";
         when(videoContentStorageService.upload(videoFile)).thenReturn(fakeLocation);
+        when(previewService.create(videoFile)).thenReturn(new PreviewService.StoredPreview(PREVIEW_LOCATION, PREVIEW_SIZE));
         when(videoMetadataRepository.save(any(VideoMetadata.class))).thenAnswer(invocation -> {
             VideoMetadata videoMetadata = invocation.getArgument(0);
             videoMetadata.setId(1L);
@@ -62,7 +102,13 @@ class VideoServiceTest {
         assertAll(
                 () -> assertThat(result).isNotNull().usingRecursiveComparison().ignoringFields("id").isEqualTo(videoMetadataDto),
                 () -> verify(videoContentStorageService).upload(videoFile),
-                () -> verify(videoMetadataRepository).save(any(VideoMetadata.class))
+                () -> verify(videoMetadataRepository).save(argThat(video -> PREVIEW_LOCATION.equals(video.getPreviewLocation())
+                        && Long.valueOf(PREVIEW_SIZE).equals(video.getPreviewSize()))),
+                () -> verify(videoIdFilter).recordExisting(1L),
+                () -> verify(videoProcessingService).createJob(1L),
+                () -> verify(autocompleteService).index(any(VideoSearchTermsDto.class)),
+                () -> verify(facetService).index(new VideoFacetTermsDto(1L, videoMetadataDto.title(), videoMetadataDto.director(),
+                        videoMetadataDto.genre(), videoMetadataDto.yearOfRelease()))
         );
     }
 
@@ -80,6 +126,20 @@ class VideoServiceTest {
         );
     }
 
+    @Test
+    void testPublishVideoWhenProcessingQueueFullThenNothingUploaded() throws IOException {
+        MultipartFile videoFile = Mockito.mock(MultipartFile.class);
+        doThrow(new ServiceOverloadedException("Too many videos waiting for processing", Duration.ofSeconds(30)))
+                .when(videoProcessingService).checkCapacity();
+
+        assertAll(
+                () -> assertThatThrownBy(() -> videoService.publishVideo(createSampleVideoDto(), videoFile))
+                        .isInstanceOf(ServiceOverloadedException.class),
+                () -> verifyNoInteractions(videoContentStorageService),
+                () -> verifyNoMoreInteractions(videoMetadataRepository)
+        );
+    }
+
     @Test
     void testPublishVideoWhenSaveFailsThenCleanupTriggered() throws IOException {
         VideoMetadataDto videoMetadataDto = createSampleVideoDto();
@@ -87,6 +147,7 @@ class VideoServiceTest {
 
         String fakeLocation = "fake-location/video.mp4";
         when(videoContentStorageService.upload(videoFile)).thenReturn(fakeLocation);
+        when(previewService.create(videoFile)).thenReturn(new PreviewService.StoredPreview(PREVIEW_LOCATION, PREVIEW_SIZE));
         String message = "Database save error";
         when(videoMetadataRepository.save(any(VideoMetadata.class))).thenThrow(new RuntimeException(message));
 
@@ -94,10 +155,30 @@ class VideoServiceTest {
                 () -> assertThatThrownBy(() -> videoService.publishVideo(videoMetadataDto, videoFile)).isInstanceOf(RuntimeException.class).hasMessageContaining(message),
                 () -> verify(videoContentStorageService).upload(videoFile),
                 () -> verify(videoContentStorageService).delete(fakeLocation),
+                () -> verify(previewService).delete(PREVIEW_LOCATION),
                 () -> verify(videoMetadataRepository).save(any(VideoMetadata.class))
         );
     }
 
+    @Test
+    void testPublishVideoWhenRollbackFailsThenPreviewDeletedAndSaveFailureRethrown() throws IOException {
+        MultipartFile videoFile = Mockito.mock(MultipartFile.class);
+        String fakeLocation = "fake-location/video.mp4";
+        when(videoContentStorageService.upload(videoFile)).thenReturn(fakeLocation);
+        when(previewService.create(videoFile)).thenReturn(new PreviewService.StoredPreview(PREVIEW_LOCATION, PREVIEW_SIZE));
+        when(videoMetadataRepository.save(any(VideoMetadata.class))).thenThrow(new RuntimeException("Database save error"));
+        IOException rollbackFailure = new IOException("Storage delete error");
+        doThrow(rollbackFailure).when(videoContentStorageService).delete(fakeLocation);
+
+        assertAll(
+                () -> assertThatThrownBy(() -> videoService.publishVideo(createSampleVideoDto(), videoFile))
+                        .isInstanceOf(RuntimeException.class)
+                        .hasMessageContaining("Database save error")
+                        .satisfies(failure -> assertThat(failure.getSuppressed()).containsExactly(rollbackFailure)),
+                () -> verify(previewService).delete(PREVIEW_LOCATION)
+        );
+    }
+
     @Test
     void testUpdateMetadataWhenValidInputThenSuccessfulUpdate() {
         long videoId = 1L;
@@ -125,13 +206,33 @@ class VideoServiceTest {
     }
 
     @Test
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
     void testSoftDeleteVideoWhenVideoMetadataExistsThenDeletesIt() {
         long videoId = 1L;
         when(videoMetadataRepository.existsById(videoId)).thenReturn(true);
 
         videoService.softDeleteVideo(videoId);
 
-        verify(videoMetadataRepository).deleteById(videoId);
+        assertAll(
+                () -> verify(videoMetadataRepository).deleteById(videoId),
+                () -> verify(autocompleteService).remove(videoId),
+                () -> verify(facetService).remove(videoId),
+                () -> verify(relatedVideosService).remove(videoId)
+        );
+    }
+
+    @Test
+    void testSoftDeleteVideoWhenTransactionNotCommittedThenIndexesUnchanged() {
+        long videoId = 1L;
+        when(videoMetadataRepository.existsById(videoId)).thenReturn(true);
+
+        videoService.softDeleteVideo(videoId);
+
+        assertAll(
+                () -> verify(videoMetadataRepository).deleteById(videoId),
+                () -> verify(videoIdFilter, never()).recordMissing(videoId),
+                () -> verifyNoInteractions(autocompleteService, facetService, relatedVideosService)
+        );
     }
 
     @Test
@@ -149,14 +250,23 @@ class VideoServiceTest {
         VideoMetadata video = new VideoMetadata();
         video.setId(videoId);
         video.setImpressions(5);
+        video.setVideoLocation("uploads/video.mp4");
+        video.setPreviewLocation(PREVIEW_LOCATION);
+        video.setPreviewSize(PREVIEW_SIZE);
 
         when(videoMetadataRepository.findById(videoId)).thenReturn(Optional.of(video));
+        when(previewService.load(videoId, "uploads/video.mp4", PREVIEW_LOCATION, PREVIEW_SIZE)).thenReturn(new PreviewService.LoadedPreview("preview", 7));
 
-        VideoMetadataWithPreviewDto result = videoService.loadVideo(videoId);
+        VideoMetadataWithPreviewDto result = videoService.loadVideo(videoId, VIEWER_ID);
 
         assertAll(
                 () -> assertThat(result).isNotNull().extracting("metadata.id").isEqualTo(videoId),
-                () -> verify(videoMetadataRepository).findById(videoId)
+                () -> assertThat(result.preview()).isEqualTo("preview"),
+                () -> assertThat(result.previewBytes()).isEqualTo(7),
+                () -> verify(videoContentStorageService, never()).loadPreview(any()),
+                () -> verify(videoMetadataRepository).findById(videoId),
+                () -> verify(videoMetadataRepository).incrementImpressions(videoId),
+                () -> verify(uniqueViewerService).recordImpression(videoId, VIEWER_ID)
         );
     }
 
@@ -165,7 +275,7 @@ class VideoServiceTest {
         long videoId = 1L;
         when(videoMetadataRepository.findById(videoId)).thenReturn(Optional.empty());
 
-        assertThatThrownBy(() -> videoService.loadVideo(videoId)).isInstanceOf(ResourceNotFoundException.class);
+        assertThatThrownBy(() -> videoService.loadVideo(videoId, VIEWER_ID)).isInstanceOf(ResourceNotFoundException.class);
     }
 
     @Test
@@ -179,11 +289,17 @@ class VideoServiceTest {
 
         when(videoMetadataRepository.findById(videoId)).thenReturn(Optional.of(video));
         String videoContent = "Video Content";
-        when(videoContentStorageService.load(videoLocation)).thenReturn(videoContent);
+        when(videoContentStorageService.load(videoLocation)).thenReturn(ContentResource.of(videoLocation, videoContent.getBytes(StandardCharsets.UTF_8)));
 
-        String result = videoService.playVideo(videoId);
+        EncodedContentDto result = videoService.playVideo(videoId, VIEWER_ID, PlaybackHintsDto.NONE, List.of());
 
-        assertThat(result).isEqualTo(videoContent);
+        assertAll(
+                () -> assertThat(result.content().getContentAsString(StandardCharsets.UTF_8)).isEqualTo(videoContent),
+                () -> assertThat(result.length()).isEqualTo(videoContent.length()),
+                () -> assertThat(result.encoding()).isEqualTo(ContentEncoding.IDENTITY),
+                () -> verify(videoMetadataRepository).incrementViews(videoId),
+                () -> verify(uniqueViewerService).recordView(videoId, VIEWER_ID)
+        );
     }
 
     @Test
@@ -191,7 +307,53 @@ class VideoServiceTest {
         long videoId = 1L;
         when(videoMetadataRepository.findById(videoId)).thenReturn(Optional.empty());
 
-        assertThatThrownBy(() -> videoService.playVideo(videoId)).isInstanceOf(ResourceNotFoundException.class);
+        assertThatThrownBy(() -> videoService.playVideo(videoId, VIEWER_ID, PlaybackHintsDto.NONE, List.of())).isInstanceOf(ResourceNotFoundException.class);
+    }
+
+    @Test
+    void testPlayVideoWhenIdFilteredOutThenThrowsNotFoundExceptionWithoutDatabaseLookup() {
+        long videoId = 1L;
+        when(videoIdFilter.mightExist(videoId)).thenReturn(false);
+
+        assertAll(
+                () -> assertThatThrownBy(() -> videoService.playVideo(videoId, VIEWER_ID, PlaybackHintsDto.NONE, List.of())).isInstanceOf(ResourceNotFoundException.class),
+                () -> verifyNoMoreInteractions(videoMetadataRepository)
+        );
+    }
+
+    @Test
+    void testLoadVideoWhenVideoMetadataNotFoundThenRemembersMissingId() {
+        long videoId = 1L;
+        when(videoMetadataRepository.findById(videoId)).thenReturn(Optional.empty());
+
+        assertAll(
+                () -> assertThatThrownBy(() -> videoService.loadVideo(videoId, VIEWER_ID)).isInstanceOf(ResourceNotFoundException.class),
+                () -> verify(videoIdFilter).recordMissing(videoId)
+        );
+    }
+
+    @Test
+    void testFindRelatedVideosWhenListPrecomputedThenServedWithoutDatabase() {
+        long videoId = 1L;
+        List<RelatedVideoDto> related = List.of(new RelatedVideoDto(2L, "Related", 1.0));
+        when(relatedVideosService.findRelated(videoId)).thenReturn(Optional.of(related));
+
+        assertAll(
+                () -> assertThat(videoService.findRelatedVideos(videoId)).isEqualTo(related),
+                () -> verifyNoMoreInteractions(videoMetadataRepository)
+        );
+    }
+
+    @Test
+    void testFindRelatedVideosWhenUnknownToIndexThenChecksExistence() {
+        when(relatedVideosService.findRelated(any())).thenReturn(Optional.empty());
+        when(videoMetadataRepository.existsById(1L)).thenReturn(true);
+        when(videoMetadataRepository.existsById(2L)).thenReturn(false);
+
+        assertAll(
+                () -> assertThat(videoService.findRelatedVideos(1L)).isEmpty(),
+                () -> assertThatThrownBy(() -> videoService.findRelatedVideos(2L)).isInstanceOf(ResourceNotFoundException.class)
+        );
     }
 
     @Test
@@ -225,10 +387,12 @@ class VideoServiceTest {
         video.setViews(50);
 
         when(videoMetadataRepository.findById(videoId)).thenReturn(Optional.of(video));
+        when(uniqueViewerService.estimateUniqueViewers(videoId, EngagementType.IMPRESSION)).thenReturn(40L);
+        when(uniqueViewerService.estimateUniqueViewers(videoId, EngagementType.VIEW)).thenReturn(20L);
 
         EngagementStatisticsDto stats = videoService.getEngagementStatistics(videoId);
 
-        assertThat(stats).isEqualTo(new EngagementStatisticsDto(video.getImpressions(), video.getViews()));
+        assertThat(stats).isEqualTo(new EngagementStatisticsDto(video.getImpressions(), video.getViews(), 40L, 20L));
     }
 
     @Test
@@ -0,0 +1,58 @@
+package com.mlavrenko.videostreaming.sketch;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.util.stream.LongStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.junit.jupiter.api.Assertions.assertAll;
+
+class BloomFilterTest {
+    private static final int IDS = 100_000;
+
+    @ParameterizedTest
+    @ValueSource(doubles = {0.1, 0.01, 0.001})
+    void testMightContainWhenIdsAddedThenNoFalseNegativesAndBoundedFalsePositives(double falsePositiveProbability) {
+        BloomFilter bloomFilter = new BloomFilter(IDS, falsePositiveProbability);
+        LongStream.rangeClosed(1, IDS).forEach(bloomFilter::put);
+
+        long falsePositives = LongStream.rangeClosed(IDS + 1, 2 * IDS).filter(bloomFilter::mightContain).count();
+
+        assertAll(
+                () -> assertThat(LongStream.rangeClosed(1, IDS).allMatch(bloomFilter::mightContain)).isTrue(),
+                () -> assertThat((double) falsePositives / IDS).isLessThan(falsePositiveProbability * 1.5)
+        );
+    }
+
+    @Test
+    void testPutWhenSameIdThenFilterChangesOnlyOnce() {
+        BloomFilter bloomFilter = new BloomFilter(1_000, 0.01);
+
+        assertAll(
+                () -> assertThat(bloomFilter.put(42)).isTrue(),
+                () -> assertThat(bloomFilter.put(42)).isFalse(),
+                () -> assertThat(bloomFilter.mightContain(43)).isFalse()
+        );
+    }
+
+    @Test
+    void testConstructorWhenOnePercentThenSizedAtAboutTenBitsPerId() {
+        BloomFilter bloomFilter = new BloomFilter(1_000_000, 0.01);
+
+        assertAll(
+                () -> assertThat(bloomFilter.bitSize()).isBetween(9_585_000L, 9_586_000L),
+                () -> assertThat(bloomFilter.hashFunctions()).isEqualTo(7)
+        );
+    }
+
+    @Test
+    void testConstructorWhenInvalidArgumentsThenThrowsException() {
+        assertAll(
+                () -> assertThatThrownBy(() -> new BloomFilter(0, 0.01)).isInstanceOf(IllegalArgumentException.class),
+                () -> assertThatThrownBy(() -> new BloomFilter(1_000, 1)).isInstanceOf(IllegalArgumentException.class)
+        );
+    }
+}
@@ -0,0 +1,91 @@
+package com.mlavrenko.videostreaming.sketch;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.within;
+import static org.junit.jupiter.api.Assertions.assertAll;
+
+class HyperLogLogTest {
+    private static final int PRECISION = 11;
+
+    @ParameterizedTest
+    @ValueSource(ints = {0, 10, 1_000, 100_000})
+    void testEstimateWhenRepeatedViewersThenCountsThemOnce(int distinctViewers) {
+        HyperLogLog hyperLogLog = new HyperLogLog(PRECISION);
+        for (int refresh = 0; refresh < 3; refresh++) {
+            for (int i = 0; i < distinctViewers; i++) {
+                hyperLogLog.offer("viewer-" + i);
+            }
+        }
+
+        assertThat(hyperLogLog.estimate()).isCloseTo(distinctViewers, within(Math.round(distinctViewers * 0.07)));
+    }
+
+    @Test
+    void testOfferWhenSameViewerThenSketchChangesOnlyOnce() {
+        HyperLogLog hyperLogLog = new HyperLogLog(PRECISION);
+
+        assertAll(
+                () -> assertThat(hyperLogLog.offer("viewer")).isTrue(),
+                () -> assertThat(hyperLogLog.offer("viewer")).isFalse()
+        );
+    }
+
+    @Test
+    void testMergeWhenOverlappingSketchesThenEstimatesUnion() {
+        HyperLogLog first = new HyperLogLog(PRECISION);
+        HyperLogLog second = new HyperLogLog(PRECISION);
+        for (int i = 0; i < 20_000; i++) {
+            first.offer("viewer-" + i);
+            second.offer("viewer-" + (i + 10_000));
+        }
+
+        long estimate = HyperLogLog.fromBytes(first.toBytes()).merge(second).merge(second).estimate();
+
+        assertThat(estimate).isCloseTo(30_000L, within(2_100L));
+    }
+
+    @Test
+    void testFromBytesWhenSerializedThenSameEstimate() {
+        HyperLogLog hyperLogLog = new HyperLogLog(PRECISION);
+        for (int i = 0; i < 5_000; i++) {
+            hyperLogLog.offer("viewer-" + i);
+        }
+
+        HyperLogLog restored = HyperLogLog.fromBytes(hyperLogLog.toBytes());
+
+        assertAll(
+                () -> assertThat(restored.toBytes()).hasSize(1 << PRECISION),
+                () -> assertThat(restored.estimate()).isEqualTo(hyperLogLog.estimate())
+        );
+    }
+
+    @Test
+    void testMergeWhenDifferentPrecisionThenThrowsException() {
+        assertThatThrownBy(() -> new HyperLogLog(PRECISION).merge(new HyperLogLog(PRECISION + 1)))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {HyperLogLog.MIN_PRECISION, PRECISION - 1})
+    void testReduceWhenLowerPrecisionThenSameAsSketchOfLowerPrecision(int precision) {
+        HyperLogLog hyperLogLog = new HyperLogLog(PRECISION);
+        HyperLogLog lowerPrecision = new HyperLogLog(precision);
+        for (int i = 0; i < 20_000; i++) {
+            hyperLogLog.offer("viewer-" + i);
+            lowerPrecision.offer("viewer-" + i);
+        }
+
+        assertThat(hyperLogLog.reduce(precision).toBytes()).isEqualTo(lowerPrecision.toBytes());
+    }
+
+    @Test
+    void testReduceWhenHigherPrecisionThenThrowsException() {
+        assertThatThrownBy(() -> new HyperLogLog(PRECISION).reduce(PRECISION + 1))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+}
@@ -0,0 +1,66 @@
+package com.mlavrenko.videostreaming.snapshot;
+
+import com.mlavrenko.videostreaming.domain.Genre;
+import com.mlavrenko.videostreaming.dto.VideoCatalogueTermsDto;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class CatalogueSnapshotTest {
+    private static final CatalogueSnapshot SNAPSHOT = new CatalogueSnapshot(Instant.parse("2026-01-01T10:00:00.123456789Z"), List.of(
+            new VideoCatalogueTermsDto(1L, "Amélie", "Jean-Pierre Jeunet", "Audrey Tautou, Mathieu Kassovitz", Genre.ROMANCE, 2001,
+                    Duration.ofMinutes(122), 42),
+            new VideoCatalogueTermsDto(2L, "Untitled", null, null, null, 2020, null, 0)));
+    @TempDir
+    private Path directory;
+
+    @Test
+    void testReadWhenWrittenThenSameSnapshot() throws IOException {
+        Path path = directory.resolve("catalogue.snapshot");
+
+        SNAPSHOT.write(path);
+
+        assertThat(CatalogueSnapshot.read(path)).isEqualTo(SNAPSHOT);
+    }
+
+    @Test
+    void testWriteWhenSnapshotExistsThenReplaced() throws IOException {
+        Path path = directory.resolve("catalogue.snapshot");
+        SNAPSHOT.write(path);
+        CatalogueSnapshot newer = new CatalogueSnapshot(Instant.parse("2026-01-02T10:00:00Z"), List.of());
+
+        newer.write(path);
+
+        assertThat(CatalogueSnapshot.read(path)).isEqualTo(newer);
+    }
+
+    @Test
+    void testReadWhenContentCorruptedThenThrows() throws IOException {
+        Path path = directory.resolve("catalogue.snapshot");
+        SNAPSHOT.write(path);
+        byte[] content = Files.readAllBytes(path);
+        content[30] ^= 1;
+        Files.write(path, content);
+
+        assertThatThrownBy(() -> CatalogueSnapshot.read(path)).isInstanceOf(IOException.class).hasMessageContaining("checksum");
+    }
+
+    @Test
+    void testReadWhenTruncatedThenThrows() throws IOException {
+        Path path = directory.resolve("catalogue.snapshot");
+        SNAPSHOT.write(path);
+        Files.write(path, Arrays.copyOf(Files.readAllBytes(path), 20));
+
+        assertThatThrownBy(() -> CatalogueSnapshot.read(path)).isInstanceOf(IOException.class);
+    }
+}